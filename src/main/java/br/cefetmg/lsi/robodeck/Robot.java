@@ -4,9 +4,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.PortUnreachableException;
 import java.net.UnknownHostException;
+import java.util.EnumSet;
+import java.util.Map;
 
 import br.cefetmg.lsi.robodeck.devices.camera.Camera;
 import br.cefetmg.lsi.robodeck.devices.camera.CameraImage;
+import br.cefetmg.lsi.robodeck.devices.sensors.CollisionReflex;
+import br.cefetmg.lsi.robodeck.devices.sensors.GpsFix;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorCondition;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorKind;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorListener;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorPoller;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorSnapshot;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorSubscription;
+import br.cefetmg.lsi.robodeck.devices.sensors.Side;
 import br.cefetmg.lsi.robodeck.exceptions.CameraException;
 import br.cefetmg.lsi.robodeck.exceptions.CameraImageFormatLenghtException;
 import br.cefetmg.lsi.robodeck.exceptions.CameraStartException;
@@ -35,13 +46,25 @@ import br.cefetmg.lsi.robodeck.exceptions.ReadInfraredSensorsDepthException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadInfraredSensorsDistanceException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadMAPVersionException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadOpticalSensorsException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadSensorSnapshotException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadTemperatureAndHumiditySensorsException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadUltrassonicSensorsDistanceException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadUltrassonicSensorsLuminosityException;
 import br.cefetmg.lsi.robodeck.exceptions.SpinRobotException;
 import br.cefetmg.lsi.robodeck.exceptions.StrafeRobotException;
+import br.cefetmg.lsi.robodeck.exceptions.StreamCommandException;
 import br.cefetmg.lsi.robodeck.exceptions.TurnRobotException;
+import br.cefetmg.lsi.robodeck.network.CacheStats;
+import br.cefetmg.lsi.robodeck.network.CommandPriority;
+import br.cefetmg.lsi.robodeck.network.PartialResponseListener;
+import br.cefetmg.lsi.robodeck.network.ResponseStream;
 import br.cefetmg.lsi.robodeck.network.RobotConnection;
+import br.cefetmg.lsi.robodeck.network.RobotEventBus;
+import br.cefetmg.lsi.robodeck.network.RobotEventListener;
+import br.cefetmg.lsi.robodeck.network.RobotEventSubscription;
+import br.cefetmg.lsi.robodeck.network.RobotEventType;
+import br.cefetmg.lsi.robodeck.network.SourceStats;
+import br.cefetmg.lsi.robodeck.utils.LatencyRecorder;
 import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
 
 public class Robot {
@@ -70,7 +93,22 @@ public class Robot {
 	/**
 	 * Câmera do robô.
 	 */
-	private Camera camera;
+	private final Camera camera = new Camera();
+	
+	/**
+	 * Operações assíncronas do robô.
+	 */
+	private RobotAsync robotAsync;
+	
+	/**
+	 * Leitor de sensores em segundo plano, criado na primeira chamada de {@link #sensorPoller()}.
+	 */
+	private SensorPoller sensorPoller;
+	
+	/**
+	 * Reflexo de colisão, criado na primeira chamada de {@link #collisionReflex()}.
+	 */
+	private CollisionReflex collisionReflex;
 
     /**
      * Cria uma conexão do tipo WiFi com o robô.
@@ -96,6 +134,16 @@ public class Robot {
     	robotConnection = RobotConnection.makeConnection(uuid);
     }
 
+    /**
+     * Usa uma conexão já criada com o robô, por exemplo uma conexão atendida por um
+     * {@link br.cefetmg.lsi.robodeck.network.ConnectionEngine}.
+     * 
+     * @param connection Conexão com o robô.
+     */
+    public Robot(RobotConnection connection) {
+    	robotConnection = connection;
+    }
+
     /**
      * Conecta-se com o robô e abre uma sessão.
      * 
@@ -108,6 +156,11 @@ public class Robot {
 	public void connect() throws IOException, OpenSessionException, EmptyMessageException, InterruptedException {
 		robotConnection.connect();
 		robotConnection.openSession();
+		
+		if (Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robot.reflex.enabled", "false"))) {
+			collisionReflex().arm();
+		}
+		
 	}
 
 	/**
@@ -119,10 +172,305 @@ public class Robot {
 	 * @throws InterruptedException 
 	 */
 	public void disconnect() throws IOException, CloseSessionException, EmptyMessageException, InterruptedException {
+		SensorPoller poller;
+		CollisionReflex reflex;
+		
+		synchronized (this) {
+			poller = sensorPoller;
+			reflex = collisionReflex;
+		}
+		
+		if (reflex != null) {
+			reflex.disarm();
+		}
+		
+		if (poller != null) {
+			poller.stop();
+		}
+		
 		robotConnection.closeSession();
 		robotConnection.disconnect();
 	}
 	
+	/**
+	 * Retorna as operações assíncronas do robô. Cada operação retorna um future com o resultado do comando, em vez de
+	 * bloquear até a resposta do robô; com o pipeline cheio, ela ainda espera por uma vaga (ver {@link RobotAsync}).
+	 * 
+	 * @return operações assíncronas do robô.
+	 */
+	public synchronized RobotAsync async() {
+		
+		if (robotAsync == null) {
+			robotAsync = new RobotAsync(this, robotConnection);
+		}
+		
+		return robotAsync;
+	}
+	
+	/**
+	 * Retorna o leitor de sensores em segundo plano deste robô, criado parado na primeira chamada. O leitor é parado
+	 * por {@link #disconnect()}.
+	 * 
+	 * @return o leitor de sensores do robô.
+	 */
+	public synchronized SensorPoller sensorPoller() {
+		
+		if (sensorPoller == null) {
+			sensorPoller = new SensorPoller(this);
+		}
+		
+		return sensorPoller;
+	}
+	
+	/**
+	 * Retorna o reflexo de colisão deste robô, criado desarmado na primeira chamada. O reflexo é armado por
+	 * {@link #connect()} se a propriedade "robot.reflex.enabled" for true, e desarmado por {@link #disconnect()}.
+	 * 
+	 * @return o reflexo de colisão do robô.
+	 */
+	public synchronized CollisionReflex collisionReflex() {
+		
+		if (collisionReflex == null) {
+			collisionReflex = new CollisionReflex(this);
+		}
+		
+		return collisionReflex;
+	}
+	
+	/**
+	 * Assina a distância medida por um sensor de ultrassom: o ouvinte é chamado quando a distância passa a satisfazer
+	 * a condição, por exemplo {@code robot.onUltrasonic(Side.FRONT, SensorCondition.below(300), listener)}. A
+	 * distância é lida pelo leitor em segundo plano ({@link #sensorPoller()}), compartilhado por todas as assinaturas.
+	 * 
+	 * @param side Sensor de ultrassom.
+	 * @param condition Condição sobre a distância.
+	 * @param listener Recebe os disparos.
+	 * 
+	 * @return a assinatura, que pode ser cancelada.
+	 */
+	public SensorSubscription onUltrasonic(Side side, SensorCondition condition, SensorListener listener) {
+		return sensorPoller().subscribe(SensorKind.ULTRASONIC_DISTANCE, side.ordinal(), condition, listener);
+	}
+	
+	/**
+	 * Assina a detecção de colisão: o ouvinte é chamado, com o valor 1, quando uma colisão passa a ser detectada.
+	 * 
+	 * @param listener Recebe os disparos.
+	 * 
+	 * @return a assinatura, que pode ser cancelada.
+	 * 
+	 * @see #onUltrasonic(Side, SensorCondition, SensorListener)
+	 */
+	public SensorSubscription onCollision(SensorListener listener) {
+		return sensorPoller().subscribe(SensorKind.COLLISION, 0, SensorCondition.above(0), listener);
+	}
+	
+	/**
+	 * Assina um valor de qualquer sensor com uma condição de limite.
+	 * 
+	 * @see SensorPoller#subscribe(SensorKind, int, SensorCondition, SensorListener)
+	 */
+	public SensorSubscription onSensor(SensorKind kind, int position, SensorCondition condition, SensorListener listener) {
+		return sensorPoller().subscribe(kind, position, condition, listener);
+	}
+	
+	/**
+	 * Assina as mudanças de um valor de qualquer sensor.
+	 * 
+	 * @see SensorPoller#subscribeChange(SensorKind, int, int, SensorListener)
+	 */
+	public SensorSubscription onChange(SensorKind kind, int position, int minDelta, SensorListener listener) {
+		return sensorPoller().subscribeChange(kind, position, minDelta, listener);
+	}
+	
+	/**
+	 * Assina os eventos que o robô envia por iniciativa própria, sem que nenhum comando os peça: ao contrário das
+	 * assinaturas de sensores, não há leituras periódicas, e o ouvinte é chamado assim que o pacote chega.
+	 * 
+	 * @param type Tipo de evento assinado.
+	 * @param listener Recebe os eventos.
+	 * 
+	 * @return a assinatura, que pode ser cancelada.
+	 * 
+	 * @see RobotEventBus#subscribe(RobotEventType, RobotEventListener)
+	 */
+	public RobotEventSubscription onEvent(RobotEventType type, RobotEventListener listener) {
+		return robotConnection.getEventBus().subscribe(type, listener);
+	}
+	
+	/**
+	 * Retorna o barramento dos eventos que o robô envia por iniciativa própria, para assinar todos os tipos, trocar o
+	 * executor dos ouvintes ou consultar os contadores.
+	 * 
+	 * @return o barramento de eventos.
+	 */
+	public RobotEventBus getEventBus() {
+		return robotConnection.getEventBus();
+	}
+	
+	/**
+	 * Cria um lote de leituras, enviadas ao robô numa única escrita por {@link RobotBatch#send()}.
+	 * 
+	 * @return um lote vazio.
+	 */
+	public RobotBatch batch() {
+		return new RobotBatch(robotConnection);
+	}
+	
+	/**
+	 * Cria um lote de leituras escalonado pelo menos na classe de prioridade dada. Com
+	 * {@link CommandPriority#SAFETY}, as leituras passam à frente de todos os comandos que aguardam vaga no pipeline,
+	 * sem cancelar os comandos de movimento.
+	 * 
+	 * @param priority Classe de prioridade mínima do lote.
+	 * 
+	 * @return um lote vazio.
+	 */
+	public RobotBatch batch(CommandPriority priority) {
+		return new RobotBatch(robotConnection, priority);
+	}
+	
+	/**
+	 * Define a idade máxima dos valores de um sensor no cache de leituras.
+	 * 
+	 * @param sensor Nome do sensor no cache, como nas propriedades "robot.cache.maxAge.&lt;sensor&gt;".
+	 * @param millis Idade máxima, em milissegundos; 0 para sempre ler do robô; -1 para a sessão inteira.
+	 */
+	public void setCacheMaxAge(String sensor, long millis) {
+		robotConnection.setCacheMaxAge(sensor, millis);
+	}
+	
+	/**
+	 * Descarta todos os valores do cache de leituras.
+	 */
+	public void invalidateCache() {
+		robotConnection.invalidateCache();
+	}
+	
+	/**
+	 * Retorna a contabilidade do cache de leituras de um sensor.
+	 * 
+	 * @return a contabilidade do sensor, ou nulo se ele ainda não foi lido com cache.
+	 */
+	public CacheStats getCacheStats(String sensor) {
+		return robotConnection.getCacheStats(sensor);
+	}
+	
+	/**
+	 * Retorna a contabilidade do cache de leituras de todos os sensores já lidos com cache.
+	 * 
+	 * @return a contabilidade, indexada pelo nome do sensor.
+	 */
+	public Map<String, CacheStats> getCacheStats() {
+		return robotConnection.getCacheStats();
+	}
+	
+	/**
+	 * Define se as leituras individuais do GPS são extraídas da leitura de todos os dados do GPS.
+	 * 
+	 * @param fromFix true para extrair as leituras individuais da leitura de todos os dados do GPS.
+	 * 
+	 * @see RobotConnection#setGPSFromFix(boolean)
+	 */
+	public void setGPSFromFix(boolean fromFix) {
+		robotConnection.setGPSFromFix(fromFix);
+	}
+	
+	/**
+	 * Para saber se as leituras individuais do GPS são extraídas da leitura de todos os dados do GPS.
+	 * 
+	 * @return true se as leituras individuais são extraídas da leitura de todos os dados do GPS.
+	 */
+	public boolean isGPSFromFix() {
+		return robotConnection.isGPSFromFix();
+	}
+	
+	/**
+	 * Retorna o número de leituras que não enviaram pacote porque uma leitura idêntica já aguardava resposta.
+	 * 
+	 * @return o número de leituras deduplicadas.
+	 */
+	public long getSharedReads() {
+		return robotConnection.getSharedReads();
+	}
+	
+	/**
+	 * Retorna o número de comandos de movimento que foram substituídos por um mais recente antes de serem enviados.
+	 * 
+	 * @return o número de comandos de movimento substituídos.
+	 */
+	public long getCoalescedMotionCommands() {
+		return robotConnection.getCoalescedMotionCommands();
+	}
+	
+	/**
+	 * Retorna o número de comandos de movimento pendentes descartados por frenagem, falha ou encerramento da conexão.
+	 * 
+	 * @return o número de comandos de movimento descartados.
+	 */
+	public long getDroppedMotionCommands() {
+		return robotConnection.getDroppedMotionCommands();
+	}
+	
+	/**
+	 * Retorna o instante em que o último comando de movimento foi enviado.
+	 * 
+	 * @return o instante, em {@link System#nanoTime()}.
+	 */
+	public long getLastMotionTime() {
+		return robotConnection.getLastMotionTime();
+	}
+	
+	/**
+	 * Retorna o tempo que os comandos de uma classe de prioridade esperaram na fila de envio.
+	 * 
+	 * @param priority Classe de prioridade.
+	 * 
+	 * @return o registro dos tempos de espera, em nanossegundos.
+	 */
+	public LatencyRecorder getQueueWaitLatency(CommandPriority priority) {
+		return robotConnection.getQueueWaitLatency(priority);
+	}
+	
+	/**
+	 * Retorna o tempo de cada varredura dos sensores de ultrassom, desde a chamada até a chegada das quatro respostas.
+	 * 
+	 * @return o registro dos tempos de varredura, em nanossegundos.
+	 */
+	public LatencyRecorder getUltrasonicSweepLatency() {
+		return robotConnection.getUltrasonicSweepLatency();
+	}
+	
+	/**
+	 * Retorna a contabilidade (pacotes, bytes e latências) dos comandos enviados com o "source" dado.
+	 * 
+	 * @param source Nome do consumidor, o mesmo passado aos comandos.
+	 * 
+	 * @return a contabilidade do consumidor, ou nulo se ele ainda não enviou nenhum comando.
+	 */
+	public SourceStats getSourceStats(String source) {
+		return robotConnection.getSourceStats(source);
+	}
+	
+	/**
+	 * Retorna a contabilidade de todos os consumidores que já enviaram comandos.
+	 * 
+	 * @return a contabilidade, indexada pelo nome do consumidor.
+	 */
+	public Map<String, SourceStats> getSourceStats() {
+		return robotConnection.getSourceStats();
+	}
+	
+	/**
+	 * Define o peso de um consumidor ("source") na divisão da conexão com os demais consumidores.
+	 * 
+	 * @param source Nome do consumidor.
+	 * @param weight Peso do consumidor, positivo.
+	 */
+	public void setSourceWeight(String source, double weight) {
+		robotConnection.setSourceWeight(source, weight);
+	}
+	
 	/**
 	 * Retorna a versão do protocolo de comunicação.
 	 * 
@@ -155,7 +503,8 @@ public class Robot {
 	}
 
     /**
-     * Para o robô.
+     * Para o robô. A frenagem passa à frente dos demais comandos que aguardam envio e cancela os comandos de
+     * movimento pedidos antes dela que ainda não foram enviados.
      *  
      * @throws IOException
      * @throws EmptyMessageException
@@ -163,7 +512,7 @@ public class Robot {
      * @throws InterruptedException 
      */
 	public void brake(String source) throws IOException, EmptyMessageException, MoveRobotException, InterruptedException{
-		move((byte)0, source);
+		robotConnection.sendBrakeCommand(source);
 	}
 
     /**
@@ -257,6 +606,23 @@ public class Robot {
 		return robotConnection.sendReadUltrassonicSensorsDistanceCommand(source);
 	}
 	
+	/**
+	 * Lê os valores dos sensores de ultrassom de distância num array do chamador, sem criar outro. Não usa o cache de
+	 * leituras.
+	 * 
+	 * @param into Recebe os valores dos sensores frontal, traseiro, esquerdo e direito.
+	 * 
+	 * @return o próprio array recebido.
+	 * 
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadUltrassonicSensorsDistanceException
+	 * @throws InterruptedException 
+	 */
+	public int[] readUltrassonicSensorsDistance(String source, int[] into) throws IOException, EmptyMessageException, ReadUltrassonicSensorsDistanceException, InterruptedException{
+		return robotConnection.sendReadUltrassonicSensorsDistanceCommand(source, into);
+	}
+	
 	/**
 	 * Lê os valores dos sensores de ultrassom de luminosidade.
 	 * 
@@ -301,6 +667,22 @@ public class Robot {
 		return robotConnection.sendReadAccelerometerSensorCommand(source);
 	}
 	
+	/**
+	 * Lê os valores do acelerômetro num array do chamador, sem criar outro. Não usa o cache de leituras.
+	 * 
+	 * @param into Recebe os valores dos eixos X, Y e Z.
+	 * 
+	 * @return o próprio array recebido.
+	 * 
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadAccelerometerSensorException
+	 * @throws InterruptedException 
+	 */
+	public int[] readAccelerometerSensor(String source, int[] into) throws IOException, EmptyMessageException, ReadAccelerometerSensorException, InterruptedException{
+		return robotConnection.sendReadAccelerometerSensorCommand(source, into);
+	}
+	
 	/**
 	 * Lê os valores dos sensores de temperatura e de umidade.
 	 * 
@@ -329,6 +711,23 @@ public class Robot {
 		return robotConnection.sendReadCollisionDetectionCommand(source);
 	}
 	
+	/**
+	 * Lê um conjunto de sensores do robô numa única rodada: os comandos de todos os sensores pedidos são enviados
+	 * juntos, em vez de um após a resposta do outro.
+	 * 
+	 * @param kinds Sensores a serem lidos.
+	 * 
+	 * @return leitura imutável dos sensores pedidos, com o instante em que a resposta de cada um chegou.
+	 * 
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadSensorSnapshotException
+	 * @throws InterruptedException 
+	 */
+	public SensorSnapshot readSnapshot(EnumSet<SensorKind> kinds, String source) throws IOException, EmptyMessageException, ReadSensorSnapshotException, InterruptedException{
+		return robotConnection.sendReadSensorSnapshotCommand(kinds, source);
+	}
+	
 	/**
 	 * Lê as versões do módulo receptor GPS.
 	 * 
@@ -357,6 +756,37 @@ public class Robot {
 		return robotConnection.sendReadGPSGetCommand(source);
 	}
 	
+	/**
+	 * Lê todos os dados do GPS num array do chamador, sem criar outro. Não usa o cache de leituras.
+	 * 
+	 * @param into Recebe os valores, na ordem de {@link #readGPSGet(String)}.
+	 * 
+	 * @return o próprio array recebido.
+	 * 
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadGPSGetException
+	 * @throws InterruptedException 
+	 */
+	public int[] readGPSGet(String source, int[] into) throws IOException, EmptyMessageException, ReadGPSGetException, InterruptedException{
+		return robotConnection.sendReadGPSGetCommand(source, into);
+	}
+	
+	/**
+	 * Lê a posição do robô: latitude e longitude em graus decimais, horário UTC, altitude, velocidade e direção,
+	 * todos de uma única resposta do GPS.
+	 * 
+	 * @return a posição do robô.
+	 * 
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadGPSGetException
+	 * @throws InterruptedException 
+	 */
+	public GpsFix readGPSFix(String source) throws IOException, EmptyMessageException, ReadGPSGetException, InterruptedException{
+		return robotConnection.sendReadGPSFixCommand(source);
+	}
+	
 	/**
 	 * Verifica a validade da string de dados recebida pelo GPS.
 	 * 
@@ -515,6 +945,36 @@ public class Robot {
 		return robotConnection.sendReadMAPVersionCommand(source);
 	}
 	
+	/**
+	 * Envia um comando cuja resposta pode vir dividida em vários pacotes, entregando cada resposta parcial ao
+	 * listener assim que ela chega.
+	 * 
+	 * @param message Mensagem do comando: grupo, comando e parâmetros.
+	 * @param listener Recebe as respostas parciais, na thread de leitura da conexão. Não deve bloquear.
+	 * 
+	 * @return a resposta final, com o cabeçalho.
+	 * 
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws StreamCommandException
+	 * @throws InterruptedException 
+	 */
+	public byte[] streamCommand(byte[] message, PartialResponseListener listener, String source) throws IOException, EmptyMessageException, StreamCommandException, InterruptedException{
+		return robotConnection.sendStreamCommand(message, listener, source);
+	}
+	
+	/**
+	 * Envia um comando cuja resposta pode vir dividida em vários pacotes, para percorrer as respostas à medida que
+	 * chegam.
+	 * 
+	 * @param message Mensagem do comando: grupo, comando e parâmetros.
+	 * 
+	 * @return as respostas parciais e, por último, a resposta final.
+	 */
+	public ResponseStream openResponseStream(byte[] message, String source){
+		return robotConnection.sendStreamCommand(message, source);
+	}
+	
 	/**
 	 * Inicia a captura contínua das imagens da câmera.
 	 * 
@@ -527,7 +987,6 @@ public class Robot {
 	public void cameraStart(String source) throws IOException, EmptyMessageException, CameraStartException, InterruptedException, CameraImageFormatLenghtException{
 		InputStream cameraInputStream = robotConnection.sendCameraStartCommand(source);		
 //		startCameraThread(cameraInputStream);
-		camera = Camera.getInstance();
 		camera.setStartCaptureAttributes(cameraInputStream);
 	}
 	
@@ -547,7 +1006,6 @@ public class Robot {
 			System.out.println(debugStr);
 		}
 		
-		camera = Camera.getInstance();
 		camera.setStartCaptureAttributes(cameraInputStream);
 		
 		cameraThread = new Thread(camera);
@@ -575,7 +1033,6 @@ public class Robot {
 	/*private void stopCameraThread() throws InterruptedException{	
         StringBuffer debugStr = new StringBuffer();
 		
-		camera = Camera.getInstance();		
 		camera.setStopCaptureAttributes();
 		
 		if (debug){
@@ -605,6 +1062,15 @@ public class Robot {
 		cameraThread.join(1000);		
 	}*/
 	
+	/**
+	 * Retorna a câmera do robô.
+	 * 
+	 * @return a câmera do robô.
+	 */
+	Camera getCamera() {
+		return camera;
+	}
+	
 	/**
 	 * 
 	 * @return
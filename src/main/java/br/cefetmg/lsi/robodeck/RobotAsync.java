@@ -0,0 +1,346 @@
+package br.cefetmg.lsi.robodeck;
+
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+
+import br.cefetmg.lsi.robodeck.devices.sensors.GpsFix;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorKind;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorSnapshot;
+import br.cefetmg.lsi.robodeck.network.PartialResponseListener;
+import br.cefetmg.lsi.robodeck.network.RobotConnection;
+
+/**
+ * Versão assíncrona das operações de {@link Robot}.
+ *
+ * Cada método envia o comando e retorna um {@link CompletableFuture}, que é completado quando a resposta do robô
+ * chega, sem esperar por ela. O envio em si pode bloquear quem chama: o número de comandos aguardando resposta ao mesmo
+ * tempo é limitado por "robot.network.pipelineDepth" e, com o pipeline cheio, o método só retorna quando uma resposta
+ * liberar uma vaga. Em caso de falha, o future é completado com a mesma exceção que o método bloqueante correspondente
+ * lançaria. Assim, várias leituras podem ser disparadas e combinadas sem manter uma thread bloqueada por comando, por
+ * exemplo:
+ *
+ * <pre>
+ * CompletableFuture&lt;Integer&gt; compass = robot.async().readCompassSensor("controle");
+ * CompletableFuture&lt;int[]&gt; gps = robot.async().readGPSGet("controle");
+ * compass.thenCombine(gps, (heading, fix) -&gt; ...);
+ * </pre>
+ *
+ * As ações encadeadas sem a variante "Async" rodam na thread que lê as respostas do robô e não devem bloquear.
+ *
+ * @see Robot#async()
+ */
+public class RobotAsync {
+
+	/**
+	 * Robô ao qual as operações se referem.
+	 */
+	private final Robot robot;
+
+	/**
+	 * Conexão com o robô.
+	 */
+	private final RobotConnection robotConnection;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param robot Robô ao qual as operações se referem.
+	 * @param robotConnection Conexão com o robô.
+	 */
+	RobotAsync(Robot robot, RobotConnection robotConnection) {
+		this.robot = robot;
+		this.robotConnection = robotConnection;
+	}
+
+	/**
+	 * Retorna a versão do protocolo de comunicação.
+	 *
+	 * @see Robot#getCommunicationProtocolVersion()
+	 */
+	public CompletableFuture<String> getCommunicationProtocolVersion(){
+		return robotConnection.getCommunicationProtocolVersionAsync();
+	}
+
+	/**
+	 * Movimenta o robô para frente ou para trás.
+	 *
+	 * @see Robot#move(int, String)
+	 */
+	public CompletableFuture<Void> move(int intensity, String source){
+		return robotConnection.sendMoveCommandAsync(intensity, source);
+	}
+
+	/**
+	 * Para o robô.
+	 *
+	 * @see Robot#brake(String)
+	 */
+	public CompletableFuture<Void> brake(String source){
+		return robotConnection.sendBrakeCommandAsync(source);
+	}
+
+	/**
+	 * Faz com que o robô realize uma curva seguindo o ângulo e a intensidade dados.
+	 *
+	 * @see Robot#turn(byte, int, String)
+	 */
+	public CompletableFuture<Void> turn(byte angle, int intensity, String source){
+		return robotConnection.sendTurnCommandAsync(angle, intensity, source);
+	}
+
+	/**
+	 * Faz com que o robô se desloque mantendo o alinhamento de sua carroceria.
+	 *
+	 * @see Robot#strafe(byte, int, String)
+	 */
+	public CompletableFuture<Void> strafe(byte angle, int intensity, String source){
+		return robotConnection.sendStrafeCommandAsync(angle, intensity, source);
+	}
+
+	/**
+	 * Faz o robô girar em torno do próprio eixo.
+	 *
+	 * @see Robot#spin(byte, int, String)
+	 */
+	public CompletableFuture<Void> spin(byte side, int intensity, String source){
+		return robotConnection.sendSpinCommandAsync(side, intensity, source);
+	}
+
+	/**
+	 * Lê os valores dos sensores de infravermelho de profundidade.
+	 *
+	 * @see Robot#readInfraredSensorsDepth(String)
+	 */
+	public CompletableFuture<int[]> readInfraredSensorsDepth(String source){
+		return robotConnection.sendReadInfraredSensorsDepthCommandAsync(source);
+	}
+
+	/**
+	 * Lê os valores dos sensores de infravermelho de distância.
+	 *
+	 * @see Robot#readInfraredSensorsDistance(String)
+	 */
+	public CompletableFuture<int[]> readInfraredSensorsDistance(String source){
+		return robotConnection.sendReadInfraredSensorsDistanceCommandAsync(source);
+	}
+
+	/**
+	 * Lê as distâncias medidas pelos sensores de ultrassom.
+	 *
+	 * @see Robot#readUltrassonicSensorsDistance(String)
+	 */
+	public CompletableFuture<int[]> readUltrassonicSensorsDistance(String source){
+		return robotConnection.sendReadUltrassonicSensorsDistanceCommandAsync(source);
+	}
+
+	/**
+	 * Lê a luminosidade medida pelos sensores de ultrassom.
+	 *
+	 * @see Robot#readUltrassonicSensorsLuminosity(String)
+	 */
+	public CompletableFuture<int[]> readUltrassonicSensorsLuminosity(String source){
+		return robotConnection.sendReadUltrassonicSensorsLuminosityCommandAsync(source);
+	}
+
+	/**
+	 * Lê o valor da bússola.
+	 *
+	 * @see Robot#readCompassSensor(String)
+	 */
+	public CompletableFuture<Integer> readCompassSensor(String source){
+		return robotConnection.sendReadCompassSensorCommandAsync(source);
+	}
+
+	/**
+	 * Lê os valores do acelerômetro.
+	 *
+	 * @see Robot#readAccelerometerSensor(String)
+	 */
+	public CompletableFuture<int[]> readAccelerometerSensor(String source){
+		return robotConnection.sendReadAccelerometerSensorCommandAsync(source);
+	}
+
+	/**
+	 * Lê os valores dos sensores de temperatura e umidade.
+	 *
+	 * @see Robot#readTemperatureAndHumiditySensors(String)
+	 */
+	public CompletableFuture<int[]> readTemperatureAndHumiditySensors(String source){
+		return robotConnection.sendReadTemperatureAndHumiditySensorsCommandAsync(source);
+	}
+
+	/**
+	 * Verifica se houve colisão.
+	 *
+	 * @see Robot#readCollisionDetection(String)
+	 */
+	public CompletableFuture<Boolean> readCollisionDetection(String source){
+		return robotConnection.sendReadCollisionDetectionCommandAsync(source);
+	}
+
+	/**
+	 * Lê um conjunto de sensores do robô numa única rodada.
+	 *
+	 * @see Robot#readSnapshot(EnumSet, String)
+	 */
+	public CompletableFuture<SensorSnapshot> readSnapshot(EnumSet<SensorKind> kinds, String source){
+		return robotConnection.sendReadSensorSnapshotCommandAsync(kinds, source);
+	}
+
+	/**
+	 * Lê as versões do hardware e do firmware do GPS.
+	 *
+	 * @see Robot#readGPSInfo(String)
+	 */
+	public CompletableFuture<int[]> readGPSInfo(String source){
+		return robotConnection.sendReadGPSInfoCommandAsync(source);
+	}
+
+	/**
+	 * Lê todos os dados do GPS.
+	 *
+	 * @see Robot#readGPSGet(String)
+	 */
+	public CompletableFuture<int[]> readGPSGet(String source){
+		return robotConnection.sendReadGPSGetCommandAsync(source);
+	}
+
+	/**
+	 * Lê a posição do robô.
+	 *
+	 * @see Robot#readGPSFix(String)
+	 */
+	public CompletableFuture<GpsFix> readGPSFix(String source){
+		return robotConnection.sendReadGPSFixCommandAsync(source);
+	}
+
+	/**
+	 * Verifica a validade da string de dados recebida pelo GPS.
+	 *
+	 * @see Robot#readGPSValidate(String)
+	 */
+	public CompletableFuture<Boolean> readGPSValidate(String source){
+		return robotConnection.sendReadGPSValidateCommandAsync(source);
+	}
+
+	/**
+	 * Lê o número de satélites utilizados pelo GPS.
+	 *
+	 * @see Robot#readGPSSatellite(String)
+	 */
+	public CompletableFuture<Integer> readGPSSatellite(String source){
+		return robotConnection.sendReadGPSSatelliteCommandAsync(source);
+	}
+
+	/**
+	 * Retorna o horário no meridiano de Greenwich.
+	 *
+	 * @see Robot#readGPSTime(String)
+	 */
+	public CompletableFuture<int[]> readGPSTime(String source){
+		return robotConnection.sendReadGPSTimeCommandAsync(source);
+	}
+
+	/**
+	 * Retorna a data no meridiano de Greenwich.
+	 *
+	 * @see Robot#readGPSDate(String)
+	 */
+	public CompletableFuture<int[]> readGPSDate(String source){
+		return robotConnection.sendReadGPSDateCommandAsync(source);
+	}
+
+	/**
+	 * Lê a latitude do robô.
+	 *
+	 * @see Robot#readGPSLatitude(String)
+	 */
+	public CompletableFuture<int[]> readGPSLatitude(String source){
+		return robotConnection.sendReadGPSLatitudeCommandAsync(source);
+	}
+
+	/**
+	 * Lê a longitude do robô.
+	 *
+	 * @see Robot#readGPSLongitude(String)
+	 */
+	public CompletableFuture<int[]> readGPSLongitude(String source){
+		return robotConnection.sendReadGPSLongitudeCommandAsync(source);
+	}
+
+	/**
+	 * Lê a altitude do robô em relação ao nível do mar.
+	 *
+	 * @see Robot#readGPSAltitude(String)
+	 */
+	public CompletableFuture<Integer> readGPSAltitude(String source){
+		return robotConnection.sendReadGPSAltitudeCommandAsync(source);
+	}
+
+	/**
+	 * Lê a velocidade linear do robô.
+	 *
+	 * @see Robot#readGPSSpeed(String)
+	 */
+	public CompletableFuture<Integer> readGPSSpeed(String source){
+		return robotConnection.sendReadGPSSpeedCommandAsync(source);
+	}
+
+	/**
+	 * Lê a direção do deslocamento do robô.
+	 *
+	 * @see Robot#readGPSHead(String)
+	 */
+	public CompletableFuture<Integer> readGPSHead(String source){
+		return robotConnection.sendReadGPSHeadCommandAsync(source);
+	}
+
+	/**
+	 * Lê o nível da carga da bateria do robô.
+	 *
+	 * @see Robot#readBatteryLevel(String)
+	 */
+	public CompletableFuture<Integer> readBatteryLevel(String source){
+		return robotConnection.sendReadBatteryLevelCommandAsync(source);
+	}
+
+	/**
+	 * Lê a versão corrente do Módulo de Alta Performance (MAP).
+	 *
+	 * @see Robot#readMAPVersion(String)
+	 */
+	public CompletableFuture<int[]> readMAPVersion(String source){
+		return robotConnection.sendReadMAPVersionCommandAsync(source);
+	}
+
+	/**
+	 * Envia um comando cuja resposta pode vir dividida em vários pacotes.
+	 *
+	 * @see Robot#streamCommand(byte[], PartialResponseListener, String)
+	 */
+	public CompletableFuture<byte[]> streamCommand(byte[] message, PartialResponseListener listener, String source){
+		return robotConnection.sendStreamCommandAsync(message, listener, source);
+	}
+
+	/**
+	 * Inicia a captura continua das imagens da câmera. Quando o future é completado, as imagens podem ser lidas por
+	 * {@link Robot#acquireCameraImage()}.
+	 *
+	 * @see Robot#cameraStart(String)
+	 */
+	public CompletableFuture<Void> cameraStart(String source){
+		return robotConnection.sendCameraStartCommandAsync(source).thenAccept(cameraInputStream -> {
+			robot.getCamera().setStartCaptureAttributes(cameraInputStream);
+		});
+	}
+
+	/**
+	 * Finaliza a captura de imagens da câmera.
+	 *
+	 * @see Robot#cameraStop(String)
+	 */
+	public CompletableFuture<Void> cameraStop(String source){
+		return robotConnection.sendCameraStopCommandAsync(source);
+	}
+
+}
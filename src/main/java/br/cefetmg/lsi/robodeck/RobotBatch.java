@@ -0,0 +1,300 @@
+package br.cefetmg.lsi.robodeck;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorKind;
+import br.cefetmg.lsi.robodeck.network.CommandBatch;
+import br.cefetmg.lsi.robodeck.network.CommandPriority;
+import br.cefetmg.lsi.robodeck.network.RobotConnection;
+
+/**
+ * Lote de leituras enviadas ao robô numa única escrita.
+ *
+ * Cada método grava a leitura no lote e retorna o seu resultado futuro, do mesmo tipo do método correspondente de
+ * {@link RobotAsync}. Nada é enviado até {@link #send()}, que escreve todos os pacotes de uma vez: N leituras custam
+ * um tempo de ida e volta em vez de N. Por exemplo:
+ *
+ * <pre>
+ * RobotBatch batch = robot.batch();
+ * CompletableFuture&lt;Integer&gt; compass = batch.readCompassSensor("controle");
+ * CompletableFuture&lt;int[]&gt; accelerometer = batch.readAccelerometerSensor("controle");
+ * CompletableFuture&lt;Boolean&gt; collision = batch.readCollisionDetection("controle");
+ * batch.send().join();
+ * </pre>
+ *
+ * A segunda parte da leitura da bateria depende da resposta da primeira e é enviada separadamente, assim que ela
+ * chega.
+ *
+ * Um lote só pode ser enviado uma vez e não deve ser usado por várias threads ao mesmo tempo.
+ *
+ * @see Robot#batch()
+ * @see Robot#batch(CommandPriority)
+ */
+public class RobotBatch {
+
+	/**
+	 * Lote de pacotes da conexão.
+	 */
+	private final CommandBatch batch;
+
+	/**
+	 * Conexão com o robô.
+	 */
+	private final RobotConnection robotConnection;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param robotConnection Conexão com o robô.
+	 */
+	RobotBatch(RobotConnection robotConnection) {
+		this.robotConnection = robotConnection;
+		batch = robotConnection.newBatch();
+	}
+
+	/**
+	 * Construtor de um lote escalonado pelo menos na classe de prioridade dada.
+	 *
+	 * @param robotConnection Conexão com o robô.
+	 * @param priority Classe de prioridade mínima do lote.
+	 */
+	RobotBatch(RobotConnection robotConnection, CommandPriority priority) {
+		this.robotConnection = robotConnection;
+		batch = robotConnection.newBatch(priority);
+	}
+
+	/**
+	 * Envia todas as leituras gravadas numa única escrita.
+	 *
+	 * @return future completado quando o resultado de todas as leituras estiver pronto, inclusive o da segunda parte
+	 * 			da leitura da bateria. Falha se alguma leitura falhar, inclusive por uma resposta com erro; o resultado
+	 * 			de cada leitura continua disponível no seu próprio future.
+	 *
+	 * @throws IOException se não for possível escrever os pacotes.
+	 * @throws InterruptedException
+	 */
+	public CompletableFuture<Void> send() throws IOException, InterruptedException {
+		return batch.send();
+	}
+
+	/**
+	 * Retorna o número de pacotes gravados.
+	 *
+	 * @return o número de pacotes gravados.
+	 */
+	public int size() {
+		return batch.size();
+	}
+
+	/**
+	 * Lê os valores de um grupo de sensores.
+	 *
+	 * @param kind Sensor.
+	 * @param source Consumidor que faz a leitura.
+	 *
+	 * @return os valores futuros, como em {@link SensorKind#read(RobotConnection, String)}.
+	 */
+	public CompletableFuture<int[]> read(SensorKind kind, String source){
+		return batch.record(() -> kind.read(robotConnection, source));
+	}
+
+	/**
+	 * Retorna a versão do protocolo de comunicação.
+	 *
+	 * @see Robot#getCommunicationProtocolVersion()
+	 */
+	public CompletableFuture<String> getCommunicationProtocolVersion(){
+		return batch.record(() -> robotConnection.getCommunicationProtocolVersionAsync());
+	}
+
+	/**
+	 * Lê os valores dos sensores de infravermelho de profundidade.
+	 *
+	 * @see Robot#readInfraredSensorsDepth(String)
+	 */
+	public CompletableFuture<int[]> readInfraredSensorsDepth(String source){
+		return batch.record(() -> robotConnection.sendReadInfraredSensorsDepthCommandAsync(source));
+	}
+
+	/**
+	 * Lê os valores dos sensores de infravermelho de distância.
+	 *
+	 * @see Robot#readInfraredSensorsDistance(String)
+	 */
+	public CompletableFuture<int[]> readInfraredSensorsDistance(String source){
+		return batch.record(() -> robotConnection.sendReadInfraredSensorsDistanceCommandAsync(source));
+	}
+
+	/**
+	 * Lê as distâncias medidas pelos sensores de ultrassom.
+	 *
+	 * @see Robot#readUltrassonicSensorsDistance(String)
+	 */
+	public CompletableFuture<int[]> readUltrassonicSensorsDistance(String source){
+		return batch.record(() -> robotConnection.sendReadUltrassonicSensorsDistanceCommandAsync(source));
+	}
+
+	/**
+	 * Lê a luminosidade medida pelos sensores de ultrassom.
+	 *
+	 * @see Robot#readUltrassonicSensorsLuminosity(String)
+	 */
+	public CompletableFuture<int[]> readUltrassonicSensorsLuminosity(String source){
+		return batch.record(() -> robotConnection.sendReadUltrassonicSensorsLuminosityCommandAsync(source));
+	}
+
+	/**
+	 * Lê o valor da bússola.
+	 *
+	 * @see Robot#readCompassSensor(String)
+	 */
+	public CompletableFuture<Integer> readCompassSensor(String source){
+		return batch.record(() -> robotConnection.sendReadCompassSensorCommandAsync(source));
+	}
+
+	/**
+	 * Lê os valores do acelerômetro.
+	 *
+	 * @see Robot#readAccelerometerSensor(String)
+	 */
+	public CompletableFuture<int[]> readAccelerometerSensor(String source){
+		return batch.record(() -> robotConnection.sendReadAccelerometerSensorCommandAsync(source));
+	}
+
+	/**
+	 * Lê os valores dos sensores de temperatura e umidade.
+	 *
+	 * @see Robot#readTemperatureAndHumiditySensors(String)
+	 */
+	public CompletableFuture<int[]> readTemperatureAndHumiditySensors(String source){
+		return batch.record(() -> robotConnection.sendReadTemperatureAndHumiditySensorsCommandAsync(source));
+	}
+
+	/**
+	 * Verifica se houve colisão.
+	 *
+	 * @see Robot#readCollisionDetection(String)
+	 */
+	public CompletableFuture<Boolean> readCollisionDetection(String source){
+		return batch.record(() -> robotConnection.sendReadCollisionDetectionCommandAsync(source));
+	}
+
+	/**
+	 * Lê as versões do hardware e do firmware do GPS.
+	 *
+	 * @see Robot#readGPSInfo(String)
+	 */
+	public CompletableFuture<int[]> readGPSInfo(String source){
+		return batch.record(() -> robotConnection.sendReadGPSInfoCommandAsync(source));
+	}
+
+	/**
+	 * Lê todos os dados do GPS.
+	 *
+	 * @see Robot#readGPSGet(String)
+	 */
+	public CompletableFuture<int[]> readGPSGet(String source){
+		return batch.record(() -> robotConnection.sendReadGPSGetCommandAsync(source));
+	}
+
+	/**
+	 * Verifica a validade da string de dados recebida pelo GPS.
+	 *
+	 * @see Robot#readGPSValidate(String)
+	 */
+	public CompletableFuture<Boolean> readGPSValidate(String source){
+		return batch.record(() -> robotConnection.sendReadGPSValidateCommandAsync(source));
+	}
+
+	/**
+	 * Lê o número de satélites utilizados pelo GPS.
+	 *
+	 * @see Robot#readGPSSatellite(String)
+	 */
+	public CompletableFuture<Integer> readGPSSatellite(String source){
+		return batch.record(() -> robotConnection.sendReadGPSSatelliteCommandAsync(source));
+	}
+
+	/**
+	 * Retorna o horário no meridiano de Greenwich.
+	 *
+	 * @see Robot#readGPSTime(String)
+	 */
+	public CompletableFuture<int[]> readGPSTime(String source){
+		return batch.record(() -> robotConnection.sendReadGPSTimeCommandAsync(source));
+	}
+
+	/**
+	 * Retorna a data no meridiano de Greenwich.
+	 *
+	 * @see Robot#readGPSDate(String)
+	 */
+	public CompletableFuture<int[]> readGPSDate(String source){
+		return batch.record(() -> robotConnection.sendReadGPSDateCommandAsync(source));
+	}
+
+	/**
+	 * Lê a latitude do robô.
+	 *
+	 * @see Robot#readGPSLatitude(String)
+	 */
+	public CompletableFuture<int[]> readGPSLatitude(String source){
+		return batch.record(() -> robotConnection.sendReadGPSLatitudeCommandAsync(source));
+	}
+
+	/**
+	 * Lê a longitude do robô.
+	 *
+	 * @see Robot#readGPSLongitude(String)
+	 */
+	public CompletableFuture<int[]> readGPSLongitude(String source){
+		return batch.record(() -> robotConnection.sendReadGPSLongitudeCommandAsync(source));
+	}
+
+	/**
+	 * Lê a altitude do robô em relação ao nível do mar.
+	 *
+	 * @see Robot#readGPSAltitude(String)
+	 */
+	public CompletableFuture<Integer> readGPSAltitude(String source){
+		return batch.record(() -> robotConnection.sendReadGPSAltitudeCommandAsync(source));
+	}
+
+	/**
+	 * Lê a velocidade linear do robô.
+	 *
+	 * @see Robot#readGPSSpeed(String)
+	 */
+	public CompletableFuture<Integer> readGPSSpeed(String source){
+		return batch.record(() -> robotConnection.sendReadGPSSpeedCommandAsync(source));
+	}
+
+	/**
+	 * Lê a direção do deslocamento do robô.
+	 *
+	 * @see Robot#readGPSHead(String)
+	 */
+	public CompletableFuture<Integer> readGPSHead(String source){
+		return batch.record(() -> robotConnection.sendReadGPSHeadCommandAsync(source));
+	}
+
+	/**
+	 * Lê o nível da carga da bateria do robô.
+	 *
+	 * @see Robot#readBatteryLevel(String)
+	 */
+	public CompletableFuture<Integer> readBatteryLevel(String source){
+		return batch.record(() -> robotConnection.sendReadBatteryLevelCommandAsync(source));
+	}
+
+	/**
+	 * Lê a versão corrente do Módulo de Alta Performance (MAP).
+	 *
+	 * @see Robot#readMAPVersion(String)
+	 */
+	public CompletableFuture<int[]> readMAPVersion(String source){
+		return batch.record(() -> robotConnection.sendReadMAPVersionCommandAsync(source));
+	}
+
+}
@@ -0,0 +1,227 @@
+package br.cefetmg.lsi.robodeck;
+
+import java.net.PortUnreachableException;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import br.cefetmg.lsi.robodeck.network.ConnectionEngine;
+import br.cefetmg.lsi.robodeck.network.RobotConnection;
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Registro dos robôs controlados por uma mesma JVM.
+ *
+ * Cada robô é criado com a sua própria conexão, configurada de forma independente (host, porta, remetente e
+ * destinatário), e portanto com o seu próprio SID, contador de PID e câmera. Os robôs são identificados por um nome
+ * escolhido pela aplicação.
+ *
+ * Se a frota for criada com um {@link ConnectionEngine}, as conexões de todos os robôs são atendidas pelas threads
+ * de E/S do motor. Caso contrário, cada conexão usa o transporte definido em "robot.network.transport".
+ *
+ * Exemplo:
+ *
+ * <pre>
+ * RobotFleet fleet = new RobotFleet(new ConnectionEngine());
+ * fleet.add("norte", "192.168.1.11", 2000, 2, 1);
+ * fleet.add("sul", "192.168.1.12", 2000, 2, 1);
+ * fleet.connectAll();
+ * fleet.get("norte").move(50, "controle");
+ * </pre>
+ */
+public class RobotFleet {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Motor que atende as conexões dos robôs, ou nulo se cada conexão tiver o seu próprio transporte.
+	 */
+	private final ConnectionEngine engine;
+
+	/**
+	 * Robôs da frota, indexados pelo nome, na ordem em que foram adicionados.
+	 */
+	private final Map<String, Robot> robots = new LinkedHashMap<String, Robot>();
+
+	/**
+	 * Cria uma frota em que cada robô tem a sua própria conexão.
+	 */
+	public RobotFleet() {
+		this(null);
+	}
+
+	/**
+	 * Cria uma frota cujas conexões são atendidas pelo motor dado.
+	 *
+	 * @param connectionEngine Motor que atenderá as conexões dos robôs.
+	 */
+	public RobotFleet(ConnectionEngine connectionEngine) {
+		engine = connectionEngine;
+	}
+
+	/**
+	 * Adiciona um robô à frota, usando a porta, o remetente e o destinatário definidos em "robodeckapi.properties".
+	 * O robô ainda não é conectado.
+	 *
+	 * @param id Nome do robô na frota.
+	 * @param host Endereço do robô.
+	 *
+	 * @return o robô criado.
+	 *
+	 * @throws UnknownHostException
+	 * @throws PortUnreachableException
+	 */
+	public Robot add(String id, String host) throws UnknownHostException, PortUnreachableException {
+		return add(id, host, Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.port")),
+				Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.src")),
+				Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.dst")));
+	}
+
+	/**
+	 * Adiciona um robô à frota. O robô ainda não é conectado.
+	 *
+	 * @param id Nome do robô na frota.
+	 * @param host Endereço do robô.
+	 * @param port Porta de conexão com o robô.
+	 * @param src Identificador do remetente dos pacotes.
+	 * @param dst Identificador do destinatário dos pacotes.
+	 *
+	 * @return o robô criado.
+	 *
+	 * @throws UnknownHostException
+	 * @throws PortUnreachableException
+	 */
+	public synchronized Robot add(String id, String host, int port, int src, int dst) throws UnknownHostException, PortUnreachableException {
+
+		if (robots.containsKey(id)) {
+			throw new IllegalArgumentException("Já existe um robô com o nome \"" + id + "\" na frota.");
+		}
+
+		RobotConnection connection;
+
+		if (engine != null) {
+			connection = engine.openConnection(host, port, src, dst);
+		} else {
+			connection = RobotConnection.makeConnection(host, port, src, dst);
+		}
+
+		Robot robot = new Robot(connection);
+		robots.put(id, robot);
+
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("RobotFleet.add():");
+	        debugStr.append("\nRobô \"" + id + "\" adicionado: " + host + ":" + port + " (src " + src + ", dst " + dst + ").");
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+		return robot;
+	}
+
+	/**
+	 * Retorna um robô da frota.
+	 *
+	 * @param id Nome do robô na frota.
+	 *
+	 * @return o robô, ou nulo se não houver robô com este nome.
+	 */
+	public synchronized Robot get(String id) {
+		return robots.get(id);
+	}
+
+	/**
+	 * Retira um robô da frota. O robô não é desconectado.
+	 *
+	 * @param id Nome do robô na frota.
+	 *
+	 * @return o robô retirado, ou nulo se não houver robô com este nome.
+	 */
+	public synchronized Robot remove(String id) {
+		return robots.remove(id);
+	}
+
+	/**
+	 * Retorna os nomes dos robôs da frota, na ordem em que foram adicionados.
+	 *
+	 * @return os nomes dos robôs.
+	 */
+	public synchronized Set<String> ids() {
+		return Collections.unmodifiableSet(new LinkedHashSet<String>(robots.keySet()));
+	}
+
+	/**
+	 * Retorna o número de robôs da frota.
+	 *
+	 * @return o número de robôs.
+	 */
+	public synchronized int size() {
+		return robots.size();
+	}
+
+	/**
+	 * Conecta-se com todos os robôs da frota e abre uma sessão com cada um. A falha de um robô não impede a conexão
+	 * dos demais.
+	 *
+	 * @return as falhas, indexadas pelo nome do robô. Vazio se todos os robôs foram conectados.
+	 *
+	 * @throws InterruptedException
+	 */
+	public Map<String, Exception> connectAll() throws InterruptedException {
+		Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+
+		for (Map.Entry<String, Robot> entry : snapshot().entrySet()) {
+
+			try {
+				entry.getValue().connect();
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Exception e) {
+				failures.put(entry.getKey(), e);
+			}
+
+		}
+
+		return failures;
+	}
+
+	/**
+	 * Fecha a sessão e se desconecta de todos os robôs da frota. A falha de um robô não impede a desconexão dos
+	 * demais.
+	 *
+	 * @return as falhas, indexadas pelo nome do robô. Vazio se todos os robôs foram desconectados.
+	 *
+	 * @throws InterruptedException
+	 */
+	public Map<String, Exception> disconnectAll() throws InterruptedException {
+		Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+
+		for (Map.Entry<String, Robot> entry : snapshot().entrySet()) {
+
+			try {
+				entry.getValue().disconnect();
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Exception e) {
+				failures.put(entry.getKey(), e);
+			}
+
+		}
+
+		return failures;
+	}
+
+	/**
+	 * Copia o registro, para que as conexões não sejam feitas com o monitor da frota.
+	 *
+	 * @return cópia do registro.
+	 */
+	private synchronized Map<String, Robot> snapshot() {
+		return new LinkedHashMap<String, Robot>(robots);
+	}
+
+}
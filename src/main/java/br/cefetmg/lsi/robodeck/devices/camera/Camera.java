@@ -22,15 +22,10 @@ public class Camera /*implements Runnable*/ {
 	 */
 //	private boolean canStopCapture;
 
-	/**
-	 * Instância de Camera.
-	 */
-	private static Camera instance;
-	
     /**
      * Fluxo de entrada de dados da comunicação do servidor de imagens da câmera.
      */
-	private InputStream inputStream;
+	private volatile InputStream inputStream;
 	
 	/**
 	 * Número de tentativas para ler os dados da imagem da câmera.
@@ -47,32 +42,16 @@ public class Camera /*implements Runnable*/ {
 	private int imgNbr;
 
 	/**
-	 * Cria uma instância de Camera, ajustando seu fluxo de dados.
+	 * Cria uma instância de Camera. Cada robô tem a sua câmera, e o fluxo de dados é ajustado em
+	 * {@link #setStartCaptureAttributes(InputStream)}.
 	 */
-	private Camera(){
+	public Camera(){
 //		capture = false;
 //		canStopCapture = true;
 //		inputStream = null;
 		imgNbr = 0;
 	}
 
-	/**
-	 * Retorna uma instância de Camera, com seu fluxo de dados.
-	 * 
-	 * @return uma instância de Camera, com seu fluxo de dados.
-	 */
-	public static Camera getInstance(){
-
-		if (instance == null){
-			instance = new Camera();
-			
-			return instance;
-		} else {
-			return instance;
-		}
-		
-	}
-	
 	/**
 	 * Recebe, continuamente, o fluxo de dados vindo da câmera.
 	 */
@@ -0,0 +1,416 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.cefetmg.lsi.robodeck.Robot;
+import br.cefetmg.lsi.robodeck.RobotBatch;
+import br.cefetmg.lsi.robodeck.network.CommandPriority;
+import br.cefetmg.lsi.robodeck.utils.LatencyRecorder;
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Reflexo de colisão: freia o robô assim que um sensor vigiado indica perigo, sem depender da aplicação.
+ *
+ * Enquanto armado, uma thread própria lê os sensores vigiados a "robot.reflex.rate" Hz, num lote na classe de
+ * prioridade {@link CommandPriority#SAFETY}: as leituras passam à frente de todos os comandos que aguardam vaga e não
+ * passam pelo cache nem pela deduplicação de leituras. As condições são avaliadas nessa mesma thread, e não na que
+ * recebe as respostas, e é ela quem envia a frenagem quando uma condição passa a ser satisfeita. A frenagem também vai
+ * na classe de segurança e cancela os comandos de movimento ainda não enviados. Se um comando de movimento for
+ * enviado depois da frenagem enquanto a condição continua satisfeita, o robô é freado de novo.
+ *
+ * Como as leituras passam à frente de tudo, a parte do tempo em que elas ocupam o enlace é limitada por
+ * "robot.reflex.linkShare" (metade, por padrão): depois de cada leitura, a thread espera pelo menos o necessário para
+ * não passar dessa parte, mesmo que o período de "robot.reflex.rate" seja menor. Os comandos de movimento e as
+ * leituras de telemetria ficam com o restante.
+ *
+ * Por padrão, são vigiados a detecção de colisão ("robot.reflex.collision"), a distância do ultrassom frontal
+ * ("robot.reflex.ultrasonicFront.below") e, se configurados, os infravermelhos de distância
+ * ("robot.reflex.infraredDistance.above"). Outras condições podem ser acrescentadas com
+ * {@link #watch(SensorKind, int, SensorCondition)}.
+ *
+ * O tempo de reação, desde o pedido da leitura que indicou perigo até a confirmação da frenagem pelo robô, é
+ * registrado em {@link #getReactionLatency()}.
+ */
+public class CollisionReflex {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Consumidor em nome do qual as leituras e as frenagens são enviadas.
+	 */
+	public static final String SOURCE = "reflex";
+
+	/**
+	 * Condição vigiada.
+	 */
+	private static class Watch {
+
+		final SensorKind kind;
+
+		final int position;
+
+		final SensorCondition condition;
+
+		/**
+		 * Para saber se a condição estava satisfeita na última leitura. Só é usado pela thread do reflexo.
+		 */
+		boolean satisfied;
+
+		Watch(SensorKind kind, int position, SensorCondition condition) {
+			this.kind = kind;
+			this.position = position;
+			this.condition = condition;
+		}
+
+	}
+
+	/**
+	 * Robô que é freado.
+	 */
+	private final Robot robot;
+
+	/**
+	 * Frequência de leitura dos sensores vigiados, em Hz.
+	 */
+	private final double rate = Double.parseDouble(PropertiesLoaderImpl.getValor("robot.reflex.rate", "50"));
+
+	/**
+	 * Maior parte do tempo em que as leituras do reflexo podem ocupar o enlace, entre 0 (exclusive) e 1.
+	 */
+	private final double linkShare = Double.parseDouble(PropertiesLoaderImpl.getValor("robot.reflex.linkShare", "0.5"));
+
+	/**
+	 * Instante (System.nanoTime()) da última frenagem pedida pelo reflexo. Só é usado pela thread do reflexo.
+	 */
+	private long lastBrake;
+
+	/**
+	 * Condições vigiadas.
+	 */
+	private final List<Watch> watches = new ArrayList<Watch>();
+
+	/**
+	 * Thread que lê os sensores vigiados e freia o robô, enquanto armado.
+	 */
+	private Thread watcher;
+
+	/**
+	 * Tempo desde o pedido da leitura que indicou perigo até a confirmação da frenagem.
+	 */
+	private final LatencyRecorder reactionLatency = new LatencyRecorder();
+
+	/**
+	 * Número de frenagens enviadas.
+	 */
+	private final AtomicLong triggers = new AtomicLong();
+
+	/**
+	 * Número de frenagens que falharam.
+	 */
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * Número de rodadas de leitura dos sensores vigiados que falharam.
+	 */
+	private final AtomicLong readFailures = new AtomicLong();
+
+	/**
+	 * Construtor. O reflexo começa desarmado, com as condições das propriedades "robot.reflex.*".
+	 *
+	 * @param robotToBrake Robô que é freado.
+	 */
+	public CollisionReflex(Robot robotToBrake) {
+		robot = robotToBrake;
+
+		if (!(linkShare > 0) || (linkShare > 1)) {
+			throw new IllegalArgumentException("Parte do enlace inválida para o reflexo: " + linkShare);
+		}
+
+		if (Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robot.reflex.collision", "true"))) {
+			watch(SensorKind.COLLISION, 0, SensorCondition.above(0));
+		}
+
+		int ultrasonicFront = Integer.parseInt(PropertiesLoaderImpl.getValor("robot.reflex.ultrasonicFront.below", "300"));
+
+		if (ultrasonicFront > 0) {
+			watch(SensorKind.ULTRASONIC_DISTANCE, Side.FRONT.ordinal(), SensorCondition.below(ultrasonicFront));
+		}
+
+		int infraredDistance = Integer.parseInt(PropertiesLoaderImpl.getValor("robot.reflex.infraredDistance.above", "0"));
+
+		if (infraredDistance > 0) {
+			watch(SensorKind.INFRARED_DISTANCE, 0, SensorCondition.above(infraredDistance));
+			watch(SensorKind.INFRARED_DISTANCE, 1, SensorCondition.above(infraredDistance));
+		}
+
+	}
+
+	/**
+	 * Acrescenta uma condição vigiada. Vale a partir do próximo {@link #arm()}.
+	 *
+	 * @param kind Sensor.
+	 * @param position Posição do valor no sensor.
+	 * @param condition Condição que indica perigo.
+	 */
+	public synchronized void watch(SensorKind kind, int position, SensorCondition condition) {
+		watches.add(new Watch(kind, position, condition));
+	}
+
+	/**
+	 * Arma o reflexo: inicia a thread que lê os sensores vigiados. Não faz nada se já estiver armado ou se não houver
+	 * condições vigiadas.
+	 */
+	public synchronized void arm() {
+
+		if ((watcher != null) || watches.isEmpty()) {
+			return;
+		}
+
+		final Watch[] armed = new Watch[watches.size()];
+		final EnumSet<SensorKind> kinds = EnumSet.noneOf(SensorKind.class);
+
+		for (int i = 0; i < armed.length; i++) {
+			Watch watch = watches.get(i);
+			armed[i] = new Watch(watch.kind, watch.position, watch.condition);
+			kinds.add(watch.kind);
+		}
+
+		watcher = new Thread(() -> run(armed, kinds), "CollisionReflex");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Desarma o reflexo e aguarda o fim da thread que lê os sensores vigiados.
+	 *
+	 * @throws InterruptedException
+	 */
+	public synchronized void disarm() throws InterruptedException {
+
+		if (watcher == null) {
+			return;
+		}
+
+		watcher.interrupt();
+		watcher.join();
+		watcher = null;
+	}
+
+	/**
+	 * Para saber se o reflexo está armado.
+	 *
+	 * @return true se o reflexo está armado.
+	 */
+	public synchronized boolean isArmed() {
+		return watcher != null;
+	}
+
+	/**
+	 * Retorna o tempo de reação de cada frenagem: desde o pedido da leitura que indicou perigo até a confirmação da
+	 * frenagem pelo robô. Não inclui o tempo entre o perigo surgir e a leitura seguinte, que depende da frequência de
+	 * leitura.
+	 *
+	 * @return o registro dos tempos de reação, em nanossegundos.
+	 */
+	public LatencyRecorder getReactionLatency() {
+		return reactionLatency;
+	}
+
+	/**
+	 * Retorna o número de frenagens enviadas.
+	 *
+	 * @return o número de frenagens.
+	 */
+	public long getTriggers() {
+		return triggers.get();
+	}
+
+	/**
+	 * Retorna o número de frenagens que falharam.
+	 *
+	 * @return o número de frenagens que falharam.
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Retorna o número de rodadas de leitura dos sensores vigiados que falharam. Uma falha não desarma o reflexo: a
+	 * leitura é repetida no período seguinte.
+	 *
+	 * @return o número de leituras que falharam.
+	 */
+	public long getReadFailures() {
+		return readFailures.get();
+	}
+
+	/**
+	 * Laço da thread do reflexo: lê os sensores vigiados a cada período, limitado pela parte do enlace do reflexo, e
+	 * freia o robô quando uma condição passa a ser satisfeita. Termina quando a thread é interrompida; qualquer outra falha é contada em {@link #getReadFailures()}
+	 * e o laço continua, para que o robô não fique sem proteção com o reflexo ainda armado.
+	 *
+	 * @param armed Condições vigiadas.
+	 * @param kinds Sensores das condições vigiadas.
+	 */
+	private void run(Watch[] armed, EnumSet<SensorKind> kinds) {
+		long period = (long)(TimeUnit.SECONDS.toNanos(1) / rate);
+		long next = System.nanoTime();
+		lastBrake = next;
+
+		try {
+
+			while (!Thread.currentThread().isInterrupted()) {
+				long requested = System.nanoTime();
+
+				try {
+					check(armed, read(kinds), requested);
+				} catch (ExecutionException | IOException | RuntimeException e) {
+					readFailures.incrementAndGet();
+					debugFailure((e instanceof ExecutionException) ? e.getCause() : e);
+				}
+
+				// Enquanto lê, o reflexo passa à frente de todos os demais comandos: depois de uma leitura que ocupou o
+				// enlace por "busy", espera o bastante para que os demais fiquem com a sua parte.
+				long now = System.nanoTime();
+				long busy = now - requested;
+				long earliest = now + (long)(busy * (1 - linkShare) / linkShare);
+				next += period;
+
+				if ((next - earliest) < 0) {
+					next = earliest;
+				}
+
+				long wait = next - now;
+
+				if (wait > 0) {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				}
+
+			}
+
+		} catch (InterruptedException e) {
+			// Desarmado.
+		}
+
+	}
+
+	/**
+	 * Lê os sensores vigiados num lote na classe de prioridade de segurança.
+	 *
+	 * @param kinds Sensores lidos.
+	 *
+	 * @return os valores de cada sensor, indexados por {@link SensorKind#ordinal()}.
+	 */
+	private int[][] read(EnumSet<SensorKind> kinds) throws IOException, InterruptedException, ExecutionException {
+		RobotBatch batch = robot.batch(CommandPriority.SAFETY);
+		EnumMap<SensorKind, CompletableFuture<int[]>> replies = new EnumMap<SensorKind, CompletableFuture<int[]>>(SensorKind.class);
+
+		for (SensorKind kind : kinds) {
+			replies.put(kind, batch.read(kind, SOURCE));
+		}
+
+		batch.send().get();
+		int[][] values = new int[SensorKind.values().length][];
+
+		for (SensorKind kind : kinds) {
+			values[kind.ordinal()] = replies.get(kind).get();
+		}
+
+		return values;
+	}
+
+	/**
+	 * Avalia as condições vigiadas com os valores lidos e freia o robô a partir desta thread se alguma passar a ser
+	 * satisfeita, ou se alguma continuar satisfeita e um comando de movimento tiver sido enviado depois da última
+	 * frenagem do reflexo.
+	 *
+	 * @param armed Condições vigiadas.
+	 * @param values Valores lidos, indexados por {@link SensorKind#ordinal()}.
+	 * @param requested Instante do pedido da leitura, em {@link System#nanoTime()}.
+	 */
+	private void check(Watch[] armed, int[][] values, final long requested) {
+		Watch danger = null;
+		int dangerValue = 0;
+		Watch holding = null;
+		int holdingValue = 0;
+
+		for (Watch watch : armed) {
+			int value = values[watch.kind.ordinal()][watch.position];
+			boolean now = watch.condition.test(value);
+
+			if (now && !watch.satisfied && (danger == null)) {
+				danger = watch;
+				dangerValue = value;
+			} else if (now && (holding == null)) {
+				holding = watch;
+				holdingValue = value;
+			}
+
+			watch.satisfied = now;
+		}
+
+		// O robô voltou a se mover com o perigo ainda presente.
+		if ((danger == null) && (holding != null) && ((robot.getLastMotionTime() - lastBrake) > 0)) {
+			danger = holding;
+			dangerValue = holdingValue;
+		}
+
+		if (danger == null) {
+			return;
+		}
+
+		triggers.incrementAndGet();
+		debugTrigger(danger.kind, danger.position, dangerValue);
+		lastBrake = System.nanoTime();
+
+		robot.async().brake(SOURCE).whenComplete((done, failure) -> {
+
+			if (failure == null) {
+				reactionLatency.record(System.nanoTime() - requested);
+			} else {
+				failures.incrementAndGet();
+			}
+
+		});
+	}
+
+	/**
+	 * Exibe, em modo de depuração, o valor que disparou o reflexo.
+	 */
+	private void debugTrigger(SensorKind kind, int position, int value) {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("CollisionReflex.check():");
+	        debugStr.append("\nPerigo em " + kind + "[" + position + "] = " + value + "; freando.");
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+	}
+
+	/**
+	 * Exibe, em modo de depuração, a falha de uma leitura dos sensores vigiados.
+	 */
+	private void debugFailure(Throwable failure) {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("CollisionReflex.run():");
+	        debugStr.append("\nFalha ao ler os sensores vigiados: " + failure);
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+	}
+
+}
@@ -0,0 +1,204 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Posição imutável do robô, decodificada de uma única resposta do comando de leitura de todos os dados do GPS (0x16).
+ *
+ * Os campos brutos da resposta são convertidos para unidades usuais: latitude e longitude em graus decimais
+ * (negativas ao sul e a oeste), horário em UTC, altitude em metros, velocidade em metros por segundo e direção em
+ * graus. Os valores brutos continuam disponíveis em {@link #getValues()}.
+ */
+public final class GpsFix {
+
+	/**
+	 * Número de valores da resposta do comando 0x16.
+	 */
+	public static final int VALUE_COUNT = 21;
+
+	/**
+	 * Metros por segundo em um nó.
+	 */
+	private static final double METRES_PER_SECOND_PER_KNOT = 1852.0 / 3600.0;
+
+	/**
+	 * Valores brutos, na ordem da resposta.
+	 */
+	private final int[] values;
+
+	/**
+	 * Horário da posição, ou nulo se a data recebida não for válida.
+	 */
+	private final Instant time;
+
+	/**
+	 * Latitude, em graus decimais.
+	 */
+	private final double latitude;
+
+	/**
+	 * Longitude, em graus decimais.
+	 */
+	private final double longitude;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param gpsValues Valores da resposta, na ordem de
+	 * 			{@link br.cefetmg.lsi.robodeck.network.RobotConnection#sendReadGPSGetCommand(String)}.
+	 */
+	public GpsFix(int[] gpsValues) {
+
+		if (gpsValues.length != VALUE_COUNT) {
+			throw new IllegalArgumentException("Uma posição do GPS tem " + VALUE_COUNT + " valores, e não " + gpsValues.length + ".");
+		}
+
+		values = gpsValues.clone();
+		time = toInstant(values[7], values[8], values[9], values[4], values[5], values[6]);
+		latitude = toDegrees(values[10], values[11], values[12], values[13]);
+		longitude = toDegrees(values[14], values[15], values[16], values[17]);
+	}
+
+	/**
+	 * Retorna o número da versão do hardware do GPS.
+	 *
+	 * @return a versão do hardware.
+	 */
+	public int getHardwareVersion() {
+		return values[0];
+	}
+
+	/**
+	 * Retorna o número da versão do firmware do GPS.
+	 *
+	 * @return a versão do firmware.
+	 */
+	public int getFirmwareVersion() {
+		return values[1];
+	}
+
+	/**
+	 * Para saber se a string de dados recebida pelo GPS é válida. Na resposta do comando 0x16, o campo vale 0 se a
+	 * string é válida e 1 se não é (o 0xFF de "válida" é da resposta do comando 0x0D).
+	 *
+	 * @return true se a string for válida.
+	 */
+	public boolean isValid() {
+		return values[2] == 0;
+	}
+
+	/**
+	 * Retorna o número de satélites utilizados.
+	 *
+	 * @return o número de satélites.
+	 */
+	public int getSatellites() {
+		return values[3];
+	}
+
+	/**
+	 * Retorna o horário da posição, em UTC.
+	 *
+	 * @return o horário, ou nulo se a data ou a hora recebidas não forem válidas.
+	 */
+	public Instant getTime() {
+		return time;
+	}
+
+	/**
+	 * Retorna a latitude.
+	 *
+	 * @return a latitude, em graus decimais; negativa ao sul.
+	 */
+	public double getLatitude() {
+		return latitude;
+	}
+
+	/**
+	 * Retorna a longitude.
+	 *
+	 * @return a longitude, em graus decimais; negativa a oeste.
+	 */
+	public double getLongitude() {
+		return longitude;
+	}
+
+	/**
+	 * Retorna a altitude.
+	 *
+	 * @return a altitude, em metros.
+	 */
+	public double getAltitude() {
+		return values[18] / 10.0;
+	}
+
+	/**
+	 * Retorna a velocidade.
+	 *
+	 * @return a velocidade, em metros por segundo.
+	 */
+	public double getSpeed() {
+		return getSpeedKnots() * METRES_PER_SECOND_PER_KNOT;
+	}
+
+	/**
+	 * Retorna a velocidade em nós, a unidade usada pelo GPS.
+	 *
+	 * @return a velocidade, em nós.
+	 */
+	public double getSpeedKnots() {
+		return values[19] / 10.0;
+	}
+
+	/**
+	 * Retorna a direção do movimento.
+	 *
+	 * @return a direção, em graus.
+	 */
+	public double getHeading() {
+		return values[20] / 10.0;
+	}
+
+	/**
+	 * Retorna os valores brutos da resposta.
+	 *
+	 * @return cópia dos valores, na ordem de
+	 * 			{@link br.cefetmg.lsi.robodeck.network.RobotConnection#sendReadGPSGetCommand(String)}.
+	 */
+	public int[] getValues() {
+		return values.clone();
+	}
+
+	@Override
+	public String toString() {
+		return "GpsFix[" + (isValid() ? "válida" : "inválida") + ", " + getSatellites() + " satélites, " + time + ", "
+				+ latitude + ", " + longitude + ", " + getAltitude() + " m, " + getSpeed() + " m/s, " + getHeading() + "°]";
+	}
+
+	/**
+	 * Converte graus, minutos, fração de minuto (entre [0; 65535]) e hemisfério (0 para norte ou leste, 1 para sul ou
+	 * oeste) em graus decimais.
+	 */
+	private static double toDegrees(int degrees, int minutes, int fraction, int direction) {
+		double decimal = degrees + (minutes + fraction / 65536.0) / 60.0;
+
+		return (direction == 1) ? -decimal : decimal;
+	}
+
+	/**
+	 * Converte a data (ano após 2000) e a hora recebidas em um instante UTC.
+	 */
+	private static Instant toInstant(int year, int month, int day, int hour, int minute, int second) {
+
+		try {
+			return LocalDateTime.of(2000 + year, month, day, hour, minute, second).toInstant(ZoneOffset.UTC);
+		} catch (DateTimeException e) {
+			return null;
+		}
+
+	}
+
+}
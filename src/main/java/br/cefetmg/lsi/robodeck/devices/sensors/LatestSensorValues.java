@@ -0,0 +1,206 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Últimos valores lidos de cada sensor, publicados por um {@link SensorPoller}.
+ *
+ * Os valores ficam em arrays de primitivos protegidos por um "seqlock" por sensor: quem publica torna a sequência do
+ * sensor ímpar, escreve os valores e o instante de recebimento e a torna par de novo; quem lê repete a leitura se a
+ * sequência estava ímpar ou mudou durante a leitura. Assim, qualquer número de threads lê sem bloqueios e sem criar
+ * objetos, e sempre recebe os valores de uma mesma resposta.
+ */
+public final class LatestSensorValues {
+
+	/**
+	 * Maior número de valores de um sensor.
+	 */
+	private static final int MAX_VALUES = 4;
+
+	/**
+	 * Sensores, na ordem dos ordinais.
+	 */
+	private static final SensorKind[] KINDS = SensorKind.values();
+
+	/**
+	 * Sequência de publicação de cada sensor, indexada pelo ordinal: ímpar durante a escrita; 0 se o sensor nunca
+	 * foi publicado.
+	 */
+	private final AtomicLongArray sequences = new AtomicLongArray(KINDS.length);
+
+	/**
+	 * Valores de cada sensor, a partir da posição ordinal * {@link #MAX_VALUES}.
+	 */
+	private final AtomicIntegerArray values = new AtomicIntegerArray(KINDS.length * MAX_VALUES);
+
+	/**
+	 * Instante de recebimento de cada sensor, em {@link System#nanoTime()}, indexado pelo ordinal.
+	 */
+	private final AtomicLongArray timestamps = new AtomicLongArray(KINDS.length);
+
+	/**
+	 * Construtor. Os valores são publicados pelo {@link SensorPoller} dono desta instância.
+	 */
+	LatestSensorValues() {
+	}
+
+	/**
+	 * Publica os valores de um sensor. As publicações são serializadas entre si; as leituras nunca esperam por elas.
+	 *
+	 * @param kind Sensor.
+	 * @param sensorValues Valores do sensor, na ordem de {@link SensorSnapshot.Builder#values(SensorKind, int[], long)}.
+	 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+	 */
+	synchronized void publish(SensorKind kind, int[] sensorValues, long timestamp) {
+		int index = kind.ordinal();
+		int base = index * MAX_VALUES;
+		long sequence = sequences.get(index);
+
+		sequences.set(index, sequence + 1);
+
+		for (int i = 0; i < kind.getValueCount(); i++) {
+			values.set(base + i, sensorValues[i]);
+		}
+
+		timestamps.set(index, timestamp);
+		sequences.set(index, sequence + 2);
+	}
+
+	/**
+	 * Para saber se o sensor já foi publicado.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return true se já há valores do sensor.
+	 */
+	public boolean contains(SensorKind kind) {
+		return sequences.get(kind.ordinal()) != 0;
+	}
+
+	/**
+	 * Copia os últimos valores de um sensor, todos da mesma resposta, sem bloquear e sem criar objetos.
+	 *
+	 * @param kind Sensor.
+	 * @param into Recebe os valores, na ordem de {@link SensorSnapshot.Builder#values(SensorKind, int[], long)}.
+	 * 			Deve ter pelo menos {@link SensorKind#getValueCount()} posições.
+	 *
+	 * @return o instante de recebimento dos valores, em {@link System#nanoTime()}, ou 0 se o sensor ainda não foi
+	 * 			publicado (neste caso, os valores copiados são 0).
+	 */
+	public long read(SensorKind kind, int[] into) {
+		int index = kind.ordinal();
+		int base = index * MAX_VALUES;
+		int count = kind.getValueCount();
+
+		while (true) {
+			long sequence = sequences.get(index);
+
+			if ((sequence & 1) == 0) {
+
+				for (int i = 0; i < count; i++) {
+					into[i] = values.get(base + i);
+				}
+
+				long timestamp = timestamps.get(index);
+
+				if (sequences.get(index) == sequence) {
+					return timestamp;
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Retorna um valor de um sensor. Os valores de um mesmo sensor lidos em chamadas separadas podem vir de respostas
+	 * diferentes; para lê-los juntos, use {@link #read(SensorKind, int[])}.
+	 *
+	 * @param kind Sensor.
+	 * @param position Posição do valor, na ordem de {@link SensorSnapshot.Builder#values(SensorKind, int[], long)}.
+	 *
+	 * @return o último valor publicado, ou 0 se o sensor ainda não foi publicado.
+	 */
+	public int get(SensorKind kind, int position) {
+
+		if ((position < 0) || (position >= kind.getValueCount())) {
+			throw new IndexOutOfBoundsException("O sensor " + kind + " não tem o valor " + position + ".");
+		}
+
+		return values.get(kind.ordinal() * MAX_VALUES + position);
+	}
+
+	/**
+	 * Retorna o último valor da bússola.
+	 *
+	 * @return o valor da bússola, ou 0 se ainda não foi publicado.
+	 */
+	public int getCompass() {
+		return get(SensorKind.COMPASS, 0);
+	}
+
+	/**
+	 * Retorna o último nível da bateria.
+	 *
+	 * @return o nível da bateria, ou 0 se ainda não foi publicado.
+	 */
+	public int getBatteryLevel() {
+		return get(SensorKind.BATTERY, 0);
+	}
+
+	/**
+	 * Retorna a última detecção de colisão.
+	 *
+	 * @return true se foi detectada colisão na última leitura.
+	 */
+	public boolean isCollision() {
+		return get(SensorKind.COLLISION, 0) != 0;
+	}
+
+	/**
+	 * Retorna o instante de recebimento dos últimos valores de um sensor.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return o instante, em {@link System#nanoTime()}, ou 0 se o sensor ainda não foi publicado.
+	 */
+	public long getTimestamp(SensorKind kind) {
+		return timestamps.get(kind.ordinal());
+	}
+
+	/**
+	 * Retorna há quanto tempo os últimos valores de um sensor foram recebidos.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return a idade dos valores, em nanossegundos, ou {@link Long#MAX_VALUE} se o sensor ainda não foi publicado.
+	 */
+	public long getAge(SensorKind kind) {
+		return contains(kind) ? (System.nanoTime() - getTimestamp(kind)) : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Copia os últimos valores de todos os sensores já publicados num {@link SensorSnapshot}. Ao contrário dos demais
+	 * métodos, cria objetos.
+	 *
+	 * @return instantâneo dos sensores publicados.
+	 */
+	public SensorSnapshot toSnapshot() {
+		SensorSnapshot.Builder builder = new SensorSnapshot.Builder();
+		int[] sensorValues = new int[MAX_VALUES];
+
+		for (SensorKind kind : KINDS) {
+
+			if (contains(kind)) {
+				long timestamp = read(kind, sensorValues);
+				builder.values(kind, sensorValues, timestamp);
+			}
+
+		}
+
+		return builder.build();
+	}
+
+}
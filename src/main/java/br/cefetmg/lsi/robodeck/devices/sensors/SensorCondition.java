@@ -0,0 +1,66 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+/**
+ * Condição sobre o valor de um sensor, usada nas assinaturas do {@link SensorPoller}. A assinatura dispara quando a
+ * condição passa a ser satisfeita, e não a cada leitura em que ela continua satisfeita.
+ *
+ * Exemplo: {@code robot.onUltrasonic(Side.FRONT, SensorCondition.below(300), listener)}.
+ */
+public interface SensorCondition {
+
+	/**
+	 * Avalia a condição.
+	 *
+	 * @param value Valor do sensor.
+	 *
+	 * @return true se o valor satisfaz a condição.
+	 */
+	boolean test(int value);
+
+	/**
+	 * Condição satisfeita por valores menores que o limite.
+	 *
+	 * @param limit Limite, exclusivo.
+	 *
+	 * @return a condição.
+	 */
+	static SensorCondition below(int limit) {
+		return value -> value < limit;
+	}
+
+	/**
+	 * Condição satisfeita por valores maiores que o limite.
+	 *
+	 * @param limit Limite, exclusivo.
+	 *
+	 * @return a condição.
+	 */
+	static SensorCondition above(int limit) {
+		return value -> value > limit;
+	}
+
+	/**
+	 * Condição satisfeita por valores dentro da faixa.
+	 *
+	 * @param min Menor valor da faixa, inclusivo.
+	 * @param max Maior valor da faixa, inclusivo.
+	 *
+	 * @return a condição.
+	 */
+	static SensorCondition between(int min, int max) {
+		return value -> (value >= min) && (value <= max);
+	}
+
+	/**
+	 * Condição satisfeita por valores fora da faixa.
+	 *
+	 * @param min Menor valor da faixa, inclusivo.
+	 * @param max Maior valor da faixa, inclusivo.
+	 *
+	 * @return a condição.
+	 */
+	static SensorCondition outside(int min, int max) {
+		return value -> (value < min) || (value > max);
+	}
+
+}
@@ -0,0 +1,111 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+import java.util.concurrent.CompletableFuture;
+
+import br.cefetmg.lsi.robodeck.network.RobotConnection;
+
+/**
+ * Sensores do robô que podem ser lidos num {@link SensorSnapshot} ou por um {@link SensorPoller}.
+ */
+public enum SensorKind {
+
+	/**
+	 * Sensores de infravermelho de profundidade (dianteiro e traseiro).
+	 */
+	INFRARED_DEPTH(2),
+
+	/**
+	 * Sensores de infravermelho de distância (esquerdo e direito).
+	 */
+	INFRARED_DISTANCE(2),
+
+	/**
+	 * Distâncias medidas pelos sensores de ultrassom (frontal, traseiro, esquerdo e direito).
+	 */
+	ULTRASONIC_DISTANCE(4),
+
+	/**
+	 * Luminosidade medida pelos sensores de ultrassom (frontal, traseiro, esquerdo e direito).
+	 */
+	ULTRASONIC_LUMINOSITY(4),
+
+	/**
+	 * Bússola.
+	 */
+	COMPASS(1),
+
+	/**
+	 * Acelerômetro (eixos x, y e z).
+	 */
+	ACCELEROMETER(3),
+
+	/**
+	 * Sensores de temperatura e umidade.
+	 */
+	TEMPERATURE_AND_HUMIDITY(2),
+
+	/**
+	 * Sensores óticos de detecção de colisão.
+	 */
+	COLLISION(1),
+
+	/**
+	 * Nível da bateria.
+	 */
+	BATTERY(1);
+
+	/**
+	 * Número de valores lidos do grupo de sensores.
+	 */
+	private final int valueCount;
+
+	private SensorKind(int count) {
+		valueCount = count;
+	}
+
+	/**
+	 * Retorna o número de valores lidos do grupo de sensores, por exemplo 4 para os sensores de ultrassom. A colisão
+	 * tem um valor: 1 se detectada, 0 caso contrário.
+	 *
+	 * @return o número de valores.
+	 */
+	public int getValueCount() {
+		return valueCount;
+	}
+
+	/**
+	 * Lê o grupo de sensores pela variante assíncrona do seu comando na conexão. Chamado dentro de
+	 * {@link br.cefetmg.lsi.robodeck.network.CommandBatch#record(java.util.function.Supplier)}, a leitura é gravada
+	 * no lote.
+	 *
+	 * @param connection Conexão com o robô.
+	 * @param source Consumidor que faz a leitura.
+	 *
+	 * @return os valores futuros, na ordem de {@link #getValueCount()}. A colisão é 1 se detectada, 0 caso contrário.
+	 */
+	public CompletableFuture<int[]> read(RobotConnection connection, String source) {
+
+		switch (this) {
+		case INFRARED_DEPTH:
+			return connection.sendReadInfraredSensorsDepthCommandAsync(source);
+		case INFRARED_DISTANCE:
+			return connection.sendReadInfraredSensorsDistanceCommandAsync(source);
+		case ULTRASONIC_DISTANCE:
+			return connection.sendReadUltrassonicSensorsDistanceCommandAsync(source);
+		case ULTRASONIC_LUMINOSITY:
+			return connection.sendReadUltrassonicSensorsLuminosityCommandAsync(source);
+		case COMPASS:
+			return connection.sendReadCompassSensorCommandAsync(source).thenApply(value -> new int[] {value});
+		case ACCELEROMETER:
+			return connection.sendReadAccelerometerSensorCommandAsync(source);
+		case TEMPERATURE_AND_HUMIDITY:
+			return connection.sendReadTemperatureAndHumiditySensorsCommandAsync(source);
+		case COLLISION:
+			return connection.sendReadCollisionDetectionCommandAsync(source).thenApply(value -> new int[] {value ? 1 : 0});
+		default:
+			return connection.sendReadBatteryLevelCommandAsync(source).thenApply(value -> new int[] {value});
+		}
+
+	}
+
+}
@@ -0,0 +1,20 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+/**
+ * Recebe os disparos de uma assinatura do {@link SensorPoller}. É chamado no executor de notificações do leitor,
+ * nunca na thread que recebe as respostas do robô.
+ */
+public interface SensorListener {
+
+	/**
+	 * Chamado quando a assinatura dispara.
+	 *
+	 * @param kind Sensor.
+	 * @param position Posição do valor no sensor, na ordem de {@link SensorSnapshot.Builder#values(SensorKind, int[], long)}
+	 * 			(para o ultrassom, o ordinal de {@link Side}).
+	 * @param value Valor que disparou a assinatura.
+	 * @param timestamp Instante de recebimento do valor, em {@link System#nanoTime()}.
+	 */
+	void onValue(SensorKind kind, int position, int value, long timestamp);
+
+}
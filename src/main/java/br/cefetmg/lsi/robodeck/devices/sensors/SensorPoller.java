@@ -0,0 +1,849 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import br.cefetmg.lsi.robodeck.Robot;
+import br.cefetmg.lsi.robodeck.RobotBatch;
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Lê um conjunto de sensores em segundo plano, cada um na sua frequência, e publica os valores em
+ * {@link LatestSensorValues}.
+ *
+ * Laços de controle que precisam dos valores mais recentes (por exemplo, a 100 Hz) leem de {@link #getValues()}, sem
+ * bloqueios e sem passar pela conexão. A thread do leitor só envia: os sensores que vencem no mesmo instante são
+ * enviados num único lote ({@link RobotBatch}), e os valores são publicados quando as respostas chegam. Um sensor
+ * cuja leitura anterior ainda aguarda resposta não é pedido de novo; a vez é contada em {@link #getSkipped()}.
+ *
+ * A frequência de cada sensor pode ser fixa ({@link #setRate(SensorKind, double)}) ou adaptativa, entre um mínimo e um
+ * máximo ({@link #setRateRange(SensorKind, double, double)}). Uma frequência adaptativa começa no máximo, dobra (até o
+ * máximo) a cada leitura em que algum valor mudou mais que a zona morta do sensor e cai 10% (até o mínimo) a cada
+ * leitura sem mudança. Assim, a distância do ultrassom enquanto o robô se aproxima de um obstáculo é lida com
+ * frequência, e a bateria ou a temperatura, quase paradas, raramente.
+ *
+ * Com um orçamento do enlace ({@link #setLinkBudget(double)}), em pacotes por segundo, os mínimos de todos os
+ * sensores são garantidos e o restante do orçamento é dividido na proporção do que cada sensor pede acima do seu
+ * mínimo. Se nem os mínimos couberem no orçamento, todos são reduzidos na mesma proporção. Uma leitura do ultrassom
+ * custa 4 pacotes e uma da bateria, 2.
+ *
+ * As frequências e o orçamento vêm das propriedades "robot.poller.rate.&lt;SENSOR&gt;" (fixa),
+ * "robot.poller.minRate.&lt;SENSOR&gt;" e "robot.poller.maxRate.&lt;SENSOR&gt;" (adaptativa),
+ * "robot.poller.deadband.&lt;SENSOR&gt;" e "robot.poller.linkBudget", em Hz e pacotes por segundo. Com frequência 0
+ * (padrão), o sensor não é lido.
+ *
+ * Em vez de laços que leem um sensor só para descobrir quando ele passa de um limite, várias threads podem assinar os
+ * valores ({@link #subscribe(SensorKind, int, SensorCondition, SensorListener)}): as condições são avaliadas aqui, a
+ * cada leitura, e os ouvintes são chamados num executor. Todas as assinaturas compartilham as mesmas leituras.
+ *
+ * As leituras são enviadas em nome do consumidor {@link #SOURCE}.
+ */
+public class SensorPoller {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Consumidor em nome do qual as leituras são enviadas.
+	 */
+	public static final String SOURCE = "sensorpoller";
+
+	/**
+	 * Sensores, na ordem dos ordinais.
+	 */
+	private static final SensorKind[] KINDS = SensorKind.values();
+
+	/**
+	 * Espera máxima da thread quando nenhum sensor está ativo, em nanossegundos.
+	 */
+	private static final long IDLE_PARK = 100000000L;
+
+	/**
+	 * Fator aplicado à frequência adaptativa a cada leitura com mudança.
+	 */
+	private static final double SPEED_UP = 2.0;
+
+	/**
+	 * Fator aplicado à frequência adaptativa a cada leitura sem mudança.
+	 */
+	private static final double SLOW_DOWN = 0.9;
+
+	/**
+	 * Robô cujos sensores são lidos.
+	 */
+	private final Robot robot;
+
+	/**
+	 * Últimos valores lidos.
+	 */
+	private final LatestSensorValues values = new LatestSensorValues();
+
+	/**
+	 * Protege as frequências, as zonas mortas, os últimos valores e o orçamento do enlace.
+	 */
+	private final Object rateLock = new Object();
+
+	/**
+	 * Frequência mínima de cada sensor, em Hz, indexada pelo ordinal.
+	 */
+	private final double[] minRates = new double[KINDS.length];
+
+	/**
+	 * Frequência máxima de cada sensor, em Hz, indexada pelo ordinal; 0 se o sensor não é lido.
+	 */
+	private final double[] maxRates = new double[KINDS.length];
+
+	/**
+	 * Frequência pedida por cada sensor, em Hz, entre o mínimo e o máximo, antes do orçamento do enlace.
+	 */
+	private final double[] rates = new double[KINDS.length];
+
+	/**
+	 * Maior mudança de um valor de cada sensor que ainda conta como "sem mudança".
+	 */
+	private final int[] deadbands = new int[KINDS.length];
+
+	/**
+	 * Últimos valores lidos de cada sensor, para detectar mudanças; nulo antes da primeira leitura.
+	 */
+	private final int[][] lastValues = new int[KINDS.length][];
+
+	/**
+	 * Orçamento do enlace, em pacotes por segundo; 0 se ilimitado.
+	 */
+	private double linkBudget;
+
+	/**
+	 * Período efetivo de cada sensor, em nanossegundos; 0 se o sensor não é lido. Recalculado a cada volta da thread
+	 * do leitor e só usado por ela.
+	 */
+	private final long[] periods = new long[KINDS.length];
+
+	/**
+	 * Instante do último vencimento de cada sensor, enviado ou pulado. Só usado pela thread do leitor.
+	 */
+	private final long[] lastSent = new long[KINDS.length];
+
+	/**
+	 * Indica, por sensor, se a sua leitura ainda aguarda resposta (1) ou não (0).
+	 */
+	private final AtomicIntegerArray inFlight = new AtomicIntegerArray(KINDS.length);
+
+	/**
+	 * Número de leituras enviadas.
+	 */
+	private final AtomicLong polls = new AtomicLong();
+
+	/**
+	 * Número de vezes em que um sensor não foi pedido porque a leitura anterior ainda aguardava resposta.
+	 */
+	private final AtomicLong skipped = new AtomicLong();
+
+	/**
+	 * Número de leituras que falharam.
+	 */
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * Thread do leitor, ou nula se ele estiver parado.
+	 */
+	private Thread thread;
+
+	/**
+	 * Assinaturas de cada sensor. O mapa não muda depois da construção.
+	 */
+	private final EnumMap<SensorKind, CopyOnWriteArrayList<SensorSubscription>> subscriptions = new EnumMap<SensorKind, CopyOnWriteArrayList<SensorSubscription>>(SensorKind.class);
+
+	/**
+	 * Indica, por sensor, se a sua leitura foi ativada por uma assinatura, e não pelo usuário. Protegido por
+	 * {@link #rateLock}.
+	 */
+	private final boolean[] enabledBySubscription = new boolean[KINDS.length];
+
+	/**
+	 * Frequência, em Hz, usada para um sensor que não era lido quando recebeu a sua primeira assinatura.
+	 */
+	private final double subscriptionRate = Double.parseDouble(PropertiesLoaderImpl.getValor("robot.poller.subscriptionRate", "10"));
+
+	/**
+	 * Executor das notificações das assinaturas, ou nulo até a primeira notificação.
+	 */
+	private Executor listenerExecutor;
+
+	/**
+	 * Construtor. O leitor começa parado; as frequências vêm das propriedades "robot.poller.*".
+	 *
+	 * @param robotToPoll Robô cujos sensores são lidos. Deve estar conectado antes de {@link #start()}.
+	 */
+	public SensorPoller(Robot robotToPoll) {
+		robot = robotToPoll;
+
+		for (SensorKind kind : KINDS) {
+			String rate = PropertiesLoaderImpl.getValor("robot.poller.rate." + kind.name(), "0");
+			String maxRate = PropertiesLoaderImpl.getValor("robot.poller.maxRate." + kind.name(), rate);
+			String minRate = PropertiesLoaderImpl.getValor("robot.poller.minRate." + kind.name(), maxRate);
+			setRateRange(kind, Double.parseDouble(minRate), Double.parseDouble(maxRate));
+			setDeadband(kind, Integer.parseInt(PropertiesLoaderImpl.getValor("robot.poller.deadband." + kind.name(), "0")));
+		}
+
+		setLinkBudget(Double.parseDouble(PropertiesLoaderImpl.getValor("robot.poller.linkBudget", "0")));
+
+		for (SensorKind kind : KINDS) {
+			subscriptions.put(kind, new CopyOnWriteArrayList<SensorSubscription>());
+		}
+
+	}
+
+	/**
+	 * Define uma frequência fixa de leitura de um sensor. Pode ser chamado com o leitor em execução.
+	 *
+	 * @param kind Sensor.
+	 * @param hertz Leituras por segundo; 0 para não ler o sensor.
+	 */
+	public void setRate(SensorKind kind, double hertz) {
+		setRateRange(kind, hertz, hertz);
+	}
+
+	/**
+	 * Define a faixa da frequência adaptativa de leitura de um sensor. Pode ser chamado com o leitor em execução.
+	 *
+	 * @param kind Sensor.
+	 * @param minHertz Menor frequência, usada enquanto os valores do sensor não mudam. Deve ser positiva se o sensor
+	 * 			for lido, para que uma mudança ainda possa ser percebida.
+	 * @param maxHertz Maior frequência, usada enquanto os valores do sensor mudam; 0 para não ler o sensor.
+	 */
+	public void setRateRange(SensorKind kind, double minHertz, double maxHertz) {
+
+		if (!(minHertz >= 0) || !(maxHertz >= minHertz) || Double.isInfinite(maxHertz) || ((maxHertz > 0) && (minHertz == 0))) {
+			throw new IllegalArgumentException("Faixa de frequências inválida: " + minHertz + " a " + maxHertz);
+		}
+
+		synchronized (rateLock) {
+			enabledBySubscription[kind.ordinal()] = false;
+			minRates[kind.ordinal()] = minHertz;
+			maxRates[kind.ordinal()] = maxHertz;
+			rates[kind.ordinal()] = maxHertz;
+		}
+
+		wakeUp();
+	}
+
+	/**
+	 * Retorna a frequência mínima de leitura de um sensor.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return leituras por segundo.
+	 */
+	public double getMinRate(SensorKind kind) {
+
+		synchronized (rateLock) {
+			return minRates[kind.ordinal()];
+		}
+
+	}
+
+	/**
+	 * Retorna a frequência máxima de leitura de um sensor.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return leituras por segundo, ou 0 se o sensor não é lido.
+	 */
+	public double getMaxRate(SensorKind kind) {
+
+		synchronized (rateLock) {
+			return maxRates[kind.ordinal()];
+		}
+
+	}
+
+	/**
+	 * Retorna a frequência corrente de leitura de um sensor, já limitada pelo orçamento do enlace.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return leituras por segundo, ou 0 se o sensor não é lido.
+	 */
+	public double getRate(SensorKind kind) {
+		double[] effective = new double[KINDS.length];
+		effectiveRates(effective);
+
+		return effective[kind.ordinal()];
+	}
+
+	/**
+	 * Define a zona morta de um sensor: a maior mudança de um valor entre duas leituras que ainda conta como "sem
+	 * mudança" na adaptação da frequência. Serve para que o ruído do sensor não mantenha a frequência no máximo.
+	 *
+	 * @param kind Sensor.
+	 * @param deadband Maior mudança ignorada, nas unidades do sensor.
+	 */
+	public void setDeadband(SensorKind kind, int deadband) {
+
+		if (deadband < 0) {
+			throw new IllegalArgumentException("Zona morta inválida: " + deadband);
+		}
+
+		synchronized (rateLock) {
+			deadbands[kind.ordinal()] = deadband;
+		}
+
+	}
+
+	/**
+	 * Retorna a zona morta de um sensor.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return a maior mudança ignorada, nas unidades do sensor.
+	 */
+	public int getDeadband(SensorKind kind) {
+
+		synchronized (rateLock) {
+			return deadbands[kind.ordinal()];
+		}
+
+	}
+
+	/**
+	 * Define o orçamento do enlace: o total de pacotes por segundo que o leitor pode enviar, somando todos os
+	 * sensores. Se a soma dos mínimos dos sensores passar do orçamento, eles são reduzidos na mesma proporção.
+	 *
+	 * @param packetsPerSecond Pacotes por segundo; 0 para não limitar.
+	 */
+	public void setLinkBudget(double packetsPerSecond) {
+
+		if (!(packetsPerSecond >= 0)) {
+			throw new IllegalArgumentException("Orçamento inválido: " + packetsPerSecond);
+		}
+
+		synchronized (rateLock) {
+			linkBudget = packetsPerSecond;
+		}
+
+		wakeUp();
+	}
+
+	/**
+	 * Retorna o orçamento do enlace.
+	 *
+	 * @return pacotes por segundo, ou 0 se ilimitado.
+	 */
+	public double getLinkBudget() {
+
+		synchronized (rateLock) {
+			return linkBudget;
+		}
+
+	}
+
+	/**
+	 * Assina um valor de sensor com uma condição de limite: o ouvinte é chamado quando o valor passa a satisfazer a
+	 * condição. Se o sensor não era lido, passa a ser, na frequência da propriedade "robot.poller.subscriptionRate"
+	 * (10 Hz por padrão), até que a sua última assinatura seja cancelada. O leitor é iniciado, se estiver parado.
+	 *
+	 * @param kind Sensor.
+	 * @param position Posição do valor no sensor (para o ultrassom, o ordinal de {@link Side}).
+	 * @param condition Condição sobre o valor.
+	 * @param listener Recebe os disparos, no executor de notificações.
+	 *
+	 * @return a assinatura, que pode ser cancelada.
+	 *
+	 * @see SensorSubscription
+	 */
+	public SensorSubscription subscribe(SensorKind kind, int position, SensorCondition condition, SensorListener listener) {
+		return add(new SensorSubscription(this, kind, position, condition, 0, listener));
+	}
+
+	/**
+	 * Assina as mudanças de um valor de sensor: o ouvinte é chamado quando o valor se afasta do último valor notificado
+	 * (ou do primeiro lido) por pelo menos "minDelta".
+	 *
+	 * @param kind Sensor.
+	 * @param position Posição do valor no sensor (para o ultrassom, o ordinal de {@link Side}).
+	 * @param minDelta Menor mudança notificada, positiva.
+	 * @param listener Recebe os disparos, no executor de notificações.
+	 *
+	 * @return a assinatura, que pode ser cancelada.
+	 *
+	 * @see #subscribe(SensorKind, int, SensorCondition, SensorListener)
+	 */
+	public SensorSubscription subscribeChange(SensorKind kind, int position, int minDelta, SensorListener listener) {
+
+		if (minDelta < 1) {
+			throw new IllegalArgumentException("A mudança mínima deve ser positiva: " + minDelta);
+		}
+
+		return add(new SensorSubscription(this, kind, position, null, minDelta, listener));
+	}
+
+	/**
+	 * Define o executor em que os ouvintes das assinaturas são chamados. Por padrão, uma única thread ("SensorListeners"),
+	 * de forma que os disparos chegam na ordem em que ocorreram.
+	 *
+	 * @param executor Executor das notificações.
+	 */
+	public synchronized void setListenerExecutor(Executor executor) {
+		listenerExecutor = executor;
+	}
+
+	/**
+	 * Retorna os últimos valores lidos, que podem ser consultados por qualquer thread sem bloqueios.
+	 *
+	 * @return os últimos valores lidos.
+	 */
+	public LatestSensorValues getValues() {
+		return values;
+	}
+
+	/**
+	 * Inicia a thread do leitor. Não faz nada se ele já estiver em execução.
+	 */
+	public synchronized void start() {
+
+		if (thread != null) {
+			return;
+		}
+
+		thread = new Thread(this::poll, "SensorPoller");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Para a thread do leitor e aguarda o seu fim. As leituras já enviadas ainda publicam os seus valores quando as
+	 * respostas chegarem.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void stop() throws InterruptedException {
+		Thread stopping;
+
+		synchronized (this) {
+			stopping = thread;
+			thread = null;
+		}
+
+		if (stopping != null) {
+			stopping.interrupt();
+			stopping.join();
+		}
+
+	}
+
+	/**
+	 * Para saber se o leitor está em execução.
+	 *
+	 * @return true se a thread do leitor está em execução.
+	 */
+	public synchronized boolean isRunning() {
+		return thread != null;
+	}
+
+	/**
+	 * Retorna o número de leituras enviadas.
+	 *
+	 * @return o número de leituras enviadas.
+	 */
+	public long getPolls() {
+		return polls.get();
+	}
+
+	/**
+	 * Retorna o número de vezes em que um sensor não foi pedido porque a leitura anterior ainda aguardava resposta,
+	 * isto é, em que a frequência pedida foi maior do que a conexão conseguiu atender.
+	 *
+	 * @return o número de leituras puladas.
+	 */
+	public long getSkipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * Retorna o número de leituras que falharam.
+	 *
+	 * @return o número de leituras que falharam.
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Laço da thread do leitor: envia os sensores vencidos e dorme até o próximo vencimento. Só termina quando a
+	 * thread é interrompida: a falha de uma leitura, inclusive por uma exceção de tempo de execução, é contada em
+	 * {@link #getFailures()} e o sensor volta a ser lido no vencimento seguinte.
+	 */
+	private void poll() {
+		double[] effective = new double[KINDS.length];
+
+		while (!Thread.currentThread().isInterrupted()) {
+			effectiveRates(effective);
+
+			for (int i = 0; i < KINDS.length; i++) {
+				periods[i] = (effective[i] > 0) ? Math.max(1, (long)(1e9 / effective[i])) : 0;
+			}
+
+			long now = System.nanoTime();
+			long next = now + IDLE_PARK;
+			RobotBatch batch = null;
+
+			for (SensorKind kind : KINDS) {
+				int index = kind.ordinal();
+				long period = periods[index];
+
+				if (period == 0) {
+					continue;
+				}
+
+				// O vencimento é contado a partir do anterior, de forma que uma mudança de frequência vale já para
+				// a próxima leitura e vencimentos perdidos não viram rajadas.
+				if ((now - (lastSent[index] + period)) >= 0) {
+
+					lastSent[index] = now;
+
+					if (inFlight.compareAndSet(index, 0, 1)) {
+
+						try {
+
+							if (batch == null) {
+								batch = robot.batch();
+							}
+
+							record(batch, kind);
+						} catch (RuntimeException e) {
+							// A leitura não chegou a ser gravada: nenhuma resposta vai liberar o sensor.
+							inFlight.set(index, 0);
+							failures.incrementAndGet();
+							debugFailure(e);
+						}
+
+					} else {
+						skipped.incrementAndGet();
+					}
+
+				}
+
+				long due = lastSent[index] + period;
+
+				if ((due - next) < 0) {
+					next = due;
+				}
+
+			}
+
+			if (batch != null) {
+
+				try {
+					batch.send();
+				} catch (IOException | RuntimeException e) {
+					// As leituras do lote falham com a mesma causa e liberam os seus sensores.
+					debugFailure(e);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+			}
+
+			long wait = next - System.nanoTime();
+
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Calcula a frequência efetiva de cada sensor: a frequência pedida ou, se a soma passar do orçamento do enlace, o
+	 * mínimo de cada sensor mais a sua parte do restante do orçamento, proporcional ao que ele pede acima do mínimo. Se
+	 * nem os mínimos couberem no orçamento, cada sensor fica com o seu mínimo reduzido na mesma proporção.
+	 *
+	 * @param into Recebe as frequências, indexadas pelo ordinal.
+	 */
+	private void effectiveRates(double[] into) {
+
+		synchronized (rateLock) {
+			double minimum = 0;
+			double extra = 0;
+
+			for (SensorKind kind : KINDS) {
+				int index = kind.ordinal();
+				into[index] = rates[index];
+				minimum += minRates[index] * packets(kind);
+				extra += (rates[index] - minRates[index]) * packets(kind);
+			}
+
+			if ((linkBudget == 0) || ((minimum + extra) <= linkBudget)) {
+				return;
+			}
+
+			if (minimum >= linkBudget) {
+				double scale = linkBudget / minimum;
+
+				for (int i = 0; i < KINDS.length; i++) {
+					into[i] = minRates[i] * scale;
+				}
+
+				return;
+			}
+
+			// Aqui minimum < linkBudget < minimum + extra, de forma que extra é positivo.
+			double share = (linkBudget - minimum) / extra;
+
+			for (int i = 0; i < KINDS.length; i++) {
+				into[i] = minRates[i] + (rates[i] - minRates[i]) * share;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Adapta a frequência pedida por um sensor aos valores que acabaram de chegar.
+	 *
+	 * @param kind Sensor.
+	 * @param sensorValues Valores lidos.
+	 */
+	private void adapt(SensorKind kind, int[] sensorValues) {
+		int index = kind.ordinal();
+		boolean faster;
+
+		synchronized (rateLock) {
+			int[] last = lastValues[index];
+			boolean changed = false;
+
+			if (last == null) {
+				last = new int[kind.getValueCount()];
+				lastValues[index] = last;
+			} else {
+
+				for (int i = 0; i < last.length; i++) {
+
+					if (Math.abs(sensorValues[i] - last[i]) > deadbands[index]) {
+						changed = true;
+					}
+
+				}
+
+			}
+
+			System.arraycopy(sensorValues, 0, last, 0, last.length);
+			double rate = rates[index];
+
+			if (changed) {
+				rates[index] = Math.min(maxRates[index], rate * SPEED_UP);
+			} else {
+				rates[index] = Math.max(minRates[index], rate * SLOW_DOWN);
+			}
+
+			faster = rates[index] > rate;
+		}
+
+		if (faster) {
+			debugRate(kind);
+			wakeUp();
+		}
+
+	}
+
+	/**
+	 * Registra uma assinatura, ativando a leitura do sensor se preciso, e inicia o leitor.
+	 *
+	 * @param subscription Assinatura.
+	 *
+	 * @return a assinatura.
+	 */
+	private SensorSubscription add(SensorSubscription subscription) {
+		int index = subscription.getKind().ordinal();
+
+		synchronized (rateLock) {
+			subscriptions.get(subscription.getKind()).add(subscription);
+
+			if (maxRates[index] == 0) {
+				minRates[index] = subscriptionRate;
+				maxRates[index] = subscriptionRate;
+				rates[index] = subscriptionRate;
+				enabledBySubscription[index] = true;
+			}
+
+		}
+
+		start();
+		wakeUp();
+
+		return subscription;
+	}
+
+	/**
+	 * Remove uma assinatura cancelada, desativando a leitura do sensor se ela tinha sido ativada pelas assinaturas e
+	 * esta era a última.
+	 *
+	 * @param subscription Assinatura cancelada.
+	 */
+	void unsubscribe(SensorSubscription subscription) {
+		int index = subscription.getKind().ordinal();
+
+		synchronized (rateLock) {
+			CopyOnWriteArrayList<SensorSubscription> kindSubscriptions = subscriptions.get(subscription.getKind());
+			kindSubscriptions.remove(subscription);
+
+			if (kindSubscriptions.isEmpty() && enabledBySubscription[index]) {
+				minRates[index] = 0;
+				maxRates[index] = 0;
+				rates[index] = 0;
+				enabledBySubscription[index] = false;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Avalia as assinaturas do sensor com os valores que acabaram de chegar.
+	 *
+	 * @param kind Sensor.
+	 * @param sensorValues Valores lidos.
+	 * @param timestamp Instante de recebimento, em {@link System#nanoTime()}.
+	 */
+	private void notifySubscribers(SensorKind kind, int[] sensorValues, long timestamp) {
+		CopyOnWriteArrayList<SensorSubscription> kindSubscriptions = subscriptions.get(kind);
+
+		if (kindSubscriptions.isEmpty()) {
+			return;
+		}
+
+		Executor executor = listenerExecutor();
+
+		for (SensorSubscription subscription : kindSubscriptions) {
+			subscription.evaluate(sensorValues, timestamp, executor);
+		}
+
+	}
+
+	/**
+	 * Retorna o executor das notificações, criando o padrão na primeira chamada.
+	 *
+	 * @return o executor das notificações.
+	 */
+	private synchronized Executor listenerExecutor() {
+
+		if (listenerExecutor == null) {
+			listenerExecutor = Executors.newSingleThreadExecutor(task -> {
+				Thread listenerThread = new Thread(task, "SensorListeners");
+				listenerThread.setDaemon(true);
+
+				return listenerThread;
+			});
+		}
+
+		return listenerExecutor;
+	}
+
+	/**
+	 * Número de pacotes de uma leitura do sensor.
+	 */
+	private static int packets(SensorKind kind) {
+
+		switch (kind) {
+		case ULTRASONIC_DISTANCE:
+		case ULTRASONIC_LUMINOSITY:
+			return 4;
+		case BATTERY:
+			return 2;
+		default:
+			return 1;
+		}
+
+	}
+
+	/**
+	 * Acorda a thread do leitor, para que ela recalcule os vencimentos.
+	 */
+	private void wakeUp() {
+		Thread current;
+
+		synchronized (this) {
+			current = thread;
+		}
+
+		if (current != null) {
+			LockSupport.unpark(current);
+		}
+
+	}
+
+	/**
+	 * Grava a leitura de um sensor no lote, publicando os valores quando a resposta chegar.
+	 *
+	 * @param batch Lote da vez.
+	 * @param kind Sensor.
+	 */
+	private void record(RobotBatch batch, SensorKind kind) {
+		CompletableFuture<int[]> reply = batch.read(kind, SOURCE);
+		polls.incrementAndGet();
+		final int index = kind.ordinal();
+
+		reply.whenComplete((sensorValues, failure) -> {
+
+			try {
+
+				if (failure == null) {
+					long timestamp = System.nanoTime();
+					values.publish(kind, sensorValues, timestamp);
+					adapt(kind, sensorValues);
+					notifySubscribers(kind, sensorValues, timestamp);
+				} else {
+					failures.incrementAndGet();
+					debugFailure(failure);
+				}
+
+			} catch (RuntimeException e) {
+				failures.incrementAndGet();
+				debugFailure(e);
+			} finally {
+				inFlight.set(index, 0);
+			}
+
+		});
+	}
+
+	/**
+	 * Exibe, em modo de depuração, que a frequência de um sensor aumentou.
+	 */
+	private void debugRate(SensorKind kind) {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("SensorPoller.adapt():");
+	        debugStr.append("\nValores de " + kind + " mudando; frequência pedida: " + String.format("%.1f", rates[kind.ordinal()]) + " Hz");
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+	}
+
+	/**
+	 * Exibe, em modo de depuração, a falha de uma leitura.
+	 */
+	private void debugFailure(Throwable failure) {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("SensorPoller.poll():");
+	        debugStr.append("\nFalha na leitura: " + failure);
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+	}
+
+}
@@ -0,0 +1,749 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+import java.util.EnumSet;
+
+/**
+ * Leitura imutável de um conjunto de sensores do robô, feita numa única rodada de comandos.
+ *
+ * Cada grupo de valores ({@link SensorKind}) traz o instante, em {@link System#nanoTime()}, em que a sua resposta
+ * foi recebida, de forma que a idade de cada valor pode ser conferida ao montar o estado do robô. Os valores de um
+ * sensor que não foi lido não estão disponíveis: o método correspondente lança {@link IllegalStateException}.
+ *
+ * Instâncias são criadas com {@link Builder}.
+ */
+public final class SensorSnapshot {
+
+	/**
+	 * Sensores lidos.
+	 */
+	private final EnumSet<SensorKind> kinds;
+
+	/**
+	 * Instante de recebimento de cada sensor lido, em {@link System#nanoTime()}, indexado pelo ordinal do sensor.
+	 */
+	private final long[] timestamps;
+
+	/**
+	 * Valor do sensor de infravermelho de profundidade dianteiro.
+	 */
+	private final int infraredDepthFront;
+
+	/**
+	 * Valor do sensor de infravermelho de profundidade traseiro.
+	 */
+	private final int infraredDepthRear;
+
+	/**
+	 * Valor do sensor de infravermelho de distância esquerdo.
+	 */
+	private final int infraredDistanceLeft;
+
+	/**
+	 * Valor do sensor de infravermelho de distância direito.
+	 */
+	private final int infraredDistanceRight;
+
+	/**
+	 * Distância medida pelo sensor de ultrassom frontal.
+	 */
+	private final int ultrasonicDistanceFront;
+
+	/**
+	 * Distância medida pelo sensor de ultrassom traseiro.
+	 */
+	private final int ultrasonicDistanceRear;
+
+	/**
+	 * Distância medida pelo sensor de ultrassom esquerdo.
+	 */
+	private final int ultrasonicDistanceLeft;
+
+	/**
+	 * Distância medida pelo sensor de ultrassom direito.
+	 */
+	private final int ultrasonicDistanceRight;
+
+	/**
+	 * Luminosidade medida pelo sensor de ultrassom frontal.
+	 */
+	private final int ultrasonicLuminosityFront;
+
+	/**
+	 * Luminosidade medida pelo sensor de ultrassom traseiro.
+	 */
+	private final int ultrasonicLuminosityRear;
+
+	/**
+	 * Luminosidade medida pelo sensor de ultrassom esquerdo.
+	 */
+	private final int ultrasonicLuminosityLeft;
+
+	/**
+	 * Luminosidade medida pelo sensor de ultrassom direito.
+	 */
+	private final int ultrasonicLuminosityRight;
+
+	/**
+	 * Ângulo da bússola, em décimos de graus (de 0 até 3599).
+	 */
+	private final int compass;
+
+	/**
+	 * Aceleração no eixo x, em décimos de milésimos de "g".
+	 */
+	private final int accelerometerX;
+
+	/**
+	 * Aceleração no eixo y, em décimos de milésimos de "g".
+	 */
+	private final int accelerometerY;
+
+	/**
+	 * Aceleração no eixo z, em décimos de milésimos de "g".
+	 */
+	private final int accelerometerZ;
+
+	/**
+	 * Valor do sensor de temperatura.
+	 */
+	private final int temperature;
+
+	/**
+	 * Valor do sensor de umidade.
+	 */
+	private final int humidity;
+
+	/**
+	 * Presença de objeto à frente de algum dos sensores óticos.
+	 */
+	private final boolean collision;
+
+	/**
+	 * Nível da bateria.
+	 */
+	private final int batteryLevel;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param builder Valores lidos.
+	 */
+	private SensorSnapshot(Builder builder) {
+		kinds = EnumSet.copyOf(builder.kinds);
+		timestamps = builder.timestamps.clone();
+		infraredDepthFront = builder.infraredDepthFront;
+		infraredDepthRear = builder.infraredDepthRear;
+		infraredDistanceLeft = builder.infraredDistanceLeft;
+		infraredDistanceRight = builder.infraredDistanceRight;
+		ultrasonicDistanceFront = builder.ultrasonicDistanceFront;
+		ultrasonicDistanceRear = builder.ultrasonicDistanceRear;
+		ultrasonicDistanceLeft = builder.ultrasonicDistanceLeft;
+		ultrasonicDistanceRight = builder.ultrasonicDistanceRight;
+		ultrasonicLuminosityFront = builder.ultrasonicLuminosityFront;
+		ultrasonicLuminosityRear = builder.ultrasonicLuminosityRear;
+		ultrasonicLuminosityLeft = builder.ultrasonicLuminosityLeft;
+		ultrasonicLuminosityRight = builder.ultrasonicLuminosityRight;
+		compass = builder.compass;
+		accelerometerX = builder.accelerometerX;
+		accelerometerY = builder.accelerometerY;
+		accelerometerZ = builder.accelerometerZ;
+		temperature = builder.temperature;
+		humidity = builder.humidity;
+		collision = builder.collision;
+		batteryLevel = builder.batteryLevel;
+	}
+
+	/**
+	 * Informa se o sensor foi lido.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return true se os valores do sensor estão disponíveis.
+	 */
+	public boolean contains(SensorKind kind) {
+		return kinds.contains(kind);
+	}
+
+	/**
+	 * Retorna os sensores lidos.
+	 *
+	 * @return cópia do conjunto de sensores lidos.
+	 */
+	public EnumSet<SensorKind> getKinds() {
+		return (kinds.isEmpty()) ? EnumSet.noneOf(SensorKind.class) : EnumSet.copyOf(kinds);
+	}
+
+	/**
+	 * Retorna o instante em que a resposta do sensor foi recebida.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return o instante, em {@link System#nanoTime()}.
+	 *
+	 * @throws IllegalStateException se o sensor não foi lido.
+	 */
+	public long getTimestamp(SensorKind kind) {
+		require(kind);
+
+		return timestamps[kind.ordinal()];
+	}
+
+	/**
+	 * Retorna há quanto tempo a resposta do sensor foi recebida.
+	 *
+	 * @param kind Sensor.
+	 *
+	 * @return a idade do valor, em nanossegundos.
+	 *
+	 * @throws IllegalStateException se o sensor não foi lido.
+	 */
+	public long getAge(SensorKind kind) {
+		return System.nanoTime() - getTimestamp(kind);
+	}
+
+	/**
+	 * Retorna o valor do sensor de infravermelho de profundidade dianteiro.
+	 *
+	 * @return valor do sensor de infravermelho de profundidade dianteiro.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#INFRARED_DEPTH} não foi lido.
+	 */
+	public int getInfraredDepthFront() {
+		require(SensorKind.INFRARED_DEPTH);
+
+		return infraredDepthFront;
+	}
+
+	/**
+	 * Retorna o valor do sensor de infravermelho de profundidade traseiro.
+	 *
+	 * @return valor do sensor de infravermelho de profundidade traseiro.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#INFRARED_DEPTH} não foi lido.
+	 */
+	public int getInfraredDepthRear() {
+		require(SensorKind.INFRARED_DEPTH);
+
+		return infraredDepthRear;
+	}
+
+	/**
+	 * Retorna o valor do sensor de infravermelho de distância esquerdo.
+	 *
+	 * @return valor do sensor de infravermelho de distância esquerdo.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#INFRARED_DISTANCE} não foi lido.
+	 */
+	public int getInfraredDistanceLeft() {
+		require(SensorKind.INFRARED_DISTANCE);
+
+		return infraredDistanceLeft;
+	}
+
+	/**
+	 * Retorna o valor do sensor de infravermelho de distância direito.
+	 *
+	 * @return valor do sensor de infravermelho de distância direito.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#INFRARED_DISTANCE} não foi lido.
+	 */
+	public int getInfraredDistanceRight() {
+		require(SensorKind.INFRARED_DISTANCE);
+
+		return infraredDistanceRight;
+	}
+
+	/**
+	 * Retorna a distância medida pelo sensor de ultrassom frontal.
+	 *
+	 * @return distância medida pelo sensor de ultrassom frontal.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ULTRASONIC_DISTANCE} não foi lido.
+	 */
+	public int getUltrasonicDistanceFront() {
+		require(SensorKind.ULTRASONIC_DISTANCE);
+
+		return ultrasonicDistanceFront;
+	}
+
+	/**
+	 * Retorna a distância medida pelo sensor de ultrassom traseiro.
+	 *
+	 * @return distância medida pelo sensor de ultrassom traseiro.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ULTRASONIC_DISTANCE} não foi lido.
+	 */
+	public int getUltrasonicDistanceRear() {
+		require(SensorKind.ULTRASONIC_DISTANCE);
+
+		return ultrasonicDistanceRear;
+	}
+
+	/**
+	 * Retorna a distância medida pelo sensor de ultrassom esquerdo.
+	 *
+	 * @return distância medida pelo sensor de ultrassom esquerdo.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ULTRASONIC_DISTANCE} não foi lido.
+	 */
+	public int getUltrasonicDistanceLeft() {
+		require(SensorKind.ULTRASONIC_DISTANCE);
+
+		return ultrasonicDistanceLeft;
+	}
+
+	/**
+	 * Retorna a distância medida pelo sensor de ultrassom direito.
+	 *
+	 * @return distância medida pelo sensor de ultrassom direito.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ULTRASONIC_DISTANCE} não foi lido.
+	 */
+	public int getUltrasonicDistanceRight() {
+		require(SensorKind.ULTRASONIC_DISTANCE);
+
+		return ultrasonicDistanceRight;
+	}
+
+	/**
+	 * Retorna a luminosidade medida pelo sensor de ultrassom frontal.
+	 *
+	 * @return luminosidade medida pelo sensor de ultrassom frontal.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ULTRASONIC_LUMINOSITY} não foi lido.
+	 */
+	public int getUltrasonicLuminosityFront() {
+		require(SensorKind.ULTRASONIC_LUMINOSITY);
+
+		return ultrasonicLuminosityFront;
+	}
+
+	/**
+	 * Retorna a luminosidade medida pelo sensor de ultrassom traseiro.
+	 *
+	 * @return luminosidade medida pelo sensor de ultrassom traseiro.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ULTRASONIC_LUMINOSITY} não foi lido.
+	 */
+	public int getUltrasonicLuminosityRear() {
+		require(SensorKind.ULTRASONIC_LUMINOSITY);
+
+		return ultrasonicLuminosityRear;
+	}
+
+	/**
+	 * Retorna a luminosidade medida pelo sensor de ultrassom esquerdo.
+	 *
+	 * @return luminosidade medida pelo sensor de ultrassom esquerdo.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ULTRASONIC_LUMINOSITY} não foi lido.
+	 */
+	public int getUltrasonicLuminosityLeft() {
+		require(SensorKind.ULTRASONIC_LUMINOSITY);
+
+		return ultrasonicLuminosityLeft;
+	}
+
+	/**
+	 * Retorna a luminosidade medida pelo sensor de ultrassom direito.
+	 *
+	 * @return luminosidade medida pelo sensor de ultrassom direito.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ULTRASONIC_LUMINOSITY} não foi lido.
+	 */
+	public int getUltrasonicLuminosityRight() {
+		require(SensorKind.ULTRASONIC_LUMINOSITY);
+
+		return ultrasonicLuminosityRight;
+	}
+
+	/**
+	 * Retorna o ângulo da bússola, em décimos de graus (de 0 até 3599).
+	 *
+	 * @return ângulo da bússola, em décimos de graus (de 0 até 3599).
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#COMPASS} não foi lido.
+	 */
+	public int getCompass() {
+		require(SensorKind.COMPASS);
+
+		return compass;
+	}
+
+	/**
+	 * Retorna a aceleração no eixo x, em décimos de milésimos de "g".
+	 *
+	 * @return aceleração no eixo x, em décimos de milésimos de "g".
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ACCELEROMETER} não foi lido.
+	 */
+	public int getAccelerometerX() {
+		require(SensorKind.ACCELEROMETER);
+
+		return accelerometerX;
+	}
+
+	/**
+	 * Retorna a aceleração no eixo y, em décimos de milésimos de "g".
+	 *
+	 * @return aceleração no eixo y, em décimos de milésimos de "g".
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ACCELEROMETER} não foi lido.
+	 */
+	public int getAccelerometerY() {
+		require(SensorKind.ACCELEROMETER);
+
+		return accelerometerY;
+	}
+
+	/**
+	 * Retorna a aceleração no eixo z, em décimos de milésimos de "g".
+	 *
+	 * @return aceleração no eixo z, em décimos de milésimos de "g".
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#ACCELEROMETER} não foi lido.
+	 */
+	public int getAccelerometerZ() {
+		require(SensorKind.ACCELEROMETER);
+
+		return accelerometerZ;
+	}
+
+	/**
+	 * Retorna o valor do sensor de temperatura.
+	 *
+	 * @return valor do sensor de temperatura.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#TEMPERATURE_AND_HUMIDITY} não foi lido.
+	 */
+	public int getTemperature() {
+		require(SensorKind.TEMPERATURE_AND_HUMIDITY);
+
+		return temperature;
+	}
+
+	/**
+	 * Retorna o valor do sensor de umidade.
+	 *
+	 * @return valor do sensor de umidade.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#TEMPERATURE_AND_HUMIDITY} não foi lido.
+	 */
+	public int getHumidity() {
+		require(SensorKind.TEMPERATURE_AND_HUMIDITY);
+
+		return humidity;
+	}
+
+	/**
+	 * Informa se há objeto à frente de algum dos sensores óticos.
+	 *
+	 * @return true se há objeto à frente de algum dos sensores óticos.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#COLLISION} não foi lido.
+	 */
+	public boolean isCollision() {
+		require(SensorKind.COLLISION);
+
+		return collision;
+	}
+
+	/**
+	 * Retorna o nível da bateria.
+	 *
+	 * @return nível da bateria.
+	 *
+	 * @throws IllegalStateException se {@link SensorKind#BATTERY} não foi lido.
+	 */
+	public int getBatteryLevel() {
+		require(SensorKind.BATTERY);
+
+		return batteryLevel;
+	}
+
+	/**
+	 * Garante que o sensor foi lido.
+	 */
+	private void require(SensorKind kind) {
+
+		if (!kinds.contains(kind)) {
+			throw new IllegalStateException("O sensor " + kind + " não foi lido neste instantâneo.");
+		}
+
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer str = new StringBuffer("SensorSnapshot" + kinds + ":");
+
+		if (contains(SensorKind.INFRARED_DEPTH)) {
+			str.append(" INFRARED_DEPTH=" + infraredDepthFront + "/" + infraredDepthRear);
+		}
+
+		if (contains(SensorKind.INFRARED_DISTANCE)) {
+			str.append(" INFRARED_DISTANCE=" + infraredDistanceLeft + "/" + infraredDistanceRight);
+		}
+
+		if (contains(SensorKind.ULTRASONIC_DISTANCE)) {
+			str.append(" ULTRASONIC_DISTANCE=" + ultrasonicDistanceFront + "/" + ultrasonicDistanceRear + "/" + ultrasonicDistanceLeft + "/" + ultrasonicDistanceRight);
+		}
+
+		if (contains(SensorKind.ULTRASONIC_LUMINOSITY)) {
+			str.append(" ULTRASONIC_LUMINOSITY=" + ultrasonicLuminosityFront + "/" + ultrasonicLuminosityRear + "/" + ultrasonicLuminosityLeft + "/" + ultrasonicLuminosityRight);
+		}
+
+		if (contains(SensorKind.COMPASS)) {
+			str.append(" COMPASS=" + compass);
+		}
+
+		if (contains(SensorKind.ACCELEROMETER)) {
+			str.append(" ACCELEROMETER=" + accelerometerX + "/" + accelerometerY + "/" + accelerometerZ);
+		}
+
+		if (contains(SensorKind.TEMPERATURE_AND_HUMIDITY)) {
+			str.append(" TEMPERATURE_AND_HUMIDITY=" + temperature + "/" + humidity);
+		}
+
+		if (contains(SensorKind.COLLISION)) {
+			str.append(" COLLISION=" + collision);
+		}
+
+		if (contains(SensorKind.BATTERY)) {
+			str.append(" BATTERY=" + batteryLevel);
+		}
+
+		return str.toString();
+	}
+
+	/**
+	 * Monta um {@link SensorSnapshot} à medida que as respostas dos sensores chegam.
+	 */
+	public static final class Builder {
+
+		private final EnumSet<SensorKind> kinds = EnumSet.noneOf(SensorKind.class);
+
+		private final long[] timestamps = new long[SensorKind.values().length];
+
+		private int infraredDepthFront, infraredDepthRear;
+
+		private int infraredDistanceLeft, infraredDistanceRight;
+
+		private int ultrasonicDistanceFront, ultrasonicDistanceRear, ultrasonicDistanceLeft, ultrasonicDistanceRight;
+
+		private int ultrasonicLuminosityFront, ultrasonicLuminosityRear, ultrasonicLuminosityLeft, ultrasonicLuminosityRight;
+
+		private int compass;
+
+		private int accelerometerX, accelerometerY, accelerometerZ;
+
+		private int temperature, humidity;
+
+		private boolean collision;
+
+		private int batteryLevel;
+
+		/**
+		 * Define os valores de {@link SensorKind#INFRARED_DEPTH}.
+		 *
+		 * @param infraredDepthFront Valor do sensor de infravermelho de profundidade dianteiro.
+		 * @param infraredDepthRear Valor do sensor de infravermelho de profundidade traseiro.
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder infraredDepth(int infraredDepthFront, int infraredDepthRear, long timestamp) {
+			this.infraredDepthFront = infraredDepthFront;
+			this.infraredDepthRear = infraredDepthRear;
+
+			return received(SensorKind.INFRARED_DEPTH, timestamp);
+		}
+
+		/**
+		 * Define os valores de {@link SensorKind#INFRARED_DISTANCE}.
+		 *
+		 * @param infraredDistanceLeft Valor do sensor de infravermelho de distância esquerdo.
+		 * @param infraredDistanceRight Valor do sensor de infravermelho de distância direito.
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder infraredDistance(int infraredDistanceLeft, int infraredDistanceRight, long timestamp) {
+			this.infraredDistanceLeft = infraredDistanceLeft;
+			this.infraredDistanceRight = infraredDistanceRight;
+
+			return received(SensorKind.INFRARED_DISTANCE, timestamp);
+		}
+
+		/**
+		 * Define os valores de {@link SensorKind#ULTRASONIC_DISTANCE}.
+		 *
+		 * @param ultrasonicDistanceFront Distância medida pelo sensor de ultrassom frontal.
+		 * @param ultrasonicDistanceRear Distância medida pelo sensor de ultrassom traseiro.
+		 * @param ultrasonicDistanceLeft Distância medida pelo sensor de ultrassom esquerdo.
+		 * @param ultrasonicDistanceRight Distância medida pelo sensor de ultrassom direito.
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder ultrasonicDistance(int ultrasonicDistanceFront, int ultrasonicDistanceRear, int ultrasonicDistanceLeft, int ultrasonicDistanceRight, long timestamp) {
+			this.ultrasonicDistanceFront = ultrasonicDistanceFront;
+			this.ultrasonicDistanceRear = ultrasonicDistanceRear;
+			this.ultrasonicDistanceLeft = ultrasonicDistanceLeft;
+			this.ultrasonicDistanceRight = ultrasonicDistanceRight;
+
+			return received(SensorKind.ULTRASONIC_DISTANCE, timestamp);
+		}
+
+		/**
+		 * Define os valores de {@link SensorKind#ULTRASONIC_LUMINOSITY}.
+		 *
+		 * @param ultrasonicLuminosityFront Luminosidade medida pelo sensor de ultrassom frontal.
+		 * @param ultrasonicLuminosityRear Luminosidade medida pelo sensor de ultrassom traseiro.
+		 * @param ultrasonicLuminosityLeft Luminosidade medida pelo sensor de ultrassom esquerdo.
+		 * @param ultrasonicLuminosityRight Luminosidade medida pelo sensor de ultrassom direito.
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder ultrasonicLuminosity(int ultrasonicLuminosityFront, int ultrasonicLuminosityRear, int ultrasonicLuminosityLeft, int ultrasonicLuminosityRight, long timestamp) {
+			this.ultrasonicLuminosityFront = ultrasonicLuminosityFront;
+			this.ultrasonicLuminosityRear = ultrasonicLuminosityRear;
+			this.ultrasonicLuminosityLeft = ultrasonicLuminosityLeft;
+			this.ultrasonicLuminosityRight = ultrasonicLuminosityRight;
+
+			return received(SensorKind.ULTRASONIC_LUMINOSITY, timestamp);
+		}
+
+		/**
+		 * Define os valores de {@link SensorKind#COMPASS}.
+		 *
+		 * @param compass Ângulo da bússola, em décimos de graus (de 0 até 3599).
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder compass(int compass, long timestamp) {
+			this.compass = compass;
+
+			return received(SensorKind.COMPASS, timestamp);
+		}
+
+		/**
+		 * Define os valores de {@link SensorKind#ACCELEROMETER}.
+		 *
+		 * @param accelerometerX Aceleração no eixo x, em décimos de milésimos de "g".
+		 * @param accelerometerY Aceleração no eixo y, em décimos de milésimos de "g".
+		 * @param accelerometerZ Aceleração no eixo z, em décimos de milésimos de "g".
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder accelerometer(int accelerometerX, int accelerometerY, int accelerometerZ, long timestamp) {
+			this.accelerometerX = accelerometerX;
+			this.accelerometerY = accelerometerY;
+			this.accelerometerZ = accelerometerZ;
+
+			return received(SensorKind.ACCELEROMETER, timestamp);
+		}
+
+		/**
+		 * Define os valores de {@link SensorKind#TEMPERATURE_AND_HUMIDITY}.
+		 *
+		 * @param temperature Valor do sensor de temperatura.
+		 * @param humidity Valor do sensor de umidade.
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder temperatureAndHumidity(int temperature, int humidity, long timestamp) {
+			this.temperature = temperature;
+			this.humidity = humidity;
+
+			return received(SensorKind.TEMPERATURE_AND_HUMIDITY, timestamp);
+		}
+
+		/**
+		 * Define os valores de {@link SensorKind#COLLISION}.
+		 *
+		 * @param collision Presença de objeto à frente de algum dos sensores óticos.
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder collision(boolean collision, long timestamp) {
+			this.collision = collision;
+
+			return received(SensorKind.COLLISION, timestamp);
+		}
+
+		/**
+		 * Define os valores de {@link SensorKind#BATTERY}.
+		 *
+		 * @param batteryLevel Nível da bateria.
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder battery(int batteryLevel, long timestamp) {
+			this.batteryLevel = batteryLevel;
+
+			return received(SensorKind.BATTERY, timestamp);
+		}
+
+		/**
+		 * Define os valores de um sensor a partir de um array, na ordem dos parâmetros do método específico do sensor
+		 * (a colisão é 1 se detectada e 0 caso contrário).
+		 *
+		 * @param kind Sensor.
+		 * @param values Valores do sensor, pelo menos {@link SensorKind#getValueCount()}.
+		 * @param timestamp Instante de recebimento da resposta, em {@link System#nanoTime()}.
+		 *
+		 * @return este construtor.
+		 */
+		public Builder values(SensorKind kind, int[] values, long timestamp) {
+
+			switch (kind) {
+			case INFRARED_DEPTH:
+				return infraredDepth(values[0], values[1], timestamp);
+			case INFRARED_DISTANCE:
+				return infraredDistance(values[0], values[1], timestamp);
+			case ULTRASONIC_DISTANCE:
+				return ultrasonicDistance(values[0], values[1], values[2], values[3], timestamp);
+			case ULTRASONIC_LUMINOSITY:
+				return ultrasonicLuminosity(values[0], values[1], values[2], values[3], timestamp);
+			case COMPASS:
+				return compass(values[0], timestamp);
+			case ACCELEROMETER:
+				return accelerometer(values[0], values[1], values[2], timestamp);
+			case TEMPERATURE_AND_HUMIDITY:
+				return temperatureAndHumidity(values[0], values[1], timestamp);
+			case COLLISION:
+				return collision(values[0] != 0, timestamp);
+			default:
+				return battery(values[0], timestamp);
+			}
+
+		}
+
+		/**
+		 * Cria o instantâneo com os valores definidos até aqui.
+		 *
+		 * @return o instantâneo.
+		 */
+		public SensorSnapshot build() {
+			return new SensorSnapshot(this);
+		}
+
+		/**
+		 * Marca o sensor como lido.
+		 */
+		private Builder received(SensorKind kind, long timestamp) {
+			kinds.add(kind);
+			timestamps[kind.ordinal()] = timestamp;
+
+			return this;
+		}
+
+	}
+
+}
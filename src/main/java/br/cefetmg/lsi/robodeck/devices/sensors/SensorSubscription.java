@@ -0,0 +1,169 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Assinatura de um valor de sensor lido pelo {@link SensorPoller}.
+ *
+ * Uma assinatura de limite dispara quando o valor passa a satisfazer a condição (inclusive na primeira leitura, se ele
+ * já a satisfaz) e só volta a disparar depois que o valor deixar de satisfazê-la. Uma assinatura de mudança dispara
+ * quando o valor se afasta do último valor notificado por pelo menos a mudança mínima.
+ */
+public final class SensorSubscription {
+
+	/**
+	 * Leitor que avalia a assinatura.
+	 */
+	private final SensorPoller poller;
+
+	/**
+	 * Sensor assinado.
+	 */
+	private final SensorKind kind;
+
+	/**
+	 * Posição do valor assinado no sensor.
+	 */
+	private final int position;
+
+	/**
+	 * Condição de uma assinatura de limite, ou nula numa assinatura de mudança.
+	 */
+	private final SensorCondition condition;
+
+	/**
+	 * Menor mudança notificada numa assinatura de mudança.
+	 */
+	private final int minDelta;
+
+	/**
+	 * Recebe os disparos.
+	 */
+	private final SensorListener listener;
+
+	/**
+	 * Para saber se a condição estava satisfeita na última leitura.
+	 */
+	private boolean satisfied;
+
+	/**
+	 * Último valor notificado, numa assinatura de mudança.
+	 */
+	private int lastValue;
+
+	/**
+	 * Para saber se nenhuma leitura foi avaliada ainda.
+	 */
+	private boolean first = true;
+
+	/**
+	 * Para saber se a assinatura foi cancelada.
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param owner Leitor que avalia a assinatura.
+	 * @param sensorKind Sensor assinado.
+	 * @param valuePosition Posição do valor assinado no sensor.
+	 * @param valueCondition Condição de uma assinatura de limite, ou nula numa assinatura de mudança.
+	 * @param valueMinDelta Menor mudança notificada numa assinatura de mudança.
+	 * @param valueListener Recebe os disparos.
+	 */
+	SensorSubscription(SensorPoller owner, SensorKind sensorKind, int valuePosition, SensorCondition valueCondition,
+			int valueMinDelta, SensorListener valueListener) {
+
+		if ((valuePosition < 0) || (valuePosition >= sensorKind.getValueCount())) {
+			throw new IndexOutOfBoundsException("O sensor " + sensorKind + " não tem o valor " + valuePosition + ".");
+		}
+
+		poller = owner;
+		kind = sensorKind;
+		position = valuePosition;
+		condition = valueCondition;
+		minDelta = valueMinDelta;
+		listener = valueListener;
+	}
+
+	/**
+	 * Retorna o sensor assinado.
+	 *
+	 * @return o sensor.
+	 */
+	public SensorKind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Retorna a posição do valor assinado no sensor.
+	 *
+	 * @return a posição do valor.
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Cancela a assinatura. Um disparo já entregue ao executor não chega ao ouvinte.
+	 */
+	public void cancel() {
+
+		if (!cancelled) {
+			cancelled = true;
+			poller.unsubscribe(this);
+		}
+
+	}
+
+	/**
+	 * Para saber se a assinatura foi cancelada.
+	 *
+	 * @return true se a assinatura foi cancelada.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Avalia a assinatura com os valores que acabaram de chegar e, se ela disparar, entrega o disparo ao executor.
+	 *
+	 * @param sensorValues Valores do sensor.
+	 * @param timestamp Instante de recebimento dos valores, em {@link System#nanoTime()}.
+	 * @param pollerExecutor Executor das notificações do leitor.
+	 */
+	void evaluate(int[] sensorValues, final long timestamp, Executor pollerExecutor) {
+		final int value = sensorValues[position];
+		boolean fire;
+
+		synchronized (this) {
+
+			if (condition != null) {
+				boolean now = condition.test(value);
+				fire = now && !satisfied;
+				satisfied = now;
+			} else {
+				fire = !first && (Math.abs(value - lastValue) >= minDelta);
+
+				if (fire || first) {
+					lastValue = value;
+				}
+
+			}
+
+			first = false;
+		}
+
+		if (fire && !cancelled) {
+			pollerExecutor.execute(() -> {
+
+				if (!cancelled) {
+					listener.onValue(kind, position, value, timestamp);
+				}
+
+			});
+		}
+
+	}
+
+}
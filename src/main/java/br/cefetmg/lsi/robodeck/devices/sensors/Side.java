@@ -0,0 +1,28 @@
+package br.cefetmg.lsi.robodeck.devices.sensors;
+
+/**
+ * Lados do robô onde ficam os sensores de ultrassom, na ordem em que os seus valores são lidos.
+ */
+public enum Side {
+
+	/**
+	 * Sensor frontal.
+	 */
+	FRONT,
+
+	/**
+	 * Sensor traseiro.
+	 */
+	REAR,
+
+	/**
+	 * Sensor esquerdo.
+	 */
+	LEFT,
+
+	/**
+	 * Sensor direito.
+	 */
+	RIGHT
+
+}
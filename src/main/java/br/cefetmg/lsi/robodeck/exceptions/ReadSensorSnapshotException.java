@@ -0,0 +1,13 @@
+package br.cefetmg.lsi.robodeck.exceptions;
+
+public class ReadSensorSnapshotException extends Exception {
+	private static final long serialVersionUID = 4306127746820952381L;
+
+	public ReadSensorSnapshotException(String text) {
+		super(text);
+	}	
+
+	public ReadSensorSnapshotException(String text, Throwable cause) {
+		super(text, cause);
+	}	
+}
@@ -0,0 +1,13 @@
+package br.cefetmg.lsi.robodeck.exceptions;
+
+public class StreamCommandException extends Exception {
+	private static final long serialVersionUID = 6210348859137264015L;
+
+	public StreamCommandException(String text) {
+		super(text);
+	}	
+
+	public StreamCommandException(String text, Throwable cause) {
+		super(text, cause);
+	}	
+}
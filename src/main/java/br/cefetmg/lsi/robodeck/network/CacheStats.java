@@ -0,0 +1,103 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contabilidade do cache de leituras de um sensor.
+ *
+ * @see RobotConnection#getCacheStats(String)
+ */
+public class CacheStats {
+
+	/**
+	 * Nome do sensor no cache.
+	 */
+	private final String sensor;
+
+	/**
+	 * Número de leituras servidas pelo cache.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * Número de leituras enviadas ao robô porque o cache ainda não tinha valor.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Número de leituras enviadas ao robô porque o valor do cache era mais antigo que a idade máxima.
+	 */
+	private final AtomicLong stale = new AtomicLong();
+
+	/**
+	 * Construtor.
+	 *
+	 * @param sensorName Nome do sensor no cache.
+	 */
+	CacheStats(String sensorName) {
+		sensor = sensorName;
+	}
+
+	/**
+	 * Registra uma leitura servida pelo cache.
+	 */
+	void hit() {
+		hits.incrementAndGet();
+	}
+
+	/**
+	 * Registra uma leitura enviada porque o cache não tinha valor.
+	 */
+	void miss() {
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Registra uma leitura enviada porque o valor do cache estava vencido.
+	 */
+	void stale() {
+		stale.incrementAndGet();
+	}
+
+	/**
+	 * Retorna o nome do sensor no cache.
+	 *
+	 * @return o nome do sensor.
+	 */
+	public String getSensor() {
+		return sensor;
+	}
+
+	/**
+	 * Retorna o número de leituras servidas pelo cache.
+	 *
+	 * @return o número de acertos.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Retorna o número de leituras enviadas ao robô porque o cache ainda não tinha valor.
+	 *
+	 * @return o número de faltas.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Retorna o número de leituras enviadas ao robô porque o valor do cache era mais antigo que a idade máxima.
+	 *
+	 * @return o número de valores vencidos.
+	 */
+	public long getStale() {
+		return stale.get();
+	}
+
+	@Override
+	public String toString() {
+		return sensor + ": acertos=" + getHits() + " faltas=" + getMisses() + " vencidos=" + getStale();
+	}
+
+}
@@ -0,0 +1,192 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Contexto do canal da câmera de um robô atendido pelo {@link ConnectionEngine}.
+ *
+ * A thread de E/S lê as imagens para um buffer direto, e quem consome as imagens as lê do {@link InputStream}
+ * retornado por {@link #getInputStream()}, como faria com o fluxo de um soquete comum. Quando o buffer enche, o canal
+ * deixa de ser lido até que o consumidor libere espaço, de forma que uma câmera lenta de ser consumida não atrasa os
+ * demais canais da thread de E/S.
+ */
+class CameraChannelContext extends ChannelContext {
+
+	/**
+	 * Tamanho do buffer de recebimento das imagens.
+	 */
+	private static final int BUFFER_LENGTH = 64 * 1024;
+
+	/**
+	 * Bytes recebidos e ainda não consumidos. Fica sempre em modo de escrita e só é usado com o monitor deste contexto.
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_LENGTH);
+
+	/**
+	 * Para saber se o servidor de imagens encerrou a conexão.
+	 */
+	private boolean endOfStream;
+
+	/**
+	 * Falha da leitura do canal, entregue ao consumidor quando os bytes recebidos acabarem.
+	 */
+	private IOException failure;
+
+	/**
+	 * Fluxo de dados da câmera.
+	 */
+	private final InputStream inputStream = new CameraInputStream();
+
+	/**
+	 * Construtor.
+	 *
+	 * @param socketChannel Canal da câmera, em modo não bloqueante.
+	 * @param ioLoop Thread de E/S à qual o canal pertence.
+	 */
+	CameraChannelContext(SocketChannel socketChannel, ConnectionEngine.IoLoop ioLoop) {
+		super(socketChannel, ioLoop);
+	}
+
+	/**
+	 * Retorna o fluxo de dados da câmera.
+	 *
+	 * @return o fluxo de dados da câmera.
+	 */
+	InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/**
+	 * Lê os bytes disponíveis para o buffer, deixando de ler o canal se o buffer encher.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	synchronized void onReadable() throws IOException {
+
+		if (channel.read(buffer) < 0) {
+			endOfStream = true;
+			closeQuietly();
+		} else if (!buffer.hasRemaining()) {
+			interest(0);
+		}
+
+		notifyAll();
+	}
+
+	/**
+	 * Fecha o canal e entrega a falha ao consumidor.
+	 *
+	 * @param cause Causa da falha.
+	 */
+	@Override
+	synchronized void onFailure(IOException cause) {
+		failure = cause;
+		super.onFailure(cause);
+		notifyAll();
+	}
+
+	/**
+	 * Fecha o canal, desbloqueando o consumidor.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	synchronized void close() throws IOException {
+		endOfStream = true;
+		super.close();
+		notifyAll();
+	}
+
+	/**
+	 * Copia para "b" os bytes recebidos, bloqueando enquanto não houver nenhum.
+	 *
+	 * @return o número de bytes copiados, ou -1 no fim do fluxo.
+	 *
+	 * @throws IOException
+	 */
+	private synchronized int read(byte[] b, int off, int len) throws IOException {
+
+		if (len == 0) {
+			return 0;
+		}
+
+		while ((buffer.position() == 0) && !endOfStream && (failure == null)) {
+
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Leitura da câmera interrompida.");
+			}
+
+		}
+
+		if (buffer.position() == 0) {
+
+			if (failure != null) {
+				throw failure;
+			}
+
+			return -1;
+		}
+
+		boolean wasFull = !buffer.hasRemaining();
+
+		buffer.flip();
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		buffer.compact();
+
+		if (wasFull && !endOfStream) {
+			interest(SelectionKey.OP_READ);
+		}
+
+		return n;
+	}
+
+	/**
+	 * Retorna o número de bytes que podem ser lidos sem bloquear.
+	 */
+	private synchronized int available() {
+		return buffer.position();
+	}
+
+	/**
+	 * Fluxo de dados da câmera, alimentado pela thread de E/S.
+	 */
+	private class CameraInputStream extends InputStream {
+
+		/**
+		 * Usado por {@link #read()}.
+		 */
+		private final byte[] single = new byte[1];
+
+		@Override
+		public int read() throws IOException {
+			return (read(single, 0, 1) < 0) ? -1 : (single[0] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return CameraChannelContext.this.read(b, off, len);
+		}
+
+		@Override
+		public int available() {
+			return CameraChannelContext.this.available();
+		}
+
+		@Override
+		public void close() throws IOException {
+			CameraChannelContext.this.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,145 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Estado de um canal atendido pelo {@link ConnectionEngine}. Cada canal registrado no seletor tem o seu contexto,
+ * anexado à sua {@link SelectionKey}, que guarda tudo o que diz respeito apenas àquele canal (buffers, escritas
+ * pendentes, a conexão com o robô etc.).
+ *
+ * Os métodos "on*" são chamados apenas pela thread de E/S à qual o canal pertence.
+ *
+ * @see CommandChannelContext
+ * @see CameraChannelContext
+ */
+abstract class ChannelContext {
+
+	/**
+	 * Canal atendido.
+	 */
+	protected final SocketChannel channel;
+
+	/**
+	 * Thread de E/S à qual o canal pertence.
+	 */
+	protected final ConnectionEngine.IoLoop loop;
+
+	/**
+	 * Chave do canal no seletor da thread de E/S. Definida no registro.
+	 */
+	protected SelectionKey key;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param socketChannel Canal atendido, em modo não bloqueante.
+	 * @param ioLoop Thread de E/S à qual o canal pertence.
+	 */
+	ChannelContext(SocketChannel socketChannel, ConnectionEngine.IoLoop ioLoop) {
+		channel = socketChannel;
+		loop = ioLoop;
+	}
+
+	/**
+	 * Registra o canal no seletor da sua thread de E/S, aguardando o registro terminar.
+	 *
+	 * @param ops Operações de interesse iniciais.
+	 *
+	 * @throws IOException
+	 */
+	void register(int ops) throws IOException {
+		loop.register(this, ops);
+	}
+
+	/**
+	 * Altera as operações de interesse do canal. Pode ser chamado por qualquer thread.
+	 *
+	 * @param ops Novas operações de interesse.
+	 */
+	void interest(final int ops) {
+
+		if (Thread.currentThread() == loop.thread()) {
+
+			if (key.isValid()) {
+				key.interestOps(ops);
+			}
+
+		} else {
+			loop.execute(new Runnable() {
+				public void run() {
+					interest(ops);
+				}
+			});
+		}
+
+	}
+
+	/**
+	 * O canal tem bytes para serem lidos.
+	 *
+	 * @throws IOException
+	 */
+	abstract void onReadable() throws IOException;
+
+	/**
+	 * O canal pode receber mais bytes.
+	 *
+	 * @throws IOException
+	 */
+	void onWritable() throws IOException {
+		interest(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * A leitura ou a escrita no canal falhou. O canal é fechado.
+	 *
+	 * @param cause Causa da falha.
+	 */
+	void onFailure(IOException cause) {
+		closeQuietly();
+	}
+
+	/**
+	 * Fecha o canal e o retira do seletor.
+	 *
+	 * @throws IOException
+	 */
+	void close() throws IOException {
+
+		if (key != null) {
+			key.cancel();
+		}
+
+		channel.close();
+	}
+
+	/**
+	 * Fecha o canal ignorando falhas.
+	 */
+	protected void closeQuietly() {
+
+		try {
+			close();
+		} catch (IOException e) {
+			// O canal já está inutilizado.
+		}
+
+	}
+
+	/**
+	 * Lança {@link ClosedChannelException} se o canal já tiver sido fechado.
+	 *
+	 * @throws ClosedChannelException
+	 */
+	protected void ensureOpen() throws ClosedChannelException {
+
+		if (!channel.isOpen()) {
+			throw new ClosedChannelException();
+		}
+
+	}
+
+}
@@ -0,0 +1,193 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Lote de comandos enviados ao robô numa única escrita.
+ *
+ * Os comandos são gravados por {@link #record(Supplier)}: a variante assíncrona do comando é chamada normalmente, mas
+ * os pacotes que ela enviaria são guardados no lote em vez de irem para a rede. O resultado de cada comando é o
+ * próprio future retornado pela variante assíncrona, que é completado quando a resposta chega, depois de
+ * {@link #send()}.
+ *
+ * Em {@link #send()}, todos os pacotes recebem o seu PID, são escalonados juntos e escritos de uma só vez, de forma que
+ * N comandos custam um tempo de ida e volta em vez de N.
+ *
+ * Um lote só pode ser enviado uma vez e não deve ser usado por várias threads ao mesmo tempo.
+ *
+ * @see RobotConnection#newBatch()
+ */
+public class CommandBatch {
+
+	/**
+	 * Conexão pela qual o lote será enviado.
+	 */
+	private final RobotConnection connection;
+
+	/**
+	 * Pacotes gravados, na ordem de gravação.
+	 */
+	private final List<byte[]> frames = new ArrayList<byte[]>();
+
+	/**
+	 * Consumidor de cada pacote gravado.
+	 */
+	private final List<String> sources = new ArrayList<String>();
+
+	/**
+	 * Resposta futura de cada pacote gravado, completada depois do envio.
+	 */
+	private final List<CompletableFuture<byte[]>> replies = new ArrayList<CompletableFuture<byte[]>>();
+
+	/**
+	 * Resultado de cada comando gravado, o mesmo devolvido por {@link #record(Supplier)}.
+	 */
+	private final List<CompletableFuture<?>> results = new ArrayList<CompletableFuture<?>>();
+
+	/**
+	 * Classe de prioridade do lote: a mais alta entre a do lote e as dos pacotes gravados.
+	 */
+	private CommandPriority priority;
+
+	/**
+	 * Para saber se o lote já foi enviado.
+	 */
+	private boolean sent;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param robotConnection Conexão pela qual o lote será enviado.
+	 */
+	CommandBatch(RobotConnection robotConnection) {
+		this(robotConnection, CommandPriority.TELEMETRY);
+	}
+
+	/**
+	 * Construtor de um lote escalonado pelo menos na classe de prioridade dada.
+	 *
+	 * @param robotConnection Conexão pela qual o lote será enviado.
+	 * @param batchPriority Classe de prioridade mínima do lote.
+	 */
+	CommandBatch(RobotConnection robotConnection, CommandPriority batchPriority) {
+		connection = robotConnection;
+		priority = batchPriority;
+	}
+
+	/**
+	 * Grava um comando no lote.
+	 *
+	 * @param command Chama a variante assíncrona do comando na conexão deste lote.
+	 *
+	 * @return o resultado futuro do comando, completado depois de {@link #send()}.
+	 *
+	 * @throws IllegalStateException se o lote já foi enviado.
+	 */
+	public <T> CompletableFuture<T> record(Supplier<CompletableFuture<T>> command) {
+
+		if (sent) {
+			throw new IllegalStateException("O lote já foi enviado.");
+		}
+
+		CompletableFuture<T> result = connection.recordInto(this, command);
+		results.add(result);
+
+		return result;
+	}
+
+	/**
+	 * Retorna o número de pacotes gravados. Alguns comandos usam mais de um pacote (por exemplo, a leitura dos
+	 * sensores de ultrassom).
+	 *
+	 * @return o número de pacotes gravados.
+	 */
+	public int size() {
+		return frames.size();
+	}
+
+	/**
+	 * Envia todos os pacotes gravados numa única escrita.
+	 *
+	 * @return future completado quando o resultado de todos os comandos estiver pronto, inclusive os que dependem de
+	 * 			mais de uma resposta. Falha se algum comando falhar, inclusive por uma resposta com erro; o resultado
+	 * 			de cada comando continua disponível no seu próprio future.
+	 *
+	 * @throws IOException se não for possível escrever os pacotes. Os resultados de todos os comandos falham.
+	 * @throws InterruptedException
+	 * @throws IllegalStateException se o lote já foi enviado.
+	 */
+	public CompletableFuture<Void> send() throws IOException, InterruptedException {
+
+		if (sent) {
+			throw new IllegalStateException("O lote já foi enviado.");
+		}
+
+		sent = true;
+		CompletableFuture<Void> all = CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]));
+
+		if (frames.isEmpty()) {
+			return all;
+		}
+
+		try {
+			CompletableFuture<byte[]>[] answers = connection.sendBatch(frames.toArray(new byte[0][]), priority,
+					sources.toArray(new String[0]));
+
+			for (int i = 0; i < answers.length; i++) {
+				final CompletableFuture<byte[]> reply = replies.get(i);
+
+				answers[i].whenComplete((ans, failure) -> {
+
+					if (failure == null) {
+						reply.complete(ans);
+					} else {
+						reply.completeExceptionally(failure);
+					}
+
+				});
+			}
+
+		} catch (IOException | InterruptedException | RuntimeException e) {
+
+			for (CompletableFuture<byte[]> reply : replies) {
+				reply.completeExceptionally(e);
+			}
+
+			throw e;
+		}
+
+		return all;
+	}
+
+	/**
+	 * Guarda pacotes que seriam enviados, no lugar do envio.
+	 *
+	 * @param packs Pacotes.
+	 * @param packsPriority Classe de prioridade dos pacotes.
+	 * @param source Consumidor que envia os pacotes.
+	 *
+	 * @return as respostas futuras dos pacotes, completadas depois do envio do lote.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	CompletableFuture<byte[]>[] add(byte[][] packs, CommandPriority packsPriority, String source) {
+		CompletableFuture<byte[]>[] added = new CompletableFuture[packs.length];
+
+		for (int i = 0; i < packs.length; i++) {
+			added[i] = new CompletableFuture<byte[]>();
+			frames.add(packs[i]);
+			sources.add(source);
+			replies.add(added[i]);
+		}
+
+		if (packsPriority.compareTo(priority) < 0) {
+			priority = packsPriority;
+		}
+
+		return added;
+	}
+
+}
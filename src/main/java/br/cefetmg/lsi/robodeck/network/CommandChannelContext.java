@@ -0,0 +1,200 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Contexto do canal de comandos de um robô atendido pelo {@link ConnectionEngine}.
+ *
+ * Os pacotes são escritos diretamente no canal pela thread que envia o comando. Apenas quando o canal não aceita o
+ * pacote inteiro o restante fica pendente, e a thread de E/S o escreve quando o canal voltar a aceitar bytes. As
+ * respostas são lidas pela thread de E/S para um buffer direto reutilizado e entregues à conexão assim que cada pacote
+ * estiver completo.
+ */
+class CommandChannelContext extends ChannelContext {
+
+	/**
+	 * Tamanho máximo de um pacote: cabeçalho mais o maior valor do campo LEN.
+	 */
+	private static final int MAX_FRAME_LENGTH = PackageBuilder.HEADER_LENGTH + 0xFF;
+
+	/**
+	 * Conexão à qual o canal pertence.
+	 */
+	private final RobotConnection connection;
+
+	/**
+	 * Buffer reutilizado para escrever os pacotes. Só é usado com o monitor deste contexto.
+	 */
+	private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(MAX_FRAME_LENGTH);
+
+	/**
+	 * Buffer reutilizado para ler as respostas. Só é usado pela thread de E/S e fica sempre em modo de escrita.
+	 */
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * MAX_FRAME_LENGTH);
+
+	/**
+	 * Partes de pacotes que o canal ainda não aceitou, na ordem de envio. Só é usado com o monitor deste contexto.
+	 */
+	private final Queue<ByteBuffer> pendingWrites = new ArrayDeque<ByteBuffer>();
+
+	/**
+	 * Construtor.
+	 *
+	 * @param robotConnection Conexão à qual o canal pertence.
+	 * @param socketChannel Canal de comandos, em modo não bloqueante.
+	 * @param ioLoop Thread de E/S à qual o canal pertence.
+	 */
+	CommandChannelContext(RobotConnection robotConnection, SocketChannel socketChannel, ConnectionEngine.IoLoop ioLoop) {
+		super(socketChannel, ioLoop);
+		connection = robotConnection;
+	}
+
+	/**
+	 * Escreve um pacote no canal, sem bloquear.
+	 *
+	 * @param bytes Pacote a ser enviado.
+	 *
+	 * @throws IOException
+	 */
+	synchronized void write(byte[] bytes) throws IOException {
+		ensureOpen();
+
+		if (!pendingWrites.isEmpty()) {
+			pendingWrites.add(ByteBuffer.wrap(bytes));
+			return;
+		}
+
+		writeBuffer.clear();
+		writeBuffer.put(bytes);
+		writeBuffer.flip();
+		channel.write(writeBuffer);
+
+		if (writeBuffer.hasRemaining()) {
+			byte[] rest = new byte[writeBuffer.remaining()];
+			writeBuffer.get(rest);
+			pendingWrites.add(ByteBuffer.wrap(rest));
+			interest(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+
+	}
+
+	/**
+	 * Escreve vários pacotes no canal numa única escrita agrupada ("gathering write"), sem bloquear. O que o canal
+	 * não aceitar fica pendente, como em {@link #write(byte[])}.
+	 *
+	 * @param frames Pacotes a serem enviados.
+	 *
+	 * @throws IOException
+	 */
+	synchronized void write(byte[][] frames) throws IOException {
+		ensureOpen();
+		ByteBuffer[] buffers = new ByteBuffer[frames.length];
+
+		for (int i = 0; i < frames.length; i++) {
+			buffers[i] = ByteBuffer.wrap(frames[i]);
+		}
+
+		if (pendingWrites.isEmpty()) {
+			channel.write(buffers);
+		}
+
+		boolean wasEmpty = pendingWrites.isEmpty();
+
+		for (ByteBuffer buffer : buffers) {
+
+			if (buffer.hasRemaining()) {
+				pendingWrites.add(buffer);
+			}
+
+		}
+
+		if (wasEmpty && !pendingWrites.isEmpty()) {
+			interest(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+
+	}
+
+	/**
+	 * Escreve as partes pendentes que o canal aceitar.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	synchronized void onWritable() throws IOException {
+		ByteBuffer pending;
+
+		while ((pending = pendingWrites.peek()) != null) {
+			channel.write(pending);
+
+			if (pending.hasRemaining()) {
+				return;
+			}
+
+			pendingWrites.poll();
+		}
+
+		interest(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Lê os bytes disponíveis e entrega à conexão cada pacote completo.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	void onReadable() throws IOException {
+
+		if (channel.read(readBuffer) < 0) {
+			throw new IOException("A conexão com o robô foi encerrada.");
+		}
+
+		readBuffer.flip();
+
+		while (readBuffer.remaining() >= PackageBuilder.HEADER_LENGTH) {
+			int frameLength = PackageBuilder.HEADER_LENGTH + (readBuffer.get(readBuffer.position() + 9) & 0xFF);
+
+			if (readBuffer.remaining() < frameLength) {
+				break;
+			}
+
+			byte[] frame = new byte[frameLength];
+			readBuffer.get(frame);
+			connection.dispatchFrame(frame);
+		}
+
+		readBuffer.compact();
+	}
+
+	/**
+	 * Fecha o canal e faz falhar os comandos que aguardam resposta.
+	 *
+	 * @param cause Causa da falha.
+	 */
+	@Override
+	void onFailure(IOException cause) {
+
+		if (channel.isOpen()) {
+			System.err.println("Falha na conexão com o robô. Erro: " + cause.getMessage());
+		}
+
+		super.onFailure(cause);
+		connection.receivingFailed(cause);
+	}
+
+	/**
+	 * Fecha o canal, descartando as escritas pendentes.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	synchronized void close() throws IOException {
+		pendingWrites.clear();
+		super.close();
+	}
+
+}
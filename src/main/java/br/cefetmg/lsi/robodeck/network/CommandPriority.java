@@ -0,0 +1,28 @@
+package br.cefetmg.lsi.robodeck.network;
+
+/**
+ * Classes de prioridade dos comandos enviados ao robô, da mais alta para a mais baixa.
+ *
+ * Quando o pipeline está cheio, a próxima vaga liberada vai sempre para um comando da classe mais alta que estiver
+ * aguardando. Dentro de uma mesma classe, os comandos são enviados na ordem em que chegaram.
+ *
+ * @see RobotConnection#getQueueWaitLatency(CommandPriority)
+ */
+public enum CommandPriority {
+
+	/**
+	 * Comandos de segurança, como a frenagem.
+	 */
+	SAFETY,
+
+	/**
+	 * Comandos de movimento (move, turn, strafe, spin).
+	 */
+	MOTION,
+
+	/**
+	 * Leituras de sensores e demais comandos.
+	 */
+	TELEMETRY
+
+}
@@ -0,0 +1,308 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Atende as conexões de vários robôs com um número pequeno e fixo de threads de E/S.
+ *
+ * Cada thread de E/S tem o seu {@link Selector} e atende, de forma não bloqueante, os canais de comandos e os canais
+ * da câmera de todos os robôs que lhe foram atribuídos. As respostas são lidas e entregues aos comandos pela própria
+ * thread de E/S, de forma que nenhuma conexão mantém threads bloqueadas esperando pela rede.
+ *
+ * O estado de cada robô (SID, contador de PID, buffers etc.) fica no contexto do seu canal ({@link ChannelContext})
+ * e na sua conexão, nunca em campos estáticos. Assim, uma mesma JVM pode controlar vários robôs ao mesmo tempo.
+ *
+ * Exemplo:
+ *
+ * <pre>
+ * ConnectionEngine engine = new ConnectionEngine(2);
+ * Robot robot1 = new Robot(engine.openConnection("192.168.1.11", 2000, 2, 1));
+ * Robot robot2 = new Robot(engine.openConnection("192.168.1.12", 2000, 2, 1));
+ * </pre>
+ *
+ * As ações encadeadas aos resultados das operações assíncronas rodam nas threads de E/S e não devem bloquear.
+ *
+ * @see RobotEngineNetwork
+ */
+public class ConnectionEngine {
+
+	/**
+	 * Threads de E/S.
+	 */
+	private final IoLoop[] loops;
+
+	/**
+	 * Usado para distribuir os canais entre as threads de E/S.
+	 */
+	private final AtomicInteger nextLoop = new AtomicInteger();
+
+	/**
+	 * Cria o motor com o número de threads de E/S dado por "robot.network.engine.ioThreads".
+	 *
+	 * @throws IOException
+	 */
+	public ConnectionEngine() throws IOException {
+		this(Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.engine.ioThreads", "1")));
+	}
+
+	/**
+	 * Cria o motor.
+	 *
+	 * @param ioThreads Número de threads de E/S.
+	 *
+	 * @throws IOException
+	 */
+	public ConnectionEngine(int ioThreads) throws IOException {
+
+		if (ioThreads < 1) {
+			throw new IllegalArgumentException("O número de threads de E/S deve ser positivo: " + ioThreads);
+		}
+
+		loops = new IoLoop[ioThreads];
+
+		for (int i = 0; i < ioThreads; i++) {
+			loops[i] = new IoLoop(i);
+		}
+
+	}
+
+	/**
+	 * Cria uma conexão wifi com um robô, atendida por este motor. A conexão só é estabelecida em
+	 * {@link RobotConnection#connect()}.
+	 *
+	 * @param host Endereço do robô.
+	 * @param port Porta de conexão com o robô.
+	 * @param src Identificador do remetente dos pacotes.
+	 * @param dst Identificador do destinatário dos pacotes.
+	 *
+	 * @return a conexão com o robô.
+	 *
+	 * @throws UnknownHostException
+	 * @throws PortUnreachableException
+	 */
+	public RobotConnection openConnection(String host, int port, int src, int dst) throws UnknownHostException, PortUnreachableException {
+		return new RobotEngineNetwork(this, host, port, new PackageBuilder(src, dst));
+	}
+
+	/**
+	 * Encerra as threads de E/S, fechando todos os canais que ainda estiverem abertos.
+	 */
+	public void shutdown() {
+
+		for (IoLoop loop : loops) {
+			loop.shutdown();
+		}
+
+	}
+
+	/**
+	 * Escolhe a thread de E/S que atenderá uma nova conexão. Os canais da câmera de um robô usam a mesma thread
+	 * do seu canal de comandos.
+	 *
+	 * @return a thread de E/S escolhida.
+	 */
+	IoLoop nextLoop() {
+		return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+	}
+
+	/**
+	 * Uma thread de E/S e o seu seletor.
+	 */
+	static class IoLoop implements Runnable {
+		protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+		/**
+		 * Seletor dos canais atendidos por esta thread.
+		 */
+		private final Selector selector;
+
+		/**
+		 * Tarefas a executar na thread de E/S (registros, mudanças de interesse etc.).
+		 */
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+		/**
+		 * Thread de E/S.
+		 */
+		private final Thread thread;
+
+		/**
+		 * Para saber se o motor foi encerrado.
+		 */
+		private volatile boolean stopped;
+
+		/**
+		 * Construtor. Inicia a thread de E/S.
+		 *
+		 * @param index Número da thread, usado no seu nome.
+		 *
+		 * @throws IOException
+		 */
+		IoLoop(int index) throws IOException {
+			selector = Selector.open();
+			thread = new Thread(this, "ConnectionEngine-io-" + index);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Retorna a thread de E/S.
+		 *
+		 * @return a thread de E/S.
+		 */
+		Thread thread() {
+			return thread;
+		}
+
+		/**
+		 * Executa uma tarefa na thread de E/S.
+		 *
+		 * @param task Tarefa.
+		 */
+		void execute(Runnable task) {
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+		/**
+		 * Registra um canal no seletor, aguardando o registro terminar.
+		 *
+		 * @param context Contexto do canal.
+		 * @param ops Operações de interesse iniciais.
+		 *
+		 * @throws IOException
+		 */
+		void register(final ChannelContext context, final int ops) throws IOException {
+
+			if (Thread.currentThread() == thread) {
+				context.key = context.channel.register(selector, ops, context);
+				return;
+			}
+
+			final CompletableFuture<Void> registered = new CompletableFuture<Void>();
+
+			execute(new Runnable() {
+				public void run() {
+
+					try {
+						context.key = context.channel.register(selector, ops, context);
+						registered.complete(null);
+					} catch (IOException | RuntimeException e) {
+						registered.completeExceptionally(e);
+					}
+
+				}
+			});
+
+			try {
+				registered.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Registro do canal interrompido.", e);
+			} catch (ExecutionException e) {
+				throw new IOException("Falha ao registrar o canal.", e.getCause());
+			}
+
+		}
+
+		/**
+		 * Encerra a thread de E/S.
+		 */
+		void shutdown() {
+			stopped = true;
+			selector.wakeup();
+		}
+
+		/**
+		 * Atende os canais até que o motor seja encerrado. Uma falha ao atender um canal, inclusive uma exceção não
+		 * verificada, fecha apenas esse canal.
+		 */
+		public void run() {
+
+			while (!stopped) {
+
+				try {
+					selector.select();
+				} catch (IOException e) {
+					System.err.println("Falha no seletor de E/S. Erro: " + e.getMessage());
+					break;
+				}
+
+				Runnable task;
+
+				while ((task = tasks.poll()) != null) {
+
+					try {
+						task.run();
+					} catch (RuntimeException e) {
+						System.err.println("Falha em tarefa da thread de E/S. Erro: " + e);
+					}
+
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					ChannelContext context = (ChannelContext) key.attachment();
+
+					try {
+
+						if (key.isValid() && key.isReadable()) {
+							context.onReadable();
+						}
+
+						if (key.isValid() && key.isWritable()) {
+							context.onWritable();
+						}
+
+					} catch (IOException e) {
+						context.onFailure(e);
+					} catch (RuntimeException e) {
+						// Uma falha inesperada fecha apenas este canal; os demais continuam sendo atendidos.
+						context.onFailure(new IOException("Falha inesperada ao atender o canal.", e));
+					}
+
+				}
+
+			}
+
+			for (SelectionKey key : selector.keys()) {
+				((ChannelContext) key.attachment()).onFailure(new IOException("O motor de conexões foi encerrado."));
+			}
+
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// Nada a fazer: a thread está terminando.
+			}
+
+	        StringBuffer debugStr = new StringBuffer();
+
+			if (debug){
+		        debugStr.append("\n===========\n");
+		        debugStr.append("ConnectionEngine.IoLoop.run():");
+		        debugStr.append("\nThread de E/S " + thread.getName() + " finalizada.");
+		        debugStr.append("\n===========\n");
+				System.out.println(debugStr);
+			}
+
+		}
+
+	}
+
+}
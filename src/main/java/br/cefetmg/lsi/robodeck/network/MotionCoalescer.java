@@ -0,0 +1,241 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Canal dos comandos de movimento (move, turn, strafe, spin) com semântica de "o mais recente vence".
+ *
+ * No máximo um comando de movimento fica em trânsito por vez. Enquanto ele aguarda resposta, o comando seguinte fica
+ * pendente e cada novo comando substitui o pendente, em vez de entrar numa fila atrás dele. Assim o robô nunca executa
+ * uma sequência de posições já ultrapassadas: a latência de controle fica limitada a um tempo de ida e volta, e não ao
+ * tamanho da fila vezes esse tempo.
+ *
+ * Os comandos substituídos não são enviados. O future de um comando substituído é o mesmo do comando que o substituiu
+ * e é completado quando este for aceito pelo robô.
+ *
+ * Se o comando em trânsito falhar por um problema na conexão, o pendente não é enviado e falha com a mesma causa
+ * (descartado). Uma frenagem também descarta o pendente.
+ *
+ * O comando pendente é enviado por uma thread própria ({@link #sender}), e nunca pela thread que recebeu a resposta
+ * do comando anterior: a thread de leitura da conexão não passa pelo escalonamento do pipeline e não pode bloquear
+ * numa escrita enquanto as respostas não são lidas.
+ */
+class MotionCoalescer {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Para saber se há um comando de movimento em trânsito.
+	 */
+	private boolean inFlight;
+
+	/**
+	 * Comando que será enviado quando o comando em trânsito for respondido. Nulo se não houver.
+	 */
+	private Supplier<CompletableFuture<Void>> pendingCommand;
+
+	/**
+	 * Future do comando pendente, compartilhado por todos os comandos que ele substituiu.
+	 */
+	private CompletableFuture<Void> pendingResult;
+
+	/**
+	 * Envia os comandos pendentes, um de cada vez e na ordem em que foram liberados. A thread termina depois de um
+	 * segundo sem comandos, de forma que conexões paradas não mantêm threads.
+	 */
+	private final Executor sender;
+
+	/**
+	 * Número de comandos substituídos por um mais recente antes de serem enviados.
+	 */
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Número de comandos pendentes descartados por frenagem, falha ou encerramento da conexão.
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Construtor.
+	 */
+	MotionCoalescer() {
+		ThreadPoolExecutor senderExecutor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), task -> {
+			Thread senderThread = new Thread(task, "MotionCoalescer-sender");
+			senderThread.setDaemon(true);
+
+			return senderThread;
+		});
+		senderExecutor.allowCoreThreadTimeOut(true);
+		sender = senderExecutor;
+	}
+
+	/**
+	 * Submete um comando de movimento.
+	 *
+	 * @param command Envia o comando e retorna a sua resposta futura.
+	 *
+	 * @return future completado quando o comando, ou o comando mais recente que o substituiu, for aceito pelo robô.
+	 */
+	CompletableFuture<Void> submit(Supplier<CompletableFuture<Void>> command) {
+		CompletableFuture<Void> result;
+
+		synchronized (this) {
+
+			if (inFlight) {
+
+				if (pendingCommand != null) {
+					coalesced.incrementAndGet();
+					debugCoalesced();
+				} else {
+					pendingResult = new CompletableFuture<Void>();
+				}
+
+				pendingCommand = command;
+
+				return pendingResult;
+			}
+
+			inFlight = true;
+			result = new CompletableFuture<Void>();
+		}
+
+		start(command, result);
+
+		return result;
+	}
+
+	/**
+	 * Descarta o comando pendente, fazendo o seu future falhar. Usado quando a conexão é encerrada.
+	 *
+	 * @param cause Causa do descarte.
+	 */
+	void dropPending(Throwable cause) {
+		CompletableFuture<Void> result;
+
+		synchronized (this) {
+			result = pendingResult;
+			pendingCommand = null;
+			pendingResult = null;
+			inFlight = false;
+		}
+
+		if (result != null) {
+			dropped.incrementAndGet();
+			result.completeExceptionally(cause);
+		}
+
+	}
+
+	/**
+	 * Cancela o comando pendente, se houver, fazendo o seu future falhar com {@link CancellationException}. Usado
+	 * quando uma frenagem é enviada: o comando em trânsito continua sendo aguardado, mas nada é enviado depois dele.
+	 */
+	void preempt() {
+		CompletableFuture<Void> result;
+
+		synchronized (this) {
+			result = pendingResult;
+			pendingCommand = null;
+			pendingResult = null;
+		}
+
+		if (result != null) {
+			dropped.incrementAndGet();
+			result.completeExceptionally(new CancellationException("Comando de movimento cancelado por um comando de segurança."));
+		}
+
+	}
+
+	/**
+	 * Retorna o número de comandos substituídos por um mais recente antes de serem enviados.
+	 *
+	 * @return o número de comandos substituídos.
+	 */
+	long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * Retorna o número de comandos pendentes descartados por frenagem, falha ou encerramento da conexão.
+	 *
+	 * @return o número de comandos descartados.
+	 */
+	long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Envia um comando e, quando ele for respondido, entrega o envio do pendente, se houver, a {@link #sender}.
+	 *
+	 * @param command Envia o comando e retorna a sua resposta futura.
+	 * @param result Future entregue a quem submeteu o comando.
+	 */
+	private void start(Supplier<CompletableFuture<Void>> command, final CompletableFuture<Void> result) {
+		command.get().whenComplete((value, failure) -> {
+
+			if (failure == null) {
+				result.complete(null);
+			} else {
+				result.completeExceptionally(failure);
+			}
+
+			Throwable cause = (failure instanceof CompletionException) ? failure.getCause() : failure;
+
+			if (cause instanceof IOException) {
+				dropPending(cause);
+			} else {
+				// A resposta é recebida pela thread de leitura, que não deve enviar.
+				sender.execute(this::next);
+			}
+
+		});
+	}
+
+	/**
+	 * Envia o comando pendente, se houver, ou libera o canal.
+	 */
+	private void next() {
+		Supplier<CompletableFuture<Void>> command;
+		CompletableFuture<Void> result;
+
+		synchronized (this) {
+			command = pendingCommand;
+			result = pendingResult;
+			pendingCommand = null;
+			pendingResult = null;
+			inFlight = (command != null);
+		}
+
+		if (command != null) {
+			start(command, result);
+		}
+
+	}
+
+	/**
+	 * Exibe, em modo de depuração, que um comando foi substituído.
+	 */
+	private void debugCoalesced() {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("MotionCoalescer.submit():");
+	        debugStr.append("\nComando de movimento pendente substituído por um mais recente. Total: " + coalesced.get());
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+	}
+
+}
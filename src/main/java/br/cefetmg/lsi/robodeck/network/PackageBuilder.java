@@ -16,20 +16,20 @@ public class PackageBuilder {
 	/**
 	 * Informa que o pacote é um comando. O remetente está solicitando ao destinatário a execução de um comando. 
 	 */
-	private final byte ACT_CMD = (byte)0x01;
+	static final byte ACT_CMD = (byte)0x01;
 	
 	/**
 	 * Informa que o pacote é uma resposta parcial. O remetente está enviando ao destinatário uma parte da resposta.
 	 * Ou seja, para o mesmo comando ainda seguirão outras respostas. Esta resposta refere-se ao comando enviado no
 	 * pacote com o campo Pid igual ao campo Ref deste pacote.
 	 */
-//	private final byte ACT_PART_RESP = (byte)0x02;
+	static final byte ACT_PART_RESP = (byte)0x02;
 	
 	/**
 	 * Informa que o pacote é uma resposta final. O remetente está enviando ao destinatário a última parte da resposta.
 	 * Esta resposta refere-se ao comando enviado no pacote com o campo PID igual ao campo REF deste pacote. 
 	 */
-//	private final byte ACT_FINAL_RESP = (byte)0x03;
+	static final byte ACT_FINAL_RESP = (byte)0x03;
 	
 	/**
 	 * Informa que o pacote é um comando com erro. O remetente está avisando que recebeu a mensagem enviada no pacote
@@ -37,7 +37,7 @@ public class PackageBuilder {
 	 * (string ISO-8859-1) descrevendo o erro ou pode ser nula. Por exemplo: o comando não existe ou algum parâmetro
 	 * continha um valor inválido.
 	 */
-//	private final byte ACT_CMD_WITH_ERROR = (byte)0x04;
+	static final byte ACT_CMD_WITH_ERROR = (byte)0x04;
 
 	/**
 	 * Para ler os sensores de infravermelho de distância.
@@ -74,11 +74,17 @@ public class PackageBuilder {
 	 */
 	public static enum BatteryLevelPackage {FIRST, SECOND};
 	
-    /**
-     * Identificador do pacote.
-     */
-    private byte pid;
-    
+	/**
+	 * Posições do SID no cabeçalho.
+	 */
+	private static final int SID1 = 6;
+	private static final int SID2 = 7;
+	
+	/**
+	 * Posição da ação (ACT) no cabeçalho.
+	 */
+	static final int ACT = 8;
+	
     /**
      * Identificador da sessão.
      */
@@ -95,117 +101,116 @@ public class PackageBuilder {
     private int dst;
 	
 	/**
-	 * Instância da conexao com o robo.
-	 */
-	private static PackageBuilder instance;
-	
-	/**
-	 * Cabeçalho do pacote.
-	 */
-	private PackageHeader header;
-	
-	/**
-	 * Comando do pacote.
+	 * Pacote completo de cada comando da tabela, indexado por {@link ProtocolCommand#index}, com o remetente, o
+	 * destinatário, a ação, o tamanho e os bytes fixos da mensagem já preenchidos. Criar um pacote custa então uma
+	 * cópia desse array e o preenchimento do SID e dos campos variáveis, em vez de montar o cabeçalho e a mensagem
+	 * byte a byte.
 	 */
-	private byte[] message;
+	private final byte[][] templates;
 	
 	/**
-	 * Construtor
+	 * Construtor. Cada conexão tem o seu criador de pacotes, que guarda o SID da sessão.
 	 *
 	 * @param source Remetente do pacote.
 	 * @param destination Destinatário do pacote.
 	 */
-	private PackageBuilder(int source, int destination){
-		header = null;
-		message = null;
-	    pid = (byte)1;
+	PackageBuilder(int source, int destination){
 	    sid = 0;
 	    src = source;
 	    dst = destination;
+	    templates = new byte[ProtocolCommand.all().size()][];
+	    
+	    for (ProtocolCommand<?> command : ProtocolCommand.all()) {
+	    	templates[command.index] = mount(command, NO_REF, src, dst, ACT_CMD);
+	    }
+	    
 	}
 	
 	/**
-	 * Retorna uma instância de PackageBuilder.
-	 * 
-	 * @param source Remetente do pacote.
-	 * @param destination Destinatário do pacote.
-	 * 
-	 * @return uma instância de PackageBuilder.
+	 * Monta o pacote completo de um comando, com o PID, o SID e os campos variáveis zerados.
 	 */
-	public static PackageBuilder getInstance(int source, int destination){
+	private static byte[] mount(ProtocolCommand<?> command, byte ref, int src, int dst, byte act) {
+		int messageLength = command.request.length + command.payloadLength;
+		PackageHeader header = new PackageHeader((byte)0, ref, src, dst, 0, act, (byte)messageLength);
+		byte[] pack = new byte[header.getLength() + messageLength];
 		
-		if (instance == null){
-			return new PackageBuilder(source, destination);
-		} else {
-			return instance;
+		for (int i = 0; i < header.getLength(); i++) {
+			pack[i] = header.get(i);
 		}
 		
+		System.arraycopy(command.request, 0, pack, header.getLength(), command.request.length);
+		
+		return pack;
 	}
 	
 	/**
-	 * Cria um pacote que será enviado ao robô.
+	 * Cria o pacote de um comando da tabela: uma cópia do pacote já montado no construtor, com o SID corrente e os
+	 * campos variáveis preenchidos, cada um com o seu tamanho e o byte mais significativo primeiro. O PID fica zerado
+	 * até o envio, quando é alocado pela conexão ({@link PidAllocator}).
 	 * 
-	 * @param cmd Array de bytes referente ao comando que será enviado.
-	 * @param ref Remetente.
-	 * @param act Destinatário.
+	 * @param command Comando.
+	 * @param values Valor de cada campo variável do comando.
 	 * 
 	 * @return pacote que será enviado ao robô.
-	 * 
-	 * @throws EmptyMessageException 
-	 */
-	@SuppressWarnings("null")
-	private byte[] createPackage(byte[] cmd, byte ref, byte act) throws EmptyMessageException{
-    	
-    	if ((cmd != null) || (cmd.length > 1)){
-    		createPackageHeader(ref, act, (byte)cmd.length);
-    		message = cmd;
-        	
-    		return mountPackage();
-    	} else {
-    		throw new EmptyMessageException();
-    	}
-    	
+	 */
+	byte[] create(ProtocolCommand<?> command, int... values) {
+		
+		if (values.length != command.payload.length) {
+			throw new IllegalArgumentException("O comando " + command + " tem " + command.payload.length + " campos, e não " + values.length + ".");
+		}
+		
+		byte[] pack = templates[command.index].clone();
+		int sessionId = sid;
+		int offset = HEADER_LENGTH + command.request.length;
+		
+		pack[SID1] = (byte)((sessionId & 0xF0) >> 4);
+		pack[SID2] = (byte)(sessionId & 0x0F);
+		
+		for (int i = 0; i < values.length; i++) {
+			
+			if (command.payload[i] == 2) {
+				pack[offset++] = (byte)(values[i] >> 8);
+			}
+			
+			pack[offset++] = (byte)values[i];
+		}
+		
+		return pack;
 	}
 	
 	/**
-	 * Cria o cabeçalho do pacote.
+	 * Cria o pacote de um comando com a mensagem dada, para comandos que não estão na tabela
+	 * {@link ProtocolCommand}. O PID fica zerado até o envio, quando é alocado pela conexão.
+	 * 
+	 * @param message Mensagem do pacote: grupo, comando e parâmetros.
+	 * 
+	 * @return pacote que será enviado ao robô.
 	 * 
-	 * @param ref Referência a outro pacote.
-	 * @param act Ação à qual o pacote se refere a saber:
-	 * 			- ACT_CMD: comando;
-	 * 			- ACT_PART_RESP: resposta parcial;
-	 * 			- ACT_FINAL_RESP: resposta final;
-	 * 			- ACT_CMD_WITH_ERROR: comando com erro.
-	 * @param len Tamanho da mensagem, em bytes.
+	 * @throws EmptyMessageException se a mensagem tiver menos de 2 bytes.
 	 */
-    private void createPackageHeader(byte ref, byte act, byte len) {    	
-		header = new PackageHeader(pid, ref, src, dst, sid, act, len);
-    }
-    
-    private byte[] mountPackage(){
-    	int packCounter = 0;
-    	byte[] pack = new byte[header.getLength() + message.length];
-    	
-    	for (int i = 0; i < header.getLength(); i++){
-    		pack[i] = header.get(i);
-    		packCounter++;
-    	}
-    	
-    	for (int i = 0; i < message.length; i++){
-    		pack[packCounter] = message[i];
-    		packCounter++;
-    	}
-    	
-    	return pack;
-    }
-
-    /**
-     * Incrementa o identificador do pacote.
-     */
-	public void incrementPid(){
-		pid++;
+	public byte[] createPackage(byte[] message) throws EmptyMessageException {
+		
+		if ((message == null) || (message.length < 2)) {
+			throw new EmptyMessageException();
+		}
+		
+		if (message.length > 0xFF) {
+			throw new IllegalArgumentException("A mensagem de um pacote tem no máximo 255 bytes, e não " + message.length + ".");
+		}
+		
+		int sessionId = sid;
+		byte[] pack = new byte[HEADER_LENGTH + message.length];
+		PackageHeader header = new PackageHeader((byte)0, NO_REF, src, dst, sessionId, ACT_CMD, (byte)message.length);
+		
+		for (int i = 0; i < HEADER_LENGTH; i++) {
+			pack[i] = header.get(i);
+		}
+		
+		System.arraycopy(message, 0, pack, HEADER_LENGTH, message.length);
+		
+		return pack;
 	}
-
+	
     /**
      * Ajusta o identificador da sessão.
      * 
@@ -272,13 +277,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createOpenSessionPackage() throws EmptyMessageException {
-        byte[] cmd = new byte[2];
-
-        // Monta os bytes do comando de abertura de sessao.
-        cmd[0] = 0x01;
-        cmd[1] = 0x01;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.OPEN_SESSION);
 	}
 	
 	/**
@@ -289,13 +288,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createCloseSessionPackage() throws EmptyMessageException {
-        byte[] cmd = new byte[2];
-
-        // Monta os bytes do comando de fechamento de sessao.
-        cmd[0] = 0x01;
-        cmd[1] = 0x02;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.CLOSE_SESSION);
 	}
 	
 	/**
@@ -306,13 +299,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createCommunicationProtocolVersionPackage() throws EmptyMessageException {
-        byte[] cmd = new byte[2];
-
-        // Monta os bytes do comando de fechamento de sessao.
-        cmd[0] = 0x00;
-        cmd[1] = 0x00;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.COMMUNICATION_PROTOCOL_VERSION);
 	}
 
 	/**
@@ -324,16 +311,8 @@ public class PackageBuilder {
 	 * 
 	 * @throws EmptyMessageException
 	 */
-	public byte[] createMovePackage(int intensity) throws EmptyMessageException {	
-		byte[] cmd = new byte[4];
-
-        // Monta os bytes do comando de movimento.
-		cmd[0] = 0x03;
-		cmd[1] = 0x01;
-        cmd[2] = (byte)(intensity >> 8);
-        cmd[3] = (byte)intensity;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+	public byte[] createMovePackage(int intensity) throws EmptyMessageException {
+		return create(ProtocolCommand.MOVE, intensity);
 	}
 
 	/**
@@ -346,17 +325,8 @@ public class PackageBuilder {
 	 * 
 	 * @throws EmptyMessageException
 	 */
-	public byte[] createTurnPackage(byte angle, int intensity) throws EmptyMessageException {	
-		byte[] cmd = new byte[5];
-
-        // Monta os bytes do comando de virar.
-		cmd[0] = 0x03;
-		cmd[1] = 0x02;
-		cmd[2] = angle;
-        cmd[3] = (byte)(intensity >> 8);
-        cmd[4] = (byte)intensity;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+	public byte[] createTurnPackage(byte angle, int intensity) throws EmptyMessageException {
+		return create(ProtocolCommand.TURN, angle, intensity);
 	}
 
     /**
@@ -368,17 +338,8 @@ public class PackageBuilder {
      * 
      * @throws EmptyMessageException
      */
-	public byte[] createStrafePackage(byte angle, int intensity) throws EmptyMessageException {	
-		byte[] cmd = new byte[5];
-
-        // Monta os bytes do comando de movimento alinhado com a carroceria.
-		cmd[0] = 0x03;
-		cmd[1] = 0x03;
-		cmd[2] = angle;
-        cmd[3] = (byte)(intensity >> 8);
-        cmd[4] = (byte)intensity;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+	public byte[] createStrafePackage(byte angle, int intensity) throws EmptyMessageException {
+		return create(ProtocolCommand.STRAFE, angle, intensity);
 	}
 
     /**
@@ -390,16 +351,7 @@ public class PackageBuilder {
      * @throws EmptyMessageException
      */
 	public byte[] createSpinPackage(byte side, int intensity) throws EmptyMessageException {
-		byte[] cmd = new byte[5];
-
-        // Monta os bytes do comando de giro.
-		cmd[0] = 0x03;
-		cmd[1] = 0x04;
-		cmd[2] = side;
-        cmd[3] = (byte)(intensity >> 8);
-        cmd[4] = (byte)intensity;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.SPIN, side, intensity);
 	}
 
 	/**
@@ -413,14 +365,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createInfraredSensorsPackage(byte sensorPair) throws EmptyMessageException {
-		byte[] cmd = new byte[3];
-
-        // Monta os bytes para leitura dos sensores de infravermelho.
-		cmd[0] = 0x03;
-		cmd[1] = 0x05;
-		cmd[2] = sensorPair;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create((sensorPair == INFRAREDS_DEPTH) ? ProtocolCommand.INFRARED_SENSORS_DEPTH : ProtocolCommand.INFRARED_SENSORS_DISTANCE, sensorPair);
 	}
 
 	/**
@@ -436,14 +381,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createUltrassonicSensorsDistancePackage(byte sensorPair) throws EmptyMessageException {
-		byte[] cmd = new byte[3];
-
-        // Monta os bytes para leitura dos sensores de utlrassom.
-		cmd[0] = 0x03;
-		cmd[1] = 0x06;
-		cmd[2] = sensorPair;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.ULTRASSONIC_SENSORS_DISTANCE, sensorPair);
 	}
 
 	/**
@@ -459,14 +397,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createUltrassonicSensorsLuminosityPackage(byte sensorPair) throws EmptyMessageException {
-		byte[] cmd = new byte[3];
-
-        // Monta os bytes para leitura dos sensores de utlrassom.
-		cmd[0] = 0x03;
-		cmd[1] = 0x07;
-		cmd[2] = sensorPair;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.ULTRASSONIC_SENSORS_LUMINOSITY, sensorPair);
 	}
 
 	/**
@@ -477,13 +408,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createCompassSensorPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura da bússola.
-		cmd[0] = 0x03;
-		cmd[1] = 0x08;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.COMPASS_SENSOR);
 	}
 
 	/**
@@ -494,13 +419,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createAccelerometerSensorPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura do acelerômetro.
-		cmd[0] = 0x03;
-		cmd[1] = 0x09;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.ACCELEROMETER_SENSOR);
 	}
 
 	/**
@@ -511,13 +430,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createTemperatureAndHumiditySensorsPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura dos sensores de temperatura e umidade.
-		cmd[0] = 0x03;
-		cmd[1] = 0x0A;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.TEMPERATURE_AND_HUMIDITY_SENSORS);
 	}
 
 	/**
@@ -528,13 +441,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createCollisionDetectionPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura dos sensores ópticos.
-		cmd[0] = 0x03;
-		cmd[1] = 0x0B;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.COLLISION_DETECTION);
 	}
 
 	/**
@@ -545,13 +452,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSInfoPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura das versões do módulo receptor GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x0C;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_INFO);
 	}
 
 	/**
@@ -562,13 +463,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSGetPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para informação sobre a validade da string do GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x16;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_GET);
 	}
 
 	/**
@@ -579,13 +474,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSValidatePackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para informação sobre a validade da string do GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x0D;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_VALIDATE);
 	}
 
 	/**
@@ -596,13 +485,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSSatellitePackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura do número de satélites utilizados pelo GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x0E;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_SATELLITE);
 	}
 
 	/**
@@ -613,13 +496,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSTimePackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura do horário do GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x0F;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_TIME);
 	}
 
 	/**
@@ -630,13 +507,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSDatePackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura da data do GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x10;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_DATE);
 	}
 
 	/**
@@ -647,13 +518,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSLatitudePackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura da latitude do GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x11;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_LATITUDE);
 	}
 
 	/**
@@ -664,13 +529,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSLongitudePackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura da longitude do GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x12;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_LONGITUDE);
 	}
 
 	/**
@@ -681,13 +540,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSAltitudePackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura da altitude do GPS.
-		cmd[0] = 0x03;
-		cmd[1] = 0x13;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_ALTITUDE);
 	}
 
 	/**
@@ -698,13 +551,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSSpeedPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura da velocidade do robô.
-		cmd[0] = 0x03;
-		cmd[1] = 0x14;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_SPEED);
 	}
 
 	/**
@@ -715,13 +562,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createGPSHeadPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura da direção do movimento do robô.
-		cmd[0] = 0x03;
-		cmd[1] = 0x15;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.GPS_HEAD);
 	}
 
 	/**
@@ -732,41 +573,18 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createBatteryLevelPackage(BatteryLevelPackage packOrder) throws EmptyMessageException {
-		/*byte[] cmd = new byte[2];
 
-        // Monta os bytes para leitura do nível da bateria do robô.
-		cmd[0] = 0x03;
-		cmd[1] = 0x17;*/
-		
-		byte[] cmd;
 		switch (packOrder) {
 		case FIRST:
-			cmd = new byte[4];
-	
-	        // Monta os bytes para leitura do nível da bateria do robô.
-			cmd[0] = 0x05;
-			cmd[1] = 0x01;
-			cmd[2] = 0x00;
-			cmd[3] = 0x09;
-			
-			break;
+			return create(ProtocolCommand.BATTERY_LEVEL_FIRST);
 			
 		case SECOND:
-			cmd = new byte[4];
-	
-	        // Monta os bytes para leitura do nível da bateria do robô.
-			cmd[0] = 0x05;
-			cmd[1] = 0x02;
-			cmd[2] = 0x00;
-			cmd[3] = 0x00;
-			
-			break;
+			return create(ProtocolCommand.BATTERY_LEVEL_SECOND);
 
 		default:
 			return null;
 		}
         
-		return createPackage(cmd, NO_REF, ACT_CMD);
 	}
 
 	/**
@@ -777,13 +595,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createMAPVersionPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[2];
-
-        // Monta os bytes para leitura da versão do MAP.
-		cmd[0] = 0x04;
-		cmd[1] = 0x01;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.MAP_VERSION);
 	}
 
 	/**
@@ -794,14 +606,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createCameraStartPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[3];
-
-        // Monta os bytes para iniciar a captura de imagens da câmera.
-		cmd[0] = 0x04;
-		cmd[1] = 0x04;
-		cmd[2] = 0x01;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.CAMERA_START);
 	}
 
 	/**
@@ -812,14 +617,7 @@ public class PackageBuilder {
 	 * @throws EmptyMessageException
 	 */
 	public byte[] createCameraStopPackage() throws EmptyMessageException {
-		byte[] cmd = new byte[3];
-
-        // Monta os bytes para iniciar a captura de imagens da câmera.
-		cmd[0] = 0x04;
-		cmd[1] = 0x04;
-		cmd[2] = 0x02;
-        
-		return createPackage(cmd, NO_REF, ACT_CMD);
+		return create(ProtocolCommand.CAMERA_STOP);
 	}
 	
 }
@@ -0,0 +1,19 @@
+package br.cefetmg.lsi.robodeck.network;
+
+/**
+ * Recebe as respostas parciais de um comando cuja resposta é dividida em vários pacotes (ver
+ * {@link RobotConnection#sendStreamCommandAsync(byte[], PartialResponseListener, String)}).
+ *
+ * É chamado na thread que lê os pacotes do robô, na ordem em que as partes chegam, e não deve bloquear: enquanto ele
+ * executa, nenhuma outra resposta é entregue.
+ */
+public interface PartialResponseListener {
+
+	/**
+	 * Chamado a cada resposta parcial do comando.
+	 *
+	 * @param frame Pacote recebido, com o cabeçalho. A mensagem começa em {@link PackageBuilder#HEADER_LENGTH}.
+	 */
+	void onPart(byte[] frame);
+
+}
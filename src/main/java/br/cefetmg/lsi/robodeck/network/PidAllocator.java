@@ -0,0 +1,189 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Alocador dos identificadores de pacote (PID) de uma conexão.
+ *
+ * O PID ocupa um byte e o valor 0 é reservado, pois no campo REF ele indica "sem referência"; restam 255 valores, de 1
+ * a 255, usados em rodízio. Um PID alocado fica em uso até ser devolvido por {@link #release(int)}, quando a resposta
+ * do comando chega ou o comando falha, e não é entregue a outro comando enquanto isso: uma resposta atrasada nunca é
+ * confundida com a de um comando mais novo.
+ *
+ * A alocação e a devolução não usam monitor: cada PID é marcado como em uso por uma troca atômica ("compare and
+ * set"), e o rodízio é um contador atômico. Só quando os 255 PIDs estão em uso a alocação bloqueia, até que algum
+ * seja devolvido.
+ */
+class PidAllocator {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Número de PIDs disponíveis.
+	 */
+	static final int CAPACITY = 255;
+
+	/**
+	 * Marca de cada PID: 1 se estiver em uso. A posição 0 não é usada.
+	 */
+	private final AtomicIntegerArray inUse = new AtomicIntegerArray(CAPACITY + 1);
+
+	/**
+	 * Contador do rodízio: a próxima alocação começa a procurar pelo PID seguinte ao último alocado.
+	 */
+	private final AtomicInteger cursor = new AtomicInteger();
+
+	/**
+	 * Número de PIDs em uso.
+	 */
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	/**
+	 * Número de threads bloqueadas à espera de PIDs. As devoluções só acordam threads quando há alguma esperando.
+	 */
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	/**
+	 * Aloca um PID para cada posição do array, bloqueando enquanto não houver PIDs livres suficientes. Os PIDs são
+	 * alocados todos ou nenhum, de forma que dois envios que aguardam não fiquem, cada um, com parte dos PIDs.
+	 *
+	 * @param pids Recebe os PIDs alocados. Tem no máximo {@link #CAPACITY} posições.
+	 *
+	 * @throws InterruptedException
+	 */
+	void acquire(int[] pids) throws InterruptedException {
+
+		if (tryAcquire(pids)) {
+			return;
+		}
+
+		waiting.incrementAndGet();
+
+		try {
+
+			synchronized (this) {
+
+				while (!tryAcquire(pids)) {
+
+			        StringBuffer debugStr = new StringBuffer();
+
+					if (debug){
+				        debugStr.append("\n===========\n");
+				        debugStr.append("PidAllocator.acquire():");
+				        debugStr.append("\n" + outstanding.get() + " PIDs aguardam resposta. Aguardando " + pids.length + " PIDs livres...");
+				        debugStr.append("\n===========\n");
+						System.out.println(debugStr);
+					}
+
+					wait();
+				}
+
+			}
+
+		} finally {
+			waiting.decrementAndGet();
+		}
+
+	}
+
+	/**
+	 * Aloca um PID para cada posição do array, sem bloquear.
+	 *
+	 * @param pids Recebe os PIDs alocados. Tem no máximo {@link #CAPACITY} posições.
+	 *
+	 * @return true se todos os PIDs foram alocados; false se não havia PIDs livres suficientes, caso em que nenhum
+	 * 			fica alocado.
+	 */
+	boolean tryAcquire(int[] pids) {
+
+		if (pids.length > CAPACITY) {
+			throw new IllegalArgumentException("Um envio tem no máximo " + CAPACITY + " pacotes, e não " + pids.length + ".");
+		}
+
+		for (int i = 0; i < pids.length; i++) {
+			pids[i] = tryAcquire();
+
+			if (pids[i] == 0) {
+
+				for (int j = 0; j < i; j++) {
+					release(pids[j]);
+				}
+
+				return false;
+			}
+
+		}
+
+		return true;
+	}
+
+	/**
+	 * Aloca o próximo PID livre do rodízio.
+	 *
+	 * @return o PID, ou 0 se todos estiverem em uso.
+	 */
+	private int tryAcquire() {
+
+		if (outstanding.incrementAndGet() > CAPACITY) {
+			outstanding.decrementAndGet();
+			return 0;
+		}
+
+		// Há ao menos um PID livre reservado para esta thread pelo contador: a busca termina.
+		while (true) {
+			int pid = Math.floorMod(cursor.getAndIncrement(), CAPACITY) + 1;
+
+			if (inUse.compareAndSet(pid, 0, 1)) {
+				return pid;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Devolve um PID, que volta a poder ser alocado. Não faz nada se o PID não estiver em uso.
+	 *
+	 * @param pid PID devolvido.
+	 */
+	void release(int pid) {
+
+		if ((pid < 1) || (pid > CAPACITY) || !inUse.compareAndSet(pid, 1, 0)) {
+			return;
+		}
+
+		outstanding.decrementAndGet();
+
+		if (waiting.get() > 0) {
+
+			synchronized (this) {
+				notifyAll();
+			}
+
+		}
+
+	}
+
+	/**
+	 * Para saber se um PID está em uso.
+	 *
+	 * @param pid PID.
+	 *
+	 * @return true se o PID aguarda resposta.
+	 */
+	boolean isInUse(int pid) {
+		return (pid >= 1) && (pid <= CAPACITY) && (inUse.get(pid) == 1);
+	}
+
+	/**
+	 * Retorna o número de PIDs em uso.
+	 *
+	 * @return o número de PIDs que aguardam resposta.
+	 */
+	int getOutstanding() {
+		return outstanding.get();
+	}
+
+}
@@ -0,0 +1,719 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import br.cefetmg.lsi.robodeck.exceptions.CameraStartException;
+import br.cefetmg.lsi.robodeck.exceptions.CameraStopException;
+import br.cefetmg.lsi.robodeck.exceptions.CloseSessionException;
+import br.cefetmg.lsi.robodeck.exceptions.GetCommunicationProtocolVersionException;
+import br.cefetmg.lsi.robodeck.exceptions.MoveRobotException;
+import br.cefetmg.lsi.robodeck.exceptions.OpenSessionException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadAccelerometerSensorException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadBatteryLevelException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadCompassSensorException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSAltitudeException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSDateException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSGetException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSHeadException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSInfoException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSLatitudeException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSLongitudeException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSSatelliteException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSSpeedException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSTimeException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadGPSValidateException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadInfraredSensorsDepthException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadInfraredSensorsDistanceException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadMAPVersionException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadOpticalSensorsException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadTemperatureAndHumiditySensorsException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadUltrassonicSensorsDistanceException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadUltrassonicSensorsLuminosityException;
+import br.cefetmg.lsi.robodeck.exceptions.SpinRobotException;
+import br.cefetmg.lsi.robodeck.exceptions.StrafeRobotException;
+import br.cefetmg.lsi.robodeck.exceptions.TurnRobotException;
+import br.cefetmg.lsi.robodeck.utils.PrimitiveDataTypesManipulation;
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Descrição declarativa de um comando do protocolo: os bytes da mensagem enviada, o tamanho de cada campo variável,
+ * o início esperado da resposta, a exceção lançada quando o robô não aceita o comando e o interpretador dos valores da
+ * resposta.
+ *
+ * Todos os comandos do protocolo estão na tabela desta classe. O {@link PackageBuilder} monta os pacotes a partir dela
+ * ({@link PackageBuilder#create(ProtocolCommand, int...)}) e a {@link RobotConnection} envia qualquer comando pelo
+ * mesmo caminho, validando e interpretando a resposta com {@link #decode(byte[])}. Acrescentar um comando ao
+ * protocolo é acrescentar uma linha à tabela.
+ *
+ * @param <T> Tipo do valor interpretado da resposta.
+ */
+final class ProtocolCommand<T> {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Lê os valores de uma resposta já aceita.
+	 */
+	interface ValueDecoder<T> {
+		T decode(byte[] ans);
+	}
+
+	/**
+	 * Campos inteiros consecutivos de uma resposta, de um ou dois bytes cada, que também podem ser copiados para um
+	 * array do chamador.
+	 */
+	private static class Fields {
+
+		/**
+		 * Posição, na resposta, do primeiro campo.
+		 */
+		final int offset;
+
+		/**
+		 * Tamanho de cada campo, em bytes.
+		 */
+		final int[] widths;
+
+		Fields(int offset, int... widths) {
+			this.offset = offset;
+			this.widths = widths;
+		}
+
+		/**
+		 * Copia os campos para o array dado, a partir da posição dada.
+		 *
+		 * @return o número de campos copiados.
+		 */
+		int copy(byte[] ans, int[] into, int position) {
+			int at = offset;
+
+			for (int i = 0; i < widths.length; i++) {
+				into[position + i] = field(ans, at, widths[i]);
+				at += widths[i];
+			}
+
+			return widths.length;
+		}
+
+		/**
+		 * Lê um campo sem sinal de um ou dois bytes.
+		 */
+		static int field(byte[] ans, int at, int width) {
+			return (width == 2) ? PrimitiveDataTypesManipulation.twoBytesToInt(ans[at], ans[at + 1]) : PrimitiveDataTypesManipulation.byteToInt(ans[at]);
+		}
+
+	}
+
+	/**
+	 * Um único campo inteiro.
+	 */
+	private static final class Field extends Fields implements ValueDecoder<Integer> {
+
+		Field(int offset, int width) {
+			super(offset, width);
+		}
+
+		public Integer decode(byte[] ans) {
+			return field(ans, offset, widths[0]);
+		}
+
+	}
+
+	/**
+	 * Vários campos inteiros, lidos num novo array.
+	 */
+	private static final class Values extends Fields implements ValueDecoder<int[]> {
+
+		Values(int... widths) {
+			super(VALUES, widths);
+		}
+
+		public int[] decode(byte[] ans) {
+			int[] result = new int[widths.length];
+			copy(ans, result, 0);
+
+			return result;
+		}
+
+	}
+
+	/**
+	 * Descreve o erro informado pelo robô numa resposta recusada, ou retorna nulo se a resposta não trouxer um erro.
+	 */
+	interface FailureDetail {
+		String describe(byte[] ans);
+	}
+
+	/**
+	 * Posição, na resposta, do primeiro byte depois do código da resposta.
+	 */
+	private static final int VALUES = PackageBuilder.HEADER_LENGTH + 2;
+
+	/**
+	 * Valor que indica que o comando foi executado.
+	 */
+	private static final int CMD_DONE = 0xFF;
+
+	/**
+	 * Comando sem efeito no robô: as leituras idênticas em trânsito podem ser deduplicadas.
+	 */
+	private static final boolean READ = true;
+
+	/**
+	 * Comando com efeito no robô, que é sempre enviado.
+	 */
+	private static final boolean ACTION = false;
+
+	/**
+	 * Comando sem campos variáveis.
+	 */
+	private static final int[] NO_PAYLOAD = {};
+
+	/**
+	 * Todos os comandos, na ordem de {@link #index}.
+	 */
+	private static final List<ProtocolCommand<?>> COMMANDS = new ArrayList<ProtocolCommand<?>>();
+
+	/**
+	 * Abertura de sessão. A resposta traz o SID, que é 0 se a sessão não foi aberta.
+	 */
+	static final ProtocolCommand<Integer> OPEN_SESSION = new ProtocolCommand<Integer>("openSession", ACTION,
+			bytes(0x01, 0x01), NO_PAYLOAD, bytes(),
+			OpenSessionException::new, "Falha ao abrir a sessão.", word(VALUES));
+
+	/**
+	 * Fechamento de sessão.
+	 */
+	static final ProtocolCommand<Void> CLOSE_SESSION = new ProtocolCommand<Void>("closeSession", ACTION,
+			bytes(0x01, 0x02), NO_PAYLOAD, bytes(0x81, 0x02, CMD_DONE),
+			CloseSessionException::new, "Falha ao fechar a sessão.", none());
+
+	/**
+	 * Versão do protocolo de comunicação, no formato "maior.menor.revisão".
+	 */
+	static final ProtocolCommand<String> COMMUNICATION_PROTOCOL_VERSION = new ProtocolCommand<String>("getCommunicationProtocolVersion", READ,
+			bytes(0x00, 0x00), NO_PAYLOAD, bytes(0x80, 0x00),
+			GetCommunicationProtocolVersionException::new, "Falha ao receber informação da versão do protocolo de comunicação.",
+			ans -> PrimitiveDataTypesManipulation.byteToInt(ans[VALUES]) + "." + PrimitiveDataTypesManipulation.byteToInt(ans[VALUES + 1])
+					+ "." + PrimitiveDataTypesManipulation.byteToInt(ans[VALUES + 2]));
+
+	/**
+	 * Movimento para frente ou para trás. Campo: intensidade.
+	 */
+	static final ProtocolCommand<Void> MOVE = new ProtocolCommand<Void>("sendMoveCommand", ACTION,
+			bytes(0x03, 0x01), fields(2), bytes(0x83, 0x01, CMD_DONE),
+			MoveRobotException::new, "Falha ao mover robô.", none());
+
+	/**
+	 * Frenagem: o comando de movimento com intensidade 0.
+	 */
+	static final ProtocolCommand<Void> BRAKE = new ProtocolCommand<Void>("sendBrakeCommand", ACTION,
+			bytes(0x03, 0x01), fields(2), bytes(0x83, 0x01, CMD_DONE),
+			MoveRobotException::new, "Falha ao frear robô.", none());
+
+	/**
+	 * Curva. Campos: ângulo e intensidade.
+	 */
+	static final ProtocolCommand<Void> TURN = new ProtocolCommand<Void>("sendTurnCommand", ACTION,
+			bytes(0x03, 0x02), fields(1, 2), bytes(0x83, 0x02, CMD_DONE),
+			TurnRobotException::new, "Falha ao girar robô.", none());
+
+	/**
+	 * Movimento alinhado com a carroceria. Campos: ângulo e intensidade.
+	 */
+	static final ProtocolCommand<Void> STRAFE = new ProtocolCommand<Void>("sendStrafeCommand", ACTION,
+			bytes(0x03, 0x03), fields(1, 2), bytes(0x83, 0x03, CMD_DONE),
+			StrafeRobotException::new, "Falha ao mover robô alinhado com sua carroceria.", none());
+
+	/**
+	 * Giro em torno do próprio eixo. Campos: lado e intensidade.
+	 */
+	static final ProtocolCommand<Void> SPIN = new ProtocolCommand<Void>("sendSpinCommand", ACTION,
+			bytes(0x03, 0x04), fields(1, 2), bytes(0x83, 0x04, CMD_DONE),
+			SpinRobotException::new, "Falha ao girar o robô.", none());
+
+	/**
+	 * Sensores de infravermelho de profundidade. Campo: par de sensores ({@link PackageBuilder#INFRAREDS_DEPTH}).
+	 */
+	static final ProtocolCommand<int[]> INFRARED_SENSORS_DEPTH = new ProtocolCommand<int[]>("sendReadInfraredSensorsDepthCommand", READ,
+			bytes(0x03, 0x05), fields(1), bytes(0x83, 0x05),
+			ReadInfraredSensorsDepthException::new, "Falha ao receber dados dos sensores de infravermelho de profundidade do robô.", values(1, 1));
+
+	/**
+	 * Sensores de infravermelho de distância. Campo: par de sensores ({@link PackageBuilder#INFRAREDS_DISTANCE}).
+	 */
+	static final ProtocolCommand<int[]> INFRARED_SENSORS_DISTANCE = new ProtocolCommand<int[]>("sendReadInfraredSensorsDistanceCommand", READ,
+			bytes(0x03, 0x05), fields(1), bytes(0x83, 0x05),
+			ReadInfraredSensorsDistanceException::new, "Falha ao receber dados dos sensores de infravermelho de distância do robô.", values(1, 1));
+
+	/**
+	 * Um sensor de ultrassom de distância. Campo: sensor ({@link PackageBuilder#ULTRASONIC_FRONT} etc.).
+	 */
+	static final ProtocolCommand<Integer> ULTRASSONIC_SENSORS_DISTANCE = new ProtocolCommand<Integer>("sendReadUltrassonicSensorsDistanceCommand", READ,
+			bytes(0x03, 0x06), fields(1), bytes(0x83, 0x06),
+			ReadUltrassonicSensorsDistanceException::new, "Falha ao receber dados dos sensores de ultrassom do robô.", word(VALUES));
+
+	/**
+	 * Um sensor de ultrassom de luminosidade. Campo: sensor.
+	 */
+	static final ProtocolCommand<Integer> ULTRASSONIC_SENSORS_LUMINOSITY = new ProtocolCommand<Integer>("sendReadUltrassonicSensorsLuminosityCommand", READ,
+			bytes(0x03, 0x07), fields(1), bytes(0x83, 0x07),
+			ReadUltrassonicSensorsLuminosityException::new, "Falha ao receber dados dos sensores de ultrassom do robô.", unsigned(VALUES));
+
+	/**
+	 * Bússola, em décimos de graus.
+	 */
+	static final ProtocolCommand<Integer> COMPASS_SENSOR = new ProtocolCommand<Integer>("sendReadCompassSensorCommand", READ,
+			bytes(0x03, 0x08), NO_PAYLOAD, bytes(0x83, 0x08),
+			ReadCompassSensorException::new, "Falha ao receber dados da bússola.", word(VALUES));
+
+	/**
+	 * Acelerômetro: eixos X, Y e Z.
+	 */
+	static final ProtocolCommand<int[]> ACCELEROMETER_SENSOR = new ProtocolCommand<int[]>("sendReadAccelerometerSensorCommand", READ,
+			bytes(0x03, 0x09), NO_PAYLOAD, bytes(0x83, 0x09),
+			ReadAccelerometerSensorException::new, "Falha ao receber dados do acelerômetro.", values(2, 2, 2));
+
+	/**
+	 * Temperatura e umidade.
+	 */
+	static final ProtocolCommand<int[]> TEMPERATURE_AND_HUMIDITY_SENSORS = new ProtocolCommand<int[]>("sendReadTemperatureAndHumiditySensorsCommand", READ,
+			bytes(0x03, 0x0A), NO_PAYLOAD, bytes(0x83, 0x0A),
+			ReadTemperatureAndHumiditySensorsException::new, "Falha ao receber dados dos sensores de temperatura e umidade.", values(2, 2));
+
+	/**
+	 * Detecção de colisão pelos sensores ópticos.
+	 */
+	static final ProtocolCommand<Boolean> COLLISION_DETECTION = new ProtocolCommand<Boolean>("sendReadCollisionDetectionCommand", READ,
+			bytes(0x03, 0x0B), NO_PAYLOAD, bytes(0x83, 0x0B),
+			ReadOpticalSensorsException::new, "Falha ao receber dados dos sensores ópticos.", flag(VALUES));
+
+	/**
+	 * Versões do hardware e do firmware do GPS.
+	 */
+	static final ProtocolCommand<int[]> GPS_INFO = new ProtocolCommand<int[]>("sendReadGPSInfoCommand", READ,
+			bytes(0x03, 0x0C), NO_PAYLOAD, bytes(0x83, 0x0C),
+			ReadGPSInfoException::new, "Falha ao receber as versões do módulo receptor GPS do robô.", values(1, 1));
+
+	/**
+	 * Validade da string do GPS.
+	 */
+	static final ProtocolCommand<Boolean> GPS_VALIDATE = new ProtocolCommand<Boolean>("sendReadGPSValidateCommand", READ,
+			bytes(0x03, 0x0D), NO_PAYLOAD, bytes(0x83, 0x0D),
+			ReadGPSValidateException::new, "Falha ao receber informação sobre a validade da string do GPS.", flag(VALUES));
+
+	/**
+	 * Número de satélites utilizados pelo GPS.
+	 */
+	static final ProtocolCommand<Integer> GPS_SATELLITE = new ProtocolCommand<Integer>("sendReadGPSSatelliteCommand", READ,
+			bytes(0x03, 0x0E), NO_PAYLOAD, bytes(0x83, 0x0E),
+			ReadGPSSatelliteException::new, "Falha ao receber informação sobre o número de satélites utilizados pelo GPS.", unsigned(VALUES));
+
+	/**
+	 * Hora, minutos e segundos do GPS.
+	 */
+	static final ProtocolCommand<int[]> GPS_TIME = new ProtocolCommand<int[]>("sendReadGPSTimeCommand", READ,
+			bytes(0x03, 0x0F), NO_PAYLOAD, bytes(0x83, 0x0F),
+			ReadGPSTimeException::new, "Falha ao receber o horário do módulo receptor GPS do robô.", values(1, 1, 1));
+
+	/**
+	 * Ano, mês e dia do GPS.
+	 */
+	static final ProtocolCommand<int[]> GPS_DATE = new ProtocolCommand<int[]>("sendReadGPSDateCommand", READ,
+			bytes(0x03, 0x10), NO_PAYLOAD, bytes(0x83, 0x10),
+			ReadGPSDateException::new, "Falha ao receber a data do módulo receptor GPS do robô.", values(1, 1, 1));
+
+	/**
+	 * Latitude: graus, minutos, fração de minuto e hemisfério.
+	 */
+	static final ProtocolCommand<int[]> GPS_LATITUDE = new ProtocolCommand<int[]>("sendReadGPSLatitudeCommand", READ,
+			bytes(0x03, 0x11), NO_PAYLOAD, bytes(0x83, 0x11),
+			ReadGPSLatitudeException::new, "Falha ao receber a latitude do módulo receptor GPS do robô.", values(1, 1, 2, 1));
+
+	/**
+	 * Longitude: graus, minutos, fração de minuto e hemisfério.
+	 */
+	static final ProtocolCommand<int[]> GPS_LONGITUDE = new ProtocolCommand<int[]>("sendReadGPSLongitudeCommand", READ,
+			bytes(0x03, 0x12), NO_PAYLOAD, bytes(0x83, 0x12),
+			ReadGPSLongitudeException::new, "Falha ao receber a longitude do módulo receptor GPS do robô.", values(1, 1, 2, 1));
+
+	/**
+	 * Altitude, em decímetros.
+	 */
+	static final ProtocolCommand<Integer> GPS_ALTITUDE = new ProtocolCommand<Integer>("sendReadGPSAltitudeCommand", READ,
+			bytes(0x03, 0x13), NO_PAYLOAD, bytes(0x83, 0x13),
+			ReadGPSAltitudeException::new, "Falha ao receber a altitude do módulo receptor GPS do robô.", word(VALUES));
+
+	/**
+	 * Velocidade, em décimos de nós.
+	 */
+	static final ProtocolCommand<Integer> GPS_SPEED = new ProtocolCommand<Integer>("sendReadGPSSpeedCommand", READ,
+			bytes(0x03, 0x14), NO_PAYLOAD, bytes(0x83, 0x14),
+			ReadGPSSpeedException::new, "Falha ao receber a velocidade do robô.", word(VALUES));
+
+	/**
+	 * Direção do movimento, em décimos de graus.
+	 */
+	static final ProtocolCommand<Integer> GPS_HEAD = new ProtocolCommand<Integer>("sendReadGPSHeadCommand", READ,
+			bytes(0x03, 0x15), NO_PAYLOAD, bytes(0x83, 0x15),
+			ReadGPSHeadException::new, "Falha ao receber a direção do movimento do robô.", word(VALUES));
+
+	/**
+	 * Todos os dados do GPS, na ordem de {@link br.cefetmg.lsi.robodeck.devices.sensors.GpsFix#getValues()}.
+	 */
+	static final ProtocolCommand<int[]> GPS_GET = new ProtocolCommand<int[]>("sendReadGPSGetCommand", READ,
+			bytes(0x03, 0x16), NO_PAYLOAD, bytes(0x83, 0x16),
+			ReadGPSGetException::new, "Falha ao receber todas as informações do GPS ao mesmo tempo.",
+			values(1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 2, 1, 1, 1, 2, 1, 2, 2, 2));
+
+	/**
+	 * Primeiro pacote da leitura do nível da bateria.
+	 */
+	static final ProtocolCommand<Void> BATTERY_LEVEL_FIRST = new ProtocolCommand<Void>("sendReadBatteryLevelCommand", READ,
+			bytes(0x05, 0x01, 0x00, 0x09), NO_PAYLOAD, bytes(0x85, 0x01, 0x00, 0xFF),
+			ReadBatteryLevelException::new, "Falha ao receber informação do nível de bateria do robô.", none());
+
+	/**
+	 * Segundo pacote da leitura do nível da bateria, com o nível de 0 a 100.
+	 */
+	static final ProtocolCommand<Integer> BATTERY_LEVEL_SECOND = new ProtocolCommand<Integer>("sendReadBatteryLevelCommand - segundo pacote", READ,
+			bytes(0x05, 0x02, 0x00, 0x00), NO_PAYLOAD, bytes(0x85, 0x02, 0x00),
+			ReadBatteryLevelException::new, "Falha ao receber informação do nível de bateria do robô.", word(VALUES + 1));
+
+	/**
+	 * Versão do Módulo de Alta Performance (MAP). Uma recusa traz a mensagem de erro.
+	 */
+	static final ProtocolCommand<int[]> MAP_VERSION = new ProtocolCommand<int[]>("sendReadMAPVersionCommand", READ,
+			bytes(0x04, 0x01), NO_PAYLOAD, bytes(0x84, 0x01),
+			ReadMAPVersionException::new, "Falha ao receber a versão do MAP.", values(1, 1, 1),
+			ans -> ((ans[10] == (byte)0x84) && (ans[11] == (byte)0x00)) ? "Erro: " + new String(Arrays.copyOfRange(ans, VALUES, ans.length - 1)) : null);
+
+	/**
+	 * Início da captura de imagens da câmera. A resposta traz a porta do servidor de imagens.
+	 */
+	static final ProtocolCommand<Integer> CAMERA_START = new ProtocolCommand<Integer>("sendCameraStartCommand", ACTION,
+			bytes(0x04, 0x04, 0x01), NO_PAYLOAD, bytes(0x84, 0x04, 0x01),
+			CameraStartException::new, "Falha ao iniciar captura de imagens da câmera.", word(VALUES + 1), ProtocolCommand::cameraError);
+
+	/**
+	 * Fim da captura de imagens da câmera.
+	 */
+	static final ProtocolCommand<Void> CAMERA_STOP = new ProtocolCommand<Void>("sendCameraStopCommand", ACTION,
+			bytes(0x04, 0x04, 0x02), NO_PAYLOAD, bytes(0x84, 0x04, 0x02),
+			CameraStopException::new, "Falha ao encerrar captura de imagens da câmera.", none(), ProtocolCommand::cameraError);
+
+	/**
+	 * Posição do comando em {@link #COMMANDS}.
+	 */
+	final int index;
+
+	/**
+	 * Nome do comando, para as saídas de depuração.
+	 */
+	final String name;
+
+	/**
+	 * Para saber se o comando é uma leitura, sem efeito no robô.
+	 */
+	final boolean read;
+
+	/**
+	 * Bytes fixos da mensagem: grupo, código e, em alguns comandos, subcódigos.
+	 */
+	final byte[] request;
+
+	/**
+	 * Tamanho, em bytes, de cada campo variável da mensagem, na ordem em que seguem os bytes fixos.
+	 */
+	final int[] payload;
+
+	/**
+	 * Número total de bytes variáveis da mensagem.
+	 */
+	final int payloadLength;
+
+	/**
+	 * Início esperado da mensagem da resposta, a partir do código da resposta.
+	 */
+	private final byte[] reply;
+
+	/**
+	 * Cria a exceção específica do comando, a partir da mensagem.
+	 */
+	private final Function<String, ? extends Exception> failure;
+
+	/**
+	 * Mensagem da exceção lançada quando a resposta não é a esperada.
+	 */
+	private final String failureMessage;
+
+	/**
+	 * Lê os valores da resposta.
+	 */
+	private final ValueDecoder<T> decoder;
+
+	/**
+	 * Descreve o erro informado pelo robô, ou nulo se o comando não informa erros.
+	 */
+	private final FailureDetail failureDetail;
+
+	/**
+	 * Campos inteiros da resposta, ou nulo se os valores do comando não forem campos inteiros.
+	 */
+	private final Fields fields;
+
+	private ProtocolCommand(String name, boolean read, byte[] request, int[] payload, byte[] reply, Function<String, ? extends Exception> failure,
+			String failureMessage, ValueDecoder<T> decoder) {
+		this(name, read, request, payload, reply, failure, failureMessage, decoder, null);
+	}
+
+	private ProtocolCommand(String name, boolean read, byte[] request, int[] payload, byte[] reply, Function<String, ? extends Exception> failure,
+			String failureMessage, ValueDecoder<T> decoder, FailureDetail failureDetail) {
+		this.index = COMMANDS.size();
+		this.name = name;
+		this.read = read;
+		this.request = request;
+		this.payload = payload;
+		this.reply = reply;
+		this.failure = failure;
+		this.failureMessage = failureMessage;
+		this.decoder = decoder;
+		this.failureDetail = failureDetail;
+		this.fields = (decoder instanceof Fields) ? (Fields)decoder : null;
+
+		int length = 0;
+
+		for (int width : payload) {
+			length += width;
+		}
+
+		this.payloadLength = length;
+
+		COMMANDS.add(this);
+	}
+
+	/**
+	 * Retorna todos os comandos da tabela.
+	 *
+	 * @return os comandos, na ordem de {@link #index}.
+	 */
+	static List<ProtocolCommand<?>> all() {
+		return Collections.unmodifiableList(COMMANDS);
+	}
+
+	/**
+	 * Retorna o código de resposta esperado para um pacote enviado: o grupo e o código do início da resposta do
+	 * comando da tabela cujos bytes fixos iniciam a mensagem do pacote. Para os pacotes fora da tabela, ou cujo
+	 * comando não fixa o início da resposta, segue a convenção do protocolo: o grupo com o bit de resposta (0x80) e o
+	 * mesmo código.
+	 *
+	 * @param frame Pacote enviado, com o cabeçalho.
+	 *
+	 * @return o grupo e o código esperados, no formato (grupo << 8) | código.
+	 */
+	static int replyCode(byte[] frame) {
+
+		for (ProtocolCommand<?> command : COMMANDS) {
+
+			if ((command.reply.length >= 2) && command.sentIn(frame)) {
+				return ((command.reply[0] & 0xFF) << 8) | (command.reply[1] & 0xFF);
+			}
+
+		}
+
+		return (((frame[PackageBuilder.HEADER_LENGTH] | 0x80) & 0xFF) << 8) | (frame[PackageBuilder.HEADER_LENGTH + 1] & 0xFF);
+	}
+
+	/**
+	 * Para saber se o pacote dado é deste comando, comparando o início da mensagem com os bytes fixos.
+	 */
+	private boolean sentIn(byte[] frame) {
+
+		if (frame.length < PackageBuilder.HEADER_LENGTH + request.length) {
+			return false;
+		}
+
+		for (int i = 0; i < request.length; i++) {
+
+			if (frame[PackageBuilder.HEADER_LENGTH + i] != request[i]) {
+				return false;
+			}
+
+		}
+
+		return true;
+	}
+
+	/**
+	 * Verifica se o robô aceitou o comando, comparando o início da resposta com o esperado.
+	 *
+	 * @param ans Resposta do robô, com o cabeçalho.
+	 *
+	 * @throws Exception a exceção específica do comando, se a resposta não for a esperada.
+	 */
+	void check(byte[] ans) throws Exception {
+
+		if (ans.length < PackageBuilder.HEADER_LENGTH + reply.length) {
+			throw failure.apply(failureMessage);
+		}
+
+		for (int i = 0; i < reply.length; i++) {
+
+			if (ans[PackageBuilder.HEADER_LENGTH + i] != reply[i]) {
+				String detail = (failureDetail == null) ? null : failureDetail.describe(ans);
+
+				throw failure.apply((detail == null) ? failureMessage : failureMessage + " " + detail);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Cria a exceção específica do comando.
+	 *
+	 * @param message Mensagem da exceção.
+	 *
+	 * @return a exceção.
+	 */
+	Exception fail(String message) {
+		return failure.apply(message);
+	}
+
+	/**
+	 * Verifica se o robô aceitou o comando e lê os valores da resposta.
+	 *
+	 * @param ans Resposta do robô, com o cabeçalho.
+	 *
+	 * @return o valor interpretado.
+	 *
+	 * @throws Exception a exceção específica do comando, se a resposta não for a esperada.
+	 */
+	T decode(byte[] ans) throws Exception {
+		check(ans);
+
+		T value = decoder.decode(ans);
+
+		if (debug){
+	        StringBuffer debugStr = new StringBuffer();
+			debugStr.append("\n" + name + ": " + ((value instanceof int[]) ? Arrays.toString((int[])value) : String.valueOf(value)));
+	        debugStr.append("\n===========");
+			System.out.println(debugStr);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Verifica se o robô aceitou o comando e copia os valores inteiros da resposta para um array do chamador, sem
+	 * criar outro array.
+	 *
+	 * @param ans Resposta do robô, com o cabeçalho.
+	 * @param into Recebe os valores.
+	 * @param position Posição, em "into", do primeiro valor.
+	 *
+	 * @return o número de valores copiados.
+	 *
+	 * @throws Exception a exceção específica do comando, se a resposta não for a esperada.
+	 */
+	int copy(byte[] ans, int[] into, int position) throws Exception {
+
+		if (fields == null) {
+			throw new UnsupportedOperationException("Os valores de " + name + " não são campos inteiros.");
+		}
+
+		check(ans);
+
+		return fields.copy(ans, into, position);
+	}
+
+	/**
+	 * Descreve uma chamada do comando, para as saídas de depuração.
+	 *
+	 * @param source Consumidor que envia o comando.
+	 * @param values Valores dos campos variáveis.
+	 *
+	 * @return a descrição.
+	 */
+	String describe(String source, int... values) {
+		StringBuilder description = new StringBuilder(name).append('(');
+
+		for (int value : values) {
+			description.append(value).append(", ");
+		}
+
+		return description.append(source).append(')').toString();
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * Converte os valores dados em bytes.
+	 */
+	private static byte[] bytes(int... values) {
+		byte[] result = new byte[values.length];
+
+		for (int i = 0; i < values.length; i++) {
+			result[i] = (byte)values[i];
+		}
+
+		return result;
+	}
+
+	/**
+	 * Tamanhos dos campos variáveis da mensagem.
+	 */
+	private static int[] fields(int... widths) {
+		return widths;
+	}
+
+	/**
+	 * Resposta sem valores.
+	 */
+	private static ValueDecoder<Void> none() {
+		return ans -> null;
+	}
+
+	/**
+	 * Um byte sem sinal na posição dada.
+	 */
+	private static ValueDecoder<Integer> unsigned(final int offset) {
+		return new Field(offset, 1);
+	}
+
+	/**
+	 * Dois bytes sem sinal a partir da posição dada.
+	 */
+	private static ValueDecoder<Integer> word(final int offset) {
+		return new Field(offset, 2);
+	}
+
+	/**
+	 * Verdadeiro se o byte na posição dada for 0xFF.
+	 */
+	private static ValueDecoder<Boolean> flag(final int offset) {
+		return ans -> ans[offset] == (byte)0xFF;
+	}
+
+	/**
+	 * Campos consecutivos, de um ou dois bytes cada, a partir do primeiro byte depois do código da resposta.
+	 */
+	private static ValueDecoder<int[]> values(final int... widths) {
+		return new Values(widths);
+	}
+
+	/**
+	 * Erro informado pela câmera, quando a resposta indica falha.
+	 */
+	private static String cameraError(byte[] ans) {
+		//TODO: verificar como pegar a string com o erro.
+		return ((ans[10] == (byte)0x84) && (ans[11] == (byte)0x04) && (ans[12] == (byte)0x00)) ? "Erro: " + Byte.toString(ans[13]) : null;
+	}
+
+}
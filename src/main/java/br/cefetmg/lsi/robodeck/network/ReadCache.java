@@ -0,0 +1,204 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Cache dos valores lidos dos sensores, com uma idade máxima por sensor.
+ *
+ * Uma leitura cujo último valor tem no máximo a idade máxima do sensor é servida da memória, sem enviar pacotes. A
+ * idade é contada a partir da chegada da resposta. A idade máxima de cada sensor vem da propriedade
+ * "robot.cache.maxAge.&lt;sensor&gt;", em milissegundos, ou de {@link #setMaxAge(String, long)}:
+ * <ul>
+ * <li>0 (padrão): sem cache, toda leitura é enviada ao robô;</li>
+ * <li>{@link #SESSION}: o valor vale até o fim da sessão, como a versão do protocolo.</li>
+ * </ul>
+ */
+class ReadCache {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Idade máxima dos valores que não mudam durante a sessão.
+	 */
+	static final long SESSION = -1;
+
+	/**
+	 * Último valor lido de um sensor.
+	 */
+	private static class Entry {
+
+		/**
+		 * Valor lido.
+		 */
+		final Object value;
+
+		/**
+		 * Instante da chegada da resposta, em {@link System#nanoTime()}.
+		 */
+		final long received;
+
+		Entry(Object value, long received) {
+			this.value = value;
+			this.received = received;
+		}
+
+	}
+
+	/**
+	 * Último valor lido de cada sensor.
+	 */
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * Idade máxima de cada sensor, em milissegundos.
+	 */
+	private final ConcurrentHashMap<String, Long> maxAges = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * Contabilidade de cada sensor.
+	 */
+	private final ConcurrentHashMap<String, CacheStats> stats = new ConcurrentHashMap<String, CacheStats>();
+
+	/**
+	 * Incrementada a cada invalidação, para que uma resposta pedida antes dela não volte ao cache.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * Retorna o valor do cache, se não estiver vencido, ou lê o sensor e guarda o valor lido.
+	 *
+	 * @param sensor Nome do sensor no cache.
+	 * @param read Envia a leitura ao robô.
+	 *
+	 * @return o valor futuro do sensor. Quando servido pelo cache, já está completado.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> CompletableFuture<T> get(final String sensor, Supplier<CompletableFuture<T>> read) {
+		long maxAge = getMaxAge(sensor);
+
+		if (maxAge == 0) {
+			return read.get();
+		}
+
+		CacheStats sensorStats = stats.computeIfAbsent(sensor, CacheStats::new);
+		Entry entry = entries.get(sensor);
+
+		if (entry != null) {
+
+			if ((maxAge == SESSION) || ((System.nanoTime() - entry.received) <= (maxAge * 1000000L))) {
+				sensorStats.hit();
+
+				return CompletableFuture.completedFuture((T)copy(entry.value));
+			}
+
+			sensorStats.stale();
+		} else {
+			sensorStats.miss();
+		}
+
+		debugRead(sensor, entry);
+		final long requestedGeneration = generation.get();
+
+		return read.get().thenApply(value -> {
+
+			if (generation.get() == requestedGeneration) {
+				entries.put(sensor, new Entry(copy(value), System.nanoTime()));
+			}
+
+			return value;
+		});
+	}
+
+	/**
+	 * Define a idade máxima dos valores de um sensor.
+	 *
+	 * @param sensor Nome do sensor no cache.
+	 * @param millis Idade máxima, em milissegundos; 0 para não usar o cache; {@link #SESSION} para a sessão inteira.
+	 */
+	void setMaxAge(String sensor, long millis) {
+
+		if ((millis < 0) && (millis != SESSION)) {
+			throw new IllegalArgumentException("Idade máxima inválida: " + millis);
+		}
+
+		maxAges.put(sensor, millis);
+	}
+
+	/**
+	 * Retorna a idade máxima dos valores de um sensor: a definida por {@link #setMaxAge(String, long)}, a da
+	 * propriedade "robot.cache.maxAge.&lt;sensor&gt;" ou, na falta de ambas, 0.
+	 *
+	 * @param sensor Nome do sensor no cache.
+	 *
+	 * @return a idade máxima, em milissegundos.
+	 */
+	long getMaxAge(String sensor) {
+		Long maxAge = maxAges.get(sensor);
+
+		if (maxAge == null) {
+			maxAge = Long.valueOf(PropertiesLoaderImpl.getValor("robot.cache.maxAge." + sensor, "0"));
+			maxAges.putIfAbsent(sensor, maxAge);
+		}
+
+		return maxAge;
+	}
+
+	/**
+	 * Descarta todos os valores guardados.
+	 */
+	void invalidate() {
+		generation.incrementAndGet();
+		entries.clear();
+	}
+
+	/**
+	 * Retorna a contabilidade de um sensor.
+	 *
+	 * @param sensor Nome do sensor no cache.
+	 *
+	 * @return a contabilidade do sensor, ou nulo se ele ainda não foi lido com cache.
+	 */
+	CacheStats getStats(String sensor) {
+		return stats.get(sensor);
+	}
+
+	/**
+	 * Retorna a contabilidade de todos os sensores já lidos com cache.
+	 *
+	 * @return a contabilidade, indexada pelo nome do sensor, em ordem alfabética.
+	 */
+	Map<String, CacheStats> getStats() {
+		return Collections.unmodifiableMap(new TreeMap<String, CacheStats>(stats));
+	}
+
+	/**
+	 * Copia os valores mutáveis (arrays), para que quem recebe um valor do cache não altere o valor guardado.
+	 */
+	private static Object copy(Object value) {
+		return (value instanceof int[]) ? ((int[])value).clone() : value;
+	}
+
+	/**
+	 * Exibe, em modo de depuração, que uma leitura não foi servida pelo cache.
+	 */
+	private void debugRead(String sensor, Entry entry) {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("ReadCache.get():");
+	        debugStr.append("\nSensor \"" + sensor + "\" " + ((entry == null) ? "sem valor no cache." : "com valor vencido no cache."));
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+	}
+
+}
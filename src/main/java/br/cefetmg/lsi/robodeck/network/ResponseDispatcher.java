@@ -0,0 +1,666 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Lê continuamente os pacotes enviados pelo robô, em uma thread própria, e os entrega aos comandos que aguardam
+ * resposta.
+ *
+ * Cada comando enviado é registrado com o seu PID e recebe um {@link CompletableFuture} que é completado quando a
+ * resposta correspondente chega. Assim, quem enviou o comando pode bloquear, consultar ou encadear ações sem manter
+ * o monitor da conexão durante a espera pela rede.
+ *
+ * Um comando pode receber várias respostas parciais (ACT_PART_RESP) antes da resposta final: as parciais são
+ * entregues ao {@link PartialResponseListener} registrado com o comando, e só a final completa o future.
+ *
+ * Os pacotes que o robô envia por iniciativa própria, e não como resposta, vão para o {@link RobotEventBus}.
+ *
+ * @see RobotConnection
+ */
+class ResponseDispatcher implements Runnable {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Conexão da qual os pacotes são lidos.
+	 */
+	private final RobotConnection connection;
+
+	/**
+	 * Usado apenas para exibir os pacotes nas saídas de depuração.
+	 */
+	private final PackageBuilder packageBuilder;
+
+	/**
+	 * Número máximo de comandos que podem estar aguardando resposta ao mesmo tempo.
+	 */
+	private final int pipelineDepth;
+
+	/**
+	 * Comandos que aguardam resposta, indexados pelo PID do pacote enviado. A ordem de inserção é a ordem de envio.
+	 */
+	private final Map<Integer, CompletableFuture<byte[]>> pendingReplies = new LinkedHashMap<Integer, CompletableFuture<byte[]>>();
+
+	/**
+	 * Quem recebe as respostas parciais de cada comando que aguarda resposta, indexado pelo PID. Só os comandos
+	 * registrados com um {@link PartialResponseListener} aparecem aqui.
+	 */
+	private final Map<Integer, PartialResponseListener> partListeners = new HashMap<Integer, PartialResponseListener>();
+
+	/**
+	 * Código de resposta esperado de cada comando que aguarda resposta ({@link ProtocolCommand#replyCode(byte[])}),
+	 * indexado pelo PID. Só é mantido enquanto a entrega ao comando mais antigo puder ser usada.
+	 */
+	private final Map<Integer, Integer> replyCodes = new HashMap<Integer, Integer>();
+
+	/**
+	 * Para saber se uma resposta cujo REF não corresponde a nenhum comando pendente pode ser entregue ao comando mais
+	 * antigo, para os robôs que não preenchem o REF.
+	 */
+	private final boolean refFallback = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robot.network.refFallback", "true"));
+
+	/**
+	 * Recebe os pacotes que não são resposta a nenhum comando.
+	 */
+	private final RobotEventBus eventBus;
+
+	/**
+	 * PIDs da conexão. O PID de cada comando é devolvido assim que ele deixa de aguardar resposta.
+	 */
+	private final PidAllocator pids;
+
+	/**
+	 * Vagas do pipeline já reservadas por {@link #acquireSlot(CommandPriority, String, double, int, int)} e ainda não ocupadas por {@link #register(int, byte[])}.
+	 */
+	private int reservedSlots;
+
+	/**
+	 * Threads que aguardam uma vaga no pipeline, separadas por classe de prioridade.
+	 */
+	private final EnumMap<CommandPriority, FairQueue> waitingSenders = new EnumMap<CommandPriority, FairQueue>(CommandPriority.class);
+
+	/**
+	 * Thread que lê os pacotes do robô.
+	 */
+	private Thread readerThread;
+
+	/**
+	 * Para saber se a leitura foi interrompida propositalmente (desconexão).
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * Para saber se o robô preenche o campo REF das respostas, o que é constatado na primeira resposta cujo REF é o
+	 * PID de um comando pendente. Só é usado com o monitor.
+	 */
+	private boolean refFilled;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param robotConnection Conexão da qual os pacotes são lidos.
+	 * @param builder Criador de pacotes da conexão.
+	 * @param depth Número máximo de comandos aguardando resposta ao mesmo tempo.
+	 * @param pidAllocator PIDs da conexão.
+	 * @param events Recebe os pacotes que não são resposta a nenhum comando.
+	 */
+	ResponseDispatcher(RobotConnection robotConnection, PackageBuilder builder, int depth, PidAllocator pidAllocator, RobotEventBus events) {
+		connection = robotConnection;
+		packageBuilder = builder;
+		pipelineDepth = depth;
+		pids = pidAllocator;
+		eventBus = events;
+		stopped = false;
+
+		for (CommandPriority priority : CommandPriority.values()) {
+			waitingSenders.put(priority, new FairQueue());
+		}
+
+	}
+
+	/**
+	 * Inicia a thread de leitura.
+	 */
+	void start() {
+		readerThread = new Thread(this, "RobotConnection-reader");
+		readerThread.setDaemon(true);
+		readerThread.start();
+	}
+
+	/**
+	 * Associa o despachante a uma thread de leitura externa, que entrega os pacotes por {@link #dispatch(byte[])}. A
+	 * thread própria não é iniciada.
+	 *
+	 * @param ioThread Thread que lê os pacotes da conexão.
+	 */
+	void attach(Thread ioThread) {
+		readerThread = ioThread;
+	}
+
+	/**
+	 * Interrompe a leitura por causa de uma falha, fazendo falhar os comandos que aguardam resposta.
+	 *
+	 * @param cause Causa da falha.
+	 */
+	void abort(Throwable cause) {
+		stopped = true;
+		failAll(cause);
+	}
+
+	/**
+	 * Interrompe a leitura. A thread termina assim que a leitura em andamento for desbloqueada (por exemplo, pelo
+	 * fechamento do soquete). Os comandos que ainda aguardam resposta falham.
+	 */
+	void stop() {
+		stopped = true;
+		failAll(new IOException("A conexão com o robô foi encerrada."));
+	}
+
+	/**
+	 * Lê os pacotes do robô até que a conexão seja encerrada.
+	 */
+	public void run() {
+
+		try {
+
+			while (!stopped) {
+				dispatch(connection.readFrame());
+			}
+
+		} catch (IOException e) {
+
+			if (!stopped) {
+				System.err.println("Falha ao ler pacote do robô. Erro: " + e.getMessage());
+				failAll(e);
+			}
+
+		}
+
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("ResponseDispatcher.run():");
+	        debugStr.append("\nLeitura de pacotes finalizada.");
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+	}
+
+	/**
+	 * Reserva vagas no pipeline, bloqueando enquanto ele estiver cheio. Cada vaga é ocupada por
+	 * {@link #register(int, byte[])} ou devolvida por {@link #releaseSlot(int)}.
+	 *
+	 * As vagas de um mesmo envio são reservadas juntas. Se forem mais numerosas que a profundidade do pipeline, o envio
+	 * aguarda até que o pipeline esteja vazio e então o ocupa por inteiro, até que todas as respostas cheguem.
+	 *
+	 * Quando uma vaga é liberada, ela vai para a classe mais alta que estiver aguardando, de forma que uma frenagem
+	 * nunca espera atrás de leituras de sensores que chegaram antes dela. Dentro da classe, as vagas são divididas
+	 * entre os consumidores em fila justa ponderada (ver {@link FairQueue}): um consumidor que envia sem parar não
+	 * impede os demais de enviar, e os pacotes de um mesmo consumidor saem na ordem em que chegaram.
+	 *
+	 * Deve ser chamado sem manter o monitor da conexão, já que a thread de leitura também envia comandos. A thread de
+	 * leitura nunca bloqueia: ações encadeadas às respostas sem a variante "Async" rodam nela e podem enviar novos
+	 * comandos. Se ela esperasse por uma vaga, ninguém mais liberaria vagas.
+	 *
+	 * @param priority Classe de prioridade do comando.
+	 * @param source Consumidor que envia o comando.
+	 * @param weight Peso do consumidor.
+	 * @param length Tamanho total dos pacotes, em bytes.
+	 * @param count Número de pacotes.
+	 *
+	 * @throws InterruptedException
+	 */
+	synchronized void acquireSlot(CommandPriority priority, String source, double weight, int length, int count) throws InterruptedException {
+
+		if (Thread.currentThread() == readerThread) {
+			reservedSlots += count;
+			return;
+		}
+
+		FairQueue queue = waitingSenders.get(priority);
+		Waiter waiter = queue.enqueue(source, weight, length, count);
+		boolean served = false;
+
+		try {
+
+			while (!mayTakeSlot(priority, waiter)) {
+
+		        StringBuffer debugStr = new StringBuffer();
+
+				if (debug){
+			        debugStr.append("\n===========\n");
+			        debugStr.append("ResponseDispatcher.acquireSlot():");
+			        debugStr.append("\nPipeline cheio (" + pipelineDepth + "). Comando " + priority + " aguardando vaga...");
+			        debugStr.append("\n===========\n");
+					System.out.println(debugStr);
+				}
+
+				wait();
+			}
+
+			served = true;
+		} finally {
+			queue.remove(waiter, served);
+			// A fila mudou: a próxima thread da fila, ou de uma classe mais baixa, pode ter sido liberada.
+			notifyAll();
+		}
+
+		reservedSlots += count;
+	}
+
+	/**
+	 * Devolve vagas reservadas por {@link #acquireSlot(CommandPriority, String, double, int, int)} que não chegaram a
+	 * ser ocupadas.
+	 *
+	 * @param count Número de vagas devolvidas.
+	 */
+	synchronized void releaseSlot(int count) {
+		reservedSlots -= count;
+		notifyAll();
+	}
+
+	/**
+	 * Informa se o envio pode ocupar as suas vagas: há vagas livres, nenhuma classe mais alta aguarda e o envio é o
+	 * próximo da fila justa da sua classe.
+	 */
+	private boolean mayTakeSlot(CommandPriority priority, Waiter waiter) {
+
+		if ((pendingReplies.size() + reservedSlots + Math.min(waiter.count, pipelineDepth)) > pipelineDepth) {
+			return false;
+		}
+
+		for (CommandPriority higher : CommandPriority.values()) {
+
+			if (higher == priority) {
+				break;
+			}
+
+			if (!waitingSenders.get(higher).isEmpty()) {
+				return false;
+			}
+
+		}
+
+		return waitingSenders.get(priority).peek() == waiter;
+	}
+
+	/**
+	 * Informa se a thread corrente é a thread de leitura, que nunca deve bloquear.
+	 *
+	 * @return true se for a thread de leitura.
+	 */
+	synchronized boolean isReaderThread() {
+		return Thread.currentThread() == readerThread;
+	}
+
+	/**
+	 * Registra um comando que será enviado, ocupando uma vaga reservada por {@link #acquireSlot(CommandPriority, String, double, int, int)}. Deve ser chamado
+	 * antes do envio, para que a resposta não chegue antes do registro.
+	 *
+	 * @param pid PID do pacote que será enviado, já alocado em {@link PidAllocator}. É devolvido quando o comando
+	 * 			deixa de aguardar resposta.
+	 * @param frame Pacote que será enviado.
+	 *
+	 * @return a resposta futura do comando.
+	 */
+	CompletableFuture<byte[]> register(int pid, byte[] frame) {
+		return register(pid, frame, null);
+	}
+
+	/**
+	 * Registra um comando cuja resposta pode vir dividida em vários pacotes. Cada resposta parcial é entregue ao
+	 * listener, na thread de leitura; a resposta final completa o future, como em {@link #register(int, byte[])}.
+	 *
+	 * @param pid PID do pacote que será enviado, já alocado em {@link PidAllocator}.
+	 * @param frame Pacote que será enviado.
+	 * @param listener Recebe as respostas parciais, ou nulo para descartá-las.
+	 *
+	 * @return a resposta final futura do comando.
+	 */
+	synchronized CompletableFuture<byte[]> register(int pid, byte[] frame, PartialResponseListener listener) {
+		CompletableFuture<byte[]> reply = new CompletableFuture<byte[]>();
+		reservedSlots--;
+		pendingReplies.put(pid, reply);
+
+		if (refFallback && !refFilled) {
+			replyCodes.put(pid, ProtocolCommand.replyCode(frame));
+		}
+
+		if (listener != null) {
+			partListeners.put(pid, listener);
+		}
+
+		return reply;
+	}
+
+	/**
+	 * Faz falhar o comando com o PID dado, por exemplo quando não foi possível enviá-lo.
+	 *
+	 * @param pid PID do comando.
+	 * @param cause Causa da falha.
+	 */
+	void fail(int pid, Throwable cause) {
+		CompletableFuture<byte[]> reply;
+
+		synchronized (this) {
+			reply = pendingReplies.remove(pid);
+			partListeners.remove(pid);
+			replyCodes.remove(pid);
+			notifyAll();
+		}
+
+		if (reply != null) {
+			pids.release(pid);
+			reply.completeExceptionally(cause);
+		}
+
+	}
+
+	/**
+	 * Entrega um pacote recebido ao comando a que ele se refere.
+	 *
+	 * A resposta é associada pelo campo REF do cabeçalho, que contém o PID do comando. Caso o REF não corresponda
+	 * a nenhum comando pendente (por exemplo, robôs que não preenchem o REF), a resposta é entregue ao comando mais
+	 * antigo, já que o robô responde na ordem em que recebe, mas só se o grupo e o código da resposta forem os
+	 * esperados para ele ({@link ProtocolCommand#replyCode(byte[])}), se for um código de erro (0x00) do mesmo grupo
+	 * ou se a ação for ACT_CMD_WITH_ERROR. Depois que o robô mostrou preencher o REF, ou com
+	 * "robot.network.refFallback" desativado, isso não é feito: um pacote sem comando correspondente não é resposta
+	 * de ninguém.
+	 *
+	 * Uma resposta parcial (ACT_PART_RESP) vai para o {@link PartialResponseListener} do comando, que continua
+	 * aguardando; qualquer outra ação encerra o comando. As parciais de um comando registrado sem listener são
+	 * descartadas.
+	 *
+	 * Um pacote com a ação de comando (ACT_CMD) foi enviado pelo robô por iniciativa própria e nunca é tomado como
+	 * resposta: vai direto para o {@link RobotEventBus}, assim como um pacote que não é resposta de nenhum comando
+	 * pendente.
+	 *
+	 * O future é completado fora do monitor, para que as ações encadeadas a ele não bloqueiem novos envios.
+	 *
+	 * @param frame Pacote recebido.
+	 */
+	void dispatch(byte[] frame) {
+		CompletableFuture<byte[]> reply;
+		PartialResponseListener listener = null;
+		boolean partial = (frame[PackageBuilder.ACT] == PackageBuilder.ACT_PART_RESP);
+		int pid = frame[1] & 0xFF;
+
+		if (frame[PackageBuilder.ACT] == PackageBuilder.ACT_CMD) {
+			eventBus.publish(frame);
+			return;
+		}
+
+		synchronized (this) {
+			reply = partial ? pendingReplies.get(pid) : pendingReplies.remove(pid);
+
+			if (reply != null) {
+
+				if (!refFilled) {
+					refFilled = true;
+					replyCodes.clear();
+				}
+
+			} else if (refFallback && !refFilled) {
+				Iterator<Map.Entry<Integer, CompletableFuture<byte[]>>> oldest = pendingReplies.entrySet().iterator();
+
+				if (oldest.hasNext()) {
+					Map.Entry<Integer, CompletableFuture<byte[]>> entry = oldest.next();
+
+					if (answers(replyCodes.get(entry.getKey()), frame)) {
+						pid = entry.getKey();
+						reply = entry.getValue();
+
+						if (!partial) {
+							oldest.remove();
+						}
+
+					}
+
+				}
+
+			}
+
+			if (partial) {
+				listener = partListeners.get(pid);
+			} else {
+				partListeners.remove(pid);
+				replyCodes.remove(pid);
+				notifyAll();
+			}
+
+		}
+
+		if (partial && (listener != null)) {
+
+			try {
+				listener.onPart(frame);
+			} catch (RuntimeException e) {
+				// Uma falha do listener encerra o seu comando, mas não a leitura dos pacotes.
+				fail(pid, e);
+			}
+
+		} else if (!partial && (reply != null)) {
+			pids.release(pid);
+			reply.complete(frame);
+		} else if (!partial) {
+			eventBus.publish(frame);
+		} else {
+	        StringBuffer debugStr = new StringBuffer();
+
+			if (debug){
+		        debugStr.append("\n===========\n");
+		        debugStr.append("ResponseDispatcher.dispatch():");
+		        debugStr.append("\n" + (partial ? "Resposta parcial" : "Pacote") + " sem comando correspondente descartado: " + packageBuilder.packageToString(frame));
+		        debugStr.append("\n===========\n");
+				System.out.println(debugStr);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Para saber se um pacote pode ser a resposta de um comando, pelo grupo e pelo código no início da mensagem.
+	 *
+	 * @param replyCode Código de resposta esperado do comando, ou nulo se não for conhecido.
+	 * @param frame Pacote recebido.
+	 *
+	 * @return true se o pacote pode ser a resposta do comando.
+	 */
+	private static boolean answers(Integer replyCode, byte[] frame) {
+
+		if (frame[PackageBuilder.ACT] == PackageBuilder.ACT_CMD_WITH_ERROR) {
+			return true;
+		}
+
+		if ((replyCode == null) || (frame.length < PackageBuilder.HEADER_LENGTH + 2)) {
+			return false;
+		}
+
+		int group = frame[PackageBuilder.HEADER_LENGTH] & 0xFF;
+		int code = frame[PackageBuilder.HEADER_LENGTH + 1] & 0xFF;
+
+		return (group == (replyCode >> 8)) && ((code == (replyCode & 0xFF)) || (code == 0x00));
+	}
+
+	/**
+	 * Faz falhar todos os comandos que aguardam resposta.
+	 *
+	 * @param cause Causa da falha.
+	 */
+	private void failAll(Throwable cause) {
+		CompletableFuture<?>[] replies;
+		Integer[] replyPids;
+
+		synchronized (this) {
+			replies = pendingReplies.values().toArray(new CompletableFuture<?>[0]);
+			replyPids = pendingReplies.keySet().toArray(new Integer[0]);
+			pendingReplies.clear();
+			partListeners.clear();
+			replyCodes.clear();
+			notifyAll();
+		}
+
+		for (Integer pid : replyPids) {
+			pids.release(pid);
+		}
+
+		for (CompletableFuture<?> reply : replies) {
+			reply.completeExceptionally(cause);
+		}
+
+	}
+
+	/**
+	 * Envio (um ou mais pacotes) que aguarda vagas no pipeline.
+	 */
+	private static class Waiter implements Comparable<Waiter> {
+
+		/**
+		 * Consumidor que envia o pacote.
+		 */
+		final String source;
+
+		/**
+		 * Instante virtual em que o envio do pacote começa, se cada consumidor recebesse a sua parte da conexão.
+		 */
+		final double start;
+
+		/**
+		 * Instante virtual em que o envio do pacote termina.
+		 */
+		final double finish;
+
+		/**
+		 * Número de pacotes do envio.
+		 */
+		final int count;
+
+		/**
+		 * Ordem de chegada, para desempatar.
+		 */
+		final long sequence;
+
+		Waiter(String source, double start, double finish, int count, long sequence) {
+			this.source = source;
+			this.start = start;
+			this.finish = finish;
+			this.count = count;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(Waiter other) {
+			int order = Double.compare(start, other.start);
+
+			return (order != 0) ? order : Long.compare(sequence, other.sequence);
+		}
+
+	}
+
+	/**
+	 * Fila justa ponderada (start-time fair queueing) dos pacotes de uma classe de prioridade.
+	 *
+	 * Cada pacote recebe um instante virtual de início, o maior entre o relógio virtual da fila e o término do pacote
+	 * anterior do mesmo consumidor, e um de término, o início somado ao tamanho do pacote dividido pelo peso do
+	 * consumidor. A vaga vai sempre para o pacote de menor início, e o relógio virtual avança para o início do pacote
+	 * atendido. Assim, com a fila cheia, cada consumidor envia bytes na proporção do seu peso, independentemente de
+	 * quantas threads usa ou de quão rápido pede novos envios, e um consumidor que envia pouco é atendido logo.
+	 *
+	 * Só é usada com o monitor do {@link ResponseDispatcher}.
+	 */
+	private static class FairQueue {
+
+		/**
+		 * Pacotes que aguardam, do menor para o maior início.
+		 */
+		private final PriorityQueue<Waiter> waiters = new PriorityQueue<Waiter>();
+
+		/**
+		 * Término do último pacote de cada consumidor que ainda está à frente do relógio virtual.
+		 */
+		private final Map<String, Double> lastFinish = new HashMap<String, Double>();
+
+		/**
+		 * Relógio virtual da fila: início do último pacote atendido.
+		 */
+		private double virtualTime;
+
+		/**
+		 * Contador da ordem de chegada.
+		 */
+		private long sequence;
+
+		/**
+		 * Coloca um envio na fila.
+		 *
+		 * @param source Consumidor que envia os pacotes.
+		 * @param weight Peso do consumidor.
+		 * @param length Tamanho total dos pacotes, em bytes.
+		 * @param count Número de pacotes.
+		 *
+		 * @return o envio na fila.
+		 */
+		Waiter enqueue(String source, double weight, int length, int count) {
+			Double previous = lastFinish.get(source);
+			double start = (previous == null) ? virtualTime : Math.max(virtualTime, previous);
+			Waiter waiter = new Waiter(source, start, start + (length / weight), count, sequence++);
+
+			lastFinish.put(source, waiter.finish);
+			waiters.add(waiter);
+
+			return waiter;
+		}
+
+		/**
+		 * Retorna o próximo pacote a ser atendido.
+		 *
+		 * @return o pacote de menor início, ou nulo se a fila estiver vazia.
+		 */
+		Waiter peek() {
+			return waiters.peek();
+		}
+
+		/**
+		 * Informa se a fila está vazia.
+		 *
+		 * @return true se nenhum pacote aguarda.
+		 */
+		boolean isEmpty() {
+			return waiters.isEmpty();
+		}
+
+		/**
+		 * Retira um pacote da fila.
+		 *
+		 * @param waiter Pacote a ser retirado.
+		 * @param served true se o pacote recebeu a vaga, false se a espera foi interrompida.
+		 */
+		void remove(Waiter waiter, boolean served) {
+			waiters.remove(waiter);
+
+			if (served) {
+				virtualTime = Math.max(virtualTime, waiter.start);
+			}
+
+			// Um consumidor que não está à frente do relógio não precisa ser lembrado.
+			Double previous = lastFinish.get(waiter.source);
+
+			if ((previous != null) && (previous <= virtualTime)) {
+				lastFinish.remove(waiter.source);
+			}
+
+		}
+
+	}
+
+}
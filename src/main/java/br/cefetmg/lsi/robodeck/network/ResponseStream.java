@@ -0,0 +1,135 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Respostas de um comando cuja resposta é dividida em vários pacotes, percorridas à medida que chegam: as respostas
+ * parciais, na ordem de chegada, e por último a resposta final.
+ *
+ * {@link #hasNext()} bloqueia a thread do chamador até que o próximo pacote chegue; a thread de leitura da conexão
+ * apenas enfileira os pacotes, e nunca espera pelo consumidor. Se o comando falhar, {@link #hasNext()} lança uma
+ * {@link CompletionException} com a causa da falha, depois de entregues as partes que chegaram antes dela.
+ *
+ * @see RobotConnection#sendStreamCommand(byte[], String)
+ */
+public class ResponseStream implements Iterator<byte[]> {
+
+	/**
+	 * Marca o fim dos pacotes na fila.
+	 */
+	private static final byte[] END = new byte[0];
+
+	/**
+	 * Pacotes recebidos e ainda não percorridos.
+	 */
+	private final LinkedBlockingQueue<byte[]> frames = new LinkedBlockingQueue<byte[]>();
+
+	/**
+	 * Enfileira as respostas parciais. É chamado pela thread de leitura.
+	 */
+	final PartialResponseListener parts = frames::add;
+
+	/**
+	 * Causa da falha do comando, ou nulo.
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * Próximo pacote, já retirado da fila por {@link #hasNext()}.
+	 */
+	private byte[] next;
+
+	/**
+	 * Para saber se a resposta final já foi percorrida.
+	 */
+	private boolean finished;
+
+	ResponseStream() {
+	}
+
+	/**
+	 * Acompanha a resposta final do comando, que é enfileirada depois das parciais.
+	 *
+	 * @param reply Resposta final futura do comando.
+	 */
+	void follow(CompletableFuture<byte[]> reply) {
+		reply.whenComplete((ans, cause) -> {
+
+			if (cause == null) {
+				frames.add(ans);
+			} else {
+				failure = ((cause instanceof CompletionException) && (cause.getCause() != null)) ? cause.getCause() : cause;
+			}
+
+			frames.add(END);
+		});
+	}
+
+	/**
+	 * Informa se ainda há pacotes, aguardando o próximo pacote se ele ainda não chegou.
+	 *
+	 * @return true se há um próximo pacote; false depois da resposta final.
+	 *
+	 * @throws CompletionException se o comando falhou ou se a thread foi interrompida durante a espera.
+	 */
+	public boolean hasNext() {
+
+		if ((next == null) && !finished) {
+
+			try {
+				next = frames.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(e);
+			}
+
+			if (next == END) {
+				next = null;
+				finished = true;
+
+				if (failure != null) {
+					throw new CompletionException(failure);
+				}
+
+			}
+
+		}
+
+		return next != null;
+	}
+
+	/**
+	 * Retorna o próximo pacote, aguardando a sua chegada.
+	 *
+	 * @return o pacote, com o cabeçalho. A mensagem começa em {@link PackageBuilder#HEADER_LENGTH}.
+	 *
+	 * @throws CompletionException se o comando falhou ou se a thread foi interrompida durante a espera.
+	 */
+	public byte[] next() {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		byte[] frame = next;
+		next = null;
+
+		return frame;
+	}
+
+	/**
+	 * Informa se o pacote é uma resposta parcial, à qual se seguem outras.
+	 *
+	 * @param frame Pacote retornado por {@link #next()}.
+	 *
+	 * @return true para as respostas parciais; false para a resposta final.
+	 */
+	public static boolean isPartial(byte[] frame) {
+		return frame[PackageBuilder.ACT] == PackageBuilder.ACT_PART_RESP;
+	}
+
+}
@@ -16,8 +16,10 @@ public class RobotBluetoothNetwork extends RobotConnection {
      * Construtor padrão.
      * 
      * @param uuid UUID do servidor do Robô
+     * @param builder Criador de pacotes da conexão.
      */
-	protected RobotBluetoothNetwork(String uuid) {
+	protected RobotBluetoothNetwork(String uuid, PackageBuilder builder) {
+		super(null, builder);
 		// TODO Auto-generated method stub
     }
 
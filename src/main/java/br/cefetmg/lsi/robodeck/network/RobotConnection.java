@@ -1,15 +1,36 @@
 package br.cefetmg.lsi.robodeck.network;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.PortUnreachableException;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Vector;
-
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import br.cefetmg.lsi.robodeck.devices.sensors.GpsFix;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorKind;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorSnapshot;
 import br.cefetmg.lsi.robodeck.exceptions.CameraImageFormatLenghtException;
 import br.cefetmg.lsi.robodeck.exceptions.CameraStartException;
 import br.cefetmg.lsi.robodeck.exceptions.CameraStopException;
@@ -37,13 +58,15 @@ import br.cefetmg.lsi.robodeck.exceptions.ReadInfraredSensorsDepthException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadInfraredSensorsDistanceException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadMAPVersionException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadOpticalSensorsException;
+import br.cefetmg.lsi.robodeck.exceptions.ReadSensorSnapshotException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadTemperatureAndHumiditySensorsException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadUltrassonicSensorsDistanceException;
 import br.cefetmg.lsi.robodeck.exceptions.ReadUltrassonicSensorsLuminosityException;
 import br.cefetmg.lsi.robodeck.exceptions.SpinRobotException;
 import br.cefetmg.lsi.robodeck.exceptions.StrafeRobotException;
+import br.cefetmg.lsi.robodeck.exceptions.StreamCommandException;
 import br.cefetmg.lsi.robodeck.exceptions.TurnRobotException;
-import br.cefetmg.lsi.robodeck.utils.PrimitiveDataTypesManipulation;
+import br.cefetmg.lsi.robodeck.utils.LatencyRecorder;
 import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
 
 
@@ -55,18 +78,31 @@ import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
  * 
  * @see RobotBluetoothNetwork
  * @see RobotWifiNetwork
+ * @see RobotWifiChannelNetwork
  */
 public abstract class RobotConnection {
 	protected final boolean debug = new Boolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
 	
-	private final byte CMD_DONE = (byte)0xFF;
+	/**
+	 * Valor de "robot.network.transport" para a conexão wifi por fluxos de dados bloqueantes ({@link RobotWifiNetwork}).
+	 */
+	public static final String TRANSPORT_STREAM = "stream";
 	
-    private static String connectionHost;
+	/**
+	 * Valor de "robot.network.transport" para a conexão wifi por canal NIO ({@link RobotWifiChannelNetwork}).
+	 */
+	public static final String TRANSPORT_CHANNEL = "nio";
 	
 	/**
-	 * Instância da conexao com o robo.
+	 * Consumidor ao qual são atribuídos os comandos da própria conexão (sessão e versão do protocolo) e os comandos
+	 * enviados sem "source".
 	 */
-	private static RobotConnection instance;
+	public static final String CONNECTION_SOURCE = "robodeckapi";
+	
+    /**
+     * Host para conexão com o robô. Nulo quando a conexão não é feita por rede IP (bluetooth).
+     */
+    protected final String connectionHost;
 	
     /**
      * Fluxo de entrada de dados da comunicação com o robô.
@@ -81,31 +117,139 @@ public abstract class RobotConnection {
     /**
      * Soquete de conexão com a câmera do robô.
      */
-    private static Socket cameraSocketConnection;
+    private Socket cameraSocketConnection;
     
     /**
-     * Criador de pacotes de comunicação com o robô.
+     * Criador de pacotes de comunicação com o robô. Guarda o SID desta conexão.
      */
-    private static PackageBuilder packageBuilder;
+    private final PackageBuilder packageBuilder;
     
     /**
-     * Para saber se deve esperar para enviar outro comando. Sempre que enviar um comando, deve esperar sua resposta.
+     * PIDs desta conexão: cada comando enviado ocupa um até que a sua resposta chegue.
      */
-    private boolean waitReceive = false;
+    private final PidAllocator pidAllocator = new PidAllocator();
     
     /**
-     * Para saber se deve esperar para ler outro comando. Só se pode ler a resposta de um comando já enviado.
+     * Eventos enviados pelo robô por iniciativa própria. As assinaturas valem para todas as sessões desta conexão.
      */
-    private boolean waitSend = true;
-
+    private final RobotEventBus eventBus = new RobotEventBus();
+    
+    /**
+     * Número máximo de comandos que podem estar aguardando resposta ao mesmo tempo (profundidade do pipeline).
+     * Com o valor 1 o comportamento é o antigo: um comando por vez na rede.
+     */
+    private final int pipelineDepth = Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.pipelineDepth", "1"));
+    
+    /**
+     * Lê as respostas do robô e as entrega aos comandos que as aguardam.
+     */
+    private ResponseDispatcher dispatcher;
+    
+    /**
+     * Canal dos comandos de movimento, em que o comando mais recente substitui o pendente. Nulo se
+     * "robot.motion.coalescing" for "false".
+     */
+    private final MotionCoalescer motionCoalescer = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robot.motion.coalescing", "true")) ? new MotionCoalescer() : null;
+    
+    /**
+     * Envia os pacotes que dependem da resposta de outro, como o segundo pacote da leitura da bateria. Eles não são
+     * enviados pela thread de leitura, que não passa pelo escalonamento do pipeline e não pode bloquear numa escrita.
+     * A thread termina depois de um segundo sem envios.
+     */
+    private final Executor chainedSender = chainedSender();
+    
+    /**
+     * Tempo de espera na fila de envio (desde a chamada até a escrita do pacote), por classe de prioridade.
+     */
+    private final EnumMap<CommandPriority, LatencyRecorder> queueWaitLatency = new EnumMap<CommandPriority, LatencyRecorder>(CommandPriority.class);
+    
+    /**
+     * Instante (System.nanoTime()) em que a última frenagem foi pedida. Os comandos de movimento pedidos antes dela e
+     * ainda não escritos são cancelados. As leituras na classe de segurança, como as do reflexo de colisão, não
+     * cancelam nada.
+     */
+    private volatile long lastBrake = System.nanoTime();
+    
+    /**
+     * Instante (System.nanoTime()) em que o último comando de movimento foi escrito.
+     */
+    private volatile long lastMotion = System.nanoTime();
+    
+    /**
+     * Sensores de ultrassom, na ordem dos valores lidos: frontal, traseiro, esquerdo e direito.
+     */
+    private static final int[] ULTRASONIC_SENSORS = {PackageBuilder.ULTRASONIC_FRONT, PackageBuilder.ULTRASONIC_REAR, PackageBuilder.ULTRASONIC_LEFT, PackageBuilder.ULTRASONIC_RIGHT};
+    
+    /**
+     * Para saber se os quatro pacotes de uma leitura dos sensores de ultrassom são enviados numa única escrita.
+     */
+    private final boolean ultrasonicBurst = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robot.ultrasonic.burst", "true"));
+    
+    /**
+     * Tempo de cada varredura dos sensores de ultrassom, desde a chamada até a chegada das quatro respostas.
+     */
+    private final LatencyRecorder ultrasonicSweepLatency = new LatencyRecorder();
+    
+    /**
+     * Cabeçalho do pacote que está sendo lido, reutilizado a cada pacote. É usado apenas pela thread de leitura.
+     */
+    private final byte[] frameHeader = new byte[PackageBuilder.HEADER_LENGTH];
+    
+    /**
+     * Deduplicação das leituras idênticas feitas ao mesmo tempo, ou nulo se desativada em "robot.read.singleflight".
+     */
+    private final SingleFlight singleFlight = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robot.read.singleflight", "true")) ? new SingleFlight() : null;
+    
+    /**
+     * Cache dos valores lidos dos sensores, com uma idade máxima por sensor.
+     */
+    private final ReadCache readCache = new ReadCache();
+    
+    /**
+     * Para servir as leituras individuais do GPS a partir da leitura de todos os dados do GPS (comando 0x16).
+     */
+    private volatile boolean gpsFromFix = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robot.gps.fromFix", "false"));
+    
+    /**
+     * Lote que está sendo gravado pela thread corrente, se houver. Enquanto ele estiver definido, os pacotes são
+     * guardados no lote em vez de enviados.
+     */
+    private final ThreadLocal<CommandBatch> recordingBatch = new ThreadLocal<CommandBatch>();
+    
+    /**
+     * Contabilidade dos pacotes enviados, por consumidor ("source").
+     */
+    private final ConcurrentHashMap<String, SourceStats> sourceStats = new ConcurrentHashMap<String, SourceStats>();
+    
+    /**
+     * Pesos dos consumidores definidos por {@link #setSourceWeight(String, double)}.
+     */
+    private final ConcurrentHashMap<String, Double> sourceWeights = new ConcurrentHashMap<String, Double>();
+    
     /**
-     * Cria uma conexão do tipo WiFi.
+     * Construtor.
      * 
-     * @param port Porta a ser utilizada para a conexão.
+     * @param host Host para conexão com o robô, ou nulo se a conexão não for feita por rede IP.
+     * @param builder Criador de pacotes da conexão. Cada conexão deve ter o seu, já que ele guarda o SID da sessão com
+     * 			o robô.
+     */
+    protected RobotConnection(String host, PackageBuilder builder) {
+    	connectionHost = host;
+    	packageBuilder = builder;
+    	
+    	for (CommandPriority priority : CommandPriority.values()) {
+    		queueWaitLatency.put(priority, new LatencyRecorder());
+    	}
+    	
+    }
+
+    /**
+     * Cria uma conexão do tipo WiFi, com o host, a porta e os identificadores definidos em "robodeckapi.properties".
      * 
      * @return Uma conexão WiFi.
      * 
-     * @throws DifferentRobotConnectionAlreadyExists 
+     * @throws DifferentRobotConnectionAlreadyExists Não é mais lançada, pois cada chamada cria uma conexão
+     * 			independente. Mantida por compatibilidade.
      * @throws UnknownHostException 
      * @throws PortUnreachableException 
      */
@@ -114,23 +258,37 @@ public abstract class RobotConnection {
 
     	int src = Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.src"));
     	int dst = Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.dst"));	
+    	String host = PropertiesLoaderImpl.getValor("robot.network.host");
+		int port = Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.port"));
     	
-    	connectionHost = PropertiesLoaderImpl.getValor("robot.network.host");
-    	
-    	initialize(src, dst);
-    	
-		if (instance == null){
-    		return new RobotWifiNetwork(connectionHost, Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.port")));
-    	} else {
-    		
-    		if (instance instanceof RobotBluetoothNetwork){
-        		return instance;
-    		} else {
-    			throw new DifferentRobotConnectionAlreadyExists(instance.getClass(), RobotBluetoothNetwork.class);
-    		}
-    		
-    	}
+		return makeConnection(host, port, src, dst);
+    }
+
+    /**
+     * Cria uma conexão do tipo WiFi com um robô específico. Cada chamada cria uma conexão independente, com o seu
+     * próprio SID, contador de PID e câmera, de forma que vários robôs podem ser controlados na mesma JVM.
+     * 
+     * O transporte é escolhido por "robot.network.transport".
+     * 
+     * @param host Endereço do robô.
+     * @param port Porta de conexão com o robô.
+     * @param src Identificador do remetente dos pacotes.
+     * @param dst Identificador do destinatário dos pacotes.
+     * 
+     * @return Uma conexão WiFi.
+     * 
+     * @throws UnknownHostException 
+     * @throws PortUnreachableException 
+     */
+    public static RobotConnection makeConnection(String host, int port, int src, int dst) throws PortUnreachableException, UnknownHostException {
+    	PackageBuilder builder = new PackageBuilder(src, dst);
     	
+		if (TRANSPORT_CHANNEL.equalsIgnoreCase(PropertiesLoaderImpl.getValor("robot.network.transport", TRANSPORT_STREAM))){
+    		return new RobotWifiChannelNetwork(host, port, builder);
+		} else {
+    		return new RobotWifiNetwork(host, port, builder);
+		}
+		
     }
 
     /**
@@ -140,7 +298,8 @@ public abstract class RobotConnection {
      * 
      * @return Uma conexão Bluetooth.
      * 
-     * @throws DifferentRobotConnectionAlreadyExists 
+     * @throws DifferentRobotConnectionAlreadyExists Não é mais lançada, pois cada chamada cria uma conexão
+     * 			independente. Mantida por compatibilidade.
      */
     public static RobotConnection makeConnection(String uuid) throws DifferentRobotConnectionAlreadyExists {
     	
@@ -150,31 +309,8 @@ public abstract class RobotConnection {
     	int dst = 1;
     	// ******
     	
-    	initialize(src, dst);
-    	
-    	if (instance == null){
-    		return new RobotBluetoothNetwork(uuid);
-    	} else {
-    		
-    		if (instance instanceof RobotBluetoothNetwork){
-        		return instance;
-    		} else {
-    			throw new DifferentRobotConnectionAlreadyExists(instance.getClass(), RobotBluetoothNetwork.class);
-    		}
-    		
-    	}
-
+		return new RobotBluetoothNetwork(uuid, new PackageBuilder(src, dst));
     }
-	
-	/**
-	 * Inicia demais componentes do robô.
-	 * 
-	 * @param src Remetente do pacote.
-	 * @param dst Destinatário do pacote.
-	 */
-	private static void initialize(int src, int dst){
-		packageBuilder = PackageBuilder.getInstance(src, dst);
-	}
 
     /**
      * Conecta-se ao Robô de acordo com o tipo de conexão (wifi, bluethooth etc.).
@@ -190,282 +326,910 @@ public abstract class RobotConnection {
      * @throws IOException 
      */
     abstract public void disconnect() throws IOException;
-	
-	/**
-	 * Envia um pacote ao robô e incrementa o id do pacote.
-	 * 
-	 * @param bytes Pacote a ser enviado.
-	 * 
-	 * @throws IOException 
-	 * @throws InterruptedException 
-	 */
-	private synchronized void send(byte[] bytes) throws IOException, InterruptedException {
-		
-		while (waitReceive == true) {
-			
-	        StringBuffer debugStr = new StringBuffer();
-			
-			if (debug){
-		        debugStr.append("\n===========\n");
-		        debugStr.append("RobotConnection.send():");
-		        debugStr.append("\nAguardando resposta...");
-		        debugStr.append("\n===========\n");
-				System.out.println(debugStr);
-			}
-			
-//			try {
-				wait();
-//			} catch (InterruptedException e) {
-//				throw new SendPackageException("Falha ao bloquear thread no método RobotConnection.send().");
-//			}
-			
-		}
-
-//		try{
-			waitReceive = true;
-			
-			outputStream.write(bytes);
-			outputStream.flush();
-			packageBuilder.incrementPid();
-//		} catch (IOException e) {
-//			throw new SendPackageException("Falha ao enviar pacote, método RobotConnection.send().");
-//		}
-
-		waitSend = false;
-
-		notifyAll();
-	}
-
-	/**
-	 * Recebe um pacote do robô.
-	 * 
-	 * @return Pacote recebido
-	 * 
-	 * @throws InterruptedException 
-	 * @throws IOException 
-	 */
-	private synchronized byte[] receive() throws InterruptedException, IOException {
-		
-		while (waitSend == true) {
-			
-	        StringBuffer debugStr = new StringBuffer();
-			
-			if (debug){
-		        debugStr.append("\n===========\n");
-		        debugStr.append("RobotConnection.receive():");
-		        debugStr.append("\nAguardando envio de comando...");
-		        debugStr.append("\n===========\n");
-				System.out.println(debugStr);
-			}
-			
-//			try {
-				wait();
-//			} catch (InterruptedException e) {
-//				throw new ReceivePackageException("Falha ao bloquear thread no método RobotConnection.receive().");
-//			}
-			
-		}
-
-		waitSend = true;
-		
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-//        try {
-
-            byte[] header = new byte[PackageBuilder.HEADER_LENGTH];
-            byte[] msgRcvd;
-            int msgLength = 0;
-            
-			inputStream.read(header, 0, PackageBuilder.HEADER_LENGTH);
-	        baos.write(header);
-
-	        msgLength = (header[9] & 0xFF);
-
-	        msgRcvd = new byte[msgLength];
-
-	        inputStream.read(msgRcvd, 0, msgLength);
-	        baos.write(msgRcvd);
-	        baos.flush();
-	        baos.close();
-//		} catch (IOException e) {
-//			throw new ReceivePackageException("Falha ao receber pacote, método RobotConnection.receive().");
-//		}
-		
-		waitReceive = false;
-
-		notifyAll();
-
-        return baos.toByteArray();
+    
+    /**
+     * Retorna o número de leituras que não enviaram pacote porque uma leitura idêntica já aguardava resposta, e
+     * receberam a resposta dela.
+     * 
+     * @return o número de leituras deduplicadas.
+     */
+    public long getSharedReads() {
+    	return (singleFlight == null) ? 0 : singleFlight.getShared();
     }
-
+    
     /**
-     * Abre uma sessão com o robô.
+     * Retorna o número de comandos de movimento substituídos por um mais recente antes de serem enviados.
      * 
-     * @return O ID da sessão.
+     * @return o número de comandos de movimento substituídos.
+     */
+    public long getCoalescedMotionCommands() {
+    	return (motionCoalescer == null) ? 0 : motionCoalescer.getCoalesced();
+    }
+    
+    /**
+     * Retorna o número de comandos de movimento pendentes descartados por frenagem, falha ou encerramento da conexão.
      * 
-     * @throws IOException
-     * @throws OpenSessionException 
-     * @throws EmptyMessageException 
-     * @throws InterruptedException 
+     * @return o número de comandos de movimento descartados.
      */
-    public void openSession() throws IOException, OpenSessionException, EmptyMessageException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.openSession():");
-	        debugStr.append("\nAbrindo sessao...");
-			System.out.println(debugStr);
-		}
-		
-		// Cria o pacote de abertura de sessao e o envia.
-        byte[] pack = packageBuilder.createOpenSessionPackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo e ajusta o id da sessao.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
-		
-        packageBuilder.setSid(PrimitiveDataTypesManipulation.twoBytesToInt(ans[12], ans[13]));
-        
-		// Checa se a sessao foi realmente aberta. 
-        if (packageBuilder.getSid() == 0x0000){
-        	throw new OpenSessionException("Falha ao abrir a sessão."); 
-        }
-		
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nSessao aberta.");
-	        debugStr.append("\nSID: " + packageBuilder.getSid());
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-        
+    public long getDroppedMotionCommands() {
+    	return (motionCoalescer == null) ? 0 : motionCoalescer.getDropped();
+    }
+    
+    /**
+     * Retorna o instante em que o último comando de movimento foi escrito. Um comando pedido antes de uma frenagem
+     * nunca é escrito depois dela.
+     * 
+     * @return o instante, em {@link System#nanoTime()}.
+     */
+    public long getLastMotionTime() {
+    	return lastMotion;
+    }
+    
+    /**
+     * Retorna o tempo que os comandos de uma classe de prioridade esperaram na fila de envio, desde a chamada até a
+     * escrita do pacote.
+     * 
+     * @param priority Classe de prioridade.
+     * 
+     * @return o registro dos tempos de espera, em nanossegundos.
+     */
+    public LatencyRecorder getQueueWaitLatency(CommandPriority priority) {
+    	return queueWaitLatency.get(priority);
+    }
+    
+    /**
+     * Cria um lote de comandos, que serão enviados numa única escrita.
+     * 
+     * @return um lote vazio.
+     * 
+     * @see CommandBatch
+     */
+    public CommandBatch newBatch() {
+    	return new CommandBatch(this);
+    }
+    
+    /**
+     * Cria um lote de comandos escalonado pelo menos na classe de prioridade dada. Um lote na classe de segurança
+     * passa à frente dos comandos que aguardam vaga sem cancelar os comandos de movimento, que só são cancelados por
+     * uma frenagem.
+     * 
+     * @param priority Classe de prioridade mínima do lote.
+     * 
+     * @return um lote vazio.
+     * 
+     * @see CommandBatch
+     */
+    public CommandBatch newBatch(CommandPriority priority) {
+    	return new CommandBatch(this, priority);
     }
+    
+    /**
+     * Chama a variante assíncrona de um comando guardando no lote, em vez de enviar, os pacotes que ela enviaria.
+     * 
+     * @param batch Lote que recebe os pacotes.
+     * @param command Chama a variante assíncrona do comando.
+     * 
+     * @return o resultado futuro do comando.
+     */
+    <T> CompletableFuture<T> recordInto(CommandBatch batch, Supplier<CompletableFuture<T>> command) {
+    	CommandBatch previous = recordingBatch.get();
+    	recordingBatch.set(batch);
+    	
+    	try {
+    		return command.get();
+    	} finally {
+    		recordingBatch.set(previous);
+    	}
     	
+    }
+    
     /**
-     * Fecha uma sessão com o robô.
+     * Envia os pacotes de um lote numa única escrita.
      * 
-     * @throws IOException 
-     * @throws CloseSessionException 
-     * @throws EmptyMessageException 
-     * @throws InterruptedException 
+     * @param frames Pacotes do lote.
+     * @param priority Classe de prioridade do lote.
+     * @param sources Consumidor de cada pacote.
+     * 
+     * @return as respostas futuras, na ordem dos pacotes.
+     * 
+     * @throws IOException
+     * @throws InterruptedException
      */
-    public void closeSession() throws IOException, CloseSessionException, EmptyMessageException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.closeSession():");
-	        debugStr.append("\nFechando a sessão " + packageBuilder.getSid() + "...");
-			System.out.println(debugStr);
-		}
-		
-		// Cria o pacote de fechamento de sessao e o envia.
-        byte[] pack = packageBuilder.createCloseSessionPackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
-
-		// Checa se a sessao foi realmente fechada.
-        if (!((ans[10] == (byte)0x81) && (ans[11] == (byte)0x02) && (ans[12] == CMD_DONE))){
-        	throw new CloseSessionException("Falha ao fechar a sessão.");
-        }
-		
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nSessao fechada.");
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-        
+    CompletableFuture<byte[]>[] sendBatch(byte[][] frames, CommandPriority priority, String[] sources) throws IOException, InterruptedException {
+    	return sendAll(frames, priority, sources, null);
     }
-	
-	/**
-	 * Retorna a versão do protocolo de comunicação.
-	 * 
-	 * @return versão do protocolo de comunicação.
-	 * 
-	 * @throws IOException
-	 * @throws EmptyMessageException
+    
+    /**
+     * Retorna o tempo de cada varredura dos sensores de ultrassom (distância ou luminosidade), desde a chamada até a
+     * chegada das quatro respostas.
+     * 
+     * @return o registro dos tempos de varredura, em nanossegundos.
+     */
+    public LatencyRecorder getUltrasonicSweepLatency() {
+    	return ultrasonicSweepLatency;
+    }
+    
+    /**
+     * Retorna o barramento dos eventos que o robô envia por iniciativa própria, como alarmes de colisão, o aviso de
+     * bateria fraca ou falhas da câmera.
+     * 
+     * @return o barramento de eventos.
+     */
+    public RobotEventBus getEventBus() {
+    	return eventBus;
+    }
+    
+    /**
+     * Retorna a contabilidade dos pacotes enviados por um consumidor.
+     * 
+     * @param source Nome do consumidor, o mesmo passado aos comandos.
+     * 
+     * @return a contabilidade do consumidor, ou nulo se ele ainda não enviou nenhum pacote.
+     */
+    public SourceStats getSourceStats(String source) {
+    	return sourceStats.get(source);
+    }
+    
+    /**
+     * Retorna a contabilidade de todos os consumidores que já enviaram pacotes.
+     * 
+     * @return a contabilidade, indexada pelo nome do consumidor, em ordem alfabética.
+     */
+    public Map<String, SourceStats> getSourceStats() {
+    	return Collections.unmodifiableMap(new TreeMap<String, SourceStats>(sourceStats));
+    }
+    
+    /**
+     * Define a idade máxima dos valores de um sensor no cache de leituras. Uma leitura cujo último valor tem no máximo
+     * esta idade, contada a partir da chegada da resposta, é servida da memória, sem enviar pacotes.
+     * 
+     * Os nomes dos sensores são os das propriedades "robot.cache.maxAge.&lt;sensor&gt;" em "robodeckapi.properties"
+     * (por exemplo, "compass", "temperatureAndHumidity" ou "protocolVersion").
+     * 
+     * @param sensor Nome do sensor no cache.
+     * @param millis Idade máxima, em milissegundos; 0 para sempre ler do robô; -1 para a sessão inteira.
+     */
+    public void setCacheMaxAge(String sensor, long millis) {
+    	readCache.setMaxAge(sensor, millis);
+    }
+    
+    /**
+     * Retorna a idade máxima dos valores de um sensor no cache de leituras: a definida por
+     * {@link #setCacheMaxAge(String, long)}, a da propriedade "robot.cache.maxAge.&lt;sensor&gt;" ou, na falta de
+     * ambas, 0 (sem cache).
+     * 
+     * @param sensor Nome do sensor no cache.
+     * 
+     * @return a idade máxima, em milissegundos.
+     */
+    public long getCacheMaxAge(String sensor) {
+    	return readCache.getMaxAge(sensor);
+    }
+    
+    /**
+     * Descarta todos os valores do cache de leituras. É chamado ao abrir uma sessão.
+     */
+    public void invalidateCache() {
+    	readCache.invalidate();
+    }
+    
+    /**
+     * Retorna a contabilidade do cache de leituras de um sensor.
+     * 
+     * @param sensor Nome do sensor no cache.
+     * 
+     * @return a contabilidade do sensor, ou nulo se ele ainda não foi lido com cache.
+     */
+    public CacheStats getCacheStats(String sensor) {
+    	return readCache.getStats(sensor);
+    }
+    
+    /**
+     * Retorna a contabilidade do cache de leituras de todos os sensores já lidos com cache.
+     * 
+     * @return a contabilidade, indexada pelo nome do sensor, em ordem alfabética.
+     */
+    public Map<String, CacheStats> getCacheStats() {
+    	return readCache.getStats();
+    }
+    
+    /**
+     * Define se as leituras individuais do GPS (versões, validade, satélites, horário, data, latitude, longitude,
+     * altitude, velocidade e direção) são extraídas da leitura de todos os dados do GPS, em vez de enviar cada uma o
+     * seu comando. Com a idade máxima de "gpsGet" no cache de leituras, uma atualização completa da posição passa de
+     * nove rodadas de comandos para uma.
+     * 
+     * @param fromFix true para extrair as leituras individuais da leitura de todos os dados do GPS.
+     */
+    public void setGPSFromFix(boolean fromFix) {
+    	gpsFromFix = fromFix;
+    }
+    
+    /**
+     * Para saber se as leituras individuais do GPS são extraídas da leitura de todos os dados do GPS. O padrão vem da
+     * propriedade "robot.gps.fromFix".
+     * 
+     * @return true se as leituras individuais são extraídas da leitura de todos os dados do GPS.
+     */
+    public boolean isGPSFromFix() {
+    	return gpsFromFix;
+    }
+    
+    /**
+     * Define o peso de um consumidor no escalonamento. Quando o pipeline está cheio, os consumidores de uma mesma
+     * classe de prioridade recebem vagas na proporção dos seus pesos, medida em bytes enviados.
+     * 
+     * @param source Nome do consumidor.
+     * @param weight Peso do consumidor, positivo.
+     */
+    public void setSourceWeight(String source, double weight) {
+    	
+    	if (!(weight > 0)) {
+    		throw new IllegalArgumentException("O peso deve ser positivo: " + weight);
+    	}
+    	
+    	sourceWeights.put(source, weight);
+    }
+    
+    /**
+     * Retorna o peso de um consumidor no escalonamento: o definido por {@link #setSourceWeight(String, double)}, o
+     * da propriedade "robot.scheduler.weight.&lt;source&gt;" ou, na falta de ambos, 1.
+     * 
+     * @param source Nome do consumidor.
+     * 
+     * @return o peso do consumidor.
+     */
+    public double getSourceWeight(String source) {
+    	Double weight = sourceWeights.get(source);
+    	
+    	if (weight == null) {
+    		weight = Double.valueOf(PropertiesLoaderImpl.getValor("robot.scheduler.weight." + source, "1"));
+    		sourceWeights.putIfAbsent(source, weight);
+    	}
+    	
+    	return weight;
+    }
+    
+    /**
+     * Inicia a thread que lê as respostas do robô. Deve ser chamado pelas subclasses assim que os fluxos de dados
+     * estiverem disponíveis.
+     */
+    protected void startReceiving() {
+    	dispatcher = new ResponseDispatcher(this, packageBuilder, pipelineDepth, pidAllocator, eventBus);
+    	dispatcher.start();
+    }
+    
+    /**
+     * Interrompe a leitura das respostas do robô. Deve ser chamado pelas subclasses antes de fechar a conexão.
+     */
+    protected void stopReceiving() {
+    	
+    	if (motionCoalescer != null) {
+    		motionCoalescer.dropPending(new IOException("A conexão com o robô foi encerrada."));
+    	}
+    	
+    	if (dispatcher != null) {
+    		dispatcher.stop();
+    	}
+    	
+    }
+    
+    /**
+     * Prepara o recebimento das respostas sem criar uma thread de leitura: os pacotes são lidos por outra thread,
+     * que os entrega por {@link #dispatchFrame(byte[])}. Usado pelas conexões do {@link ConnectionEngine}.
+     * 
+     * @param ioThread Thread que lerá os pacotes desta conexão.
+     */
+    void attachReceiving(Thread ioThread) {
+    	dispatcher = new ResponseDispatcher(this, packageBuilder, pipelineDepth, pidAllocator, eventBus);
+    	dispatcher.attach(ioThread);
+    }
+    
+    /**
+     * Entrega um pacote lido por uma thread externa ao comando que o aguarda.
+     * 
+     * @param frame Pacote recebido.
+     * 
+     * @see #attachReceiving(Thread)
+     */
+    void dispatchFrame(byte[] frame) {
+    	dispatcher.dispatch(frame);
+    }
+    
+    /**
+     * Faz falhar todos os comandos que aguardam resposta, quando a leitura externa dos pacotes falha.
+     * 
+     * @param cause Causa da falha.
+     * 
+     * @see #attachReceiving(Thread)
+     */
+    void receivingFailed(IOException cause) {
+    	
+    	if (motionCoalescer != null) {
+    		motionCoalescer.dropPending(cause);
+    	}
+    	
+    	if (dispatcher != null) {
+    		dispatcher.abort(cause);
+    	}
+    	
+    }
+	
+	/**
+	 * Envia vários pacotes ao robô numa única escrita, cada um com o seu próprio PID e atribuído ao seu consumidor na
+	 * contabilidade.
+	 * 
+	 * O PID é carimbado em cada pacote no momento do envio e o pacote é registrado para receber a resposta cujo campo
+	 * REF seja igual a este PID, de forma que vários comandos possam estar aguardando resposta ao mesmo tempo. Um PID
+	 * só volta a ser usado depois que a resposta do seu comando chega; se os 255 PIDs aguardam resposta, o envio
+	 * aguarda um PID livre ({@link PidAllocator}).
+	 * 
+	 * Com o pipeline cheio, os comandos aguardam por classe de prioridade e, dentro da classe, em fila justa ponderada
+	 * entre os consumidores ("source"). Os pacotes de uma mesma chamada são escalonados juntos, em nome do consumidor
+	 * do primeiro pacote: se forem mais numerosos que a profundidade do pipeline, aguardam até que ele esteja vazio e o
+	 * ocupam por inteiro.
+	 * 
+	 * Um comando de movimento que ainda aguardava quando uma frenagem foi pedida não é mais enviado: a sua resposta
+	 * falha com {@link CancellationException}.
+	 * 
+	 * @param frames Pacotes a serem enviados.
+	 * @param priority Classe de prioridade dos pacotes.
+	 * @param sources Consumidor de cada pacote.
+	 * @param listener Recebe as respostas parciais dos pacotes (ver {@link PartialResponseListener}), ou nulo.
+	 * 
+	 * @return as respostas futuras, na ordem dos pacotes, completadas pela thread de leitura.
+	 * 
+	 * @throws IOException 
 	 * @throws InterruptedException 
-	 * @throws ReadInfraredSensorsDepthException
 	 */
-    public String getCommunicationProtocolVersion() throws IOException, EmptyMessageException, GetCommunicationProtocolVersionException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int[] sensorValues = new int[3];
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private CompletableFuture<byte[]>[] sendAll(byte[][] frames, CommandPriority priority, String[] sources, PartialResponseListener listener) throws IOException, InterruptedException {
+		final long requested = System.nanoTime();
+		CompletableFuture<byte[]>[] replies = new CompletableFuture[frames.length];
+		SourceStats[] stats = new SourceStats[frames.length];
+		int length = 0;
 		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.getCommunicationProtocolVersion():");
-			System.out.println(debugStr);
+		for (int i = 0; i < frames.length; i++) {
+			length += frames[i].length;
+			stats[i] = sourceStats.computeIfAbsent((sources[i] == null) ? CONNECTION_SOURCE : sources[i], SourceStats::new);
+		}
+		
+		String source = stats[0].getSource();
+		
+		// As vagas são reservadas fora do monitor, para que a thread de leitura possa enviar enquanto outra thread aguarda.
+		dispatcher.acquireSlot(priority, source, getSourceWeight(source), length, frames.length);
+		
+		int[] pids = new int[frames.length];
+		
+		try {
+			acquirePids(pids);
+		} catch (InterruptedException | IOException | RuntimeException e) {
+			dispatcher.releaseSlot(frames.length);
+			throw e;
+		}
+		
+		synchronized (this) {
+			
+			if ((priority == CommandPriority.MOTION) && ((lastBrake - requested) > 0)) {
+				dispatcher.releaseSlot(frames.length);
+				
+				for (int pid : pids) {
+					pidAllocator.release(pid);
+				}
+				
+				for (int i = 0; i < frames.length; i++) {
+					stats[i].failed();
+					replies[i] = failed(new CancellationException("Comando de movimento cancelado por um comando de segurança."));
+				}
+				
+				return replies;
+			}
+			
+			for (int i = 0; i < frames.length; i++) {
+				frames[i][0] = (byte)pids[i];
+				replies[i] = dispatcher.register(pids[i], frames[i], listener);
+			}
+			
+			try {
+				
+				if (frames.length == 1) {
+					writeFrame(frames[0]);
+				} else {
+					writeFrames(frames);
+				}
+				
+			} catch (IOException e) {
+				
+				for (int i = 0; i < frames.length; i++) {
+					dispatcher.fail(pids[i], e);
+					stats[i].failed();
+				}
+				
+				throw e;
+			}
+			
+			long written = System.nanoTime();
+			
+			if (priority == CommandPriority.MOTION) {
+				lastMotion = written;
+			}
+			
+			for (int i = 0; i < frames.length; i++) {
+				final SourceStats frameStats = stats[i];
+				frameStats.sent(frames[i].length);
+				replies[i].whenComplete((ans, failure) -> {
+					
+					if (failure == null) {
+						frameStats.received(ans.length, System.nanoTime() - requested);
+					} else {
+						frameStats.failed();
+					}
+					
+				});
+			}
+			
+			// Os pacotes de um envio esperaram juntos: a espera é registrada uma única vez.
+			queueWaitLatency.get(priority).record(written - requested);
+			
+			return replies;
+		}
+		
+	}
+	
+	/**
+	 * Aloca os PIDs de um envio. A thread de leitura nunca bloqueia (ver
+	 * {@link ResponseDispatcher#acquireSlot(CommandPriority, String, double, int, int)}): se não houver PIDs livres, o
+	 * envio dela falha.
+	 * 
+	 * @param pids Recebe os PIDs alocados.
+	 * 
+	 * @throws IOException se a thread de leitura não encontrar PIDs livres.
+	 * @throws InterruptedException 
+	 */
+	private void acquirePids(int[] pids) throws IOException, InterruptedException {
+		
+		if (!dispatcher.isReaderThread()) {
+			pidAllocator.acquire(pids);
+		} else if (!pidAllocator.tryAcquire(pids)) {
+			throw new IOException("Todos os " + PidAllocator.CAPACITY + " PIDs aguardam resposta.");
+		}
+		
+	}
+	
+	/**
+	 * Escreve um pacote completo no fluxo de saída. É chamado com o monitor da conexão, portanto nunca por duas
+	 * threads ao mesmo tempo.
+	 * 
+	 * As subclasses que não usam fluxos (por exemplo, {@link RobotWifiChannelNetwork}) devem sobrescrever este
+	 * método e {@link #readFrame()}.
+	 * 
+	 * @param bytes Pacote a ser enviado.
+	 * 
+	 * @throws IOException
+	 */
+	protected void writeFrame(byte[] bytes) throws IOException {
+		outputStream.write(bytes);
+		outputStream.flush();
+	}
+	
+	/**
+	 * Escreve vários pacotes completos de uma só vez, na ordem dada. É chamado com o monitor da conexão.
+	 * 
+	 * A implementação padrão junta os pacotes num único array e o escreve com {@link #writeFrame(byte[])}. As
+	 * subclasses podem sobrescrevê-la para fazer uma escrita agrupada ("gathering write") sem a cópia.
+	 * 
+	 * @param frames Pacotes a serem enviados.
+	 * 
+	 * @throws IOException
+	 */
+	protected void writeFrames(byte[][] frames) throws IOException {
+		int length = 0;
+		
+		for (byte[] frame : frames) {
+			length += frame.length;
+		}
+		
+		byte[] joined = new byte[length];
+		int offset = 0;
+		
+		for (byte[] frame : frames) {
+			System.arraycopy(frame, 0, joined, offset, frame.length);
+			offset += frame.length;
+		}
+		
+		writeFrame(joined);
+	}
+	
+	/**
+	 * Lê um pacote completo (cabeçalho e mensagem) do fluxo de entrada. É chamado apenas pela thread de leitura das
+	 * respostas.
+	 * 
+	 * @return Pacote lido.
+	 * 
+	 * @throws IOException
+	 */
+	protected byte[] readFrame() throws IOException {
+		readFully(frameHeader, 0, PackageBuilder.HEADER_LENGTH);
+		
+		int msgLength = (frameHeader[9] & 0xFF);
+		byte[] frame = new byte[PackageBuilder.HEADER_LENGTH + msgLength];
+		System.arraycopy(frameHeader, 0, frame, 0, PackageBuilder.HEADER_LENGTH);
+		readFully(frame, PackageBuilder.HEADER_LENGTH, msgLength);
+		
+		return frame;
+	}
+	
+	/**
+	 * Lê exatamente "length" bytes do fluxo de entrada.
+	 * 
+	 * @throws IOException se a conexão for encerrada antes.
+	 */
+	private void readFully(byte[] buffer, int offset, int length) throws IOException {
+		int bytesRead = 0;
+		
+		while (bytesRead < length) {
+			int n = inputStream.read(buffer, offset + bytesRead, length - bytesRead);
+			
+			if (n < 0) {
+				throw new IOException("A conexão com o robô foi encerrada.");
+			}
+			
+			bytesRead += n;
 		}
+		
+	}
+
+	/**
+	 * Envia um comando da tabela {@link ProtocolCommand} e interpreta a sua resposta quando ela chegar. Todos os
+	 * comandos da tabela passam por aqui.
+	 *
+	 * A interpretação roda na thread de leitura das respostas. Ações demoradas encadeadas ao resultado devem usar as
+	 * variantes "Async" de {@link CompletableFuture}.
+	 *
+	 * @param command Comando enviado.
+	 * @param source Consumidor que envia o comando, usado no escalonamento e na contabilidade.
+	 * @param priority Classe de prioridade do comando.
+	 * @param values Valores dos campos variáveis do comando.
+	 *
+	 * @return o resultado futuro do comando. Em caso de falha, é completado com a exceção específica do comando ou
+	 * 			com {@link IOException}.
+	 */
+	private <T> CompletableFuture<T> execute(final ProtocolCommand<T> command, String source, CommandPriority priority, int... values) {
+		debugCommand(command, source, values);
 
-		// Cria o pacote dizendo para o robô informar a versão do protocolo de comunicação.
-        byte[] pack = packageBuilder.createCommunicationProtocolVersionPackage();
+		return exchange(command, source, priority, false, packageBuilder.create(command, values)).thenApply(ans -> {
 
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
+			try {
+				return command.decode(ans[0]);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+
+		});
+	}
+
+	/**
+	 * Envia um comando de leitura da tabela {@link ProtocolCommand}, um pacote para cada valor dado do seu campo
+	 * variável (ou um único pacote, se o comando não tiver campos), e copia os valores das respostas para um array do
+	 * chamador, na ordem dos pacotes. Não usa o cache de leituras.
+	 *
+	 * @param command Comando de leitura enviado.
+	 * @param into Recebe os valores.
+	 * @param burst true para enviar os pacotes numa única escrita.
+	 * @param fields Valor do campo variável de cada pacote.
+	 *
+	 * @return o próprio array recebido, futuro.
+	 *
+	 * @see ProtocolCommand#copy(byte[], int[], int)
+	 */
+	private CompletableFuture<int[]> readInto(final ProtocolCommand<?> command, String source, final int[] into, boolean burst, int... fields) {
+		debugCommand(command, source, fields);
+
+		byte[][] packs = new byte[Math.max(1, fields.length)][];
+
+		for (int i = 0; i < packs.length; i++) {
+			packs[i] = (fields.length == 0) ? packageBuilder.create(command) : packageBuilder.create(command, fields[i]);
+		}
+
+		return exchange(command, source, CommandPriority.TELEMETRY, burst, packs).thenApply(ans -> {
+			int position = 0;
+
+			try {
+
+				for (byte[] frame : ans) {
+					position += command.copy(frame, into, position);
+				}
+
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+
+			return into;
+		});
+	}
+
+	/**
+	 * Envia os pacotes de um comando e reúne as suas respostas, na ordem dos pacotes.
+	 *
+	 * Se o comando for uma leitura e uma leitura com os mesmos pacotes já estiver aguardando resposta, nenhum pacote é
+	 * enviado: as respostas dela servem também para esta chamada ({@link SingleFlight}). Leituras gravadas num lote
+	 * ({@link CommandBatch}) são sempre enviadas.
+	 *
+	 * @param command Comando dos pacotes.
+	 * @param source Consumidor que envia os pacotes.
+	 * @param priority Classe de prioridade dos pacotes.
+	 * @param burst true para enviar os pacotes numa única escrita, escalonados juntos; false para enviar cada um
+	 * 			separadamente.
+	 * @param packs Pacotes a serem enviados.
+	 *
+	 * @return as respostas futuras do robô, na ordem dos pacotes.
+	 */
+	private CompletableFuture<byte[][]> exchange(ProtocolCommand<?> command, final String source, final CommandPriority priority, final boolean burst, final byte[]... packs) {
+
+		if (command.read && (singleFlight != null) && (recordingBatch.get() == null)) {
+			return singleFlight.join(flightKey(packs), () -> transmit(packs, priority, source, burst));
+		}
+
+		return transmit(packs, priority, source, burst);
+	}
+
+	/**
+	 * Envia os pacotes, ou os guarda no lote que a thread corrente estiver gravando ({@link CommandBatch}), e reúne as
+	 * suas respostas, exibindo pacotes e respostas quando em modo de depuração.
+	 *
+	 * @see #exchange(ProtocolCommand, String, CommandPriority, boolean, byte[]...)
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private CompletableFuture<byte[][]> transmit(byte[][] packs, CommandPriority priority, String source, boolean burst) {
+		final CompletableFuture<byte[]>[] replies;
+		CommandBatch batch = recordingBatch.get();
+
+		if (source == null) {
+			source = CONNECTION_SOURCE;
+		}
+
+		try {
+
+			if (batch != null) {
+				replies = batch.add(packs, priority, source);
+			} else if (burst || (packs.length == 1)) {
+				String[] sources = new String[packs.length];
+				Arrays.fill(sources, source);
+				replies = sendAll(packs, priority, sources, null);
+			} else {
+				replies = new CompletableFuture[packs.length];
+
+				for (int i = 0; i < packs.length; i++) {
+					replies[i] = sendAll(new byte[][] {packs[i]}, priority, new String[] {source}, null)[0];
+				}
+
+			}
+
+		} catch (Exception e) {
+			return failed(e);
 		}
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
 		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
+	        StringBuffer debugStr = new StringBuffer();
+
+	        for (byte[] pack : packs) {
+	        	debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
+	        }
+
 			System.out.println(debugStr);
 		}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x80) && (ans[11] == (byte)0x00))){
-        	throw new GetCommunicationProtocolVersionException("Falha ao receber informação da versão do protocolo de comunicação.");
-        }
-		
-        // Armazena os valores no array de resposta.
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        sensorValues[2] = PrimitiveDataTypesManipulation.byteToInt(ans[14]);
-        
-        String communicationProtocolVersion = sensorValues[0] + "." + sensorValues[1] + "." + sensorValues[2];
-        
+		return CompletableFuture.allOf(replies).thenApply(done -> {
+			byte[][] answers = new byte[replies.length][];
+
+			for (int i = 0; i < replies.length; i++) {
+				answers[i] = replies[i].join();
+
+				if (debug){
+					System.out.println("Recebeu: " + packageBuilder.packageToString(answers[i]));
+				}
+
+			}
+
+			return answers;
+		});
+	}
+
+	/**
+	 * Exibe, quando em modo de depuração, o comando que está sendo enviado.
+	 */
+	private void debugCommand(ProtocolCommand<?> command, String source, int[] values) {
+
 		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nVersão do protocolo de comunicação: " + communicationProtocolVersion);
-	        debugStr.append("\n===========");
+	        StringBuffer debugStr = new StringBuffer();
+	        debugStr.append("\n===========\n");
+	        debugStr.append("RobotConnection." + command.describe(source, values) + ":");
 			System.out.println(debugStr);
 		}
-		
-		return communicationProtocolVersion;
+
+	}
+
+	/**
+	 * Serve uma leitura pelo cache, se o último valor do sensor não estiver vencido, ou a envia e guarda o valor lido.
+	 * Leituras gravadas num lote ({@link CommandBatch}) são sempre enviadas.
+	 *
+	 * @param sensor Nome do sensor no cache.
+	 * @param command Envia a leitura.
+	 *
+	 * @return o valor futuro do sensor.
+	 *
+	 * @see ReadCache
+	 */
+	private <T> CompletableFuture<T> cached(String sensor, Supplier<CompletableFuture<T>> command) {
+
+		if (recordingBatch.get() != null) {
+			return command.get();
+		}
+
+		return readCache.get(sensor, command);
+	}
+
+	/**
+	 * Chave de deduplicação de uma leitura: o conteúdo dos pacotes, exceto o PID, que só é definido no envio.
+	 *
+	 * @param packs Pacotes da leitura.
+	 *
+	 * @return a chave, comparável pelo conteúdo.
+	 */
+	private static ByteBuffer flightKey(byte[]... packs) {
+		int length = 0;
+
+		for (byte[] pack : packs) {
+			length += pack.length - 1;
+		}
+
+		ByteBuffer key = ByteBuffer.allocate(length);
+
+		for (byte[] pack : packs) {
+			key.put(pack, 1, pack.length - 1);
+		}
+
+		key.flip();
+
+		return key;
+	}
+
+	/**
+	 * Envia um comando de movimento pelo canal em que o comando mais recente substitui o pendente.
+	 *
+	 * @param command Envia o comando e retorna a sua resposta futura.
+	 *
+	 * @return future completado quando o comando, ou o comando mais recente que o substituiu, for aceito.
+	 *
+	 * @see MotionCoalescer
+	 */
+	private CompletableFuture<Void> motion(Supplier<CompletableFuture<Void>> command) {
+
+		if (motionCoalescer == null) {
+			return command.get();
+		}
+
+		return motionCoalescer.submit(command);
+	}
+
+	/**
+	 * Cria o executor dos pacotes que dependem da resposta de outro: uma única thread, que termina depois de um
+	 * segundo sem envios.
+	 */
+	private static Executor chainedSender() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), task -> {
+			Thread senderThread = new Thread(task, "RobotConnection-chained");
+			senderThread.setDaemon(true);
+
+			return senderThread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	/**
+	 * Retorna um future já completado com a falha dada.
+	 */
+	private static <T> CompletableFuture<T> failed(Throwable cause) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(cause);
+
+		return future;
+	}
+
+	/**
+	 * Aguarda o resultado de um comando assíncrono, relançando a exceção com que ele falhou.
+	 *
+	 * @param future Resultado futuro do comando.
+	 * @param failure Exceção específica do comando.
+	 *
+	 * @return o resultado do comando.
+	 */
+	private static <T, E extends Exception> T await(CompletableFuture<T> future, Class<E> failure)
+			throws E, IOException, EmptyMessageException, InterruptedException {
+
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (failure.isInstance(cause)) {
+				throw failure.cast(cause);
+			} else if (cause instanceof IOException) {
+				throw (IOException)cause;
+			} else if (cause instanceof EmptyMessageException) {
+				throw (EmptyMessageException)cause;
+			} else if (cause instanceof InterruptedException) {
+				throw (InterruptedException)cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else {
+				throw new IOException("Falha ao executar comando no robô.", cause);
+			}
+
+		}
+
+	}
+
+    /**
+     * Abre uma sessão com o robô.
+     *
+     * @return O ID da sessão.
+     *
+     * @throws IOException
+     * @throws OpenSessionException
+     * @throws EmptyMessageException
+     * @throws InterruptedException
+     */
+    public void openSession() throws IOException, OpenSessionException, EmptyMessageException, InterruptedException{
+    	readCache.invalidate();
+
+    	await(execute(ProtocolCommand.OPEN_SESSION, CONNECTION_SOURCE, CommandPriority.TELEMETRY).thenApply(sid -> {
+    		packageBuilder.setSid(sid);
+
+    		// Checa se a sessao foi realmente aberta.
+    		if (sid == 0x0000){
+    			throw new CompletionException(new OpenSessionException("Falha ao abrir a sessão."));
+    		}
+
+    		return null;
+    	}), OpenSessionException.class);
+    }
+
+    /**
+     * Fecha uma sessão com o robô.
+     *
+     * @throws IOException
+     * @throws CloseSessionException
+     * @throws EmptyMessageException
+     * @throws InterruptedException
+     */
+    public void closeSession() throws IOException, CloseSessionException, EmptyMessageException, InterruptedException{
+    	await(execute(ProtocolCommand.CLOSE_SESSION, CONNECTION_SOURCE, CommandPriority.TELEMETRY), CloseSessionException.class);
+    }
+
+	/**
+	 * Retorna a versão do protocolo de comunicação.
+	 *
+	 * @return versão do protocolo de comunicação.
+	 *
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws InterruptedException
+	 * @throws ReadInfraredSensorsDepthException
+	 */
+    public String getCommunicationProtocolVersion() throws IOException, EmptyMessageException, GetCommunicationProtocolVersionException, InterruptedException{
+    	return await(getCommunicationProtocolVersionAsync(), GetCommunicationProtocolVersionException.class);
+    }
+
+	/**
+	 * Versão assíncrona de {@link #getCommunicationProtocolVersion()}.
+	 *
+	 * @return versão futura do protocolo de comunicação.
+	 */
+    public CompletableFuture<String> getCommunicationProtocolVersionAsync(){
+    	return cached("protocolVersion", () -> execute(ProtocolCommand.COMMUNICATION_PROTOCOL_VERSION, CONNECTION_SOURCE, CommandPriority.TELEMETRY));
     }
 
     /**
@@ -473,1700 +1237,993 @@ public abstract class RobotConnection {
      * Por exemplo, se o robô está andando em linha reta e este comando for executado com um valor
      * de intensidade maior do que o atual, o robô continuará se locomovendo em linha reta, porém
      * a uma velocidade maior.
-     * 
+     *
      * @param intensity Nova intensidade de locomoção. Se o valor for negativo, o robô anda para trás.
-     * 
+     *
      * @throws IOException
      * @throws EmptyMessageException
      * @throws MoveRobotException
-     * @throws InterruptedException 
+     * @throws InterruptedException
      */
     public void sendMoveCommand(int intensity, String source) throws IOException, EmptyMessageException, MoveRobotException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendMoveCommand(" + intensity + ", " + source + "):");
-			System.out.println(debugStr);
-		}
-		
-		// Cria o pacote dizendo para o robô se mover e o envia.
-        byte[] pack = packageBuilder.createMovePackage(intensity);
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+    	await(sendMoveCommandAsync(intensity, source), MoveRobotException.class);
+    }
+
+    /**
+     * Versão assíncrona de {@link #sendMoveCommand(int, String)}.
+     *
+     * Se outro comando de movimento estiver aguardando resposta, este substitui o que estiver pendente.
+     *
+     * @return future completado quando o robô aceitar o comando, ou o comando mais recente que o substituiu.
+     */
+    public CompletableFuture<Void> sendMoveCommandAsync(int intensity, String source){
+    	return motion(() -> execute(ProtocolCommand.MOVE, source, CommandPriority.MOTION, intensity));
+    }
+
+    /**
+     * Para o robô (movimento com intensidade zero), com a prioridade de segurança.
+     *
+     * A frenagem passa à frente de qualquer comando de movimento ou leitura que aguarde vaga no pipeline. O comando
+     * de movimento pendente e os que ainda aguardavam envio quando a frenagem foi pedida são cancelados, para que o
+     * robô não volte a se mover depois de frear.
+     *
+     * @throws IOException
+     * @throws EmptyMessageException
+     * @throws MoveRobotException
+     * @throws InterruptedException
+     */
+    public void sendBrakeCommand(String source) throws IOException, EmptyMessageException, MoveRobotException, InterruptedException{
+    	await(sendBrakeCommandAsync(source), MoveRobotException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+    /**
+     * Versão assíncrona de {@link #sendBrakeCommand(String)}.
+     *
+     * @return future completado quando o robô aceitar a frenagem.
+     */
+    public CompletableFuture<Void> sendBrakeCommandAsync(String source){
+    	lastBrake = System.nanoTime();
+    	
+    	if (motionCoalescer != null) {
+    		motionCoalescer.preempt();
+    	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x01) && (ans[12] == CMD_DONE))){
-        	throw new MoveRobotException("Falha ao mover robô.");
-        }
-		
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nComando aceito.");
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-        
+    	return execute(ProtocolCommand.BRAKE, source, CommandPriority.SAFETY, 0);
     }
 
     /**
      * Faz com que o robô realize uma curva seguindo o ângulo e a intensidade dados. O ângulo
      * fornecido diz respeito ao ângulo que o robô fará com relação à sua frente, ao se deslocar. A
      * intensidade é um valor proporcional a velocidade resultante do robô.
-     * 
+     *
      * @param ângulo da curva a ser realizada, em graus. Valor entre -32 e +32.
      * @param intensity Nova intensidade de locomoção. Se o valor for negativo, o robô anda para trás.
-     * 
+     *
      * @throws IOException
      * @throws EmptyMessageException
      * @throws TurnRobotException
-     * @throws InterruptedException 
+     * @throws InterruptedException
      */
     public void sendTurnCommand(byte angle, int intensity, String source) throws IOException, EmptyMessageException, TurnRobotException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendTurnCommand(" + angle + ", " + intensity + ", " + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô se virar e o envia.
-        byte[] pack = packageBuilder.createTurnPackage(angle, intensity);
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+    	await(sendTurnCommandAsync(angle, intensity, source), TurnRobotException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x02) && (ans[12] == CMD_DONE))){
-        	throw new TurnRobotException("Falha ao girar robô.");
-        }
-		
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nComando aceito.");
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-        
+    /**
+     * Versão assíncrona de {@link #sendTurnCommand(byte, int, String)}.
+     *
+     * Se outro comando de movimento estiver aguardando resposta, este substitui o que estiver pendente.
+     *
+     * @return future completado quando o robô aceitar o comando, ou o comando mais recente que o substituiu.
+     */
+    public CompletableFuture<Void> sendTurnCommandAsync(byte angle, int intensity, String source){
+    	return motion(() -> execute(ProtocolCommand.TURN, source, CommandPriority.MOTION, angle, intensity));
     }
 
     /**
      * Faz com que o robô ande se desloque mantendo o alinhamento de sua carroceria com a mesma
      * direção na qual se encontrava antes de iniciar o movimento.
-     * 
+     *
      * @param ângulo final das rodas em relação à frente do robô, em graus. Valor entre -32 e +32.
      * @param intensity Nova intensidade de locomoção. Se o valor for negativo, o robô anda para trás.
-     * 
+     *
      * @throws IOException
      * @throws EmptyMessageException
      * @throws StrafeRobotException
-     * @throws InterruptedException 
+     * @throws InterruptedException
      */
     public void sendStrafeCommand(byte angle, int intensity, String source) throws IOException, EmptyMessageException, StrafeRobotException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendStrafeCommand(" + angle + ", " + intensity + ", " + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô se mover alinhado com sua carroceria.
-        byte[] pack = packageBuilder.createStrafePackage(angle, intensity);
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+    	await(sendStrafeCommandAsync(angle, intensity, source), StrafeRobotException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x03) && (ans[12] == CMD_DONE))){
-        	throw new StrafeRobotException("Falha ao mover robô alinhado com sua carroceria.");
-        }
-		
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nComando aceito.");
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-        
+    /**
+     * Versão assíncrona de {@link #sendStrafeCommand(byte, int, String)}.
+     *
+     * Se outro comando de movimento estiver aguardando resposta, este substitui o que estiver pendente.
+     *
+     * @return future completado quando o robô aceitar o comando, ou o comando mais recente que o substituiu.
+     */
+    public CompletableFuture<Void> sendStrafeCommandAsync(byte angle, int intensity, String source){
+    	return motion(() -> execute(ProtocolCommand.STRAFE, source, CommandPriority.MOTION, angle, intensity));
     }
 
     /**
      * Faz o robô girar em torno do próprio eixo.
-     * 
+     *
      * @param side sentido do giro. Anti-horário Robot.SPIN_COUNTERCLOCKWISE ou horário Robot.SPIN_CLOCKWISE.
      * @param intensity Nova intensidade de locomoção. Se o valor for negativo, o robô anda para trás.
-     * 
+     *
      * @throws IOException
      * @throws EmptyMessageException
      * @throws SpinRobotException
-     * @throws InterruptedException 
+     * @throws InterruptedException
      */
 	public void sendSpinCommand(byte side, int intensity, String source) throws IOException, EmptyMessageException, SpinRobotException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendSpinCommand(" + side + ", " + intensity + ", " + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô girar.
-        byte[] pack = packageBuilder.createSpinPackage(side, intensity);
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		await(sendSpinCommandAsync(side, intensity, source), SpinRobotException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+    /**
+     * Versão assíncrona de {@link #sendSpinCommand(byte, int, String)}.
+     *
+     * Se outro comando de movimento estiver aguardando resposta, este substitui o que estiver pendente.
+     *
+     * @return future completado quando o robô aceitar o comando, ou o comando mais recente que o substituiu.
+     */
+	public CompletableFuture<Void> sendSpinCommandAsync(byte side, int intensity, String source){
+		return motion(() -> execute(ProtocolCommand.SPIN, source, CommandPriority.MOTION, side, intensity));
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x04) && (ans[12] == CMD_DONE))){
-        	throw new SpinRobotException("Falha ao girar o robô.");
-        }
-		
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nComando aceito.");
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-        
-    }
-	
 	/**
 	 * Lê os valores dos sensores de infravermelho de profundidade.
-	 * 
+	 *
 	 * @return um array de 2 bytes, sendo o primeiro o valor do sensor dianteiro e o segundo o valor do sensor traseiro.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 * @throws SpinRobotException
 	 */
 	public int[] sendReadInfraredSensorsDepthCommand(String source) throws IOException, EmptyMessageException, ReadInfraredSensorsDepthException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadInfraredSensorsDepthCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar os valores de seus sensores de infravermelho.
-        byte[] pack = packageBuilder.createInfraredSensorsPackage(PackageBuilder.INFRAREDS_DEPTH);
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		return await(sendReadInfraredSensorsDepthCommandAsync(source), ReadInfraredSensorsDepthException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendReadInfraredSensorsDepthCommand(String)}.
+	 *
+	 * @return valores futuros dos sensores dianteiro e traseiro.
+	 */
+	public CompletableFuture<int[]> sendReadInfraredSensorsDepthCommandAsync(String source){
+		return cached("infraredDepth", () -> execute(ProtocolCommand.INFRARED_SENSORS_DEPTH, source, CommandPriority.TELEMETRY, PackageBuilder.INFRAREDS_DEPTH));
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x05))){
-        	throw new ReadInfraredSensorsDepthException("Falha ao receber dados dos sensores de infravermelho de profundidade do robô.");
-        }
-		
-        int[] sensorValues = new int[2];
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores dos sensores:");
-			debugStr.append("\nDianteiro: " + sensorValues[0]);
-			debugStr.append("\nTraseiro: " + sensorValues[1]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
-    }
-	
 	/**
 	 * Lê os valores dos sensores de infravermelho de distância.
-	 * 
+	 *
 	 * @return um array de 2 bytes, sendo o primeiro o valor do sensor esquerdo e o segundo o valor do sensor direito.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 * @throws SpinRobotException
 	 */
 	public int[] sendReadInfraredSensorsDistanceCommand(String source) throws IOException, EmptyMessageException, ReadInfraredSensorsDistanceException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadInfraredSensorsDistanceCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar os valores de seus sensores de infravermelho.
-        byte[] pack = packageBuilder.createInfraredSensorsPackage(PackageBuilder.INFRAREDS_DISTANCE);
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		return await(sendReadInfraredSensorsDistanceCommandAsync(source), ReadInfraredSensorsDistanceException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendReadInfraredSensorsDistanceCommand(String)}.
+	 *
+	 * @return valores futuros dos sensores esquerdo e direito.
+	 */
+	public CompletableFuture<int[]> sendReadInfraredSensorsDistanceCommandAsync(String source){
+		return cached("infraredDistance", () -> execute(ProtocolCommand.INFRARED_SENSORS_DISTANCE, source, CommandPriority.TELEMETRY, PackageBuilder.INFRAREDS_DISTANCE));
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x05))){
-        	throw new ReadInfraredSensorsDistanceException("Falha ao receber dados dos sensores de infravermelho de distância do robô.");
-        }
-		
-        int[] sensorValues = new int[2];
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores dos sensores:");
-			debugStr.append("\nEsquerdo: " + sensorValues[0]);
-			debugStr.append("\nDireito: " + sensorValues[1]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
-    }
-	
 	/**
 	 * Lê os valores dos sensores de ultrassom de distância.
-	 * 
+	 *
 	 * @return um array de 4 ints, sendo o primeiro o valor do sensor frontal, o segundo do sensor traseiro,
 	 * 			o terceito do sensor esquerdo e o quarto do sensor direito.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadUltrassonicSensorsDistanceException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadUltrassonicSensorsDistanceCommand(String source) throws IOException, EmptyMessageException, ReadUltrassonicSensorsDistanceException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int[] sensorValues = new int[4];
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadUltrassonicSensorsDistanceCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
+		return await(sendReadUltrassonicSensorsDistanceCommandAsync(source), ReadUltrassonicSensorsDistanceException.class);
+    }
+
+	/**
+	 * Versão assíncrona de {@link #sendReadUltrassonicSensorsDistanceCommand(String)}.
+	 *
+	 * Com "robot.ultrasonic.burst" ativo, os quatro pacotes são enviados numa única escrita e a varredura custa um
+	 * tempo de ida e volta. O tempo de cada varredura é registrado em {@link #getUltrasonicSweepLatency()}.
+	 *
+	 * @return valores futuros dos sensores frontal, traseiro, esquerdo e direito.
+	 */
+	public CompletableFuture<int[]> sendReadUltrassonicSensorsDistanceCommandAsync(String source){
+		return cached("ultrasonicDistance", () -> sweep(ProtocolCommand.ULTRASSONIC_SENSORS_DISTANCE, source, new int[ULTRASONIC_SENSORS.length]));
+    }
+
+	/**
+	 * Lê os valores dos sensores de ultrassom de distância num array do chamador, sem criar outro. Não usa o cache de
+	 * leituras.
+	 *
+	 * @param into Recebe os valores dos sensores frontal, traseiro, esquerdo e direito. Deve ter pelo menos 4 posições.
+	 *
+	 * @return o próprio array recebido.
+	 *
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadUltrassonicSensorsDistanceException
+	 * @throws InterruptedException
+	 */
+	public int[] sendReadUltrassonicSensorsDistanceCommand(String source, int[] into) throws IOException, EmptyMessageException, ReadUltrassonicSensorsDistanceException, InterruptedException{
+		return await(sweep(ProtocolCommand.ULTRASSONIC_SENSORS_DISTANCE, source, into), ReadUltrassonicSensorsDistanceException.class);
+    }
+
+	/**
+	 * Lê os quatro sensores de ultrassom, de distância ou de luminosidade conforme o comando, registrando o tempo da
+	 * varredura.
+	 *
+	 * @param into Recebe os valores dos sensores frontal, traseiro, esquerdo e direito.
+	 */
+	private CompletableFuture<int[]> sweep(ProtocolCommand<Integer> command, String source, int[] into){
+		final long requested = System.nanoTime();
+
+		return readInto(command, source, into, ultrasonicBurst, ULTRASONIC_SENSORS).thenApply(sensorValues -> {
+			ultrasonicSweepLatency.record(System.nanoTime() - requested);
 
-		// Cria os pacotes dizendo para o robô informar os valores de seus sensores de utlrassom de distância.
-        byte[] packFront = packageBuilder.createUltrassonicSensorsDistancePackage(PackageBuilder.ULTRASONIC_FRONT);
-        byte[] packRear = packageBuilder.createUltrassonicSensorsDistancePackage(PackageBuilder.ULTRASONIC_REAR);
-        byte[] packLeft = packageBuilder.createUltrassonicSensorsDistancePackage(PackageBuilder.ULTRASONIC_LEFT);
-        byte[] packRight = packageBuilder.createUltrassonicSensorsDistancePackage(PackageBuilder.ULTRASONIC_RIGHT);
-        
-        Vector <byte[]> packs = new Vector<byte[]>();
-        packs.add(packFront);
-        packs.add(packRear);
-        packs.add(packLeft);
-        packs.add(packRight);
-        
-        // Envia os pacotes e recebe as respostas.
-        int i = 0;
-        for (byte[] pack : packs){
-	        // Envia o pacote.
-        	send(pack);
-			
-			if (debug){
-				debugStr = new StringBuffer();
-		        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-				System.out.println(debugStr);
-			}
-	
-	        // Recebe a resposta do robo.
-	        byte[] ans = receive();
-			
 			if (debug){
-				debugStr = new StringBuffer();
-		        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
+		        StringBuffer debugStr = new StringBuffer();
+				debugStr.append("\nValores dos sensores:");
+				debugStr.append("\nFrontal: " + sensorValues[0]);
+				debugStr.append("\nTraseiro: " + sensorValues[1]);
+				debugStr.append("\nEsquerdo: " + sensorValues[2]);
+				debugStr.append("\nDireito: " + sensorValues[3]);
+		        debugStr.append("\n===========");
 				System.out.println(debugStr);
 			}
-	
-			// Checa se o comando foi aceito.
-	        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x06))){
-	        	throw new ReadUltrassonicSensorsDistanceException("Falha ao receber dados dos sensores de ultrassom do robô.");
-	        }
-			
-	        // Armazena os valores no array de resposta.	        
-	        sensorValues[i] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[12], ans[13]);
-	        i++;
-        }
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores dos sensores:");
-			debugStr.append("\nFrontal: " + sensorValues[0]);
-			debugStr.append("\nTraseiro: " + sensorValues[1]);
-			debugStr.append("\nEsquerdo: " + sensorValues[2]);
-			debugStr.append("\nDireito: " + sensorValues[3]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+
+			return sensorValues;
+		});
     }
-	
+
 	/**
 	 * Lê os valores dos sensores de ultrassom de luminosidade.
-	 * 
+	 *
 	 * @return um array de 4 bytes, sendo o primeiro o valor do sensor frontal, o segundo do sensor traseiro,
 	 * 			o terceito do sensor esquerdo e o quarto do sensor direito.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadUltrassonicSensorsLuminosityException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadUltrassonicSensorsLuminosityCommand(String source) throws IOException, EmptyMessageException, ReadUltrassonicSensorsLuminosityException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int[] sensorValues = new int[4];
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadUltrassonicSensorsLuminosityCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria os pacotes dizendo para o robô informar os valores de seus sensores de utlrassom de luminosidade.
-        byte[] packFront = packageBuilder.createUltrassonicSensorsLuminosityPackage(PackageBuilder.ULTRASONIC_FRONT);
-        byte[] packRear = packageBuilder.createUltrassonicSensorsLuminosityPackage(PackageBuilder.ULTRASONIC_REAR);
-        byte[] packLeft = packageBuilder.createUltrassonicSensorsLuminosityPackage(PackageBuilder.ULTRASONIC_LEFT);
-        byte[] packRight = packageBuilder.createUltrassonicSensorsLuminosityPackage(PackageBuilder.ULTRASONIC_RIGHT);
-        
-        Vector <byte[]> packs = new Vector<byte[]>();
-        packs.add(packFront);
-        packs.add(packRear);
-        packs.add(packLeft);
-        packs.add(packRight);
-        
-        // Envia os pacotes e recebe as respostas.
-        int i = 0;
-        for (byte[] pack : packs){
-	        // Envia o pacote.
-        	send(pack);
-			
-			if (debug){
-				debugStr = new StringBuffer();
-		        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-				System.out.println(debugStr);
-			}
-	
-	        // Recebe a resposta do robo.
-	        byte[] ans = receive();
-			
-			if (debug){
-				debugStr = new StringBuffer();
-		        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-				System.out.println(debugStr);
-			}
-	
-			// Checa se o comando foi aceito.
-	        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x07))){
-	        	throw new ReadUltrassonicSensorsLuminosityException("Falha ao receber dados dos sensores de ultrassom do robô.");
-	        }
-			
-	        // Armazena os valores no array de resposta.	        
-	        sensorValues[i] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-	        i++;
-        }
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores dos sensores:");
-			debugStr.append("\nFrontal: " + sensorValues[0]);
-			debugStr.append("\nTraseiro: " + sensorValues[1]);
-			debugStr.append("\nEsquerdo: " + sensorValues[2]);
-			debugStr.append("\nDireito: " + sensorValues[3]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+		return await(sendReadUltrassonicSensorsLuminosityCommandAsync(source), ReadUltrassonicSensorsLuminosityException.class);
     }
-	
+
+	/**
+	 * Versão assíncrona de {@link #sendReadUltrassonicSensorsLuminosityCommand(String)}.
+	 *
+	 * Com "robot.ultrasonic.burst" ativo, os quatro pacotes são enviados numa única escrita e a varredura custa um
+	 * tempo de ida e volta. O tempo de cada varredura é registrado em {@link #getUltrasonicSweepLatency()}.
+	 *
+	 * @return valores futuros dos sensores frontal, traseiro, esquerdo e direito.
+	 */
+	public CompletableFuture<int[]> sendReadUltrassonicSensorsLuminosityCommandAsync(String source){
+		return cached("ultrasonicLuminosity", () -> sweep(ProtocolCommand.ULTRASSONIC_SENSORS_LUMINOSITY, source, new int[ULTRASONIC_SENSORS.length]));
+	}
+
 	/**
 	 * Lê os valores da bússola.
-	 * 
+	 *
 	 * @return um int representando o valor do ângulo da bússola, em décimos de graus (de 0 até 3599) ou seja, ângulo = (valor / 10) graus.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadCompassSensorException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int sendReadCompassSensorCommand(String source) throws IOException, EmptyMessageException, ReadCompassSensorException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int sensorValue;
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadCompassSensorCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar os valores de sua bússola.
-        byte[] pack = packageBuilder.createCompassSensorPackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		return await(sendReadCompassSensorCommandAsync(source), ReadCompassSensorException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendReadCompassSensorCommand(String)}.
+	 *
+	 * @return valor futuro do ângulo da bússola, em décimos de graus.
+	 */
+	public CompletableFuture<Integer> sendReadCompassSensorCommandAsync(String source){
+		return cached("compass", () -> execute(ProtocolCommand.COMPASS_SENSOR, source, CommandPriority.TELEMETRY));
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x08))){
-        	throw new ReadCompassSensorException("Falha ao receber dados da bússola.");
-        }
-		
-        // Armazena o valor no array de resposta.
-        sensorValue = PrimitiveDataTypesManipulation.twoBytesToInt(ans[12], ans[13]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValor do sensor: " + sensorValue);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValue;
-    }
-	
 	/**
 	 * Lê os valores do acelerômetro.
-	 * 
+	 *
 	 * @return um array de 3 ints representando os valores em décimos de milésimos de força "g" ou seja,
 	 * 		   força = (valor / 10000) "g", sendo o primeiro o valor do eixo X, o segundo do eixo Y e o terceiro do eixo Z.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadAccelerometerSensorException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadAccelerometerSensorCommand(String source) throws IOException, EmptyMessageException, ReadAccelerometerSensorException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int[] sensorValues = new int[3];
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadAccelerometerSensorCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar os valores de seu acelerômetro.
-        byte[] pack = packageBuilder.createAccelerometerSensorPackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		return await(sendReadAccelerometerSensorCommandAsync(source), ReadAccelerometerSensorException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendReadAccelerometerSensorCommand(String)}.
+	 *
+	 * @return valores futuros dos eixos X, Y e Z.
+	 */
+	public CompletableFuture<int[]> sendReadAccelerometerSensorCommandAsync(String source){
+		return cached("accelerometer", () -> execute(ProtocolCommand.ACCELEROMETER_SENSOR, source, CommandPriority.TELEMETRY));
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x09))){
-        	throw new ReadAccelerometerSensorException("Falha ao receber dados do acelerômetro.");
-        }
-		
-        // Armazena os valores no array de resposta.
-        sensorValues[0] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[12], ans[13]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[14], ans[15]);
-        sensorValues[2] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[16], ans[17]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores do sensor:");
-			debugStr.append("\nEixo X: " + sensorValues[0]);
-			debugStr.append("\nEixo Y: " + sensorValues[1]);
-			debugStr.append("\nEixo Z: " + sensorValues[2]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+	/**
+	 * Lê os valores do acelerômetro num array do chamador, sem criar outro. Não usa o cache de leituras.
+	 *
+	 * @param into Recebe os valores dos eixos X, Y e Z. Deve ter pelo menos 3 posições.
+	 *
+	 * @return o próprio array recebido.
+	 *
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadAccelerometerSensorException
+	 * @throws InterruptedException
+	 */
+	public int[] sendReadAccelerometerSensorCommand(String source, int[] into) throws IOException, EmptyMessageException, ReadAccelerometerSensorException, InterruptedException{
+		return await(readInto(ProtocolCommand.ACCELEROMETER_SENSOR, source, into, false), ReadAccelerometerSensorException.class);
     }
-	
+
 	/**
 	 * Lê os valores dos sensores de temperatura e de umidade.
-	 * 
+	 *
 	 * @return um array de 2 ints, sendo o primeiro o valor do sensor de temperatura
 	 * 		   (em centésimos de graus celsius - ex.: 3289, que é 32,89oC) e o segundo do sensor de umidade
 	 *         (em porcentagem - ex.: 44, que é 44%).
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 * @throws ReadUltrassonicSensorsLuminosityException
 	 */
 	public int[] sendReadTemperatureAndHumiditySensorsCommand(String source) throws IOException, EmptyMessageException, ReadTemperatureAndHumiditySensorsException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int[] sensorValues = new int[2];
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadTemperatureAndHumiditySensorsCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar os valores de seus sensores de temperatura e umidade.
-        byte[] pack = packageBuilder.createTemperatureAndHumiditySensorsPackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		return await(sendReadTemperatureAndHumiditySensorsCommandAsync(source), ReadTemperatureAndHumiditySensorsException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendReadTemperatureAndHumiditySensorsCommand(String)}.
+	 *
+	 * @return valores futuros de temperatura e umidade.
+	 */
+	public CompletableFuture<int[]> sendReadTemperatureAndHumiditySensorsCommandAsync(String source){
+		return cached("temperatureAndHumidity", () -> execute(ProtocolCommand.TEMPERATURE_AND_HUMIDITY_SENSORS, source, CommandPriority.TELEMETRY));
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x0A))){
-        	throw new ReadTemperatureAndHumiditySensorsException("Falha ao receber dados dos sensores de temperatura e umidade.");
-        }
-		
-        // Armazena os valores no array de resposta.
-        sensorValues[0] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[12], ans[13]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[14], ans[15]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores dos sensores:");
-			debugStr.append("\nTemperatura: " + sensorValues[0]);
-			debugStr.append("\nUmidade: " + sensorValues[1]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
-    }
-	
 	/**
 	 * Lê os valores dos sensores ópticos do robô utilizados para detectar colisão.
-	 * 
+	 *
 	 * @return "false" na ausência ou "true" na presença de objetos à frente de cada um dos 8 sensores ópticos
 	 * 		   (somente se houver algum objeto a menos de 5 milêmetros de distância de algum dos sensores).
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadOpticalSensorsException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public boolean sendReadCollisionDetectionCommand(String source) throws IOException, EmptyMessageException, ReadOpticalSensorsException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        byte sensorValues;
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadCollisionDetectionCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar os valores de seus sensores ópticos.
-        byte[] pack = packageBuilder.createCollisionDetectionPackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		return await(sendReadCollisionDetectionCommandAsync(source), ReadOpticalSensorsException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendReadCollisionDetectionCommand(String)}.
+	 *
+	 * @return "true" futuro se houver algum objeto à frente dos sensores ópticos.
+	 */
+	public CompletableFuture<Boolean> sendReadCollisionDetectionCommandAsync(String source){
+		return cached("collision", () -> execute(ProtocolCommand.COLLISION_DETECTION, source, CommandPriority.TELEMETRY));
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x0B))){
-        	throw new ReadOpticalSensorsException("Falha ao receber dados dos sensores ópticos.");
-        }
-		
-        // Armazena os valores no array de resposta.
-        sensorValues = ans[12];
-        
-        boolean hasObject = (sensorValues == (byte)0xFF);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores dos sensores: " + String.format("%02x", sensorValues));
-			debugStr.append("\nhasObject: " + hasObject);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return hasObject;
-    }
-	
 	/**
 	 * Lê as versões do módulo receptor GPS.
-	 * 
+	 *
 	 * @return um array de 2 bytes, sendo o primeiro correspondente ao número da versão do hardware e o segundo ao número da versão do firmware do GPS.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSInfoException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadGPSInfoCommand(String source) throws IOException, EmptyMessageException, ReadGPSInfoException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSInfoCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar as versões do módulo receptor GPS.
-        byte[] pack = packageBuilder.createGPSInfoPackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSInfoCommandAsync(source), ReadGPSInfoException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x0C))){
-        	throw new ReadGPSInfoException("Falha ao receber as versões do módulo receptor GPS do robô.");
-        }
-		
-        int[] sensorValues = new int[2];
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nVersões do módulo receptor GPS:");
-			debugStr.append("\nHardware: " + sensorValues[0]);
-			debugStr.append("\nFirmware: " + sensorValues[1]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSInfoCommand(String)}.
+	 *
+	 * @return versões futuras do hardware e do firmware do GPS.
+	 */
+	public CompletableFuture<int[]> sendReadGPSInfoCommandAsync(String source){
+		return readGPS("gpsInfo", ProtocolCommand.GPS_INFO, source, gpsValues -> Arrays.copyOfRange(gpsValues, 0, 2));
     }
-	
+
 	/**
 	 * Lê todos os dados do GPS.
-	 * 
+	 *
 	 * @return um array de byte contendo todos os dados do GPS.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSGetException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadGPSGetCommand(String source) throws IOException, EmptyMessageException, ReadGPSGetException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int[] sensorValues = new int[21];
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSGetCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar todos os dados do GPS.
-        byte[] pack = packageBuilder.createGPSGetPackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSGetCommandAsync(source), ReadGPSGetException.class);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSGetCommand(String)}.
+	 *
+	 * @return array futuro contendo todos os dados do GPS.
+	 */
+	public CompletableFuture<int[]> sendReadGPSGetCommandAsync(String source){
+		return cached("gpsGet", () -> execute(ProtocolCommand.GPS_GET, source, CommandPriority.TELEMETRY));
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x16))){
-        	throw new ReadGPSGetException("Falha ao receber todas as informações do GPS ao mesmo tempo.");
-        }
-		
-        // Armazena os valores no array de resposta.
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]); // hard: número da versão do hardware do GPS
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]); // firm: número da versão do firmware do GPS
-        sensorValues[2] = PrimitiveDataTypesManipulation.byteToInt(ans[14]); // validity: indica se a string é válida (0), ou não é válida (1)
-        sensorValues[3] = PrimitiveDataTypesManipulation.byteToInt(ans[15]); // sats: número de satélites utilizados
-        sensorValues[4] = PrimitiveDataTypesManipulation.byteToInt(ans[16]); // hour: horas no meridiano de Greenwich
-        sensorValues[5] = PrimitiveDataTypesManipulation.byteToInt(ans[17]); // min: minutos no meridiano de Greenwich
-        sensorValues[6] = PrimitiveDataTypesManipulation.byteToInt(ans[18]); // sec: segundos no meridiano de Greenwich
-        sensorValues[7] = PrimitiveDataTypesManipulation.byteToInt(ans[19]); // year: ano no meridiano de Greenwich após o ano de 2000
-        sensorValues[8] = PrimitiveDataTypesManipulation.byteToInt(ans[20]); // month: mêsno meridiano de Greenwich
-        sensorValues[9] = PrimitiveDataTypesManipulation.byteToInt(ans[21]); // day: dia no meridiano de Greenwich
-        sensorValues[10] = PrimitiveDataTypesManipulation.byteToInt(ans[22]); // deg: graus da latitude
-        sensorValues[11] = PrimitiveDataTypesManipulation.byteToInt(ans[23]); // min: minutos da latitude
-        sensorValues[12] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[24], ans[25]); // frac: fração de minuto da latitute entre [0; 65535]
-        sensorValues[13] = PrimitiveDataTypesManipulation.byteToInt(ans[26]); // dir: indica se a latitude é norte (0) ou sul (1)
-        sensorValues[14] = PrimitiveDataTypesManipulation.byteToInt(ans[27]); // deg: graus da longitude
-        sensorValues[15] = PrimitiveDataTypesManipulation.byteToInt(ans[28]); // min: minutos da longitude
-        sensorValues[16] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[29], ans[30]); // frac: fração de minuto da latitute [0; 65535]
-        sensorValues[17] = PrimitiveDataTypesManipulation.byteToInt(ans[31]); // dir: indica se a longitude é leste (0) ou oeste (1)
-        sensorValues[18] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[32], ans[33]); // dm: altitude do robô em decímetros entre [0; 65535]
-        sensorValues[19] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[34], ans[35]); // speed: velocidade do robô, em décimos de nós
-        sensorValues[20] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[36], ans[37]); // dir: direção do movimento do robô, dada em décimos de graus
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores dos sensores:");
-			debugStr.append("\nNúmero da versão do hardware: " + sensorValues[0]);
-			debugStr.append("\nNúmero da versão do firmware: " + sensorValues[1]);
-			debugStr.append("\nString válida?: " + (sensorValues[2] == (byte)0xFF));
-			debugStr.append("\nNúmero de satélites: " + sensorValues[3]);
-			debugStr.append("\nHoras: " + sensorValues[4]);
-			debugStr.append("\nMinutos: " + sensorValues[5]);
-			debugStr.append("\nSegundos: " + sensorValues[6]);
-			debugStr.append("\nAno: " + sensorValues[7]);
-			debugStr.append("\nMês: " + sensorValues[8]);
-			debugStr.append("\nDia: " + sensorValues[9]);
-			debugStr.append("\nGraus da latitude: " + sensorValues[10]);
-			debugStr.append("\nMinutos da latitude: " + sensorValues[11]);
-			debugStr.append("\nFração de minuto da latitute: " + sensorValues[12]);
-			debugStr.append("\nA latitude é norte (0) ou sul (1)?: " + sensorValues[13]);
-			debugStr.append("\nGraus da longitude: " + sensorValues[14]);
-			debugStr.append("\nMinutos da longitude: " + sensorValues[15]);
-			debugStr.append("\nFração de minuto da latitute: " + sensorValues[16]);
-			debugStr.append("\nA longitude é leste (0) ou oeste (1)?: " + sensorValues[17]);
-			debugStr.append("\nAltitude do robô em decímetros: " + sensorValues[18]);
-			debugStr.append("\nVelocidade do robô, em décimos de nós: " + sensorValues[19]);
-			debugStr.append("\nDireção do movimento do robô, dada em décimos de graus: " + sensorValues[20]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
-    }
-	
 	/**
-	 * Verifica a validade da string de dados recebida pelo GPS.
-	 * 
-	 * @return um byte indicando se a string é válida (0), ou não é válida (1).
-	 * 
+	 * Lê todos os dados do GPS num array do chamador, sem criar outro. Não usa o cache de leituras.
+	 *
+	 * @param into Recebe os valores, na ordem de {@link #sendReadGPSGetCommand(String)}. Deve ter pelo menos
+	 * 			{@link GpsFix#VALUE_COUNT} posições.
+	 *
+	 * @return o próprio array recebido.
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
-	 * @throws ReadGPSValidateException
-	 * @throws InterruptedException 
+	 * @throws ReadGPSGetException
+	 * @throws InterruptedException
 	 */
-	public boolean sendReadGPSValidateCommand(String source) throws IOException, EmptyMessageException, ReadGPSValidateException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        byte sensorValues;
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSValidateCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
+	public int[] sendReadGPSGetCommand(String source, int[] into) throws IOException, EmptyMessageException, ReadGPSGetException, InterruptedException{
+		return await(readInto(ProtocolCommand.GPS_GET, source, into, false), ReadGPSGetException.class);
+    }
 
-		// Cria o pacote dizendo para o robô informar a validade da string do GPS.
-        byte[] pack = packageBuilder.createGPSValidatePackage();
+	/**
+	 * Lê a posição do robô, com todos os dados do GPS de uma única resposta.
+	 *
+	 * @return a posição do robô.
+	 *
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadGPSGetException
+	 * @throws InterruptedException
+	 */
+	public GpsFix sendReadGPSFixCommand(String source) throws IOException, EmptyMessageException, ReadGPSGetException, InterruptedException{
+		return await(sendReadGPSFixCommandAsync(source), ReadGPSGetException.class);
+    }
 
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSFixCommand(String)}.
+	 *
+	 * @return posição futura do robô.
+	 */
+	public CompletableFuture<GpsFix> sendReadGPSFixCommandAsync(String source){
+		return sendReadGPSGetCommandAsync(source).thenApply(GpsFix::new);
+    }
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Lê um dado individual do GPS pelo seu comando ou, se "robot.gps.fromFix" estiver ativo, extrai-o da leitura de
+	 * todos os dados do GPS, trocando a exceção de falha desta pela exceção do comando individual.
+	 *
+	 * @param sensor Nome do dado individual no cache de leituras.
+	 * @param command Comando da leitura individual.
+	 * @param source Consumidor que fez a leitura.
+	 * @param field Extrai o valor da leitura individual dos valores de {@link #sendReadGPSGetCommand(String)}.
+	 *
+	 * @return o valor futuro da leitura individual.
+	 */
+	private <T> CompletableFuture<T> readGPS(String sensor, final ProtocolCommand<T> command, String source, final Function<int[], T> field){
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x0D))){
-        	throw new ReadGPSValidateException("Falha ao receber informação sobre a validade da string do GPS.");
-        }
-		
-        // Armazena os valores no array de resposta.
-        sensorValues = ans[12];
-        
-        boolean gpsValid = (sensorValues == (byte)0xFF);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nValores dos sensores: " + String.format("%02x", sensorValues));
-			debugStr.append("\nA string do GPS é " + (gpsValid ? "válida." : "inválida."));
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
+		if (!gpsFromFix) {
+			return cached(sensor, () -> execute(command, source, CommandPriority.TELEMETRY));
 		}
-		
-		return gpsValid;
+
+		CompletableFuture<T> result = new CompletableFuture<T>();
+
+		sendReadGPSGetCommandAsync(source).whenComplete((gpsValues, error) -> {
+
+			if (error == null) {
+				result.complete(field.apply(gpsValues));
+			} else {
+				Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+				result.completeExceptionally((cause instanceof ReadGPSGetException) ? command.fail(cause.getMessage()) : cause);
+			}
+
+		});
+
+		return result;
     }
-	
+
+	/**
+	 * Verifica a validade da string de dados recebida pelo GPS.
+	 *
+	 * @return um byte indicando se a string é válida (0), ou não é válida (1).
+	 *
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadGPSValidateException
+	 * @throws InterruptedException
+	 */
+	public boolean sendReadGPSValidateCommand(String source) throws IOException, EmptyMessageException, ReadGPSValidateException, InterruptedException{
+		return await(sendReadGPSValidateCommandAsync(source), ReadGPSValidateException.class);
+    }
+
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSValidateCommand(String)}.
+	 *
+	 * @return "true" futuro se a string do GPS for válida.
+	 */
+	public CompletableFuture<Boolean> sendReadGPSValidateCommandAsync(String source){
+		// Na resposta do comando 0x16, a validade vale 0 se a string é válida, e não 0xFF como na do 0x0D.
+		return readGPS("gpsValidate", ProtocolCommand.GPS_VALIDATE, source, gpsValues -> (gpsValues[2] == 0));
+    }
+
 	/**
 	 * Lê o número de satélites utilizados pelo GPS.
-	 * 
+	 *
 	 * @return um byte indicando número de satélites utilizados pelo GPS.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSSatelliteException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int sendReadGPSSatelliteCommand(String source) throws IOException, EmptyMessageException, ReadGPSSatelliteException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int sensorValues;
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSSatelliteCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar o número de satélites utilizados pelo GPS.
-        byte[] pack = packageBuilder.createGPSSatellitePackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSSatelliteCommandAsync(source), ReadGPSSatelliteException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x0E))){
-        	throw new ReadGPSSatelliteException("Falha ao receber informação sobre o número de satélites utilizados pelo GPS.");
-        }
-		
-        // Armazena os valores no array de resposta.
-        sensorValues = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nNúmero de satélites utilizados pelo GPS: " + sensorValues);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSSatelliteCommand(String)}.
+	 *
+	 * @return número futuro de satélites utilizados pelo GPS.
+	 */
+	public CompletableFuture<Integer> sendReadGPSSatelliteCommandAsync(String source){
+		return readGPS("gpsSatellite", ProtocolCommand.GPS_SATELLITE, source, gpsValues -> gpsValues[3]);
     }
-	
+
 	/**
 	 * Retorna o horário no meridiano de Greenwich.
-	 * 
+	 *
 	 * @return um array de 3 bytes, sendo o primeiro correspondente à hora, o segundo aos minutos e o terceiro aos segundos.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSTimeException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadGPSTimeCommand(String source) throws IOException, EmptyMessageException, ReadGPSTimeException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSTimeCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar o horário do módulo receptor GPS.
-        byte[] pack = packageBuilder.createGPSTimePackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSTimeCommandAsync(source), ReadGPSTimeException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x0F))){
-        	throw new ReadGPSTimeException("Falha ao receber o horário do módulo receptor GPS do robô.");
-        }
-		
-        int[] sensorValues = new int[3];
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        sensorValues[2] = PrimitiveDataTypesManipulation.byteToInt(ans[14]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nHorário do módulo receptor GPS:");
-			debugStr.append("\nHoras: " + sensorValues[0]);
-			debugStr.append("\nMinutos: " + sensorValues[1]);
-			debugStr.append("\nSegundos: " + sensorValues[2]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSTimeCommand(String)}.
+	 *
+	 * @return hora, minutos e segundos futuros.
+	 */
+	public CompletableFuture<int[]> sendReadGPSTimeCommandAsync(String source){
+		return readGPS("gpsTime", ProtocolCommand.GPS_TIME, source, gpsValues -> Arrays.copyOfRange(gpsValues, 4, 7));
     }
-	
+
 	/**
 	 * Retorna a data no meridiano de Greenwich.
-	 * 
+	 *
 	 * @return um array de 3 bytes, sendo o primeiro correspondente ao ano, o segundo ao mês e o terceiro ao dia.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSDateException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadGPSDateCommand(String source) throws IOException, EmptyMessageException, ReadGPSDateException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSDateCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar a data do módulo receptor GPS.
-        byte[] pack = packageBuilder.createGPSDatePackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSDateCommandAsync(source), ReadGPSDateException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x10))){
-        	throw new ReadGPSDateException("Falha ao receber a data do módulo receptor GPS do robô.");
-        }
-		
-        int[] sensorValues = new int[3];
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        sensorValues[2] = PrimitiveDataTypesManipulation.byteToInt(ans[14]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nData do módulo receptor GPS:");
-			debugStr.append("\nAno: " + sensorValues[0]);
-			debugStr.append("\nMês: " + sensorValues[1]);
-			debugStr.append("\nDia: " + sensorValues[2]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSDateCommand(String)}.
+	 *
+	 * @return ano, mês e dia futuros.
+	 */
+	public CompletableFuture<int[]> sendReadGPSDateCommandAsync(String source){
+		return readGPS("gpsDate", ProtocolCommand.GPS_DATE, source, gpsValues -> Arrays.copyOfRange(gpsValues, 7, 10));
     }
-	
+
 	/**
 	 * Lê a latitude do robô em relação à linha do equador.
-	 * 
+	 *
 	 * @return um array de 4 ints, sendo o primeiro correspondente aos graus da latitude, o segundo aos minutos da latitude,
 	 * 		   	o terceiro correspondente à fração de minuto da latitute entre [0; 65535]
 	 * 			e o quarto indica se a latitude é norte (0) ou sul (1).
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSLatitudeException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadGPSLatitudeCommand(String source) throws IOException, EmptyMessageException, ReadGPSLatitudeException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSLatitudeCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar a latitude do módulo receptor GPS.
-        byte[] pack = packageBuilder.createGPSLatitudePackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSLatitudeCommandAsync(source), ReadGPSLatitudeException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x11))){
-        	throw new ReadGPSLatitudeException("Falha ao receber a latitude do módulo receptor GPS do robô.");
-        }
-		
-        int[] sensorValues = new int[4];
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        sensorValues[2] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[14], ans[15]);
-        sensorValues[3] = PrimitiveDataTypesManipulation.byteToInt(ans[16]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nLatitude do módulo receptor GPS:");
-			debugStr.append("\nGraus: " + sensorValues[0]);
-			debugStr.append("\nMinutos: " + sensorValues[1]);
-			debugStr.append("\nFração de minuto: " + sensorValues[2]);
-			debugStr.append("\nNorte (0) ou sul (1): " + sensorValues[3]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSLatitudeCommand(String)}.
+	 *
+	 * @return graus, minutos, fração de minuto e hemisfério futuros da latitude.
+	 */
+	public CompletableFuture<int[]> sendReadGPSLatitudeCommandAsync(String source){
+		return readGPS("gpsLatitude", ProtocolCommand.GPS_LATITUDE, source, gpsValues -> Arrays.copyOfRange(gpsValues, 10, 14));
     }
-	
+
 	/**
 	 * Lê a longitude do robô em relação à linha do equador.
-	 * 
+	 *
 	 * @return um array de 4 ints, sendo o primeiro correspondente aos graus da longitude, o segundo aos minutos da longitude,
 	 * 		   	o terceiro correspondente à fração de minuto da longitude entre [0; 65535]
 	 * 			e o quarto indica se a longitude é leste (0) ou oeste (1).
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSLongitudeException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int[] sendReadGPSLongitudeCommand(String source) throws IOException, EmptyMessageException, ReadGPSLongitudeException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSLongitudeCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar a longitude do módulo receptor GPS.
-        byte[] pack = packageBuilder.createGPSLongitudePackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSLongitudeCommandAsync(source), ReadGPSLongitudeException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x12))){
-        	throw new ReadGPSLongitudeException("Falha ao receber a longitude do módulo receptor GPS do robô.");
-        }
-		
-        int[] sensorValues = new int[4];
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        sensorValues[2] = PrimitiveDataTypesManipulation.twoBytesToInt(ans[14], ans[15]);
-        sensorValues[3] = PrimitiveDataTypesManipulation.byteToInt(ans[16]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nLongitude do módulo receptor GPS:");
-			debugStr.append("\nGraus: " + sensorValues[0]);
-			debugStr.append("\nMinutos: " + sensorValues[1]);
-			debugStr.append("\nFração de minuto: " + sensorValues[2]);
-			debugStr.append("\nLeste (0) ou oeste (1): " + sensorValues[3]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSLongitudeCommand(String)}.
+	 *
+	 * @return graus, minutos, fração de minuto e hemisfério futuros da longitude.
+	 */
+	public CompletableFuture<int[]> sendReadGPSLongitudeCommandAsync(String source){
+		return readGPS("gpsLongitude", ProtocolCommand.GPS_LONGITUDE, source, gpsValues -> Arrays.copyOfRange(gpsValues, 14, 18));
     }
-	
+
 	/**
 	 * Lê a altitute do robô em relação ao nível do mar.
-	 * 
+	 *
 	 * @return um int representando a altitude do robô, em decímetros entre [0; 65535].
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSAltitudeException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int sendReadGPSAltitudeCommand(String source) throws IOException, EmptyMessageException, ReadGPSAltitudeException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int sensorValue;
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSAltitudeCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar a altitude do módulo receptor GPS.
-        byte[] pack = packageBuilder.createGPSAltitudePackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSAltitudeCommandAsync(source), ReadGPSAltitudeException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x13))){
-        	throw new ReadGPSAltitudeException("Falha ao receber a altitude do módulo receptor GPS do robô.");
-        }
-		
-        // Armazena o valor no array de resposta.
-        sensorValue = PrimitiveDataTypesManipulation.twoBytesToInt(ans[12], ans[13]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nLongitude do módulo receptor GPS: " + sensorValue);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValue;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSAltitudeCommand(String)}.
+	 *
+	 * @return altitude futura do robô, em decímetros.
+	 */
+	public CompletableFuture<Integer> sendReadGPSAltitudeCommandAsync(String source){
+		return readGPS("gpsAltitude", ProtocolCommand.GPS_ALTITUDE, source, gpsValues -> gpsValues[18]);
     }
-	
+
 	/**
 	 * Lê a velocidade linear do robô independentemente de sua direção.
-	 * 
+	 *
 	 * @return um int representando velocidade do robô, em décimos de nós.
-	 * 
-	 * @throws IOException
-	 * @throws EmptyMessageException
-	 * @throws ReadGPSSpeedException
-	 * @throws InterruptedException 
-	 */
-	public int sendReadGPSSpeedCommand(String source) throws IOException, EmptyMessageException, ReadGPSSpeedException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int sensorValue;
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSSpeedCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar velocidade do robô.
-        byte[] pack = packageBuilder.createGPSSpeedPackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+	 *
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadGPSSpeedException
+	 * @throws InterruptedException
+	 */
+	public int sendReadGPSSpeedCommand(String source) throws IOException, EmptyMessageException, ReadGPSSpeedException, InterruptedException{
+		return await(sendReadGPSSpeedCommandAsync(source), ReadGPSSpeedException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x14))){
-        	throw new ReadGPSSpeedException("Falha ao receber a velocidade do robô.");
-        }
-		
-        // Armazena o valor no array de resposta.
-        sensorValue = PrimitiveDataTypesManipulation.twoBytesToInt(ans[12], ans[13]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nVelocidade do robô: " + sensorValue);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValue;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSSpeedCommand(String)}.
+	 *
+	 * @return velocidade futura do robô, em décimos de nós.
+	 */
+	public CompletableFuture<Integer> sendReadGPSSpeedCommandAsync(String source){
+		return readGPS("gpsSpeed", ProtocolCommand.GPS_SPEED, source, gpsValues -> gpsValues[19]);
     }
-	
+
 	/**
 	 * Lê o ângulo entre a direção do deslocamento do robô ao norte magnético da terra.
-	 * 
+	 *
 	 * @return um int representando direção do movimento do robô, dada em décimos de graus.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadGPSHeadException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int sendReadGPSHeadCommand(String source) throws IOException, EmptyMessageException, ReadGPSHeadException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int sensorValue;
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadGPSHeadCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
-
-		// Cria o pacote dizendo para o robô informar a direção do movimento do robô.
-        byte[] pack = packageBuilder.createGPSHeadPackage();
-
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
-
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+		return await(sendReadGPSHeadCommandAsync(source), ReadGPSHeadException.class);
+    }
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x83) && (ans[11] == (byte)0x15))){
-        	throw new ReadGPSHeadException("Falha ao receber a direção do movimento do robô.");
-        }
-		
-        // Armazena o valor no array de resposta.
-        sensorValue = PrimitiveDataTypesManipulation.twoBytesToInt(ans[12], ans[13]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nDireção do movimento do robô: " + sensorValue);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValue;
+	/**
+	 * Versão assíncrona de {@link #sendReadGPSHeadCommand(String)}.
+	 *
+	 * @return direção futura do movimento do robô, em décimos de graus.
+	 */
+	public CompletableFuture<Integer> sendReadGPSHeadCommandAsync(String source){
+		return readGPS("gpsHead", ProtocolCommand.GPS_HEAD, source, gpsValues -> gpsValues[20]);
     }
-	
+
 	/**
 	 * Lê o nível da carga da bateria do robô.
-	 * 
+	 *
 	 * @return um byte indicando nível da bateria do robô, variando de 0 a 100.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws ReadBatteryLevelException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public int sendReadBatteryLevelCommand(String source) throws IOException, EmptyMessageException, ReadBatteryLevelException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-        int sensorValues;
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadBatteryLevelCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
+		return await(sendReadBatteryLevelCommandAsync(source), ReadBatteryLevelException.class);
+    }
+
+	/**
+	 * Versão assíncrona de {@link #sendReadBatteryLevelCommand(String)}.
+	 *
+	 * O segundo pacote só é enviado após a resposta do primeiro ser aceita, pela thread dos envios encadeados, e não
+	 * pela thread de leitura.
+	 *
+	 * @return nível futuro da bateria do robô.
+	 */
+	public CompletableFuture<Integer> sendReadBatteryLevelCommandAsync(String source){
+		// O segundo pacote só é enviado após a resposta do primeiro ser aceita.
+		return cached("batteryLevel", () -> execute(ProtocolCommand.BATTERY_LEVEL_FIRST, source, CommandPriority.TELEMETRY)
+				.thenComposeAsync(first -> execute(ProtocolCommand.BATTERY_LEVEL_SECOND, source, CommandPriority.TELEMETRY), chainedSender));
+	}
 
-		// Cria um primeiro pacote solicitando ao robô informação sobre o nível de sua bateria.
-        byte[] pack = packageBuilder.createBatteryLevelPackage(PackageBuilder.BatteryLevelPackage.FIRST);
+	/**
+	 * Lê a versão corrente do Módulo de Alta Performance (MAP).
+	 *
+	 * @return um array de 3 bytes indicando a versão do MAP.
+	 *
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadMAPVersionException
+	 * @throws InterruptedException
+	 */
+	public int[] sendReadMAPVersionCommand(String source) throws IOException, EmptyMessageException, ReadMAPVersionException, InterruptedException{
+		return await(sendReadMAPVersionCommandAsync(source), ReadMAPVersionException.class);
+    }
 
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
+	/**
+	 * Versão assíncrona de {@link #sendReadMAPVersionCommand(String)}.
+	 *
+	 * @return versão futura do MAP.
+	 */
+	public CompletableFuture<int[]> sendReadMAPVersionCommandAsync(String source){
+		return cached("mapVersion", () -> execute(ProtocolCommand.MAP_VERSION, source, CommandPriority.TELEMETRY));
+	}
+
+	/**
+	 * Lê um conjunto de sensores numa única rodada: os pacotes de todos os sensores pedidos são enviados numa única
+	 * escrita, de forma que a leitura custa um tempo de ida e volta em vez da soma dos tempos de cada sensor (a
+	 * bateria, cujo segundo pacote depende da resposta do primeiro, custa dois).
+	 *
+	 * @param kinds Sensores a serem lidos.
+	 *
+	 * @return leitura imutável dos sensores, com o instante de recebimento de cada um.
+	 *
+	 * @throws IOException
+	 * @throws EmptyMessageException
+	 * @throws ReadSensorSnapshotException se a leitura de algum sensor falhar.
+	 * @throws InterruptedException
+	 */
+	public SensorSnapshot sendReadSensorSnapshotCommand(EnumSet<SensorKind> kinds, String source) throws IOException, EmptyMessageException, ReadSensorSnapshotException, InterruptedException{
+		return await(sendReadSensorSnapshotCommandAsync(kinds, source), ReadSensorSnapshotException.class);
+	}
+
+	/**
+	 * Versão assíncrona de {@link #sendReadSensorSnapshotCommand(EnumSet, String)}.
+	 *
+	 * @return leitura futura dos sensores.
+	 */
+	public CompletableFuture<SensorSnapshot> sendReadSensorSnapshotCommandAsync(EnumSet<SensorKind> kinds, String source){
+		final SensorSnapshot.Builder builder = new SensorSnapshot.Builder();
+		CommandBatch batch = newBatch();
+		List<CompletableFuture<?>> parts = new ArrayList<CompletableFuture<?>>();
+
+		for (SensorKind kind : kinds) {
+			parts.add(batch.record(() -> kind.read(this, source)).thenAccept(values -> {
+				synchronized (builder) { builder.values(kind, values, System.nanoTime()); }
+			}));
 		}
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
+		try {
+			batch.send();
+		} catch (Exception e) {
+			return failed(e);
 		}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x85) && (ans[11] == (byte)0x01) && (ans[12] == (byte)0x00) && (ans[13] == (byte)0xFF))){
-        	throw new ReadBatteryLevelException("Falha ao receber informação do nível de bateria do robô.");
-        }
+		return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).handle((done, failure) -> {
 
-		// Cria um segundo pacote solicitando ao robô informação sobre o nível de sua bateria.
-        pack = packageBuilder.createBatteryLevelPackage(PackageBuilder.BatteryLevelPackage.SECOND);
+			if (failure != null) {
+				Throwable cause = (failure instanceof CompletionException) ? failure.getCause() : failure;
 
-        // Envia o pacote.
-    	send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+				if ((cause instanceof IOException) || (cause instanceof EmptyMessageException) || (cause instanceof RuntimeException)) {
+					throw new CompletionException(cause);
+				}
 
-        // Recebe a resposta do robo.
-        ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+				throw new CompletionException(new ReadSensorSnapshotException("Falha ao ler os sensores do robô: " + cause.getMessage(), cause));
+			}
+
+			synchronized (builder) {
+				return builder.build();
+			}
+
+		});
+	}
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x85) && (ans[11] == (byte)0x02) && (ans[12] == (byte)0x00))){
-        	throw new ReadBatteryLevelException("Falha ao receber informação do nível de bateria do robô.");
-        }
-		
-        // Armazena os valores no array de resposta.
-        sensorValues = PrimitiveDataTypesManipulation.twoBytesToInt(ans[13], ans[14]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nNível da bateria do robô: " + sensorValues);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
-		}
-		
-		return sensorValues;
-    }
-	
 	/**
-	 * Lê a versão corrente do Módulo de Alta Performance (MAP).
-	 * 
-	 * @return um array de 3 bytes indicando a versão do MAP.
-	 * 
+	 * Envia um comando cuja resposta pode vir dividida em vários pacotes e aguarda a resposta final.
+	 *
+	 * @param message Mensagem do comando: grupo, comando e parâmetros.
+	 * @param listener Recebe as respostas parciais assim que chegam.
+	 *
+	 * @return a resposta final, com o cabeçalho.
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
-	 * @throws ReadMAPVersionException
-	 * @throws InterruptedException 
+	 * @throws StreamCommandException
+	 * @throws InterruptedException
+	 *
+	 * @see #sendStreamCommandAsync(byte[], PartialResponseListener, String)
 	 */
-	public int[] sendReadMAPVersionCommand(String source) throws IOException, EmptyMessageException, ReadMAPVersionException, InterruptedException{
+	public byte[] sendStreamCommand(byte[] message, PartialResponseListener listener, String source) throws IOException, EmptyMessageException, StreamCommandException, InterruptedException{
+		return await(sendStreamCommandAsync(message, listener, source), StreamCommandException.class);
+	}
+
+	/**
+	 * Envia um comando cuja resposta pode vir dividida em vários pacotes e retorna as respostas para serem percorridas
+	 * à medida que chegam, na thread do chamador.
+	 *
+	 * @param message Mensagem do comando: grupo, comando e parâmetros.
+	 *
+	 * @return as respostas parciais e, por último, a resposta final.
+	 *
+	 * @see #sendStreamCommandAsync(byte[], PartialResponseListener, String)
+	 */
+	public ResponseStream sendStreamCommand(byte[] message, String source){
+		ResponseStream stream = new ResponseStream();
+		stream.follow(sendStreamCommandAsync(message, stream.parts, source));
+
+		return stream;
+	}
+
+	/**
+	 * Versão assíncrona de {@link #sendStreamCommand(byte[], PartialResponseListener, String)}.
+	 *
+	 * O robô responde com zero ou mais respostas parciais (ACT_PART_RESP) e uma resposta final (ACT_FINAL_RESP).
+	 * Cada parcial é entregue ao listener assim que chega, de forma que resultados maiores que os 255 bytes de uma
+	 * mensagem, como leituras acumuladas ou registros do robô, sejam consumidos aos poucos. O comando ocupa uma vaga
+	 * do pipeline até a resposta final.
+	 *
+	 * O comando é sempre enviado: não passa pelo cache nem pela deduplicação de leituras, e não é gravado em lotes.
+	 *
+	 * @param message Mensagem do comando: grupo, comando e parâmetros.
+	 * @param listener Recebe as respostas parciais, na thread de leitura. Não deve bloquear.
+	 *
+	 * @return a resposta final futura. Falha com {@link StreamCommandException} se o robô não aceitar o comando
+	 * 			(ACT_CMD_WITH_ERROR).
+	 */
+	public CompletableFuture<byte[]> sendStreamCommandAsync(byte[] message, PartialResponseListener listener, String source){
+
         StringBuffer debugStr = new StringBuffer();
-		
+
 		if (debug){
 	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendReadMAPVersionCommand(" + source + "):");
+	        debugStr.append("RobotConnection.sendStreamCommand(" + source + "):");
 			System.out.println(debugStr);
 		}
 
-		// Cria o pacote dizendo para o robô informar a versão do módulo MAP.
-        byte[] pack = packageBuilder.createMAPVersionPackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+		try {
+			byte[] pack = packageBuilder.createPackage(message);
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+			return sendAll(new byte[][] {pack}, CommandPriority.TELEMETRY, new String[] {source}, listener)[0].thenApply(ans -> {
 
-		// Checa se o comando foi aceito.
-        if (!((ans[10] == (byte)0x84) && (ans[11] == (byte)0x01))){
-        	
-        	if ((ans[10] == (byte)0x84) && (ans[11] == (byte)0x00)){
-        		byte[] subArray = Arrays.copyOfRange(ans, 12, ans.length - 1);
-        		String errorMsg = new String(subArray);
-        		
-        		throw new ReadMAPVersionException("Falha ao receber a versão do MAP. Erro: " + errorMsg);
-        	} else {
-        		throw new ReadMAPVersionException("Falha ao receber a versão do MAP.");
-        	}
-        	
-        }
-		
-        int[] sensorValues = new int[3];
-        sensorValues[0] = PrimitiveDataTypesManipulation.byteToInt(ans[12]);
-        sensorValues[1] = PrimitiveDataTypesManipulation.byteToInt(ans[13]);
-        sensorValues[2] = PrimitiveDataTypesManipulation.byteToInt(ans[14]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nVersão do Módulo de Alta Performance (MAP): " + sensorValues[0] + "." + sensorValues[1] + "." + sensorValues[2]);
-	        debugStr.append("\n===========");
-			System.out.println(debugStr);
+				// Checa se o comando foi aceito. A mensagem de erro, se houver, é uma string ISO-8859-1.
+				if (ans[PackageBuilder.ACT] == PackageBuilder.ACT_CMD_WITH_ERROR) {
+					String error = new String(ans, PackageBuilder.HEADER_LENGTH, ans.length - PackageBuilder.HEADER_LENGTH, StandardCharsets.ISO_8859_1);
+
+					throw new CompletionException(new StreamCommandException("O robô não aceitou o comando." + (error.isEmpty() ? "" : " Erro: " + error)));
+				}
+
+				return ans;
+			});
+		} catch (Exception e) {
+			return failed(e);
 		}
-		
-		return sensorValues;
-    }
-	
+
+	}
+
 	/**
 	 * Inicia a captura continua das imagens da câmera.
-	 * 
+	 *
 	 * Quando este comando é recebido, o aplicativo inicia um servidor de imagens que passa a ouvir em um canal Wifi. Em seguida,
 	 * a resposta é enviada ao controlador passando o número do port no qual o servidor está esperando por conexões.
-	 * 
+	 *
 	 * O aplicativo espera por uma conexão do controlador durante 4 segundos. Caso nenhuma conexão seja estabelecida, o servidor
 	 * é baixado e uma mensagem de erro é enviada. Após a primeira conexão ser estabelecida outras conexões são rejeitadas,
 	 * ou seja, o servidor de imagens é exclusivo do controlador que o solicitou.
-	 * 
+	 *
 	 * As imagens são enviadas sequencialmente e ininterruptamente até que o comando "sendCameraStopCommand" seja recebido pelo aplicativo.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws CameraStartException
-	 * @throws InterruptedException 
-	 * @throws CameraImageFormatLenghtException 
+	 * @throws InterruptedException
+	 * @throws CameraImageFormatLenghtException
 	 */
-	public InputStream sendCameraStartCommand(String source) throws IOException, EmptyMessageException, CameraStartException, InterruptedException, CameraImageFormatLenghtException{		
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendCameraStartCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
+	public InputStream sendCameraStartCommand(String source) throws IOException, EmptyMessageException, CameraStartException, InterruptedException, CameraImageFormatLenghtException{
+		return await(sendCameraStartCommandAsync(source), CameraStartException.class);
+    }
 
-		// Cria o pacote dizendo para o robô iniciar a captura de imagens da câmera.
-        byte[] pack = packageBuilder.createCameraStartPackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendCameraStartCommand(String)}.
+	 *
+	 * A conexão com o servidor de imagens é feita fora da thread de leitura das respostas, para não atrasar a
+	 * entrega das respostas dos demais comandos.
+	 *
+	 * @return fluxo futuro de dados da câmera.
+	 */
+	public CompletableFuture<InputStream> sendCameraStartCommandAsync(String source){
+		return execute(ProtocolCommand.CAMERA_START, source, CommandPriority.TELEMETRY).thenApplyAsync(port -> {
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+			try {
+				return cameraConnect(port);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
 
-		// Checa se o comando foi aceito.
-        if ((ans[10] == (byte)0x84) && (ans[11] == (byte)0x04) && (ans[12] == (byte)0x00)){
-        	//TODO: verificar como pegar a string com o erro.
-        	String cameraError = Byte.toString(ans[13]); 
-        	throw new CameraStartException("Falha ao iniciar captura de imagens da câmera. Erro: " + cameraError);
-        } else {
-        
-	        if (!((ans[10] == (byte)0x84) && (ans[11] == (byte)0x04) && (ans[12] == (byte)0x01))){
-	        	throw new CameraStartException("Falha ao iniciar captura de imagens da câmera.");
-	        }
-	        
-        }
-		
-        // Obtém a porta na qual o servidor de imagens está aguardando conexões.
-        int port = PrimitiveDataTypesManipulation.twoBytesToInt(ans[13], ans[14]);
-        
-		if (debug){
-			debugStr = new StringBuffer();
-			debugStr.append("\nPorta para conexão no servidor de  imagens da câmera: " + port);
-			System.out.println(debugStr);
-		}
-		
-		return cameraConnect(port);
-    }
+		});
+	}
 
     /**
      * Conecta-se com o servidor de imagens da câmera do robô através de uma conexão wifi.
-     * 
-     * @throws IOException 
-     * @throws UnknownHostException 
+     *
+     * As subclasses podem sobrescrever este método para usar outro tipo de canal.
+     *
+     * @param connectionPort Porta na qual o servidor de imagens aguarda conexões.
+     *
+     * @return fluxo de dados da câmera.
+     *
+     * @throws IOException
+     * @throws UnknownHostException
      */
-	private InputStream cameraConnect(int connectionPort) throws IOException {
+	protected InputStream cameraConnect(int connectionPort) throws IOException {
         StringBuffer debugStr = new StringBuffer();
-		
+
 		if (debug){
 	        debugStr.append("\nRobotConnection.cameraConnect():");
 	        debugStr.append("\nConectando ao servidor de imagens da câmera do robô no IP " + connectionHost + " e porta " + connectionPort + "...");
 			System.out.println(debugStr);
 		}
-		
+
     	cameraSocketConnection = new Socket(connectionHost, connectionPort);
     	cameraSocketConnection.setTcpNoDelay(true);
     	cameraSocketConnection.setKeepAlive(true);
     	InputStream cameraInputStream = cameraSocketConnection.getInputStream();
-        
+
     	if (cameraInputStream == null) {
         	cameraSocketConnection.close();
-            throw new IOException("O stream é nulo!! A conexão foi com o servidor de imagens da câmera foi cancelada."); 
+            throw new IOException("O stream é nulo!! A conexão foi com o servidor de imagens da câmera foi cancelada.");
         }
-		
+
 		if (debug){
 			debugStr = new StringBuffer();
 			debugStr.append("Conectado ao servidor de imagens da câmera.");
@@ -2176,86 +2233,66 @@ public abstract class RobotConnection {
 
 		return cameraInputStream;
 	}
-	
+
 	/**
 	 * Finaliza a captura de imagens da câmera.
-	 * 
+	 *
 	 * Interrompe a captura e o envio de imagens ao controlador. A resposta relativa a este comando é sempre enviada,
 	 * independentemente do processo de captura e envio de imagens não estar sendo executado quando do recebimento
 	 * deste comando.
-	 * 
+	 *
 	 * @throws IOException
 	 * @throws EmptyMessageException
 	 * @throws CameraStopException
-	 * @throws InterruptedException 
+	 * @throws InterruptedException
 	 */
 	public void sendCameraStopCommand(String source) throws IOException, EmptyMessageException, CameraStopException, InterruptedException{
-        StringBuffer debugStr = new StringBuffer();
-		
-		if (debug){
-	        debugStr.append("\n===========\n");
-	        debugStr.append("RobotConnection.sendCameraStopCommand(" + source + "):");
-			System.out.println(debugStr);
-		}
+		await(sendCameraStopCommandAsync(source), CameraStopException.class);
+    }
 
-		// Cria o pacote dizendo para o robô iniciar a captura de imagens da câmera.
-        byte[] pack = packageBuilder.createCameraStopPackage();
-        send(pack);
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("\nEnviou:  " + packageBuilder.packageToString(pack));
-			System.out.println(debugStr);
-		}
+	/**
+	 * Versão assíncrona de {@link #sendCameraStopCommand(String)}.
+	 *
+	 * @return future completado quando a captura for encerrada.
+	 */
+	public CompletableFuture<Void> sendCameraStopCommandAsync(String source){
+		return execute(ProtocolCommand.CAMERA_STOP, source, CommandPriority.TELEMETRY).thenApply(done -> {
 
-        // Recebe a resposta do robo.
-        byte[] ans = receive();
-		
-		if (debug){
-			debugStr = new StringBuffer();
-	        debugStr.append("Recebeu: " + packageBuilder.packageToString(ans));
-			System.out.println(debugStr);
-		}
+			try {
+				cameraDisconnect();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
 
-		// Checa se o comando foi aceito.
-        if ((ans[10] == (byte)0x84) && (ans[11] == (byte)0x04) && (ans[12] == (byte)0x00)){
-        	//TODO: verificar como pegar a string com o erro.
-        	String cameraError = Byte.toString(ans[13]); 
-        	throw new CameraStopException("Falha ao encerrar captura de imagens da câmera. Erro: " + cameraError);
-        } else {
-        
-	        if (!((ans[10] == (byte)0x84) && (ans[11] == (byte)0x04) && (ans[12] == (byte)0x02))){
-	        	throw new CameraStopException("Falha ao encerrar captura de imagens da câmera.");
-	        }
-	        
-        }
-		
-		cameraDisconnect();
-    }
+			return null;
+		});
+	}
 
     /**
      * Desconecta-se com o servidor de imagens da câmera do robô através de uma conexão wifi.
-     * 
-     * @throws IOException 
+     *
+     * @throws IOException
+     *
+     * @see #cameraConnect(int)
      */
-	private void cameraDisconnect() throws IOException {
+	protected void cameraDisconnect() throws IOException {
         StringBuffer debugStr = new StringBuffer();
-		
+
 		if (debug){
 	        debugStr.append("\nRobotConnection.cameraDisconnect():");
 	        debugStr.append("\nDesconectando do servidor de imagens da câmera do robô...");
 			System.out.println(debugStr);
 		}
-		
+
     	cameraSocketConnection.close();
-		
+
 		if (debug){
 			debugStr = new StringBuffer();
 			debugStr.append("Desconectado do servidor de imagens da câmera do robô.");
 	        debugStr.append("\n===========");
 			System.out.println(debugStr);
 		}
-		
+
 	}
-    
+
 }
@@ -0,0 +1,232 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Extende a classe {@link RobotConnection} para realizar comunicação através da
+ * rede WiFi, com os canais de comandos e da câmera atendidos por um {@link ConnectionEngine}.
+ *
+ * Nenhuma thread é criada por conexão: as respostas e as imagens são lidas pela thread de E/S do motor.
+ *
+ * @see RobotConnection
+ * @see ConnectionEngine
+ */
+public class RobotEngineNetwork extends RobotConnection {
+
+	/**
+	 * Motor que atende os canais desta conexão.
+	 */
+	private final ConnectionEngine engine;
+
+	/**
+	 * Porta de conexão com o robô.
+	 */
+    private int connectionPort;
+
+    /**
+     * Contexto do canal de comandos.
+     */
+    private CommandChannelContext commandContext;
+
+    /**
+     * Contexto do canal da câmera.
+     */
+    private CameraChannelContext cameraContext;
+
+    /**
+     * Construtor padrão.
+     *
+     * @param connectionEngine Motor que atenderá os canais da conexão.
+     * @param host Endereço do Robô a ser utilizado, não pode ser nula.
+     * @param port Porta de Conexão a ser utilizada, deve ser um valor positivo.
+     * @param builder Criador de pacotes da conexão.
+     *
+     * @throws UnknownHostException
+     * @throws PortUnreachableException
+     */
+    protected RobotEngineNetwork(ConnectionEngine connectionEngine, String host, int port, PackageBuilder builder) throws UnknownHostException, PortUnreachableException {
+    	super(host, builder);
+    	engine = connectionEngine;
+        connectionPort = port;
+    }
+
+    /**
+     * Conecta-se com o robô através de uma conexão wifi e registra o canal no motor.
+     *
+     * @throws IOException
+     * @throws UnknownHostException
+     */
+	public void connect() throws IOException {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("RobotEngineNetwork.connect():");
+	        debugStr.append("\nConectando ao robô " + connectionHost + ":" + connectionPort + "...");
+			System.out.println(debugStr);
+		}
+
+		SocketChannel socketChannel = openChannel(connectionPort);
+		commandContext = new CommandChannelContext(this, socketChannel, engine.nextLoop());
+		attachReceiving(commandContext.loop.thread());
+		commandContext.register(SelectionKey.OP_READ);
+
+		if (debug){
+			debugStr = new StringBuffer();
+			debugStr.append("Conectado.");
+	        debugStr.append("\n===========");
+			System.out.println(debugStr);
+		}
+
+	}
+
+    /**
+     * Desconecta-se com o robô através de uma conexão wifi.
+     *
+     * @throws IOException
+     */
+	public void disconnect() throws IOException {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("RobotEngineNetwork.disconnect():");
+	        debugStr.append("\nDesconectando do robo " + connectionHost + ":" + connectionPort + "...");
+			System.out.println(debugStr);
+		}
+
+		stopReceiving();
+		commandContext.close();
+
+		if (cameraContext != null) {
+			cameraContext.close();
+		}
+
+		if (debug){
+			debugStr = new StringBuffer();
+			debugStr.append("Desconectado.");
+	        debugStr.append("\n===========");
+			System.out.println(debugStr);
+		}
+
+	}
+
+	/**
+	 * Escreve o pacote no canal de comandos, sem bloquear.
+	 *
+	 * @param bytes Pacote a ser enviado.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	protected void writeFrame(byte[] bytes) throws IOException {
+		commandContext.write(bytes);
+	}
+
+	/**
+	 * Escreve vários pacotes no canal de comandos numa única escrita agrupada, sem bloquear.
+	 *
+	 * @param frames Pacotes a serem enviados.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	protected void writeFrames(byte[][] frames) throws IOException {
+		commandContext.write(frames);
+	}
+
+	/**
+	 * Não é usado: as respostas são lidas pela thread de E/S do motor.
+	 *
+	 * @throws IOException sempre.
+	 */
+	@Override
+	protected byte[] readFrame() throws IOException {
+		throw new IOException("As respostas desta conexão são lidas pelo ConnectionEngine.");
+	}
+
+    /**
+     * Conecta-se com o servidor de imagens da câmera do robô e registra o canal no motor, na mesma thread de E/S do
+     * canal de comandos.
+     *
+     * @param port Porta na qual o servidor de imagens aguarda conexões.
+     *
+     * @return fluxo de dados da câmera.
+     *
+     * @throws IOException
+     */
+	@Override
+	protected InputStream cameraConnect(int port) throws IOException {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\nRobotEngineNetwork.cameraConnect():");
+	        debugStr.append("\nConectando ao servidor de imagens da câmera do robô no IP " + connectionHost + " e porta " + port + "...");
+			System.out.println(debugStr);
+		}
+
+		cameraContext = new CameraChannelContext(openChannel(port), commandContext.loop);
+		cameraContext.register(SelectionKey.OP_READ);
+
+		if (debug){
+			debugStr = new StringBuffer();
+			debugStr.append("Conectado ao servidor de imagens da câmera.");
+	        debugStr.append("\n===========");
+			System.out.println(debugStr);
+		}
+
+		return cameraContext.getInputStream();
+	}
+
+    /**
+     * Desconecta-se com o servidor de imagens da câmera do robô.
+     *
+     * @throws IOException
+     */
+	@Override
+	protected void cameraDisconnect() throws IOException {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\nRobotEngineNetwork.cameraDisconnect():");
+	        debugStr.append("\nDesconectando do servidor de imagens da câmera do robô...");
+			System.out.println(debugStr);
+		}
+
+		cameraContext.close();
+
+		if (debug){
+			debugStr = new StringBuffer();
+			debugStr.append("Desconectado do servidor de imagens da câmera do robô.");
+	        debugStr.append("\n===========");
+			System.out.println(debugStr);
+		}
+
+	}
+
+	/**
+	 * Abre um canal com o robô e o coloca em modo não bloqueante.
+	 *
+	 * @param port Porta de conexão.
+	 *
+	 * @return o canal aberto.
+	 *
+	 * @throws IOException
+	 */
+	private SocketChannel openChannel(int port) throws IOException {
+		SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(connectionHost, port));
+		socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		socketChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+		socketChannel.configureBlocking(false);
+
+		return socketChannel;
+	}
+
+}
@@ -0,0 +1,99 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.Arrays;
+
+/**
+ * Pacote enviado pelo robô por iniciativa própria, e não como resposta a um comando: por exemplo, um alarme de colisão,
+ * o aviso de bateria fraca ou uma falha da câmera. É imutável.
+ *
+ * @see RobotEventBus
+ */
+public final class RobotEvent {
+
+	/**
+	 * Tipo do evento.
+	 */
+	private final RobotEventType type;
+
+	/**
+	 * Pacote recebido, com o cabeçalho.
+	 */
+	private final byte[] frame;
+
+	/**
+	 * Instante de recebimento do pacote, em {@link System#nanoTime()}.
+	 */
+	private final long timestamp;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param eventFrame Pacote recebido, com o cabeçalho. Não é copiado.
+	 * @param receivedAt Instante de recebimento do pacote, em {@link System#nanoTime()}.
+	 */
+	RobotEvent(byte[] eventFrame, long receivedAt) {
+		type = RobotEventType.of(eventFrame);
+		frame = eventFrame;
+		timestamp = receivedAt;
+	}
+
+	/**
+	 * Retorna o tipo do evento.
+	 *
+	 * @return o tipo do evento.
+	 */
+	public RobotEventType getType() {
+		return type;
+	}
+
+	/**
+	 * Retorna o grupo da mensagem, sem o bit de resposta.
+	 *
+	 * @return o grupo, ou -1 se a mensagem for vazia.
+	 */
+	public int getGroup() {
+		return (frame.length > PackageBuilder.HEADER_LENGTH) ? (frame[PackageBuilder.HEADER_LENGTH] & 0x7F) : -1;
+	}
+
+	/**
+	 * Retorna o comando da mensagem.
+	 *
+	 * @return o comando, ou -1 se a mensagem tiver menos de 2 bytes.
+	 */
+	public int getCommand() {
+		return (frame.length > (PackageBuilder.HEADER_LENGTH + 1)) ? (frame[PackageBuilder.HEADER_LENGTH + 1] & 0xFF) : -1;
+	}
+
+	/**
+	 * Retorna os valores da mensagem, depois do grupo e do comando.
+	 *
+	 * @return uma cópia dos valores.
+	 */
+	public byte[] getValues() {
+		return (frame.length > (PackageBuilder.HEADER_LENGTH + 2)) ? Arrays.copyOfRange(frame, PackageBuilder.HEADER_LENGTH + 2, frame.length) : new byte[0];
+	}
+
+	/**
+	 * Retorna o pacote recebido.
+	 *
+	 * @return uma cópia do pacote, com o cabeçalho.
+	 */
+	public byte[] getFrame() {
+		return frame.clone();
+	}
+
+	/**
+	 * Retorna o instante de recebimento do pacote.
+	 *
+	 * @return o instante, em {@link System#nanoTime()}.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "RobotEvent[" + type + String.format(", %02x %02x", getGroup(), getCommand()) + ", " + getValues().length + " bytes]";
+	}
+
+}
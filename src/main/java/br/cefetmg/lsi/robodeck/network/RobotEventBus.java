@@ -0,0 +1,171 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Barramento dos eventos do robô: os pacotes que ele envia por iniciativa própria, como alarmes de colisão, o aviso de
+ * bateria fraca ou falhas da câmera, chegam aqui em vez de serem descartados ou confundidos com a resposta de um
+ * comando (ver {@link ResponseDispatcher#dispatch(byte[])}).
+ *
+ * Cada ouvinte assina um {@link RobotEventType}, ou todos. Os ouvintes são chamados num executor, por padrão uma
+ * única thread ("RobotEventListeners"), na ordem em que os eventos chegam; a thread de leitura da conexão apenas
+ * entrega os eventos ao executor. Para a menor latência possível, um executor direto ({@code Runnable::run}) chama os
+ * ouvintes na própria thread de leitura, e eles então não devem bloquear.
+ */
+public class RobotEventBus {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Assinaturas ativas. A lista é copiada a cada mudança, de forma que a entrega dos eventos não usa monitor.
+	 */
+	private final CopyOnWriteArrayList<RobotEventSubscription> subscriptions = new CopyOnWriteArrayList<RobotEventSubscription>();
+
+	/**
+	 * Executor das notificações, ou nulo até a primeira notificação.
+	 */
+	private Executor listenerExecutor;
+
+	/**
+	 * Número de eventos recebidos.
+	 */
+	private final AtomicLong published = new AtomicLong();
+
+	/**
+	 * Número de eventos recebidos sem nenhuma assinatura interessada.
+	 */
+	private final AtomicLong unheard = new AtomicLong();
+
+	/**
+	 * Assina um tipo de evento.
+	 *
+	 * @param type Tipo assinado.
+	 * @param listener Recebe os eventos, no executor de notificações.
+	 *
+	 * @return a assinatura, que pode ser cancelada.
+	 */
+	public RobotEventSubscription subscribe(RobotEventType type, RobotEventListener listener) {
+
+		if (type == null) {
+			throw new IllegalArgumentException("O tipo de evento não pode ser nulo. Para receber todos os eventos, use subscribeAll().");
+		}
+
+		return add(new RobotEventSubscription(this, type, listener));
+	}
+
+	/**
+	 * Assina todos os eventos.
+	 *
+	 * @param listener Recebe os eventos, no executor de notificações.
+	 *
+	 * @return a assinatura, que pode ser cancelada.
+	 */
+	public RobotEventSubscription subscribeAll(RobotEventListener listener) {
+		return add(new RobotEventSubscription(this, null, listener));
+	}
+
+	private RobotEventSubscription add(RobotEventSubscription subscription) {
+		subscriptions.add(subscription);
+
+		return subscription;
+	}
+
+	/**
+	 * Remove uma assinatura cancelada.
+	 */
+	void unsubscribe(RobotEventSubscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	/**
+	 * Define o executor em que os ouvintes são chamados. Por padrão, uma única thread ("RobotEventListeners"), criada
+	 * no primeiro evento.
+	 *
+	 * @param executor Executor das notificações.
+	 */
+	public synchronized void setListenerExecutor(Executor executor) {
+		listenerExecutor = executor;
+	}
+
+	/**
+	 * Retorna o número de eventos recebidos.
+	 *
+	 * @return o número de eventos.
+	 */
+	public long getPublished() {
+		return published.get();
+	}
+
+	/**
+	 * Retorna o número de eventos recebidos quando nenhuma assinatura se interessava por eles.
+	 *
+	 * @return o número de eventos descartados.
+	 */
+	public long getUnheard() {
+		return unheard.get();
+	}
+
+	/**
+	 * Entrega um pacote enviado pelo robô por iniciativa própria às assinaturas do seu tipo. É chamado pela thread de
+	 * leitura e não bloqueia.
+	 *
+	 * @param frame Pacote recebido, com o cabeçalho.
+	 */
+	void publish(byte[] frame) {
+		final RobotEvent event = new RobotEvent(frame, System.nanoTime());
+		Executor executor = null;
+		published.incrementAndGet();
+
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("RobotEventBus.publish():");
+	        debugStr.append("\n" + event);
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+		for (final RobotEventSubscription subscription : subscriptions) {
+
+			if (subscription.accepts(event)) {
+
+				if (executor == null) {
+					executor = listenerExecutor();
+				}
+
+				executor.execute(() -> subscription.deliver(event));
+			}
+
+		}
+
+		if (executor == null) {
+			unheard.incrementAndGet();
+		}
+
+	}
+
+	/**
+	 * Retorna o executor das notificações, criando o padrão na primeira chamada.
+	 *
+	 * @return o executor das notificações.
+	 */
+	private synchronized Executor listenerExecutor() {
+
+		if (listenerExecutor == null) {
+			listenerExecutor = Executors.newSingleThreadExecutor(task -> {
+				Thread listenerThread = new Thread(task, "RobotEventListeners");
+				listenerThread.setDaemon(true);
+
+				return listenerThread;
+			});
+		}
+
+		return listenerExecutor;
+	}
+
+}
@@ -0,0 +1,15 @@
+package br.cefetmg.lsi.robodeck.network;
+
+/**
+ * Recebe os eventos do robô assinados no {@link RobotEventBus}. É chamado no executor de notificações do barramento.
+ */
+public interface RobotEventListener {
+
+	/**
+	 * Chamado quando chega um evento do tipo assinado.
+	 *
+	 * @param event Evento recebido.
+	 */
+	void onEvent(RobotEvent event);
+
+}
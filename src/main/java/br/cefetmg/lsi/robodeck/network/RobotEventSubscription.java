@@ -0,0 +1,96 @@
+package br.cefetmg.lsi.robodeck.network;
+
+/**
+ * Assinatura de um tipo de evento do robô no {@link RobotEventBus}.
+ */
+public final class RobotEventSubscription {
+
+	/**
+	 * Barramento da assinatura.
+	 */
+	private final RobotEventBus bus;
+
+	/**
+	 * Tipo assinado, ou nulo para todos os tipos.
+	 */
+	private final RobotEventType type;
+
+	/**
+	 * Recebe os eventos.
+	 */
+	private final RobotEventListener listener;
+
+	/**
+	 * Para saber se a assinatura foi cancelada.
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * Construtor.
+	 *
+	 * @param owner Barramento da assinatura.
+	 * @param eventType Tipo assinado, ou nulo para todos os tipos.
+	 * @param eventListener Recebe os eventos.
+	 */
+	RobotEventSubscription(RobotEventBus owner, RobotEventType eventType, RobotEventListener eventListener) {
+		bus = owner;
+		type = eventType;
+		listener = eventListener;
+	}
+
+	/**
+	 * Retorna o tipo assinado.
+	 *
+	 * @return o tipo, ou nulo se a assinatura recebe todos os tipos.
+	 */
+	public RobotEventType getType() {
+		return type;
+	}
+
+	/**
+	 * Cancela a assinatura. Um evento já entregue ao executor não chega ao ouvinte.
+	 */
+	public void cancel() {
+
+		if (!cancelled) {
+			cancelled = true;
+			bus.unsubscribe(this);
+		}
+
+	}
+
+	/**
+	 * Para saber se a assinatura foi cancelada.
+	 *
+	 * @return true se a assinatura foi cancelada.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Informa se a assinatura recebe o evento.
+	 */
+	boolean accepts(RobotEvent event) {
+		return !cancelled && ((type == null) || (type == event.getType()));
+	}
+
+	/**
+	 * Entrega o evento ao ouvinte, se a assinatura não tiver sido cancelada.
+	 */
+	void deliver(RobotEvent event) {
+
+		if (!cancelled) {
+
+			try {
+				listener.onEvent(event);
+			} catch (RuntimeException e) {
+				// Um ouvinte com falha não pode interromper a entrega dos demais eventos.
+				System.err.println("Falha no ouvinte de eventos do robô (" + event + "). Erro: " + e);
+			}
+
+		}
+
+	}
+
+}
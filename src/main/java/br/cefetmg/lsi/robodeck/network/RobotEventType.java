@@ -0,0 +1,82 @@
+package br.cefetmg.lsi.robodeck.network;
+
+/**
+ * Tipos dos pacotes enviados pelo robô por iniciativa própria (ver {@link RobotEvent}), identificados pelo grupo e
+ * pelo comando da mensagem. O bit de resposta do grupo (0x80) é ignorado, de forma que um evento pode ter tanto o
+ * código do comando quanto o da sua resposta.
+ */
+public enum RobotEventType {
+
+	/**
+	 * Alarme de colisão (grupo 0x03, comando 0x0B).
+	 */
+	COLLISION(0x03, 0x0B),
+
+	/**
+	 * Demais valores de sensores (grupo 0x03).
+	 */
+	SENSOR(0x03, RobotEventType.ANY_COMMAND),
+
+	/**
+	 * Eventos da câmera, como falhas do servidor de imagens (grupo 0x04).
+	 */
+	CAMERA(0x04, RobotEventType.ANY_COMMAND),
+
+	/**
+	 * Eventos da bateria, como o aviso de bateria fraca (grupo 0x05).
+	 */
+	BATTERY(0x05, RobotEventType.ANY_COMMAND),
+
+	/**
+	 * Qualquer outro pacote.
+	 */
+	OTHER(RobotEventType.ANY_GROUP, RobotEventType.ANY_COMMAND);
+
+	private static final int ANY_GROUP = -1;
+
+	private static final int ANY_COMMAND = -1;
+
+	/**
+	 * Grupo da mensagem, sem o bit de resposta.
+	 */
+	private final int group;
+
+	/**
+	 * Comando da mensagem, ou {@link #ANY_COMMAND}.
+	 */
+	private final int command;
+
+	private RobotEventType(int eventGroup, int eventCommand) {
+		group = eventGroup;
+		command = eventCommand;
+	}
+
+	/**
+	 * Identifica o tipo de um pacote. Os tipos são testados na ordem em que foram declarados, do mais específico ao
+	 * mais geral.
+	 *
+	 * @param frame Pacote recebido, com o cabeçalho.
+	 *
+	 * @return o tipo do pacote.
+	 */
+	static RobotEventType of(byte[] frame) {
+
+		if (frame.length < (PackageBuilder.HEADER_LENGTH + 2)) {
+			return OTHER;
+		}
+
+		int frameGroup = frame[PackageBuilder.HEADER_LENGTH] & 0x7F;
+		int frameCommand = frame[PackageBuilder.HEADER_LENGTH + 1] & 0xFF;
+
+		for (RobotEventType type : values()) {
+
+			if (((type.group == ANY_GROUP) || (type.group == frameGroup)) && ((type.command == ANY_COMMAND) || (type.command == frameCommand))) {
+				return type;
+			}
+
+		}
+
+		return OTHER;
+	}
+
+}
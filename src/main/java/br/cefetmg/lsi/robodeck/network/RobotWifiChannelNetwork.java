@@ -0,0 +1,217 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Extende a classe {@link RobotConnection} para realizar comunicação através da
+ * rede WiFi, usando um {@link SocketChannel} em vez de fluxos de dados.
+ *
+ * Os pacotes são escritos e lidos através de {@link ByteBuffer}s diretos alocados uma única vez e reutilizados
+ * durante toda a vida da conexão. A leitura aproveita todos os bytes disponíveis no soquete, de forma que várias
+ * respostas que chegam juntas são lidas com uma única chamada ao sistema, e nenhum buffer intermediário é criado por
+ * resposta: cada pacote recebido gera apenas o array com o seu conteúdo.
+ *
+ * É selecionada com "robot.network.transport=nio". {@link RobotWifiNetwork} continua sendo o padrão.
+ *
+ * @see RobotConnection
+ * @see RobotWifiNetwork
+ */
+public class RobotWifiChannelNetwork extends RobotConnection {
+
+	/**
+	 * Tamanho máximo de um pacote: cabeçalho mais o maior valor do campo LEN.
+	 */
+	private static final int MAX_FRAME_LENGTH = PackageBuilder.HEADER_LENGTH + 0xFF;
+
+	/**
+	 * Tamanho do buffer de leitura. Comporta várias respostas, para que respostas que chegam juntas sejam lidas de uma
+	 * vez.
+	 */
+	private static final int READ_BUFFER_LENGTH = 16 * MAX_FRAME_LENGTH;
+
+	/**
+	 * Porta de conexão com o robô.
+	 */
+    private int connectionPort;
+
+    /**
+     * Canal de conexão com o robô.
+     */
+    private SocketChannel socketChannel;
+
+    /**
+     * Buffer reutilizado para escrever os pacotes. Só é usado com o monitor da conexão.
+     */
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(MAX_FRAME_LENGTH);
+
+    /**
+     * Buffer reutilizado para ler as respostas. Fica sempre em modo de leitura (entre "flip" e "compact") e só é
+     * usado pela thread de leitura das respostas.
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_LENGTH);
+
+    /**
+     * Construtor padrão.
+     *
+     * @param host Endereço do Robô a ser utilizado, não pode ser nula.
+     * @param port Porta de Conexão a ser utilizada, deve ser um valor positivo.
+     * @param builder Criador de pacotes da conexão.
+     *
+     * @throws UnknownHostException
+     * @throws PortUnreachableException
+     */
+    protected RobotWifiChannelNetwork(String host, int port, PackageBuilder builder) throws UnknownHostException, PortUnreachableException {
+    	super(host, builder);
+        connectionPort = port;
+    }
+
+    /**
+     * Conecta-se com o robô através de uma conexão wifi.
+     *
+     * @throws IOException
+     * @throws UnknownHostException
+     */
+	public void connect() throws IOException {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("RobotWifiChannelNetwork.connect():");
+	        debugStr.append("\nConectando ao robô...");
+			System.out.println(debugStr);
+		}
+
+		socketChannel = SocketChannel.open(new InetSocketAddress(connectionHost, connectionPort));
+		socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		socketChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+
+		// Descarta o que tenha sobrado de uma conexão anterior.
+		readBuffer.clear();
+		readBuffer.flip();
+
+        startReceiving();
+
+		if (debug){
+			debugStr = new StringBuffer();
+			debugStr.append("Conectado.");
+	        debugStr.append("\n===========");
+			System.out.println(debugStr);
+		}
+
+	}
+
+    /**
+     * Desconecta-se com o robô através de uma conexão wifi.
+     *
+     * @throws IOException
+     */
+	public void disconnect() throws IOException {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("RobotWifiChannelNetwork.disconnect():");
+	        debugStr.append("\nDesconectando do robo...");
+			System.out.println(debugStr);
+		}
+
+		stopReceiving();
+		socketChannel.close();
+
+		if (debug){
+			debugStr = new StringBuffer();
+			debugStr.append("Desconectado.");
+	        debugStr.append("\n===========");
+			System.out.println(debugStr);
+		}
+
+	}
+
+	/**
+	 * Copia o pacote para o buffer de escrita e o envia pelo canal.
+	 *
+	 * @param bytes Pacote a ser enviado.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	protected void writeFrame(byte[] bytes) throws IOException {
+		writeBuffer.clear();
+		writeBuffer.put(bytes);
+		writeBuffer.flip();
+
+		while (writeBuffer.hasRemaining()) {
+			socketChannel.write(writeBuffer);
+		}
+
+	}
+
+	/**
+	 * Envia vários pacotes numa única escrita agrupada ("gathering write"), sem juntá-los antes num só array.
+	 *
+	 * @param frames Pacotes a serem enviados.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	protected void writeFrames(byte[][] frames) throws IOException {
+		ByteBuffer[] buffers = new ByteBuffer[frames.length];
+
+		for (int i = 0; i < frames.length; i++) {
+			buffers[i] = ByteBuffer.wrap(frames[i]);
+		}
+
+		while (buffers[buffers.length - 1].hasRemaining()) {
+			socketChannel.write(buffers);
+		}
+
+	}
+
+	/**
+	 * Lê um pacote completo do buffer de leitura, lendo mais bytes do canal apenas quando os que já estão no buffer
+	 * não bastam.
+	 *
+	 * @return Pacote lido.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	protected byte[] readFrame() throws IOException {
+		fill(PackageBuilder.HEADER_LENGTH);
+
+		int frameLength = PackageBuilder.HEADER_LENGTH + (readBuffer.get(readBuffer.position() + 9) & 0xFF);
+		fill(frameLength);
+
+		byte[] frame = new byte[frameLength];
+		readBuffer.get(frame);
+
+		return frame;
+	}
+
+	/**
+	 * Lê do canal até que o buffer de leitura tenha pelo menos "length" bytes.
+	 *
+	 * @throws IOException se a conexão for encerrada antes.
+	 */
+	private void fill(int length) throws IOException {
+
+		while (readBuffer.remaining() < length) {
+			readBuffer.compact();
+			int n = socketChannel.read(readBuffer);
+			readBuffer.flip();
+
+			if (n < 0) {
+				throw new IOException("A conexão com o robô foi encerrada.");
+			}
+
+		}
+
+	}
+
+}
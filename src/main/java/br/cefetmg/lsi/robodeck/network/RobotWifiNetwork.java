@@ -19,11 +19,6 @@ public class RobotWifiNetwork extends RobotConnection {
 	 */
     private int connectionPort;
     
-    /**
-     * Host para conexão com o robô, via wifi.
-     */
-    private String connectionHost;
-    
     /**
      * Soquete de conexão com o robô.
      */
@@ -34,12 +29,13 @@ public class RobotWifiNetwork extends RobotConnection {
      * 
      * @param host Endereço do Robô a ser utilizado, não pode ser nula.
      * @param port Porta de Conexão a ser utilizada, deve ser um valor positivo.
+     * @param builder Criador de pacotes da conexão.
      * 
      * @throws UnknownHostException 
      * @throws PortUnreachableException 
      */
-    protected RobotWifiNetwork(String host, int port) throws UnknownHostException, PortUnreachableException {
-        connectionHost = host;
+    protected RobotWifiNetwork(String host, int port, PackageBuilder builder) throws UnknownHostException, PortUnreachableException {
+    	super(host, builder);
         connectionPort = port;
     }
 
@@ -69,6 +65,8 @@ public class RobotWifiNetwork extends RobotConnection {
         	socketConnection.close();
             throw new IOException("Um dos streams é nulo!! A conexão foi cancelada."); 
         }
+        
+        startReceiving();
 		
 		if (debug){
 			debugStr = new StringBuffer();
@@ -94,6 +92,7 @@ public class RobotWifiNetwork extends RobotConnection {
 			System.out.println(debugStr);
 		}
 		
+		stopReceiving();
     	socketConnection.close();
 		
 		if (debug){
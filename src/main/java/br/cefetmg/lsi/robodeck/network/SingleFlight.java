@@ -0,0 +1,104 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
+
+/**
+ * Deduplicação das leituras idênticas feitas ao mesmo tempo ("single-flight").
+ *
+ * Enquanto uma leitura aguarda resposta, as chamadas seguintes com a mesma chave não enviam outro pacote: recebem a
+ * mesma resposta. Assim, N threads lendo o mesmo sensor ao mesmo tempo custam um pacote ao robô e ao enlace, e não N.
+ *
+ * Só deve ser usada para comandos sem efeito no robô (leituras), já que os comandos deduplicados não são enviados.
+ * Assim que a resposta chega, a chave é liberada e uma chamada feita depois disso envia um novo pacote: nenhuma
+ * chamada recebe uma resposta que já tinha chegado antes dela ser feita.
+ */
+class SingleFlight {
+	protected final boolean debug = Boolean.parseBoolean(PropertiesLoaderImpl.getValor("robodeckapi.debugmode")); // Para ativar/desativar saidas "System.out.println();" de depuracao.
+
+	/**
+	 * Resposta futura de cada leitura em trânsito, pela sua chave.
+	 */
+	private final ConcurrentHashMap<Object, CompletableFuture<?>> inFlight = new ConcurrentHashMap<Object, CompletableFuture<?>>();
+
+	/**
+	 * Número de chamadas que receberam a resposta de uma leitura já em trânsito, sem enviar pacotes.
+	 */
+	private final AtomicLong shared = new AtomicLong();
+
+	/**
+	 * Envia uma leitura ou, se uma leitura com a mesma chave já estiver em trânsito, aguarda a resposta dela.
+	 *
+	 * @param key Identifica a leitura. Deve ter equals e hashCode pelo conteúdo.
+	 * @param command Envia a leitura e retorna a sua resposta futura.
+	 *
+	 * @return a resposta futura, compartilhada entre as chamadas deduplicadas. Quem chama não deve completá-la.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> CompletableFuture<T> join(final Object key, Supplier<CompletableFuture<T>> command) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		CompletableFuture<T> current = (CompletableFuture<T>)inFlight.putIfAbsent(key, result);
+
+		if (current != null) {
+			shared.incrementAndGet();
+			debugShared();
+
+			return current;
+		}
+
+		CompletableFuture<T> reply;
+
+		try {
+			reply = command.get();
+		} catch (RuntimeException e) {
+			inFlight.remove(key, result);
+			result.completeExceptionally(e);
+
+			return result;
+		}
+
+		reply.whenComplete((value, failure) -> {
+			// Libera a chave antes de completar, para que as ações encadeadas ao resultado enviem uma nova leitura.
+			inFlight.remove(key, result);
+
+			if (failure == null) {
+				result.complete(value);
+			} else {
+				result.completeExceptionally(failure);
+			}
+
+		});
+
+		return result;
+	}
+
+	/**
+	 * Retorna o número de chamadas que receberam a resposta de uma leitura já em trânsito, sem enviar pacotes.
+	 *
+	 * @return o número de leituras deduplicadas.
+	 */
+	long getShared() {
+		return shared.get();
+	}
+
+	/**
+	 * Exibe, em modo de depuração, que uma leitura foi deduplicada.
+	 */
+	private void debugShared() {
+        StringBuffer debugStr = new StringBuffer();
+
+		if (debug){
+	        debugStr.append("\n===========\n");
+	        debugStr.append("SingleFlight.join():");
+	        debugStr.append("\nLeitura idêntica já em trânsito; aguardando a mesma resposta. Total: " + shared.get());
+	        debugStr.append("\n===========\n");
+			System.out.println(debugStr);
+		}
+
+	}
+
+}
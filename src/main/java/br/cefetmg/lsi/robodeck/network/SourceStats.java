@@ -0,0 +1,143 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.cefetmg.lsi.robodeck.utils.LatencyRecorder;
+
+/**
+ * Contabilidade dos pacotes enviados por um consumidor da conexão, identificado pelo argumento "source" dos
+ * comandos.
+ *
+ * @see RobotConnection#getSourceStats(String)
+ */
+public class SourceStats {
+
+	/**
+	 * Nome do consumidor.
+	 */
+	private final String source;
+
+	/**
+	 * Número de pacotes enviados.
+	 */
+	private final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * Número de pacotes que falharam (sem resposta, cancelados ou com erro de envio).
+	 */
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * Bytes enviados.
+	 */
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	/**
+	 * Bytes recebidos nas respostas.
+	 */
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	/**
+	 * Tempo desde o pedido de envio de cada pacote até a chegada da sua resposta.
+	 */
+	private final LatencyRecorder latency = new LatencyRecorder();
+
+	/**
+	 * Construtor.
+	 *
+	 * @param sourceName Nome do consumidor.
+	 */
+	SourceStats(String sourceName) {
+		source = sourceName;
+	}
+
+	/**
+	 * Registra um pacote enviado.
+	 *
+	 * @param length Tamanho do pacote.
+	 */
+	void sent(int length) {
+		requests.incrementAndGet();
+		bytesSent.addAndGet(length);
+	}
+
+	/**
+	 * Registra a resposta de um pacote.
+	 *
+	 * @param length Tamanho da resposta.
+	 * @param nanos Tempo desde o pedido de envio até a chegada da resposta.
+	 */
+	void received(int length, long nanos) {
+		bytesReceived.addAndGet(length);
+		latency.record(nanos);
+	}
+
+	/**
+	 * Registra a falha de um pacote.
+	 */
+	void failed() {
+		failures.incrementAndGet();
+	}
+
+	/**
+	 * Retorna o nome do consumidor.
+	 *
+	 * @return o nome do consumidor.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Retorna o número de pacotes enviados.
+	 *
+	 * @return o número de pacotes enviados.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Retorna o número de pacotes que falharam.
+	 *
+	 * @return o número de pacotes que falharam.
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Retorna o número de bytes enviados.
+	 *
+	 * @return os bytes enviados.
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	/**
+	 * Retorna o número de bytes recebidos nas respostas.
+	 *
+	 * @return os bytes recebidos.
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	/**
+	 * Retorna o tempo desde o pedido de envio de cada pacote até a chegada da sua resposta, incluindo a espera na
+	 * fila.
+	 *
+	 * @return o registro das latências, em nanossegundos.
+	 */
+	public LatencyRecorder getLatency() {
+		return latency;
+	}
+
+	@Override
+	public String toString() {
+		return source + ": pacotes=" + getRequests() + " falhas=" + getFailures() + " enviados=" + getBytesSent()
+				+ "B recebidos=" + getBytesReceived() + "B latência[" + latency + "]";
+	}
+
+}
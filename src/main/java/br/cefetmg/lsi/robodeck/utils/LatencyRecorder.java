@@ -0,0 +1,152 @@
+package br.cefetmg.lsi.robodeck.utils;
+
+import java.util.Arrays;
+
+/**
+ * Registra durações (em nanossegundos) e calcula percentis sobre as amostras mais recentes.
+ *
+ * As amostras são guardadas num buffer circular de tamanho fixo, de forma que o custo de memória não cresce com o
+ * tempo de execução e os percentis refletem o comportamento recente. O total de amostras e o máximo consideram todas
+ * as amostras já registradas.
+ *
+ * Pode ser usado por várias threads ao mesmo tempo.
+ */
+public class LatencyRecorder {
+
+	/**
+	 * Número de amostras recentes guardadas por padrão.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Amostras mais recentes, em nanossegundos.
+	 */
+	private final long[] samples;
+
+	/**
+	 * Número total de amostras registradas.
+	 */
+	private long count;
+
+	/**
+	 * Soma de todas as amostras registradas, em nanossegundos.
+	 */
+	private long total;
+
+	/**
+	 * Maior amostra registrada, em nanossegundos.
+	 */
+	private long max;
+
+	/**
+	 * Cria um registro que guarda as {@link #DEFAULT_CAPACITY} amostras mais recentes.
+	 */
+	public LatencyRecorder() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Cria um registro que guarda as "capacity" amostras mais recentes.
+	 *
+	 * @param capacity Número de amostras recentes usadas no cálculo dos percentis.
+	 */
+	public LatencyRecorder(int capacity) {
+
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("A capacidade deve ser positiva: " + capacity);
+		}
+
+		samples = new long[capacity];
+	}
+
+	/**
+	 * Registra uma duração.
+	 *
+	 * @param nanos Duração, em nanossegundos.
+	 */
+	public synchronized void record(long nanos) {
+		samples[(int)(count % samples.length)] = nanos;
+		count++;
+		total += nanos;
+
+		if (nanos > max) {
+			max = nanos;
+		}
+
+	}
+
+	/**
+	 * Retorna o número total de amostras registradas.
+	 *
+	 * @return o número de amostras.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Retorna a média de todas as amostras registradas.
+	 *
+	 * @return a média, em nanossegundos, ou 0 se não houver amostras.
+	 */
+	public synchronized long getMean() {
+		return (count == 0) ? 0 : (total / count);
+	}
+
+	/**
+	 * Retorna a maior amostra registrada.
+	 *
+	 * @return o máximo, em nanossegundos, ou 0 se não houver amostras.
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * Retorna um percentil das amostras recentes.
+	 *
+	 * @param percentile Percentil desejado, entre 0 e 100 (por exemplo, 99 para o p99).
+	 *
+	 * @return o valor do percentil, em nanossegundos, ou 0 se não houver amostras.
+	 */
+	public long getPercentile(double percentile) {
+		long[] recent = recentSamples();
+
+		if (recent.length == 0) {
+			return 0;
+		}
+
+		Arrays.sort(recent);
+		int index = (int)Math.ceil((percentile / 100.0) * recent.length) - 1;
+
+		return recent[Math.max(0, Math.min(recent.length - 1, index))];
+	}
+
+	/**
+	 * Descarta todas as amostras.
+	 */
+	public synchronized void reset() {
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	/**
+	 * Resumo das amostras, em milissegundos.
+	 */
+	@Override
+	public String toString() {
+		return String.format("n=%d média=%.3fms p50=%.3fms p99=%.3fms máx=%.3fms", getCount(), getMean() / 1e6,
+				getPercentile(50) / 1e6, getPercentile(99) / 1e6, getMax() / 1e6);
+	}
+
+	/**
+	 * Copia as amostras recentes.
+	 *
+	 * @return cópia das amostras recentes.
+	 */
+	private synchronized long[] recentSamples() {
+		return Arrays.copyOf(samples, (int)Math.min(count, samples.length));
+	}
+
+}
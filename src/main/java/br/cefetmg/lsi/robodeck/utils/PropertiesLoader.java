@@ -27,5 +27,9 @@ public class PropertiesLoader {
     protected String getValor(String chave){  
     	return (String)props.getProperty(chave);  
     }
+  
+    protected String getValor(String chave, String valorPadrao){  
+    	return props.getProperty(chave, valorPadrao);  
+    }
 
 }
@@ -7,4 +7,8 @@ public class PropertiesLoaderImpl {
 	public static String getValor(String chave){  
     	return (String)loader.getValor(chave);  
 	}
+    
+	public static String getValor(String chave, String valorPadrao){  
+    	return loader.getValor(chave, valorPadrao);  
+	}
 }
@@ -0,0 +1,492 @@
+package br.cefetmg.lsi.robodeck;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Robô simulado, para rodar os testes sem o robô real. Atende o protocolo do RoboDeck numa porta local e responde
+ * cada comando depois de um atraso fixo, como o enlace sem fio do robô. As respostas de uma conexão são escritas na
+ * ordem em que ficam prontas, de forma que vários comandos podem aguardar resposta ao mesmo tempo.
+ *
+ * Os valores dos sensores são fixos ou variam de forma previsível: ultrassom [993, 3986, 2979, 1972] na primeira
+ * leitura, bússola em múltiplos de 13, bateria 87, versão do protocolo 3.0.0. A câmera, na porta informada pelo
+ * comando de início da captura, envia 256 KiB de dados e fecha a conexão.
+ *
+ * O grupo 0x07 tem comandos que só existem no simulador:
+ * - 07 01 n: n respostas parciais (ACT_PART_RESP) de 200 bytes e uma resposta final;
+ * - 07 02: resposta com erro (ACT_CMD_WITH_ERROR) "comando invalido";
+ * - 07 03 n: uma resposta final e, em seguida, n alarmes de colisão (ACT_CMD, 03 0B FF) e um aviso de bateria
+ * 	(85 03 0A), enviados pelo robô por iniciativa própria, com REF 0.
+ *
+ * Uso: RoboSimulado [porta] [atraso em ms] [--noref]. Com "--noref", o campo REF das respostas não é preenchido.
+ */
+public class RoboSimulado {
+
+	/**
+	 * Porta padrão do simulador.
+	 */
+	public static final int PORTA_PADRAO = 2700;
+
+	/**
+	 * Atraso padrão de cada resposta, em ms.
+	 */
+	public static final long ATRASO_PADRAO = 20;
+
+	private final ServerSocket servidor;
+
+	private final ServerSocket servidorCamera;
+
+	/**
+	 * Atraso de cada resposta, em ms.
+	 */
+	private final long atraso;
+
+	/**
+	 * Para saber se o REF das respostas é preenchido com o PID do comando.
+	 */
+	private final boolean ecoarRef;
+
+	/**
+	 * Último SID entregue.
+	 */
+	private final AtomicInteger sid = new AtomicInteger(4);
+
+	/**
+	 * Número de pacotes recebidos, em todas as conexões.
+	 */
+	private final AtomicLong pacotes = new AtomicLong();
+
+	/**
+	 * Conexões abertas, para serem fechadas em {@link #parar()}.
+	 */
+	private final List<Socket> conexoes = new CopyOnWriteArrayList<Socket>();
+
+	/**
+	 * Estado dos sensores de uma conexão.
+	 */
+	private static class Estado {
+
+		int ultrassom = 1000;
+
+		int bussola = 0;
+
+		int pid = 1;
+
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int porta = (args.length > 0) ? Integer.parseInt(args[0]) : PORTA_PADRAO;
+		long atraso = (args.length > 1) ? Long.parseLong(args[1]) : ATRASO_PADRAO;
+		boolean ecoarRef = !((args.length > 2) && args[2].equals("--noref"));
+
+		RoboSimulado simulado = new RoboSimulado(porta, atraso, ecoarRef);
+		simulado.iniciar();
+		System.out.println("Robô simulado na porta " + simulado.getPorta() + " (câmera na porta " + simulado.getPortaCamera() + ").");
+
+		Thread.sleep(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Construtor. O simulador só atende conexões depois de {@link #iniciar()}.
+	 *
+	 * @param porta Porta local dos comandos, ou 0 para qualquer porta livre.
+	 * @param atrasoMs Atraso de cada resposta, em ms.
+	 * @param ecoar true para preencher o REF das respostas com o PID do comando.
+	 *
+	 * @throws IOException
+	 */
+	public RoboSimulado(int porta, long atrasoMs, boolean ecoar) throws IOException {
+		InetAddress local = InetAddress.getLoopbackAddress();
+		servidor = new ServerSocket(porta, 50, local);
+		servidorCamera = new ServerSocket((porta == 0) ? 0 : porta + 1, 50, local);
+		atraso = atrasoMs;
+		ecoarRef = ecoar;
+	}
+
+	/**
+	 * Passa a atender as conexões, em threads próprias.
+	 */
+	public void iniciar() {
+		iniciarThread("RoboSimulado", () -> {
+
+			while (!servidor.isClosed()) {
+
+				try {
+					final Socket conexao = servidor.accept();
+					conexoes.add(conexao);
+					iniciarThread("RoboSimulado-conexao", () -> atender(conexao));
+				} catch (IOException e) {
+					// Servidor fechado.
+				}
+
+			}
+
+		});
+
+		iniciarThread("RoboSimulado-camera", () -> {
+
+			while (!servidorCamera.isClosed()) {
+
+				try {
+					final Socket conexao = servidorCamera.accept();
+					conexoes.add(conexao);
+					iniciarThread("RoboSimulado-camera", () -> enviarImagens(conexao));
+				} catch (IOException e) {
+					// Servidor fechado.
+				}
+
+			}
+
+		});
+	}
+
+	/**
+	 * Fecha os servidores e todas as conexões.
+	 */
+	public void parar() {
+
+		try {
+			servidor.close();
+			servidorCamera.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		for (Socket conexao : conexoes) {
+
+			try {
+				conexao.close();
+			} catch (IOException e) {
+				// Já fechada.
+			}
+
+		}
+
+	}
+
+	/**
+	 * Retorna a porta local dos comandos.
+	 *
+	 * @return a porta.
+	 */
+	public int getPorta() {
+		return servidor.getLocalPort();
+	}
+
+	/**
+	 * Retorna a porta local da câmera.
+	 *
+	 * @return a porta.
+	 */
+	public int getPortaCamera() {
+		return servidorCamera.getLocalPort();
+	}
+
+	/**
+	 * Retorna o número de pacotes recebidos, em todas as conexões.
+	 *
+	 * @return o número de pacotes.
+	 */
+	public long getPacotes() {
+		return pacotes.get();
+	}
+
+	/**
+	 * Lê os comandos de uma conexão e agenda as respostas.
+	 */
+	private void atender(Socket conexao) {
+		final Estado estado = new Estado();
+		ScheduledExecutorService envio = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+			final OutputStream saida = conexao.getOutputStream();
+			DataInputStream entrada = new DataInputStream(conexao.getInputStream());
+			conexao.setTcpNoDelay(true);
+
+			while (true) {
+				byte[] cabecalho = new byte[10];
+				entrada.readFully(cabecalho);
+				byte[] mensagem = new byte[cabecalho[9] & 0xFF];
+				entrada.readFully(mensagem);
+				pacotes.incrementAndGet();
+
+				if ((mensagem.length > 1) && (mensagem[0] == 0x07)) {
+					comandoDeTeste(cabecalho, mensagem, estado, envio, saida);
+				} else {
+					agendar(envio, saida, atraso, resposta(cabecalho, estado, (byte)0x03, resposta(mensagem, estado)));
+				}
+
+			}
+
+		} catch (IOException e) {
+			// Conexão encerrada.
+		} finally {
+			envio.shutdownNow();
+			conexoes.remove(conexao);
+
+			try {
+				conexao.close();
+			} catch (IOException e) {
+				// Já fechada.
+			}
+
+		}
+
+	}
+
+	/**
+	 * Agenda as respostas de um comando do grupo 0x07.
+	 */
+	private void comandoDeTeste(byte[] cabecalho, byte[] mensagem, Estado estado, ScheduledExecutorService envio, OutputStream saida) {
+		int n = (mensagem.length > 2) ? (mensagem[2] & 0xFF) : 0;
+
+		switch (mensagem[1]) {
+		case 0x02:
+			agendar(envio, saida, atraso, resposta(cabecalho, estado, (byte)0x04, "comando invalido".getBytes()));
+			break;
+		case 0x03:
+			agendar(envio, saida, atraso, resposta(cabecalho, estado, (byte)0x03, bytes(0x87, 0x03, 0xFF)));
+
+			for (int j = 0; j < n; j++) {
+				agendar(envio, saida, atraso + 5 * (j + 1), evento(cabecalho, (byte)0x01, bytes(0x03, 0x0B, 0xFF)));
+			}
+
+			agendar(envio, saida, atraso + 300, evento(cabecalho, (byte)0x03, bytes(0x85, 0x03, 10)));
+			break;
+		default:
+
+			for (int i = 0; i < n; i++) {
+				byte[] parte = new byte[200];
+				parte[0] = (byte)0x87;
+				parte[1] = 0x01;
+				parte[2] = (byte)i;
+
+				for (int k = 0; k < 197; k++) {
+					parte[3 + k] = (byte)(i + k);
+				}
+
+				agendar(envio, saida, atraso + 2 * i, resposta(cabecalho, estado, (byte)0x02, parte));
+			}
+
+			agendar(envio, saida, atraso + 2 * n, resposta(cabecalho, estado, (byte)0x03, bytes(0x87, 0x01, 0xFF)));
+			break;
+		}
+
+	}
+
+	/**
+	 * Monta a mensagem da resposta a um comando.
+	 */
+	private byte[] resposta(byte[] mensagem, Estado estado) {
+		int grupo = mensagem[0] & 0xFF;
+		int comando = (mensagem.length > 1) ? (mensagem[1] & 0xFF) : 0;
+		int parametro = (mensagem.length > 2) ? (mensagem[2] & 0xFF) : 0;
+
+		switch (grupo) {
+		case 0x00:
+			return bytes(0x80, 0x00, 3, 0, 0);
+		case 0x01:
+
+			if (comando == 0x01) {
+				return bytes(0x81, 0x01, 0x00, sid.incrementAndGet() & 0xFF);
+			} else if (comando == 0x02) {
+				return bytes(0x81, 0x02, 0xFF);
+			}
+
+			break;
+		case 0x03:
+
+			switch (comando) {
+			case 0x01:
+			case 0x02:
+			case 0x03:
+			case 0x04:
+				return bytes(0x83, comando, 0xFF);
+			case 0x05:
+				return bytes(0x83, 0x05, 10 + parametro, 20 + parametro);
+			case 0x06:
+				estado.ultrassom -= 7;
+				return palavras(bytes(0x83, 0x06), parametro * 1000 + Math.floorMod(estado.ultrassom, 1000));
+			case 0x07:
+				return bytes(0x83, 0x07, 50 + parametro);
+			case 0x08:
+				estado.bussola = (estado.bussola + 13) % 3600;
+				return palavras(bytes(0x83, 0x08), estado.bussola);
+			case 0x09:
+				return palavras(bytes(0x83, 0x09), 100, 200, 10000);
+			case 0x0A:
+				return palavras(bytes(0x83, 0x0A), 3289, 44);
+			case 0x0B:
+				return bytes(0x83, 0x0B, 0x00);
+			case 0x0C:
+				return bytes(0x83, 0x0C, 1, 2);
+			case 0x0D:
+				return bytes(0x83, 0x0D, 0xFF);
+			case 0x0E:
+				return bytes(0x83, 0x0E, 7);
+			case 0x0F:
+				return bytes(0x83, 0x0F, 12, 34, 56);
+			case 0x10:
+				return bytes(0x83, 0x10, 24, 10, 17);
+			case 0x11:
+				return concatenar(palavras(bytes(0x83, 0x11, 19, 55), 32768), bytes(1));
+			case 0x12:
+				return concatenar(palavras(bytes(0x83, 0x12, 43, 56), 16384), bytes(1));
+			case 0x13:
+			case 0x14:
+			case 0x15:
+				return palavras(bytes(0x83, comando), 850 + comando);
+			case 0x16:
+				return palavras(concatenar(palavras(concatenar(palavras(bytes(0x83, 0x16, 1, 2, 0x00, 7, 12, 34, 56, 24, 10, 17, 19, 55), 32768),
+						bytes(1, 43, 56)), 16384), bytes(1)), 8500, 25, 900);
+			}
+
+			break;
+		case 0x04:
+
+			if (comando == 0x01) {
+				return bytes(0x84, 0x01, 1, 2, 3);
+			} else if (comando == 0x04) {
+				return (parametro == 1) ? palavras(bytes(0x84, 0x04, 1), getPortaCamera()) : bytes(0x84, 0x04, parametro);
+			}
+
+			break;
+		case 0x05:
+
+			if (comando == 0x01) {
+				return bytes(0x85, 0x01, 0x00, 0xFF);
+			} else if (comando == 0x02) {
+				return palavras(bytes(0x85, 0x02, 0x00), 87);
+			}
+
+			break;
+		}
+
+		return bytes(0x80 | grupo, comando, 0x00);
+	}
+
+	/**
+	 * Monta uma resposta ao comando cujo cabeçalho é dado.
+	 */
+	private byte[] resposta(byte[] cabecalho, Estado estado, byte acao, byte[] mensagem) {
+		byte[] pacote = evento(cabecalho, acao, mensagem);
+		pacote[0] = (byte)estado.pid++;
+		pacote[1] = ecoarRef ? cabecalho[0] : 0;
+
+		return pacote;
+	}
+
+	/**
+	 * Monta um pacote enviado pelo robô por iniciativa própria, com PID e REF 0, na sessão do cabeçalho dado.
+	 */
+	private static byte[] evento(byte[] cabecalho, byte acao, byte[] mensagem) {
+		byte[] pacote = new byte[10 + mensagem.length];
+		pacote[2] = cabecalho[4];
+		pacote[3] = cabecalho[5];
+		pacote[4] = cabecalho[2];
+		pacote[5] = cabecalho[3];
+		pacote[6] = cabecalho[6];
+		pacote[7] = cabecalho[7];
+		pacote[8] = acao;
+		pacote[9] = (byte)mensagem.length;
+		System.arraycopy(mensagem, 0, pacote, 10, mensagem.length);
+
+		return pacote;
+	}
+
+	/**
+	 * Agenda a escrita de um pacote.
+	 */
+	private static void agendar(ScheduledExecutorService envio, final OutputStream saida, long atrasoMs, final byte[] pacote) {
+		envio.schedule(() -> {
+
+			try {
+				saida.write(pacote);
+				saida.flush();
+			} catch (IOException e) {
+				// Conexão encerrada.
+			}
+
+		}, atrasoMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Envia os dados da câmera e fecha a conexão.
+	 */
+	private void enviarImagens(Socket conexao) {
+		byte[] dados = new byte[256 * 1024];
+
+		for (int i = 0; i < dados.length; i++) {
+			dados[i] = (byte)(i * 7);
+		}
+
+		try {
+			conexao.getOutputStream().write(dados);
+			conexao.getOutputStream().flush();
+			Thread.sleep(1000);
+		} catch (IOException | InterruptedException e) {
+			// Conexão encerrada.
+		} finally {
+			conexoes.remove(conexao);
+
+			try {
+				conexao.close();
+			} catch (IOException e) {
+				// Já fechada.
+			}
+
+		}
+
+	}
+
+	private static void iniciarThread(String nome, Runnable tarefa) {
+		Thread thread = new Thread(tarefa, nome);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static byte[] bytes(int... valores) {
+		byte[] resultado = new byte[valores.length];
+
+		for (int i = 0; i < valores.length; i++) {
+			resultado[i] = (byte)valores[i];
+		}
+
+		return resultado;
+	}
+
+	/**
+	 * Acrescenta valores de dois bytes (big-endian) ao fim da mensagem.
+	 */
+	private static byte[] palavras(byte[] inicio, int... valores) {
+		byte[] resultado = new byte[inicio.length + 2 * valores.length];
+		System.arraycopy(inicio, 0, resultado, 0, inicio.length);
+
+		for (int i = 0; i < valores.length; i++) {
+			resultado[inicio.length + 2 * i] = (byte)(valores[i] >> 8);
+			resultado[inicio.length + 2 * i + 1] = (byte)valores[i];
+		}
+
+		return resultado;
+	}
+
+	private static byte[] concatenar(byte[] inicio, byte[] fim) {
+		byte[] resultado = new byte[inicio.length + fim.length];
+		System.arraycopy(inicio, 0, resultado, 0, inicio.length);
+		System.arraycopy(fim, 0, resultado, inicio.length, fim.length);
+
+		return resultado;
+	}
+
+}
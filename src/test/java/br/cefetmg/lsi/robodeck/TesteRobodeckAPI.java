@@ -2,6 +2,15 @@ package br.cefetmg.lsi.robodeck;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
@@ -9,33 +18,120 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 
 import br.cefetmg.lsi.robodeck.devices.camera.CameraImage;
+import br.cefetmg.lsi.robodeck.devices.sensors.CollisionReflex;
+import br.cefetmg.lsi.robodeck.devices.sensors.GpsFix;
+import br.cefetmg.lsi.robodeck.devices.sensors.LatestSensorValues;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorCondition;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorKind;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorPoller;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorSnapshot;
+import br.cefetmg.lsi.robodeck.devices.sensors.SensorSubscription;
+import br.cefetmg.lsi.robodeck.devices.sensors.Side;
 import br.cefetmg.lsi.robodeck.exceptions.CameraException;
 import br.cefetmg.lsi.robodeck.exceptions.CameraImageFormatLenghtException;
 import br.cefetmg.lsi.robodeck.exceptions.CameraStartException;
 import br.cefetmg.lsi.robodeck.exceptions.CameraStopException;
+import br.cefetmg.lsi.robodeck.exceptions.DifferentRobotConnectionAlreadyExists;
 import br.cefetmg.lsi.robodeck.exceptions.EmptyMessageException;
 import br.cefetmg.lsi.robodeck.exceptions.MoveRobotException;
 import br.cefetmg.lsi.robodeck.exceptions.SpinRobotException;
 import br.cefetmg.lsi.robodeck.exceptions.StrafeRobotException;
+import br.cefetmg.lsi.robodeck.exceptions.StreamCommandException;
 import br.cefetmg.lsi.robodeck.exceptions.TurnRobotException;
+import br.cefetmg.lsi.robodeck.network.ResponseStream;
+import br.cefetmg.lsi.robodeck.network.RobotConnection;
+import br.cefetmg.lsi.robodeck.network.RobotEventSubscription;
+import br.cefetmg.lsi.robodeck.network.RobotEventType;
 import br.cefetmg.lsi.robodeck.utils.PropertiesLoaderImpl;
 
 public class TesteRobodeckAPI {
 	private static Robot robot;
 	private static JFrame cameraWindow;
 	private static JLabel cameraImageLabel;
+	private static RoboSimulado simulado;
+	private static int falhas;
 
-	public static void main(String[] args) {
-		testeSequencial();
-//		testeConcorrente();
+	/**
+	 * Sem argumentos, roda o teste sequencial contra o robô configurado em "robodeckapi.properties".
+	 *
+	 * Com o argumento "simulado", roda os demais testes contra um {@link RoboSimulado} numa porta local, conferindo os
+	 * resultados com os valores que o simulador envia. Termina com código 1 se alguma verificação falhar.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if ((args.length == 0) || !args[0].equals("simulado")) {
+			testeSequencial();
+//			testeConcorrente();
+			return;
+		}
+
+		simulado = new RoboSimulado(0, RoboSimulado.ATRASO_PADRAO, true);
+		simulado.iniciar();
+
+		try {
+			testeConcorrente();
+			testeAssincrono();
+			testeGPS();
+			testeLote();
+			testeLeitor();
+			testeLeitorComFalhas();
+			testeOrcamento();
+			testeReflexo();
+			testeRespostasParciais();
+			testeEventos();
+		} finally {
+			simulado.parar();
+		}
+
+		System.out.println((falhas == 0) ? "Todas as verificações passaram." : falhas + " verificações falharam.");
+		System.exit((falhas == 0) ? 0 : 1);
+	}
+
+	/**
+	 * Confere um resultado dos testes contra o simulador, contando as falhas.
+	 *
+	 * @param descricao O que foi conferido.
+	 * @param ok Resultado da verificação.
+	 */
+	private static void verificar(String descricao, boolean ok) {
+
+		if (!ok) {
+			falhas++;
+		}
+
+		System.out.println((ok ? "OK: " : "FALHOU: ") + descricao);
+	}
+
+	/**
+	 * Confere que a leitura do ultrassom tem os valores enviados pelo simulador: o milhar de cada valor identifica o
+	 * sensor.
+	 */
+	private static boolean ultrassomSimulado(int[] distancias) {
+		return (distancias.length == 4) && ((distancias[0] / 1000) == 0) && ((distancias[1] / 1000) == 3)
+				&& ((distancias[2] / 1000) == 2) && ((distancias[3] / 1000) == 1);
+	}
+
+	/**
+	 * Cria o robô dos testes: o simulado, se houver, ou o configurado em "robodeckapi.properties".
+	 */
+	private static Robot novoRobo() throws PortUnreachableException, UnknownHostException, DifferentRobotConnectionAlreadyExists {
+
+		if (simulado == null) {
+			return new Robot();
+		}
+
+		return new Robot(RobotConnection.makeConnection("127.0.0.1", simulado.getPorta(),
+				Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.src")),
+				Integer.parseInt(PropertiesLoaderImpl.getValor("robot.network.dst"))));
 	}
 	
 	private static void testeConcorrente(){
 		boolean canDisconect = false;
 
 		try {
-			robot = new Robot();
+			robot = novoRobo();
 			robot.connect();
+			long inicio = System.nanoTime();
 			
 			Consumidor1 consumidor1 = new Consumidor1(robot, 20);
 			Consumidor2 consumidor2 = new Consumidor2(robot, 20);
@@ -59,9 +155,18 @@ public class TesteRobodeckAPI {
 				canDisconect = consumidor1.terminou() && consumidor2.terminou() && consumidor3.terminou() && consumidor4.terminou();
 			}
 			
+			t1.join();
+			t2.join();
+			t3.join();
+			t4.join();
+			System.out.println("Concorrente: 4 consumidores x 20 leituras em " + (System.nanoTime() - inicio) / 1000000 + " ms.");
+			System.out.println(robot.getSourceStats());
+			verificar("os quatro consumidores terminaram", consumidor1.terminou() && consumidor2.terminou() && consumidor3.terminou() && consumidor4.terminou());
+			
 			robot.disconnect();			
 		} catch (Exception e) {
 			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
 			
 			try {
 				robot.disconnect();
@@ -76,7 +181,7 @@ public class TesteRobodeckAPI {
 	private static void testeSequencial(){
 
 		try {
-			robot = new Robot();
+			robot = novoRobo();
 			robot.connect();
 			
 			/*ReaderInfraredSensorsDepth readerInfraredSensorsDepth = new ReaderInfraredSensorsDepth(robot);
@@ -154,6 +259,483 @@ public class TesteRobodeckAPI {
 		
 	}
 	
+	/**
+	 * Leituras assíncronas: as quatro leituras de cada rodada aguardam resposta ao mesmo tempo, em vez de uma após a
+	 * outra.
+	 */
+	private static void testeAssincrono(){
+		String source = TesteRobodeckAPI.class.getName();
+
+		try {
+			robot = novoRobo();
+			robot.connect();
+			RobotAsync async = robot.async();
+			
+			long inicio = System.nanoTime();
+			
+			for (int i = 0; i < 25; i++) {
+				robot.readCompassSensor(source);
+				robot.readGPSGet(source);
+				robot.readBatteryLevel(source);
+				robot.readUltrassonicSensorsDistance(source);
+			}
+			
+			System.out.println("Sequencial: 25 rodadas em " + (System.nanoTime() - inicio) / 1000000 + " ms.");
+			
+			inicio = System.nanoTime();
+			
+			for (int i = 0; i < 25; i++) {
+				CompletableFuture<Integer> compass = async.readCompassSensor(source);
+				CompletableFuture<int[]> gps = async.readGPSGet(source);
+				CompletableFuture<Integer> battery = async.readBatteryLevel(source);
+				CompletableFuture<int[]> ultrasonic = async.readUltrassonicSensorsDistance(source);
+				CompletableFuture.allOf(compass, gps, battery, ultrasonic).join();
+				
+				if (i == 0) {
+					System.out.println("Bússola: " + compass.join() + "; GPS: " + gps.join().length + " valores; bateria: " + battery.join()
+							+ "; ultrassom: " + Arrays.toString(ultrasonic.join()));
+					verificar("bússola assíncrona em múltiplos de 13", (compass.join() % 13) == 0);
+					verificar("GPS assíncrono com 21 valores", gps.join().length == 21);
+					verificar("bateria assíncrona 87", battery.join() == 87);
+					verificar("ultrassom assíncrono", ultrassomSimulado(ultrasonic.join()));
+				}
+				
+			}
+			
+			System.out.println("Assíncrono: 25 rodadas em " + (System.nanoTime() - inicio) / 1000000 + " ms.");
+			
+			long compartilhadas = robot.getSharedReads();
+			CompletableFuture<int[]> primeira = async.readUltrassonicSensorsDistance(source);
+			CompletableFuture<int[]> segunda = async.readUltrassonicSensorsDistance(source);
+			verificar("leituras idênticas simultâneas deduplicadas", Arrays.equals(primeira.join(), segunda.join()) && (robot.getSharedReads() == compartilhadas + 1));
+			
+			async.move(10, source).join();
+			async.brake(source).join();
+			verificar("movimento e frenagem assíncronos", true);
+			
+			robot.disconnect();
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+			
+			try {
+				robot.disconnect();
+			} catch (Exception ex) {
+				System.out.println("Falha ao fechar conexão com o robô.");
+				ex.printStackTrace();
+			}
+			
+		}
+	}
+	
+	/**
+	 * GPS: a posição decodificada da resposta do comando 0x16, que o simulador envia no formato do robô (validade 0,
+	 * 7 satélites, altitude 850,0 m, direção 90,0 graus), e a validade extraída dela.
+	 */
+	private static void testeGPS(){
+		String source = TesteRobodeckAPI.class.getName();
+
+		try {
+			robot = novoRobo();
+			robot.connect();
+			
+			GpsFix fix = robot.readGPSFix(source);
+			System.out.println(fix);
+			verificar("posição do GPS válida", fix.isValid());
+			verificar("satélites, altitude e direção do GPS", (fix.getSatellites() == 7) && (fix.getAltitude() == 850.0) && (fix.getHeading() == 90.0));
+			verificar("validade do GPS pelo comando 0x0D", robot.readGPSValidate(source));
+			
+			int[] gps = new int[GpsFix.VALUE_COUNT];
+			verificar("GPS num array do chamador", (robot.readGPSGet(source, gps) == gps) && Arrays.equals(gps, fix.getValues()));
+			int[] eixos = new int[3];
+			verificar("acelerômetro num array do chamador", (robot.readAccelerometerSensor(source, eixos) == eixos) && Arrays.equals(eixos, new int[] {100, 200, 10000}));
+			int[] distancias = new int[4];
+			verificar("ultrassom num array do chamador", (robot.readUltrassonicSensorsDistance(source, distancias) == distancias) && ultrassomSimulado(distancias));
+			
+			robot.setGPSFromFix(true);
+			verificar("validade do GPS extraída da posição", robot.readGPSValidate(source));
+			
+			robot.disconnect();
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+			
+			try {
+				robot.disconnect();
+			} catch (Exception ex) {
+				System.out.println("Falha ao fechar conexão com o robô.");
+				ex.printStackTrace();
+			}
+			
+		}
+	}
+	
+	/**
+	 * Lotes: as leituras de cada lote são enviadas numa única escrita.
+	 */
+	private static void testeLote(){
+		String source = TesteRobodeckAPI.class.getName();
+
+		try {
+			robot = novoRobo();
+			robot.connect();
+			
+			long inicio = System.nanoTime();
+			
+			for (int i = 0; i < 10; i++) {
+				robot.readCompassSensor(source);
+				robot.readAccelerometerSensor(source);
+				robot.readInfraredSensorsDepth(source);
+				robot.readCollisionDetection(source);
+			}
+			
+			System.out.println("Sem lote: " + (System.nanoTime() - inicio) / 10000000 + " ms por rodada.");
+			
+			inicio = System.nanoTime();
+			RobotBatch batch = null;
+			CompletableFuture<int[]> accelerometer = null;
+			CompletableFuture<int[]> ultrasonic = null;
+			CompletableFuture<Integer> battery = null;
+			int incompletos = 0;
+			
+			for (int i = 0; i < 10; i++) {
+				batch = robot.batch();
+				batch.readCompassSensor(source);
+				accelerometer = batch.readAccelerometerSensor(source);
+				batch.readInfraredSensorsDepth(source);
+				batch.readCollisionDetection(source);
+				ultrasonic = batch.readUltrassonicSensorsDistance(source);
+				battery = batch.readBatteryLevel(source);
+				batch.send().join();
+				
+				if (!accelerometer.isDone() || !ultrasonic.isDone() || !battery.isDone()) {
+					incompletos++;
+				}
+				
+			}
+			
+			System.out.println("Com lote: " + (System.nanoTime() - inicio) / 10000000 + " ms por rodada, " + batch.size() + " pacotes por lote.");
+			System.out.println("Acelerômetro: " + Arrays.toString(accelerometer.join()) + "; ultrassom: " + Arrays.toString(ultrasonic.join())
+					+ "; bateria: " + battery.join());
+			verificar("lote completado só depois de todas as leituras, inclusive a segunda parte da bateria", incompletos == 0);
+			verificar("lote com 9 pacotes", batch.size() == 9);
+			verificar("acelerômetro do lote", Arrays.equals(accelerometer.join(), new int[] {100, 200, 10000}));
+			verificar("ultrassom do lote", ultrassomSimulado(ultrasonic.join()));
+			verificar("bateria do lote 87", battery.join() == 87);
+			
+			SensorSnapshot snapshot = robot.readSnapshot(EnumSet.of(SensorKind.COMPASS, SensorKind.ULTRASONIC_DISTANCE, SensorKind.BATTERY), source);
+			System.out.println("Leitura de vários sensores: " + snapshot);
+			verificar("bateria da leitura de vários sensores 87", snapshot.getBatteryLevel() == 87);
+			verificar("bússola da leitura de vários sensores em múltiplos de 13", (snapshot.getCompass() % 13) == 0);
+			
+			robot.disconnect();
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+			
+			try {
+				robot.disconnect();
+			} catch (Exception ex) {
+				System.out.println("Falha ao fechar conexão com o robô.");
+				ex.printStackTrace();
+			}
+			
+		}
+	}
+	
+	/**
+	 * Leitor de sensores: lê os sensores em segundo plano, enquanto quatro threads consultam os últimos valores lidos,
+	 * e avisa uma assinatura quando o ultrassom frontal passa a indicar um obstáculo.
+	 */
+	private static void testeLeitor(){
+
+		try {
+			robot = novoRobo();
+			robot.connect();
+			
+			SensorPoller poller = robot.sensorPoller();
+			poller.setRate(SensorKind.COMPASS, 20);
+			poller.setRate(SensorKind.ULTRASONIC_DISTANCE, 20);
+			poller.setRate(SensorKind.BATTERY, 2);
+			
+			final CountDownLatch obstaculo = new CountDownLatch(1);
+			SensorSubscription subscription = robot.onUltrasonic(Side.FRONT, SensorCondition.below(1000), (kind, position, value, timestamp) -> {
+				System.out.println("Obstáculo à frente: " + value);
+				obstaculo.countDown();
+			});
+			
+			poller.start();
+			Thread.sleep(300);
+			
+			final LatestSensorValues values = poller.getValues();
+			final AtomicInteger consultas = new AtomicInteger();
+			Thread[] threads = new Thread[4];
+			
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(() -> {
+					int[] ultrasonic = new int[4];
+					long fim = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+					
+					while (System.nanoTime() < fim) {
+						values.read(SensorKind.ULTRASONIC_DISTANCE, ultrasonic);
+						values.getCompass();
+						consultas.incrementAndGet();
+					}
+					
+				});
+				threads[i].start();
+			}
+			
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			
+			System.out.println("Consultas aos últimos valores em 1 s (4 threads): " + consultas.get());
+			System.out.println(values.toSnapshot());
+			System.out.println("Leituras: " + poller.getPolls() + "; puladas: " + poller.getSkipped() + "; falhas: " + poller.getFailures());
+			verificar("assinatura do ultrassom frontal avisada", obstaculo.await(1, TimeUnit.SECONDS));
+			verificar("bateria do leitor 87", values.getBatteryLevel() == 87);
+			verificar("bússola do leitor em múltiplos de 13", (values.getCompass() % 13) == 0);
+			verificar("leitor sem falhas", (poller.getPolls() > 0) && (poller.getFailures() == 0));
+			
+			subscription.cancel();
+			robot.disconnect();
+			verificar("leitor parado após desconectar", !poller.isRunning());
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+			
+			try {
+				robot.disconnect();
+			} catch (Exception ex) {
+				System.out.println("Falha ao fechar conexão com o robô.");
+				ex.printStackTrace();
+			}
+			
+		}
+	}
+	
+	/**
+	 * Leitor de sensores cujas notificações falham: cada leitura falha ao entregar o disparo, mas o leitor continua
+	 * lendo.
+	 */
+	private static void testeLeitorComFalhas(){
+
+		try {
+			robot = novoRobo();
+			robot.connect();
+			
+			SensorPoller poller = robot.sensorPoller();
+			poller.setRate(SensorKind.COMPASS, 20);
+			poller.setListenerExecutor(task -> {
+				throw new RejectedExecutionException("Executor encerrado.");
+			});
+			SensorSubscription subscription = robot.onSensor(SensorKind.COMPASS, 0, SensorCondition.above(-1), (kind, position, value, timestamp) -> {});
+			Thread.sleep(500);
+			
+			System.out.println("Leituras: " + poller.getPolls() + "; puladas: " + poller.getSkipped() + "; falhas: " + poller.getFailures());
+			verificar("leitor continua lendo depois de falhas", (poller.getPolls() > 3) && (poller.getFailures() > 0) && poller.isRunning());
+			
+			subscription.cancel();
+			robot.disconnect();
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+			
+			try {
+				robot.disconnect();
+			} catch (Exception ex) {
+				System.out.println("Falha ao fechar conexão com o robô.");
+				ex.printStackTrace();
+			}
+			
+		}
+	}
+	
+	/**
+	 * Orçamento do enlace do leitor de sensores: as frequências efetivas ficam dentro do orçamento, mesmo quando nem
+	 * os mínimos cabem nele.
+	 */
+	private static void testeOrcamento(){
+
+		try {
+			SensorPoller poller = new SensorPoller(novoRobo());
+			poller.setRate(SensorKind.COMPASS, 20);
+			poller.setLinkBudget(10);
+			verificar("bússola reduzida ao orçamento", poller.getRate(SensorKind.COMPASS) == 10);
+			verificar("bateria continua sem leitura", poller.getRate(SensorKind.BATTERY) == 0);
+			
+			poller.setRate(SensorKind.ULTRASONIC_DISTANCE, 5);
+			verificar("mínimos reduzidos na mesma proporção", (poller.getRate(SensorKind.COMPASS) == 5)
+					&& (poller.getRate(SensorKind.ULTRASONIC_DISTANCE) == 1.25));
+			
+			poller.setRateRange(SensorKind.COMPASS, 2, 20);
+			poller.setRate(SensorKind.ULTRASONIC_DISTANCE, 0);
+			poller.setLinkBudget(11);
+			verificar("orçamento acima do mínimo dividido", poller.getRate(SensorKind.COMPASS) == 11);
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+		}
+	}
+	
+	/**
+	 * Reflexo de colisão: com uma condição sempre satisfeita (bateria abaixo de 100), o robô é freado ao armar e de
+	 * novo a cada comando de movimento, e as demais leituras continuam sendo atendidas.
+	 */
+	private static void testeReflexo(){
+		String source = TesteRobodeckAPI.class.getName();
+
+		try {
+			robot = novoRobo();
+			robot.connect();
+			
+			CollisionReflex reflex = robot.collisionReflex();
+			reflex.watch(SensorKind.BATTERY, 0, SensorCondition.below(100));
+			reflex.arm();
+			Thread.sleep(300);
+			
+			long antes = reflex.getTriggers();
+			verificar("reflexo freou ao armar", antes > 0);
+			
+			robot.move(10, source);
+			Thread.sleep(300);
+			verificar("reflexo freou de novo depois do movimento", reflex.getTriggers() > antes);
+			
+			long inicio = System.nanoTime();
+			
+			for (int i = 0; i < 10; i++) {
+				robot.readCompassSensor(source);
+			}
+			
+			long ms = (System.nanoTime() - inicio) / 1000000;
+			System.out.println("10 leituras da bússola com o reflexo armado: " + ms + " ms.");
+			verificar("leituras atendidas com o reflexo armado", ms < 2000);
+			verificar("reflexo sem falhas", (reflex.getReadFailures() == 0) && (reflex.getFailures() == 0));
+			
+			robot.disconnect();
+			verificar("reflexo desarmado ao desconectar", !reflex.isArmed());
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+			
+			try {
+				robot.disconnect();
+			} catch (Exception ex) {
+				System.out.println("Falha ao fechar conexão com o robô.");
+				ex.printStackTrace();
+			}
+			
+		}
+	}
+	
+	/**
+	 * Respostas parciais: comandos de teste do {@link RoboSimulado} que respondem em várias partes ou com erro.
+	 */
+	private static void testeRespostasParciais(){
+		String source = TesteRobodeckAPI.class.getName();
+
+		try {
+			robot = novoRobo();
+			robot.connect();
+			
+			final AtomicInteger partes = new AtomicInteger();
+			byte[] answer = robot.streamCommand(new byte[] {0x07, 0x01, 40}, frame -> partes.incrementAndGet(), source);
+			System.out.println("Respostas parciais: " + partes.get() + "; resposta final: " + (answer[12] & 0xFF));
+			verificar("40 respostas parciais", partes.get() == 40);
+			verificar("resposta final FF", (answer[12] & 0xFF) == 0xFF);
+			
+			ResponseStream stream = robot.openResponseStream(new byte[] {0x07, 0x01, 5}, source);
+			int frames = 0;
+			
+			while (stream.hasNext()) {
+				stream.next();
+				frames++;
+			}
+			
+			System.out.println("Pacotes percorridos: " + frames);
+			verificar("6 pacotes percorridos", frames == 6);
+			
+			boolean recusado = false;
+			
+			try {
+				robot.streamCommand(new byte[] {0x07, 0x02}, frame -> {}, source);
+			} catch (StreamCommandException e) {
+				System.out.println("Recusa esperada: " + e.getMessage());
+				recusado = true;
+			}
+			
+			verificar("comando com erro recusado", recusado);
+			
+			robot.disconnect();
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+			
+			try {
+				robot.disconnect();
+			} catch (Exception ex) {
+				System.out.println("Falha ao fechar conexão com o robô.");
+				ex.printStackTrace();
+			}
+			
+		}
+	}
+	
+	/**
+	 * Eventos: alarmes de colisão e aviso de bateria enviados pelo {@link RoboSimulado} por iniciativa própria,
+	 * enquanto a bússola é lida. Os eventos não podem ser tomados como respostas das leituras.
+	 */
+	private static void testeEventos(){
+		String source = TesteRobodeckAPI.class.getName();
+
+		try {
+			robot = novoRobo();
+			robot.connect();
+			
+			final CountDownLatch colisoes = new CountDownLatch(5);
+			final CountDownLatch bateria = new CountDownLatch(1);
+			RobotEventSubscription collision = robot.onEvent(RobotEventType.COLLISION, event -> colisoes.countDown());
+			RobotEventSubscription battery = robot.onEvent(RobotEventType.BATTERY, event -> {
+				System.out.println("Aviso de bateria: " + event);
+				bateria.countDown();
+			});
+			
+			CompletableFuture<byte[]> trigger = robot.async().streamCommand(new byte[] {0x07, 0x03, 5}, frame -> {}, source);
+			int erradas = 0;
+			
+			for (int i = 0; i < 20; i++) {
+				
+				if ((robot.readCompassSensor(source) % 13) != 0) {
+					erradas++;
+				}
+				
+			}
+			
+			trigger.join();
+			verificar("5 alarmes de colisão", colisoes.await(2, TimeUnit.SECONDS));
+			verificar("aviso de bateria", bateria.await(2, TimeUnit.SECONDS));
+			verificar("nenhum evento tomado como leitura", erradas == 0);
+			System.out.println("Eventos publicados: " + robot.getEventBus().getPublished() + "; sem assinante: " + robot.getEventBus().getUnheard());
+			verificar("6 eventos publicados, todos com assinante", (robot.getEventBus().getPublished() == 6) && (robot.getEventBus().getUnheard() == 0));
+			
+			collision.cancel();
+			battery.cancel();
+			robot.disconnect();
+		} catch (Exception e) {
+			e.printStackTrace();
+			verificar("sem exceções: " + e, false);
+			
+			try {
+				robot.disconnect();
+			} catch (Exception ex) {
+				System.out.println("Falha ao fechar conexão com o robô.");
+				ex.printStackTrace();
+			}
+			
+		}
+	}
+	
 	private static void moveTest() throws IOException, EmptyMessageException, MoveRobotException, InterruptedException{
 		robot.move(1000, TesteRobodeckAPI.class.getName());
 		Thread.sleep(5000);
@@ -0,0 +1,115 @@
+package br.cefetmg.lsi.robodeck.network;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import br.cefetmg.lsi.robodeck.exceptions.EmptyMessageException;
+
+/**
+ * Compara a montagem de pacotes a partir dos modelos do {@link PackageBuilder} com a montagem anterior, que criava o
+ * comando, um {@link PackageHeader} e o pacote a cada chamada.
+ *
+ * Para executar: "mvn test-compile" e, em seguida, esta classe com o classpath de teste. Os argumentos são os
+ * da linha de comando do JMH; para medir também a alocação, passe "-prof gc".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackageBuilderBenchmark {
+
+	private static final int SOURCE = 0x23;
+
+	private static final int DESTINATION = 0x1A;
+
+	private static final int SESSION = 0x5C;
+
+	private PackageBuilder packageBuilder;
+
+	private int intensity;
+
+	@Setup
+	public void setup() {
+		packageBuilder = new PackageBuilder(SOURCE, DESTINATION);
+		packageBuilder.setSid(SESSION);
+	}
+
+	@Benchmark
+	public byte[] templateMove() throws EmptyMessageException {
+		return packageBuilder.createMovePackage(intensity++);
+	}
+
+	@Benchmark
+	public byte[] legacyMove() {
+		int value = intensity++;
+
+		return legacyPackage(new byte[] {0x03, 0x01, (byte)(value >> 8), (byte)value});
+	}
+
+	@Benchmark
+	public byte[] templateGPSGet() throws EmptyMessageException {
+		return packageBuilder.createGPSGetPackage();
+	}
+
+	@Benchmark
+	public byte[] legacyGPSGet() {
+		return legacyPackage(new byte[] {0x03, 0x16});
+	}
+
+	@Benchmark
+	public byte[] templateBatteryLevel() throws EmptyMessageException {
+		return packageBuilder.createBatteryLevelPackage(PackageBuilder.BatteryLevelPackage.FIRST);
+	}
+
+	@Benchmark
+	public byte[] legacyBatteryLevel() {
+		return legacyPackage(new byte[] {0x05, 0x01, 0x00, 0x09});
+	}
+
+	/**
+	 * Montagem anterior: cabeçalho novo a cada pacote, copiado byte a byte junto com o comando.
+	 */
+	private byte[] legacyPackage(byte[] cmd) {
+		PackageHeader header = new PackageHeader((byte)1, (byte)0, SOURCE, DESTINATION, SESSION, (byte)0x01, (byte)cmd.length);
+		byte[] pack = new byte[header.getLength() + cmd.length];
+		int packCounter = 0;
+
+		for (int i = 0; i < header.getLength(); i++) {
+			pack[packCounter++] = header.get(i);
+		}
+
+		for (int i = 0; i < cmd.length; i++) {
+			pack[packCounter++] = cmd[i];
+		}
+
+		return pack;
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(PackageBuilderBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(options).run();
+	}
+
+}